@@ -0,0 +1,84 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Random;
+
+/**
+ * Scaling benchmark for ConcreteEdgesGraph.
+ * 
+ * <p>Builds random word-like graphs of doubling size and reports the mean
+ * cost of set, targets, sources and remove at each size, so the growth
+ * curve (flat for O(1)/O(degree), linear for O(E)) can be read off directly.
+ * 
+ * <p>Run without -ea: checkRep is part of what is being measured only when
+ * assertions are enabled.
+ */
+public class ConcreteEdgesGraphBenchmark {
+    
+    private static final int AVERAGE_DEGREE = 4;
+    private static final int QUERIES = 2_000;
+    
+    /**
+     * Run the benchmark.
+     * 
+     * @param args optional largest edge count (default 32768)
+     */
+    public static void main(String[] args) {
+        final int maxEdges = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 15;
+        System.out.printf("%10s %14s %14s %14s %14s%n",
+                "edges", "set ns/op", "targets ns/op", "sources ns/op", "remove ns/op");
+        // first pass warms up the JIT and is not reported
+        for (int pass = 0; pass < 2; pass++) {
+            for (int edges = 1 << 10; edges <= maxEdges; edges *= 2) {
+                run(edges, pass == 1);
+            }
+        }
+    }
+    
+    // Build one graph of the given size and time each operation on it
+    private static void run(int edges, boolean report) {
+        final int vertices = Math.max(2, edges / AVERAGE_DEGREE);
+        final String[] labels = new String[vertices];
+        for (int i = 0; i < vertices; i++) {
+            labels[i] = "w" + i;
+        }
+        final Random random = new Random(edges);
+        final Graph<String> graph = new ConcreteEdgesGraph();
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < edges; i++) {
+            graph.set(labels[random.nextInt(vertices)], labels[random.nextInt(vertices)], 1 + random.nextInt(10));
+        }
+        final double setCost = (System.nanoTime() - start) / (double) edges;
+        
+        long sink = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            sink += graph.targets(labels[random.nextInt(vertices)]).size();
+        }
+        final double targetsCost = (System.nanoTime() - start) / (double) QUERIES;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            sink += graph.sources(labels[random.nextInt(vertices)]).size();
+        }
+        final double sourcesCost = (System.nanoTime() - start) / (double) QUERIES;
+        
+        final int removals = Math.min(QUERIES, vertices);
+        start = System.nanoTime();
+        for (int i = 0; i < removals; i++) {
+            sink += graph.remove(labels[i]) ? 1 : 0;
+        }
+        final double removeCost = (System.nanoTime() - start) / (double) removals;
+        
+        if (report) {
+            System.out.printf("%10d %14.0f %14.0f %14.0f %14.0f%n",
+                    edges, setCost, targetsCost, sourcesCost, removeCost);
+        }
+        if (sink == 42) {
+            System.out.print("");
+        }
+    }
+}
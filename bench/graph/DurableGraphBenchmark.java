@@ -0,0 +1,95 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * Ingestion throughput of a DurableGraph against the OverlayGraph it keeps in
+ * memory, and the cost of making every mutation durable by itself.
+ *
+ * <p>Counts a Zipf-distributed stream of bigrams with increment(): into a
+ * plain OverlayGraph, into a DurableGraph with its default group commit and
+ * checkpointing, and into a DurableGraph synced after every increment, which
+ * forces the log once per mutation. Reports thousands of increments per
+ * second and the time to recover each durable graph from its directory.
+ */
+public class DurableGraphBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+    private static final int INCREMENTS = 2_000_000;
+    // Synced increments are slow, so only a prefix of the stream is synced
+    private static final int SYNCED_INCREMENTS = 2_000;
+
+    private interface Ingest {
+        void run(CountingGraph<String> graph, int count) throws IOException;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        final String[] words = Workloads.words(VOCABULARY);
+        final int[][] edges = Workloads.edges(Distribution.ZIPF, VOCABULARY, INCREMENTS, 1);
+        Ingest unsynced = (graph, count) -> {
+            for (int i = 0; i < count; i++) {
+                graph.increment(words[edges[i][0]], words[edges[i][1]], 1);
+            }
+        };
+        Ingest synced = (graph, count) -> {
+            for (int i = 0; i < count; i++) {
+                graph.increment(words[edges[i][0]], words[edges[i][1]], 1);
+                ((DurableGraph) graph).sync();
+            }
+        };
+        System.out.printf("%-24s %12s %14s%n", "graph", "increments", "K incr/s");
+        // first pass warms up the JIT and is not reported
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            unsynced.run(new OverlayGraph<>(CsrGraph.from(new DenseGraph<String>())), INCREMENTS);
+            report(pass, "OverlayGraph", INCREMENTS, start);
+            measure(pass, "DurableGraph", unsynced, INCREMENTS);
+            measure(pass, "DurableGraph, sync each", synced, SYNCED_INCREMENTS);
+        }
+    }
+
+    private static void measure(int pass, String name, Ingest ingest, int count) throws IOException {
+        Path directory = Files.createTempDirectory("durable");
+        try {
+            long start = System.nanoTime();
+            try (DurableGraph graph = DurableGraph.open(directory)) {
+                ingest.run(graph, count);
+                graph.sync();
+                report(pass, name, count, start);
+            }
+            long recover = System.nanoTime();
+            DurableGraph.open(directory).close();
+            if (pass == 1) {
+                System.out.printf("  reopened in %.3f s%n", (System.nanoTime() - recover) / 1e9);
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void report(int pass, String name, int count, long start) {
+        if (pass == 1) {
+            System.out.printf("%-24s %12d %14.1f%n", name, count, count / ((System.nanoTime() - start) / 1e9) / 1e3);
+        }
+    }
+}
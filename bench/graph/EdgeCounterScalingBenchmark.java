@@ -0,0 +1,112 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * Scaling of concurrent bigram counting with the number of threads.
+ * 
+ * <p>Each thread counts its own Zipf-distributed stream of bigrams, as if it
+ * were tokenizing one shard of a corpus, into a shared ConcurrentEdgeCounter,
+ * a shared ConcurrentGraph (increment under stripe locks), and a shared
+ * ConcreteVerticesGraph behind one lock. Reports million increments per
+ * second and the speedup over one thread, up to twice the processor count.
+ */
+public class EdgeCounterScalingBenchmark {
+    
+    private static final int VOCABULARY = 50_000;
+    private static final int INCREMENTS_PER_THREAD = 1_000_000;
+    
+    private interface Counter {
+        void increment(String source, String target);
+    }
+    
+    /**
+     * Run the benchmark.
+     * 
+     * @param args unused
+     * @throws InterruptedException if interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int maxThreads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        final String[] words = Workloads.words(VOCABULARY);
+        final List<int[][]> streams = new ArrayList<>();
+        for (int thread = 0; thread < maxThreads; thread++) {
+            streams.add(Workloads.edges(Distribution.ZIPF, VOCABULARY, INCREMENTS_PER_THREAD, thread));
+        }
+        System.out.printf("processors: %d%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-24s %8s %14s %8s%n", "counter", "threads", "M incr/s", "speedup");
+        // first pass warms up the JIT and is not reported
+        for (int pass = 0; pass < 2; pass++) {
+            for (String name : new String[] { "ConcurrentEdgeCounter", "ConcurrentGraph", "synchronized graph" }) {
+                double single = 0;
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    double rate = run(name, threads, words, streams);
+                    if (threads == 1) {
+                        single = rate;
+                    }
+                    if (pass == 1) {
+                        System.out.printf("%-24s %8d %14.2f %8.2f%n", name, threads, rate, rate / single);
+                    }
+                }
+            }
+        }
+    }
+    
+    // Count with the given number of threads and return million increments per second
+    private static double run(String name, int threads, String[] words, List<int[][]> streams)
+            throws InterruptedException {
+        final Counter counter;
+        switch (name) {
+        case "ConcurrentEdgeCounter": {
+            ConcurrentEdgeCounter<String> edges = new ConcurrentEdgeCounter<>();
+            counter = edges::increment;
+            break;
+        }
+        case "ConcurrentGraph": {
+            ConcurrentGraph<String> graph = new ConcurrentGraph<>();
+            counter = (s, t) -> graph.increment(s, t, 1);
+            break;
+        }
+        default: {
+            ConcreteVerticesGraph graph = new ConcreteVerticesGraph();
+            counter = (s, t) -> {
+                synchronized (graph) {
+                    graph.increment(s, t, 1);
+                }
+            };
+        }
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> workers = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            final int[][] stream = streams.get(thread);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int[] bigram : stream) {
+                    counter.increment(words[bigram[0]], words[bigram[1]]);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return (double) threads * INCREMENTS_PER_THREAD / seconds / 1e6;
+    }
+}
@@ -0,0 +1,112 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import harness.Harness;
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * Benchmarks add, set, remove, sources and targets on each Graph
+ * implementation, across graph sizes and degree distributions.
+ * 
+ * <p>Each operation runs against a word graph with the given number of
+ * edges and one eighth as many vertices, whose edges are bigrams of a
+ * uniform or Zipf-like random word sequence. Mutating operations get a
+ * freshly built graph for every iteration.
+ * 
+ * <p>Usage: {@code java graph.GraphBenchmark [-wi N] [-i N] [-rff results.json]
+ * [-p impl=ConcreteEdgesGraph] [-p edges=1024,16384] [-p distribution=ZIPF]}
+ */
+public class GraphBenchmark {
+    
+    private static final int[] EDGES = { 1 << 10, 1 << 14, 1 << 17 };
+    private static final int MUTATIONS = 1_000;
+    private static final int QUERIES = 10_000;
+    
+    private static final Map<String, Supplier<Graph<String>>> IMPLEMENTATIONS = new LinkedHashMap<>();
+    static {
+        IMPLEMENTATIONS.put("ConcreteEdgesGraph", ConcreteEdgesGraph::new);
+        IMPLEMENTATIONS.put("ConcreteVerticesGraph", ConcreteVerticesGraph::new);
+        IMPLEMENTATIONS.put("DenseGraph", DenseGraph::new);
+        // The overhead of recording metrics is the difference from DenseGraph
+        IMPLEMENTATIONS.put("InstrumentedGraph", () -> new InstrumentedGraph<>(new DenseGraph<>()));
+        IMPLEMENTATIONS.put("ConcurrentGraph", ConcurrentGraph::new);
+        IMPLEMENTATIONS.put("VersionedGraph", VersionedGraph::new);
+    }
+    
+    /**
+     * Run the benchmarks.
+     * 
+     * @param args harness options
+     * @throws IOException if the results cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Harness harness = new Harness(args);
+        for (Map.Entry<String, Supplier<Graph<String>>> implementation : IMPLEMENTATIONS.entrySet()) {
+            for (Distribution distribution : Distribution.values()) {
+                for (int edges : EDGES) {
+                    Map<String, String> params = new LinkedHashMap<>();
+                    params.put("impl", implementation.getKey());
+                    params.put("distribution", distribution.name());
+                    params.put("edges", String.valueOf(edges));
+                    if (harness.selected(params)) {
+                        run(harness, params, implementation.getValue(), distribution, edges);
+                    }
+                }
+            }
+        }
+        harness.finish();
+    }
+    
+    private static void run(Harness harness, Map<String, String> params,
+            Supplier<Graph<String>> empty, Distribution distribution, int edges) {
+        final int vertices = Math.max(2, edges / 8);
+        final String[] words = Workloads.words(vertices);
+        final int[][] graphEdges = Workloads.edges(distribution, vertices, edges, 1);
+        final int[][] newEdges = Workloads.edges(distribution, vertices, MUTATIONS, 2);
+        final String[] newWords = new String[MUTATIONS];
+        for (int i = 0; i < MUTATIONS; i++) {
+            newWords[i] = "new" + i;
+        }
+        final int[] queries = new int[QUERIES];
+        final Workloads.Sampler sampler = new Workloads.Sampler(distribution, vertices, 3);
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = sampler.next();
+        }
+        final Supplier<Graph<String>> build = () -> {
+            Graph<String> graph = empty.get();
+            for (int[] edge : graphEdges) {
+                graph.set(words[edge[0]], words[edge[1]], 1 + (edge[0] + edge[1]) % 10);
+            }
+            return graph;
+        };
+        final Graph<String> shared = build.get();
+        final String name = GraphBenchmark.class.getName() + ".";
+        final int removals = Math.min(MUTATIONS, vertices);
+        
+        harness.measure(name + "add", params, Harness.Mode.AVERAGE_TIME, MUTATIONS, () -> {
+            Graph<String> graph = build.get();
+            return i -> graph.add(newWords[i]) ? 1 : 0;
+        });
+        harness.measure(name + "set", params, Harness.Mode.AVERAGE_TIME, MUTATIONS, () -> {
+            Graph<String> graph = build.get();
+            return i -> graph.set(words[newEdges[i][0]], words[newEdges[i][1]], 1 + i % 10);
+        });
+        harness.measure(name + "remove", params, Harness.Mode.AVERAGE_TIME, removals, () -> {
+            Graph<String> graph = build.get();
+            // remove frequent words first, the costly case under ZIPF
+            return i -> graph.remove(words[i]) ? 1 : 0;
+        });
+        harness.measure(name + "sources", params, Harness.Mode.AVERAGE_TIME, QUERIES,
+                () -> i -> shared.sources(words[queries[i]]).size());
+        harness.measure(name + "targets", params, Harness.Mode.AVERAGE_TIME, QUERIES,
+                () -> i -> shared.targets(words[queries[i]]).size());
+    }
+}
@@ -0,0 +1,109 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Heap-per-edge benchmark for the Graph implementations.
+ * 
+ * <p>Loads the same random word-like graph (Zipf-distributed endpoints,
+ * small weights) into each implementation and reports retained heap per
+ * edge, measured as the difference in used heap after forced collections.
+ * All vertices are added before the baseline measurement, so only the cost
+ * of the edges themselves is counted. The frozen CsrGraph and the
+ * memory-mapped MappedGraph are measured whole, vertex table included.
+ */
+public class GraphMemoryBenchmark {
+    
+    /**
+     * Run the benchmark.
+     * 
+     * @param args optional edge count (default 1000000)
+     * @throws IOException if the mapped graph file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        final int edges = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        final String[] labels = new String[Math.max(2, edges / 8)];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "w" + i;
+        }
+        measure("ConcreteVerticesGraph", ConcreteVerticesGraph::new, labels, edges);
+        final Graph<String> dense = measure("DenseGraph", DenseGraph::new, labels, edges);
+        measureFrozen(dense);
+        measureMapped(dense);
+    }
+    
+    private static Graph<String> measure(String name, Supplier<Graph<String>> factory, String[] labels, int edges) {
+        final Graph<String> graph = factory.get();
+        for (String label : labels) {
+            graph.add(label);
+        }
+        final long before = usedHeap();
+        final Random random = new Random(42);
+        int distinct = 0;
+        for (int i = 0; i < edges; i++) {
+            if (graph.set(labels[zipf(random, labels.length)], labels[random.nextInt(labels.length)], 1 + random.nextInt(3)) == 0) {
+                distinct++;
+            }
+        }
+        final long after = usedHeap();
+        System.out.printf("%-22s %10d edges %8.1f bytes/edge%n",
+                name, distinct, (after - before) / (double) distinct);
+        return graph;
+    }
+    
+    // Whole frozen graph, vertex table included, while the source is still live
+    private static void measureFrozen(Graph<String> source) {
+        final long before = usedHeap();
+        final CsrGraph<String> frozen = CsrGraph.from(source);
+        final long after = usedHeap();
+        System.out.printf("%-22s %10d edges %8.1f bytes/edge (with vertex table)%n",
+                "CsrGraph", frozen.edgeCount(), (after - before) / (double) frozen.edgeCount());
+    }
+    
+    // Whole mapped graph, after reading every row once so the mapping is paged in
+    private static void measureMapped(Graph<String> source) throws IOException {
+        final Path file = Files.createTempFile("graph", ".mapped");
+        try {
+            MappedGraph.write(source, file);
+            final long before = usedHeap();
+            final MappedGraph mapped = MappedGraph.open(file);
+            long weights = 0;
+            for (int s = 0; s < mapped.vertexCount(); s++) {
+                weights += mapped.targets(mapped.label(s)).size();
+            }
+            final long after = usedHeap();
+            // the source must stay live, or its collection is counted against the mapped graph
+            Reference.reachabilityFence(source);
+            System.out.printf("%-22s %10d edges %8.1f bytes/edge (with vertex table; %d bytes total, %.1f MB mapped)%n",
+                    "MappedGraph", weights, (after - before) / (double) weights, after - before, Files.size(file) / 1e6);
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    // Roughly Zipf-distributed index in [0, n): frequent words have many out-edges
+    private static int zipf(Random random, int n) {
+        return (int) Math.min(n - 1, Math.floor(Math.pow(n + 1, random.nextDouble())) - 1);
+    }
+    
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
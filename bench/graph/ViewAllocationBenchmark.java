@@ -0,0 +1,94 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Allocation rate of the copying read methods of Graph against the
+ * ViewableGraph view methods.
+ * 
+ * <p>For each implementation, builds a random graph and reports the bytes
+ * allocated and the time per call of targets(), sources() and vertices(),
+ * each followed by a walk over the result, and of their view counterparts.
+ * Allocation is read from the HotSpot per-thread allocation counter
+ * (com.sun.management.ThreadMXBean), so this benchmark needs a HotSpot JVM.
+ */
+public class ViewAllocationBenchmark {
+    
+    private static final int VERTICES = 2_000;
+    private static final int EDGES = 16_000;
+    private static final int CALLS = 200_000;
+    
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    
+    // Consumes results so that the JIT cannot drop the calls
+    private static long sink;
+    
+    /**
+     * Run the benchmark.
+     * 
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        System.out.printf("%-22s %-16s %14s %12s%n", "graph", "method", "bytes/call", "ns/call");
+        // first pass warms up the JIT and is not reported
+        for (int pass = 0; pass < 2; pass++) {
+            run("ConcreteEdgesGraph", new ConcreteEdgesGraph(), pass == 1);
+            run("ConcreteVerticesGraph", new ConcreteVerticesGraph(), pass == 1);
+            run("DenseGraph", new DenseGraph<>(), pass == 1);
+        }
+        System.out.println(sink == 42 ? "" : " ");
+    }
+    
+    private static void run(String name, ViewableGraph<String> graph, boolean report) {
+        final String[] labels = new String[VERTICES];
+        for (int i = 0; i < VERTICES; i++) {
+            labels[i] = "w" + i;
+        }
+        final Random random = new Random(6005);
+        for (int i = 0; i < EDGES; i++) {
+            graph.set(labels[random.nextInt(VERTICES)], labels[random.nextInt(VERTICES)], 1 + random.nextInt(10));
+        }
+        measure(name, "targets", report, i -> walk(graph.targets(labels[i % VERTICES])));
+        measure(name, "targetsView", report, i -> walk(graph.targetsView(labels[i % VERTICES])));
+        measure(name, "sources", report, i -> walk(graph.sources(labels[i % VERTICES])));
+        measure(name, "sourcesView", report, i -> walk(graph.sourcesView(labels[i % VERTICES])));
+        measure(name, "vertices", report, i -> graph.vertices().size());
+        measure(name, "verticesView", report, i -> graph.verticesView().size());
+    }
+    
+    // Sum the weights of an adjacency map
+    private static long walk(Map<String, Integer> adjacency) {
+        long sum = 0;
+        for (Map.Entry<String, Integer> entry : adjacency.entrySet()) {
+            sum += entry.getValue();
+        }
+        return sum;
+    }
+    
+    private interface Call {
+        long call(int i);
+    }
+    
+    private static void measure(String name, String method, boolean report, Call call) {
+        final long thread = Thread.currentThread().getId();
+        // vertices() copies every label, so fewer calls keep it comparable in wall time
+        final int calls = method.startsWith("vertices") ? CALLS / 100 : CALLS;
+        long bytes = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += call.call(i);
+        }
+        long time = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+        if (report) {
+            System.out.printf("%-22s %-16s %14.1f %12.1f%n", name, method,
+                    bytes / (double) calls, time / (double) calls);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package harness;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A small benchmark harness: warmup and measurement iterations, a table on
+ * standard output, and optional JSON results.
+ * 
+ * <p>Results are written in the layout of JMH's JSON output (benchmark, mode,
+ * params, primaryMetric with score, scoreError, scoreUnit, scorePercentiles
+ * and rawData), so that two runs can be compared with the same tools. Unlike
+ * JMH, everything runs in one JVM without forking, so run each benchmark
+ * main on its own and without -ea.
+ * 
+ * <p>Options, as command-line arguments:
+ * <ul><li>{@code -wi N}: warmup iterations (default 3)
+ *     <li>{@code -i N}: measurement iterations (default 5)
+ *     <li>{@code -rff FILE}: write JSON results to FILE
+ *     <li>{@code -p NAME=V1,V2}: only run these values of a parameter
+ *     <li>{@code -prof gc}: also report the bytes each operation allocates,
+ *         as JMH's gc profiler reports gc.alloc.rate.norm. Bytes are
+ *         counted by the JVM's per-thread allocation counter, so operations
+ *         must run on the measuring thread. </ul>
+ */
+public final class Harness {
+    
+    /**
+     * How a benchmark is measured.
+     */
+    public enum Mode {
+        /** Mean time per operation, over each iteration's batch of operations. */
+        AVERAGE_TIME("avgt"),
+        /** Time of each single operation, summarized by percentiles. */
+        SAMPLE_TIME("sample");
+        
+        private final String shortName;
+        
+        private Mode(String shortName) {
+            this.shortName = shortName;
+        }
+    }
+    
+    /**
+     * Operations to measure, built fresh for each iteration.
+     */
+    public interface Operation {
+        /**
+         * Perform the i-th operation of an iteration.
+         * 
+         * @param i index of the operation in this iteration, >= 0
+         * @return any value computed, so the operation cannot be optimized away
+         */
+        long run(int i);
+    }
+    
+    // z for a two-sided 99.9% interval, as JMH reports
+    private static final double Z_999 = 3.291;
+    private static final double[] PERCENTILES = { 0.0, 50.0, 90.0, 99.0, 99.9, 100.0 };
+    // Name of the bytes allocated per operation, as JMH's gc profiler reports it
+    private static final String GC_ALLOC_RATE_NORM = "\u00b7gc.alloc.rate.norm";
+    
+    private final int warmupIterations;
+    private final int iterations;
+    private final String resultFile;
+    private final boolean profileGc;
+    private final Map<String, List<String>> filters = new LinkedHashMap<>();
+    private final List<String> results = new ArrayList<>();
+    private long sink;
+    
+    /**
+     * Create a harness configured by command-line options (see above).
+     * 
+     * @param args command-line arguments
+     * @throws IllegalArgumentException if an option is malformed
+     */
+    public Harness(String[] args) {
+        int warmup = 3;
+        int measured = 5;
+        String file = null;
+        boolean gc = false;
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+            case "-wi":
+                warmup = Integer.parseInt(value);
+                break;
+            case "-i":
+                measured = Integer.parseInt(value);
+                break;
+            case "-rff":
+                file = value;
+                break;
+            case "-prof":
+                if (!value.equals("gc")) {
+                    throw new IllegalArgumentException("unknown profiler " + value);
+                }
+                gc = true;
+                break;
+            case "-p":
+                int equals = value.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("expected -p NAME=VALUES: " + value);
+                }
+                filters.put(value.substring(0, equals), Arrays.asList(value.substring(equals + 1).split(",")));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + args[i - 1]);
+            }
+        }
+        if (warmup < 0 || measured < 1) {
+            throw new IllegalArgumentException("need -wi >= 0 and -i >= 1");
+        }
+        this.warmupIterations = warmup;
+        this.iterations = measured;
+        this.resultFile = file;
+        this.profileGc = gc;
+        System.out.printf("%-40s %-56s %6s %12s %10s  %s%n", "Benchmark", "Params", "Mode", "Score", "Error", "Units");
+    }
+    
+    /**
+     * @param params parameter names and values of a benchmark run
+     * @return true iff the run is selected by the -p options
+     */
+    public boolean selected(Map<String, String> params) {
+        for (Map.Entry<String, List<String>> filter : filters.entrySet()) {
+            String value = params.get(filter.getKey());
+            if (value != null && !filter.getValue().contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Measure a benchmark, unless it is filtered out by the -p options.
+     * 
+     * @param benchmark benchmark name, e.g. "graph.GraphBenchmark.set"
+     * @param params parameter names and values, in display order
+     * @param mode how to measure
+     * @param operations number of operations per iteration, >= 1
+     * @param setup creates the operations for one iteration; not timed
+     */
+    public void measure(String benchmark, Map<String, String> params, Mode mode,
+            int operations, Supplier<Operation> setup) {
+        if (!selected(params)) {
+            return;
+        }
+        for (int iteration = 0; iteration < warmupIterations; iteration++) {
+            runIteration(setup.get(), operations, null);
+        }
+        double[] scores = new double[iterations];
+        long[] samples = mode == Mode.SAMPLE_TIME ? new long[iterations * operations] : null;
+        long allocated = 0;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long[] iterationSamples = samples == null ? null : new long[operations];
+            Operation operation = setup.get();
+            long before = allocatedBytes();
+            scores[iteration] = runIteration(operation, operations, iterationSamples);
+            allocated += allocatedBytes() - before;
+            if (samples != null) {
+                System.arraycopy(iterationSamples, 0, samples, iteration * operations, operations);
+            }
+        }
+        double allocatedPerOp = profileGc ? allocated / ((double) iterations * operations) : Double.NaN;
+        report(benchmark, params, mode, scores, samples, allocatedPerOp);
+    }
+    
+    // Bytes allocated so far by this thread, or 0 if not profiling
+    private long allocatedBytes() {
+        if (!profileGc) {
+            return 0;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    // Run one iteration and return its mean ns/op; record each op's time if samples != null
+    private double runIteration(Operation operation, int operations, long[] samples) {
+        long start = System.nanoTime();
+        if (samples == null) {
+            for (int i = 0; i < operations; i++) {
+                sink += operation.run(i);
+            }
+        } else {
+            for (int i = 0; i < operations; i++) {
+                long before = System.nanoTime();
+                sink += operation.run(i);
+                samples[i] = System.nanoTime() - before;
+            }
+        }
+        return (System.nanoTime() - start) / (double) operations;
+    }
+    
+    private void report(String benchmark, Map<String, String> params, Mode mode, double[] scores, long[] samples,
+            double allocatedPerOp) {
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length < 2 ? Double.NaN
+                : Z_999 * Math.sqrt(variance / (scores.length - 1)) / Math.sqrt(scores.length);
+        
+        StringBuilder shownParams = new StringBuilder();
+        StringBuilder jsonParams = new StringBuilder();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            shownParams.append(shownParams.length() == 0 ? "" : " ").append(param.getKey()).append('=').append(param.getValue());
+            jsonParams.append(jsonParams.length() == 0 ? "" : ", ")
+                      .append(quote(param.getKey())).append(": ").append(quote(param.getValue()));
+        }
+        System.out.printf(Locale.ROOT, "%-40s %-56s %6s %12.1f %10.1f  %s%n",
+                benchmark, shownParams, mode.shortName, mean, error, "ns/op");
+        if (profileGc) {
+            System.out.printf(Locale.ROOT, "%-40s %-56s %6s %12.1f %10s  %s%n",
+                    benchmark + ":" + GC_ALLOC_RATE_NORM.substring(1), shownParams, mode.shortName, allocatedPerOp, "", "B/op");
+        }
+        
+        StringBuilder json = new StringBuilder();
+        json.append("    {\n");
+        json.append("        \"benchmark\": ").append(quote(benchmark)).append(",\n");
+        json.append("        \"mode\": ").append(quote(mode.shortName)).append(",\n");
+        json.append("        \"warmupIterations\": ").append(warmupIterations).append(",\n");
+        json.append("        \"measurementIterations\": ").append(iterations).append(",\n");
+        json.append("        \"params\": {").append(jsonParams).append("},\n");
+        json.append("        \"primaryMetric\": {\n");
+        json.append("            \"score\": ").append(number(mean)).append(",\n");
+        json.append("            \"scoreError\": ").append(number(error)).append(",\n");
+        json.append("            \"scoreUnit\": \"ns/op\",\n");
+        if (samples != null) {
+            long[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            json.append("            \"scorePercentiles\": {");
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                int rank = (int) Math.min(sorted.length - 1, Math.ceil(PERCENTILES[i] / 100 * sorted.length) - 1);
+                json.append(i == 0 ? "" : ", ").append(quote(String.valueOf(PERCENTILES[i])))
+                    .append(": ").append(sorted[Math.max(0, rank)]);
+            }
+            json.append("},\n");
+        }
+        json.append("            \"rawData\": [[");
+        for (int i = 0; i < scores.length; i++) {
+            json.append(i == 0 ? "" : ", ").append(number(scores[i]));
+        }
+        json.append("]]\n");
+        if (profileGc) {
+            json.append("        },\n");
+            json.append("        \"secondaryMetrics\": {\n");
+            json.append("            ").append(quote(GC_ALLOC_RATE_NORM)).append(": {\n");
+            json.append("                \"score\": ").append(number(allocatedPerOp)).append(",\n");
+            json.append("                \"scoreUnit\": \"B/op\"\n");
+            json.append("            }\n");
+        }
+        json.append("        }\n");
+        json.append("    }");
+        results.add(json.toString());
+    }
+    
+    private static String number(double value) {
+        return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", value);
+    }
+    
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+    
+    /**
+     * Write the JSON results, if -rff was given.
+     * 
+     * @throws IOException if the result file cannot be written
+     */
+    public void finish() throws IOException {
+        if (sink == 42) {
+            System.out.println(); // keeps sink live
+        }
+        if (resultFile == null) {
+            return;
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(resultFile), StandardCharsets.UTF_8))) {
+            out.println("[");
+            out.println(String.join(",\n", results));
+            out.println("]");
+        }
+        System.out.println("Results written to " + resultFile);
+    }
+}
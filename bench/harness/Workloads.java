@@ -0,0 +1,123 @@
+package harness;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Random word graphs and corpora for benchmarks.
+ * 
+ * <p>Words are drawn either uniformly or from a Zipf-like distribution, where
+ * the word of rank k (from 1) has probability proportional to 1/k, as in
+ * natural-language text. Zipf graphs therefore have a few hub vertices with
+ * very high degree and a long tail of rare words. All generators are
+ * deterministic for a given seed.
+ */
+public final class Workloads {
+    
+    /**
+     * How words are drawn.
+     */
+    public enum Distribution {
+        UNIFORM, ZIPF
+    }
+    
+    private Workloads() {
+        throw new AssertionError("uninstantiable");
+    }
+    
+    /**
+     * @param count number of words, >= 1
+     * @return distinct word-like labels "w0", "w1", ...
+     */
+    public static String[] words(int count) {
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            words[i] = "w" + i;
+        }
+        return words;
+    }
+    
+    /**
+     * A sampler of word indexes in [0, count).
+     */
+    public static final class Sampler {
+        private final Random random;
+        private final double[] cumulative; // null for UNIFORM
+        private final int count;
+        
+        /**
+         * @param distribution how indexes are drawn
+         * @param count number of distinct indexes, >= 1
+         * @param seed random seed
+         */
+        public Sampler(Distribution distribution, int count, long seed) {
+            this.random = new Random(seed);
+            this.count = count;
+            if (distribution == Distribution.ZIPF) {
+                cumulative = new double[count];
+                double total = 0;
+                for (int k = 0; k < count; k++) {
+                    total += 1.0 / (k + 1);
+                    cumulative[k] = total;
+                }
+                for (int k = 0; k < count; k++) {
+                    cumulative[k] /= total;
+                }
+            } else {
+                cumulative = null;
+            }
+        }
+        
+        /**
+         * @return the next index
+         */
+        public int next() {
+            if (cumulative == null) {
+                return random.nextInt(count);
+            }
+            int position = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(count - 1, position >= 0 ? position : -position - 1);
+        }
+    }
+    
+    /**
+     * Random edges of a word graph, as bigrams of a random word sequence, so
+     * that a Zipf graph has the degree skew of a real corpus.
+     * 
+     * @param distribution how words are drawn
+     * @param vertices number of distinct words, >= 1
+     * @param edges number of edges to draw (repeats are possible), >= 0
+     * @param seed random seed
+     * @return array of {source, target} word indexes
+     */
+    public static int[][] edges(Distribution distribution, int vertices, int edges, long seed) {
+        Sampler sampler = new Sampler(distribution, vertices, seed);
+        int[][] result = new int[edges][];
+        int previous = sampler.next();
+        for (int i = 0; i < edges; i++) {
+            int next = sampler.next();
+            result[i] = new int[] { previous, next };
+            previous = next;
+        }
+        return result;
+    }
+    
+    /**
+     * Random corpus text, with lines of a dozen words.
+     * 
+     * @param distribution how words are drawn
+     * @param vocabulary number of distinct words, >= 1
+     * @param length number of words, >= 0
+     * @param seed random seed
+     * @return corpus text
+     */
+    public static String corpus(Distribution distribution, int vocabulary, int length, long seed) {
+        String[] words = words(vocabulary);
+        Sampler sampler = new Sampler(distribution, vocabulary, seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(words[sampler.next()]).append(i % 12 == 11 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package poet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import graph.CsrGraph;
+import graph.GraphFile;
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * Cold start of a GraphPoet: building it from a corpus file, against loading
+ * it from a saved graph file.
+ *
+ * <p>Writes a random corpus whose bigrams are spread uniformly over a large
+ * vocabulary, so that nearly every adjacency is a distinct edge, builds a
+ * poet from it, saves the poet's graph, and reports the best of a few runs
+ * of each way of starting, with file sizes and the edge count.
+ */
+public class ColdStartBenchmark {
+
+    private static final int RUNS = 3;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args optional number of corpus words (default 2000000)
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        final int words = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final Path corpus = Files.createTempFile("corpus", ".txt");
+        final Path saved = Files.createTempFile("corpus", ".graph");
+        try {
+            Files.write(corpus, Workloads.corpus(Distribution.UNIFORM, Math.max(2, words / 10), words, 1)
+                    .getBytes(StandardCharsets.UTF_8));
+            GraphPoet poet = new GraphPoet(corpus);
+            poet.save(saved);
+            CsrGraph<String> graph = GraphFile.load(saved).graph();
+            System.out.printf("corpus: %.1f MB, %d words; graph: %d vertices, %d edges, %.1f MB%n",
+                    Files.size(corpus) / 1e6, words, graph.vertexCount(), graph.edgeCount(), Files.size(saved) / 1e6);
+            double parse = Double.MAX_VALUE;
+            double load = Double.MAX_VALUE;
+            // keep the best of a few runs; the first one also warms up the JIT
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                new GraphPoet(corpus);
+                parse = Math.min(parse, (System.nanoTime() - start) / 1e9);
+                start = System.nanoTime();
+                GraphPoet.fromGraphFile(saved);
+                load = Math.min(load, (System.nanoTime() - start) / 1e9);
+            }
+            System.out.printf("%-16s %10s%n", "start from", "seconds");
+            System.out.printf("%-16s %10.3f%n", "corpus", parse);
+            System.out.printf("%-16s %10.3f%n", "graph file", load);
+        } finally {
+            Files.delete(corpus);
+            Files.delete(saved);
+        }
+    }
+}
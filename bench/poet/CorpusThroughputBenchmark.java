@@ -0,0 +1,75 @@
+package poet;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Corpus ingestion throughput for GraphPoet, sequential and parallel.
+ * 
+ * <p>Writes a random UTF-8 corpus with a skewed vocabulary to a temporary
+ * file, then reports MB/s for building a poet from it sequentially and with
+ * parallelism 2, 4, ... up to the number of processors (at least 2). The
+ * time covers the whole constructor: reading, counting, building and
+ * freezing the graph.
+ */
+public class CorpusThroughputBenchmark {
+    
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_LINE = 12;
+    private static final int RUNS = 3;
+    
+    /**
+     * Run the benchmark.
+     * 
+     * @param args optional corpus size in MB (default 16)
+     * @throws IOException if the temporary corpus cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final Path corpus = Files.createTempFile("corpus", ".txt");
+        try {
+            writeCorpus(corpus, (long) megabytes << 20);
+            final double size = Files.size(corpus) / (double) (1 << 20);
+            System.out.printf("corpus: %.1f MB%n", size);
+            System.out.printf("%12s %10s%n", "parallelism", "MB/s");
+            final int processors = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; threads <= Math.max(processors, 2); threads *= 2) {
+                double best = Double.MAX_VALUE;
+                // keep the best of a few runs; the first one also warms up the JIT
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    GraphPoet.builder().parallelism(threads).build(corpus);
+                    best = Math.min(best, (System.nanoTime() - start) / 1e9);
+                }
+                System.out.printf("%12d %10.1f%n", threads, size / best);
+            }
+        } finally {
+            Files.delete(corpus);
+        }
+    }
+    
+    // Write about the given number of bytes of text; word i is drawn with probability ~ 1/i
+    private static void writeCorpus(Path corpus, long bytes) throws IOException {
+        final String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = (i % 7 == 0 ? "W\u00f6rt" : "word") + i;
+        }
+        final Random random = new Random(6005);
+        final double harmonic = Math.log(VOCABULARY) + 0.5772;
+        long written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(corpus, StandardCharsets.UTF_8)) {
+            while (written < bytes) {
+                for (int i = 0; i < WORDS_PER_LINE; i++) {
+                    int rank = (int) Math.min(VOCABULARY - 1, Math.exp(random.nextDouble() * harmonic) - 1);
+                    out.write(words[rank]);
+                    out.write(i == WORDS_PER_LINE - 1 ? '\n' : ' ');
+                    written += words[rank].length() + 1;
+                }
+            }
+        }
+    }
+}
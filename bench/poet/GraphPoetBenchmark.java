@@ -0,0 +1,157 @@
+package poet;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import harness.Harness;
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * End-to-end benchmarks for GraphPoet: construction from a corpus, and the
+ * latency of poem() on inputs drawn from the corpus vocabulary.
+ * 
+ * <p>Construction is reported as mean time per corpus. poem() is measured
+ * call by call, with percentiles in the JSON results, for each bridge index
+ * mode, with and without metrics, and for a bounded bridge cache of each
+ * eviction policy. For each bridge index mode, poemInto measures
+ * poem(CharSequence, Appendable) into one reused StringBuilder; run with
+ * {@code -prof gc} to see that it allocates nothing per poem when bridges
+ * are answered by an eager index. A whole
+ * batch of inputs is measured both as a loop of poem() calls and as one
+ * call to poems(), which looks each distinct pair up once, in parallel.
+ * For the first pair of words of each input, bridges() ranking the top
+ * TOP_K bridges and sampleBridge() drawing one are measured against
+ * bridge, the full two-hop search poem() makes without an index.
+ * 
+ * <p>Usage: {@code java poet.GraphPoetBenchmark [-wi N] [-i N] [-rff results.json]
+ * [-p words=10000] [-p distribution=ZIPF] [-p bridges=NONE,LAZY,EAGER,LRU,TINY_LFU]
+ * [-p metrics=off,on] [-prof gc]}
+ */
+public class GraphPoetBenchmark {
+    
+    private static final int[] CORPUS_WORDS = { 10_000, 100_000 };
+    private static final int INPUT_WORDS = 12;
+    private static final int POEMS = 2_000;
+    // Smaller than the number of distinct pairs the inputs look up, so the cache evicts
+    private static final int CACHE_PAIRS = 4_096;
+    private static final int TOP_K = 5;
+    
+    /**
+     * Run the benchmarks.
+     * 
+     * @param args harness options
+     * @throws IOException if the results cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Harness harness = new Harness(args);
+        for (Distribution distribution : Distribution.values()) {
+            for (int words : CORPUS_WORDS) {
+                run(harness, distribution, words);
+            }
+        }
+        harness.finish();
+    }
+    
+    private static void run(Harness harness, Distribution distribution, int words) throws IOException {
+        final int vocabulary = Math.max(2, words / 10);
+        final String corpus = Workloads.corpus(distribution, vocabulary, words, 1);
+        final String[] inputs = new String[POEMS];
+        for (int i = 0; i < POEMS; i++) {
+            inputs[i] = Workloads.corpus(distribution, vocabulary, INPUT_WORDS, 100 + i).trim();
+        }
+        final String name = GraphPoetBenchmark.class.getName() + ".";
+        
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("distribution", distribution.name());
+        params.put("words", String.valueOf(words));
+        harness.measure(name + "construct", params, Harness.Mode.AVERAGE_TIME, 1, () -> i -> {
+            try {
+                return new GraphPoet(new StringReader(corpus)).hashCode();
+            } catch (IOException e) {
+                throw new AssertionError("reading a string", e);
+            }
+        });
+        
+        for (BridgeIndex.Mode mode : BridgeIndex.Mode.values()) {
+            Map<String, String> poemParams = new LinkedHashMap<>(params);
+            poemParams.put("bridges", mode.name());
+            if (!harness.selected(poemParams)) {
+                continue;
+            }
+            for (boolean metrics : new boolean[] { false, true }) {
+                Map<String, String> metricsParams = new LinkedHashMap<>(poemParams);
+                metricsParams.put("metrics", metrics ? "on" : "off");
+                if (!harness.selected(metricsParams)) {
+                    continue;
+                }
+                GraphPoet.Builder builder = GraphPoet.builder().bridgeIndex(mode, Integer.MAX_VALUE);
+                GraphPoet poet = (metrics ? builder.recordMetrics() : builder).build(new StringReader(corpus));
+                harness.measure(name + "poem", metricsParams, Harness.Mode.SAMPLE_TIME, POEMS,
+                        () -> i -> poet.poem(inputs[i]).length());
+                if (!metrics) {
+                    harness.measure(name + "poemInto", metricsParams, Harness.Mode.SAMPLE_TIME, POEMS, () -> {
+                        StringBuilder poem = new StringBuilder();
+                        return i -> {
+                            poem.setLength(0);
+                            try {
+                                poet.poem(inputs[i], poem);
+                            } catch (IOException e) {
+                                throw new AssertionError("StringBuilder does not throw", e);
+                            }
+                            return poem.length();
+                        };
+                    });
+                }
+            }
+        }
+        
+        for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+            Map<String, String> poemParams = new LinkedHashMap<>(params);
+            poemParams.put("bridges", policy.name());
+            if (!harness.selected(poemParams)) {
+                continue;
+            }
+            GraphPoet poet = GraphPoet.builder().bridgeCache(CACHE_PAIRS, policy).build(new StringReader(corpus));
+            harness.measure(name + "poem", poemParams, Harness.Mode.SAMPLE_TIME, POEMS,
+                    () -> i -> poet.poem(inputs[i]).length());
+        }
+        
+        Map<String, String> batchParams = new LinkedHashMap<>(params);
+        batchParams.put("bridges", BridgeIndex.Mode.NONE.name());
+        if (harness.selected(batchParams)) {
+            GraphPoet poet = new GraphPoet(new StringReader(corpus));
+            List<String> batch = Arrays.asList(inputs);
+            harness.measure(name + "poemLoop", batchParams, Harness.Mode.AVERAGE_TIME, 1, () -> i -> {
+                int length = 0;
+                for (String input : inputs) {
+                    length += poet.poem(input).length();
+                }
+                return length;
+            });
+            harness.measure(name + "poems", batchParams, Harness.Mode.AVERAGE_TIME, 1,
+                    () -> i -> poet.poems(batch).size());
+            
+            final String[][] pairs = new String[POEMS][];
+            final String[] pairInputs = new String[POEMS];
+            for (int i = 0; i < POEMS; i++) {
+                pairs[i] = inputs[i].split(" ");
+                pairInputs[i] = pairs[i][0] + " " + pairs[i][1];
+            }
+            harness.measure(name + "bridge", batchParams, Harness.Mode.SAMPLE_TIME, POEMS,
+                    () -> i -> poet.poem(pairInputs[i]).length());
+            harness.measure(name + "bridges", batchParams, Harness.Mode.SAMPLE_TIME, POEMS,
+                    () -> i -> poet.bridges(pairs[i][0], pairs[i][1], TOP_K).size());
+            harness.measure(name + "sampleBridge", batchParams, Harness.Mode.SAMPLE_TIME, POEMS, () -> {
+                Random random = new Random(1);
+                return i -> Objects.hashCode(poet.sampleBridge(pairs[i][0], pairs[i][1], random));
+            });
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package poet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * Cost of teaching a trained GraphPoet more text: learn() against building a
+ * new poet from the whole corpus.
+ *
+ * <p>Trains a poet on a random Zipf corpus with a lazily memoized bridge
+ * index, warms the index with poems, then learns a separate delta of about
+ * 1 MB. Reports the time of each learn() (best of a few different deltas),
+ * of rebuilding from corpus and delta, and poem() time after learning.
+ */
+public class LearnBenchmark {
+
+    private static final int VOCABULARY = 100_000;
+    private static final int DELTA_WORDS = 130_000;
+    private static final int DELTAS = 3;
+    private static final int POEMS = 2_000;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args optional number of corpus words (default 2000000)
+     * @throws IOException if the temporary corpus cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        final int words = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final String corpusText = Workloads.corpus(Distribution.ZIPF, VOCABULARY, words, 1);
+        final Path corpus = Files.createTempFile("corpus", ".txt");
+        try {
+            Files.write(corpus, corpusText.getBytes(StandardCharsets.UTF_8));
+            GraphPoet poet = GraphPoet.builder().bridgeIndex(BridgeIndex.Mode.LAZY, Integer.MAX_VALUE).build(corpus);
+            String[] inputs = new String[POEMS];
+            for (int i = 0; i < POEMS; i++) {
+                inputs[i] = Workloads.corpus(Distribution.ZIPF, VOCABULARY, 12, 100 + i).trim();
+                poet.poem(inputs[i]);
+            }
+            System.out.printf("corpus: %.1f MB, %d words%n", corpusText.length() / 1e6, words);
+            double learn = Double.MAX_VALUE;
+            String delta = "";
+            for (int i = 0; i < DELTAS; i++) {
+                delta = Workloads.corpus(Distribution.ZIPF, VOCABULARY, DELTA_WORDS, 10 + i);
+                long start = System.nanoTime();
+                poet.learn(delta);
+                learn = Math.min(learn, (System.nanoTime() - start) / 1e9);
+            }
+            long start = System.nanoTime();
+            for (String input : inputs) {
+                poet.poem(input);
+            }
+            double poems = (System.nanoTime() - start) / 1e9;
+            Files.write(corpus, ("\n" + delta).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            start = System.nanoTime();
+            new GraphPoet(corpus);
+            double rebuild = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-32s %10.3f s%n", String.format("learn %.1f MB delta", delta.length() / 1e6), learn);
+            System.out.printf("%-32s %10.3f s%n", "rebuild from corpus and delta", rebuild);
+            System.out.printf("%-32s %10.1f us%n", "poem() after learning, mean", poems / POEMS * 1e6);
+        } finally {
+            Files.delete(corpus);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package poet;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * Load generator for PoemServer: latency and throughput of poems served over
+ * HTTP on the loopback interface, at increasing numbers of concurrent clients.
+ *
+ * <p>Serves a 100,000-word Zipf corpus. Each client sends 12-word inputs
+ * drawn from the corpus vocabulary, one request at a time, and times each
+ * request from send to the end of the response. Reports, per level of
+ * concurrency, requests per second, the median and 99th percentile latency
+ * in milliseconds, the mean batch size the server wrote, and requests the
+ * server refused.
+ *
+ * <p>Usage: {@code java poet.PoemServerBenchmark [REQUESTS_PER_LEVEL]}
+ */
+public class PoemServerBenchmark {
+
+    private static final int CORPUS_WORDS = 100_000;
+    private static final int INPUT_WORDS = 12;
+    private static final int INPUTS = 2_000;
+    private static final int[] CONCURRENCY = { 1, 4, 16, 64, 256 };
+    private static final int DEFAULT_REQUESTS = 4_000;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args optionally, the number of requests sent at each level of concurrency
+     * @throws IOException if the server cannot be started
+     * @throws InterruptedException if interrupted while waiting for clients
+     * @throws ExecutionException if a client fails
+     */
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        final int requests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REQUESTS;
+        final int vocabulary = CORPUS_WORDS / 10;
+        final String corpus = Workloads.corpus(Distribution.ZIPF, vocabulary, CORPUS_WORDS, 1);
+        final String[] inputs = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            inputs[i] = Workloads.corpus(Distribution.ZIPF, vocabulary, INPUT_WORDS, 100 + i).trim();
+        }
+        GraphPoet poet = new GraphPoet(new StringReader(corpus));
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        try (PoemServer server = PoemServer.start(poet,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            URI uri = URI.create("http://" + server.address().getHostString() + ":"
+                    + server.address().getPort() + "/poem");
+            System.out.println(server.virtualThreads() ? "virtual thread handlers" : "platform thread handlers");
+            System.out.printf("%8s %10s %10s %10s %10s %10s%n", "clients", "req/s", "p50 ms", "p99 ms",
+                    "batch", "refused");
+            // first pass warms up the JIT and is not reported
+            for (int pass = 0; pass < 2; pass++) {
+                for (int clients : CONCURRENCY) {
+                    long served = server.served();
+                    long batches = server.batches();
+                    long refused = server.refused();
+                    long start = System.nanoTime();
+                    long[] latencies = load(client, uri, inputs, clients, requests);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    if (pass == 1) {
+                        Arrays.sort(latencies);
+                        System.out.printf("%8d %10.0f %10.2f %10.2f %10.1f %10d%n", clients,
+                                latencies.length / seconds, percentile(latencies, 50) / 1e6,
+                                percentile(latencies, 99) / 1e6,
+                                (server.served() - served) / (double) Math.max(1, server.batches() - batches),
+                                server.refused() - refused);
+                    }
+                }
+            }
+        }
+    }
+
+    // Send requests from clients threads at once, and return the latency of each in nanoseconds
+    private static long[] load(HttpClient client, URI uri, String[] inputs, int clients, int requests)
+            throws InterruptedException, ExecutionException {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                done.add(threads.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .POST(HttpRequest.BodyPublishers.ofString(inputs[i % inputs.length])).build();
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        latencies[i] = System.nanoTime() - start;
+                        if (response.statusCode() != 200 && response.statusCode() != 503) {
+                            throw new IllegalStateException("status " + response.statusCode());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+        return latencies;
+    }
+
+    // The p-th percentile of sorted values, by the nearest-rank method
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
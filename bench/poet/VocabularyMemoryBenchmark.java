@@ -0,0 +1,83 @@
+package poet;
+
+import java.lang.ref.Reference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import graph.DenseGraph;
+import harness.Workloads;
+import harness.Workloads.Distribution;
+
+/**
+ * Heap per distinct word of a poet's vocabulary: the words as graph vertices
+ * plus the table of the case to display them in.
+ *
+ * <p>Feeds the tokens of a Zipf corpus, one fresh String per token as a
+ * scanner makes them and one token in eight capitalized, into a DenseGraph
+ * and either a case map from each lower-case word to its last-seen case (as
+ * GraphPoet kept it before it had a Vocabulary) or a Vocabulary that shares
+ * one instance per word with the graph. Reports retained heap per distinct
+ * word, measured as the difference in used heap after forced collections.
+ *
+ * <p>Usage: {@code java poet.VocabularyMemoryBenchmark [TOKENS]}
+ */
+public class VocabularyMemoryBenchmark {
+
+    private static final int DEFAULT_TOKENS = 2_000_000;
+    private static final int CAPITALIZE_EVERY = 8;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args optionally, the number of corpus tokens
+     */
+    public static void main(String[] args) {
+        final int length = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TOKENS;
+        final String[] tokens = Workloads.corpus(Distribution.ZIPF, length / 10, length, 1).trim().split("\\s+");
+        for (int pass = 0; pass < 2; pass++) {
+            measure("case map", tokens, false, pass == 1);
+            measure("Vocabulary", tokens, true, pass == 1);
+        }
+    }
+
+    private static void measure(String name, String[] tokens, boolean shared, boolean report) {
+        final long before = usedHeap();
+        final DenseGraph<String> graph = new DenseGraph<>();
+        final Map<String, String> caseMap = new ConcurrentHashMap<>();
+        final Vocabulary vocabulary = new Vocabulary();
+        for (int i = 0; i < tokens.length; i++) {
+            String token = i % CAPITALIZE_EVERY == 0 ? capitalize(tokens[i]) : new String(tokens[i].toCharArray());
+            String lowerCase = token.toLowerCase();
+            if (shared) {
+                graph.add(vocabulary.add(lowerCase, token));
+            } else {
+                caseMap.put(lowerCase, token);
+                graph.add(lowerCase);
+            }
+        }
+        final long after = usedHeap();
+        Reference.reachabilityFence(caseMap);
+        Reference.reachabilityFence(vocabulary);
+        if (report) {
+            int words = graph.vertices().size();
+            System.out.printf("%-12s %10d words %8.1f bytes/word%n", name, words, (after - before) / (double) words);
+        }
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -3,7 +3,10 @@
  */
 package graph;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -16,19 +19,33 @@ import java.util.Set;
  * 
  * <p>PS2 instructions: you MUST use the provided rep.
  */
-public class ConcreteEdgesGraph implements Graph<String> {
+public class ConcreteEdgesGraph implements CountingGraph<String>, ViewableGraph<String> {
     
     private final Set<String> vertices = new HashSet<>();
     private final List<Edge> edges = new ArrayList<>();
+    // Indexes over 'edges': source -> target -> position of that edge in 'edges',
+    // and target -> sources with an edge to that target
+    private final Map<String, Map<String, Integer>> outIndex = new HashMap<>();
+    private final Map<String, Set<String>> inIndex = new HashMap<>();
+    private final Set<String> verticesView = Collections.unmodifiableSet(vertices);
     
     // Abstraction function:
     //   AF(vertices, edges) = a graph where 'vertices' is the set of all vertices and 'edges' contains all edges between vertices with specific weights.
+    //   'outIndex' and 'inIndex' are derived from 'edges' and add nothing to the abstract value.
     // Representation invariant:
     //   - For every edge in 'edges', both edge.getSource() and edge.getTarget() are in 'vertices'.
     //   - No two edges in 'edges' have the same source and target.
+    //   - For every position i, outIndex.get(edges.get(i).getSource()).get(edges.get(i).getTarget()) == i,
+    //     and inIndex.get(edges.get(i).getTarget()) contains edges.get(i).getSource().
+    //   - outIndex and inIndex hold exactly edges.size() entries each, and no empty inner collections.
     // Safety from rep exposure:
-    //   - 'vertices' and 'edges' are private and final.
+    //   - 'vertices', 'edges', 'outIndex' and 'inIndex' are private and final.
     //   - Methods return copies of collections to avoid exposing internal references.  
+    //   - The view methods return unmodifiable wrappers, which expose only immutable
+    //     labels and weights.
+    
+    // checkRep is O(E), so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = ConcreteEdgesGraph.class.desiredAssertionStatus();
     
     // TODO constructor
     /**
@@ -44,17 +61,31 @@ public class ConcreteEdgesGraph implements Graph<String> {
      * @throws AssertionError if the representation invariant is violated
      */
     private void checkRep() {
-        for (Edge edge : edges) {
+        if (!CHECK_REP) {
+            return;
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            Edge edge = edges.get(i);
             assert vertices.contains(edge.getSource()) : "Source vertex not in vertices";
             assert vertices.contains(edge.getTarget()) : "Target vertex not in vertices";
+            Map<String, Integer> targets = outIndex.get(edge.getSource());
+            assert targets != null && Integer.valueOf(i).equals(targets.get(edge.getTarget())) : "Edge not indexed by source";
+            Set<String> sources = inIndex.get(edge.getTarget());
+            assert sources != null && sources.contains(edge.getSource()) : "Edge not indexed by target";
         }
-        // Ensure non duplication of edges
-        Set<String> edgeSet = new HashSet<>();
-        for (Edge edge : edges) {
-            String edgeString = edge.toString();
-            assert !edgeSet.contains(edgeString) : "Duplicate edge";
-            edgeSet.add(edgeString);
+        // Every edge maps to a distinct index entry, so equal counts rule out duplicates
+        int outEntries = 0;
+        for (Map<String, Integer> targets : outIndex.values()) {
+            assert !targets.isEmpty() : "Empty source index";
+            outEntries += targets.size();
+        }
+        int inEntries = 0;
+        for (Set<String> sources : inIndex.values()) {
+            assert !sources.isEmpty() : "Empty target index";
+            inEntries += sources.size();
         }
+        assert outEntries == edges.size() : "Duplicate edge";
+        assert inEntries == edges.size() : "Duplicate edge";
     }
     
     @Override public boolean add(String vertex) {
@@ -62,71 +93,214 @@ public class ConcreteEdgesGraph implements Graph<String> {
     }
     
     @Override public int set(String source, String target, int weight) {
-        Edge newEdge = new Edge(source, target, weight);
         // Add vertices
         vertices.add(source);
         vertices.add(target);
         int previousWeight = 0;
-        // Remove any previosly existing edges
-        Iterator<Edge> iterator = edges.iterator();
-        while (iterator.hasNext()) {
-            Edge edge = iterator.next();
-            if (edge.getSource().equals(source) && edge.getTarget().equals(target)) {
-                previousWeight = edge.getWeight();
-                iterator.remove();
-                break;
+        Integer position = position(source, target);
+        if (position != null) {
+            previousWeight = edges.get(position).getWeight();
+            if (weight != 0) {
+                // Replace the edge in place
+                edges.set(position, new Edge(source, target, weight));
+            } else {
+                removeEdgeAt(position);
             }
-        }
-        if (weight != 0) {
-            edges.add(newEdge);
+        } else if (weight != 0) {
+            edges.add(new Edge(source, target, weight));
+            outIndex.computeIfAbsent(source, s -> new HashMap<>()).put(target, edges.size() - 1);
+            inIndex.computeIfAbsent(target, t -> new HashSet<>()).add(source);
         }
         checkRep();
         return previousWeight;
     }
     
+    @Override public int increment(String source, String target, int delta) {
+        Integer position = position(source, target);
+        int previousWeight = position == null ? 0 : edges.get(position).getWeight();
+        int weight = Math.addExact(previousWeight, delta);
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight);
+        }
+        set(source, target, weight);
+        return weight;
+    }
+    
     @Override public boolean remove(String vertex) {
         boolean removed = vertices.remove(vertex);
         if (removed) {
-            // Remove all edges with the vertex
-            List<Edge> edgesToRemove = new ArrayList<>();
-            for (Edge edge : edges) {
-                if (edge.getSource().equals(vertex) || edge.getTarget().equals(vertex)) {
-                    edgesToRemove.add(edge);
+            // Remove only the edges incident to the vertex
+            Map<String, Integer> targets = outIndex.get(vertex);
+            if (targets != null) {
+                for (String target : new ArrayList<>(targets.keySet())) {
+                    removeEdgeAt(position(vertex, target));
+                }
+            }
+            Set<String> sources = inIndex.get(vertex);
+            if (sources != null) {
+                for (String source : new ArrayList<>(sources)) {
+                    removeEdgeAt(position(source, vertex));
                 }
             }
-            edges.removeAll(edgesToRemove);
         }
         checkRep();
         return removed;
     }
     
+    // Position of the edge from source to target in 'edges', or null if there is none
+    private Integer position(String source, String target) {
+        Map<String, Integer> targets = outIndex.get(source);
+        return targets == null ? null : targets.get(target);
+    }
+    
+    // Remove the edge at a position by moving the last edge into its place,
+    // so that no other edge has to shift
+    private void removeEdgeAt(int position) {
+        Edge removed = edges.get(position);
+        Edge last = edges.remove(edges.size() - 1);
+        if (position < edges.size()) {
+            edges.set(position, last);
+            outIndex.get(last.getSource()).put(last.getTarget(), position);
+        }
+        Map<String, Integer> targets = outIndex.get(removed.getSource());
+        targets.remove(removed.getTarget());
+        if (targets.isEmpty()) {
+            outIndex.remove(removed.getSource());
+        }
+        Set<String> sources = inIndex.get(removed.getTarget());
+        sources.remove(removed.getSource());
+        if (sources.isEmpty()) {
+            inIndex.remove(removed.getTarget());
+        }
+    }
+    
     @Override public Set<String> vertices() {
         // Return a copy of vertices set
         return new HashSet<>(vertices);
     }
     
     @Override public Map<String, Integer> sources(String target) {
-        // Check all edges with the target
+        // Look up only the edges into the target
         Map<String, Integer> sources = new HashMap<>();
-        for (Edge edge : edges) {
-            if (edge.getTarget().equals(target)) {
-                sources.put(edge.getSource(), edge.getWeight());
-            }
+        for (String source : inIndex.getOrDefault(target, Collections.emptySet())) {
+            sources.put(source, edges.get(position(source, target)).getWeight());
         }
         return sources;
     }
     
     @Override public Map<String, Integer> targets(String source) {
-        // Check all edges with the source
+        // Look up only the edges out of the source
         Map<String, Integer> targets = new HashMap<>();
-        for (Edge edge : edges) {
-            if (edge.getSource().equals(source)) {
-                targets.put(edge.getTarget(), edge.getWeight());
-            }
+        for (Map.Entry<String, Integer> entry : outIndex.getOrDefault(source, Collections.emptyMap()).entrySet()) {
+            targets.put(entry.getKey(), edges.get(entry.getValue()).getWeight());
         }
         return targets;
     }
     
+    @Override public Set<String> verticesView() {
+        return verticesView;
+    }
+    
+    @Override public Map<String, Integer> sourcesView(String target) {
+        Set<String> sources = inIndex.get(target);
+        return sources == null ? Collections.emptyMap() : new SourcesView(target, sources);
+    }
+    
+    @Override public Map<String, Integer> targetsView(String source) {
+        Map<String, Integer> positions = outIndex.get(source);
+        return positions == null ? Collections.emptyMap() : new TargetsView(positions);
+    }
+    
+    // Read-only view of the edges out of one source, reading weights through the index
+    private class TargetsView extends AbstractMap<String, Integer> {
+        private final Map<String, Integer> positions;
+        
+        TargetsView(Map<String, Integer> positions) {
+            this.positions = positions;
+        }
+        
+        @Override public int size() {
+            return positions.size();
+        }
+        
+        @Override public boolean containsKey(Object target) {
+            return positions.containsKey(target);
+        }
+        
+        @Override public Integer get(Object target) {
+            Integer position = positions.get(target);
+            return position == null ? null : edges.get(position).getWeight();
+        }
+        
+        @Override public Set<Map.Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Integer>>() {
+                @Override public int size() {
+                    return positions.size();
+                }
+                
+                @Override public Iterator<Map.Entry<String, Integer>> iterator() {
+                    Iterator<Integer> iterator = positions.values().iterator();
+                    return new Iterator<Map.Entry<String, Integer>>() {
+                        @Override public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+                        
+                        @Override public Map.Entry<String, Integer> next() {
+                            Edge edge = edges.get(iterator.next());
+                            return new AbstractMap.SimpleImmutableEntry<>(edge.getTarget(), edge.getWeight());
+                        }
+                    };
+                }
+            };
+        }
+    }
+    
+    // Read-only view of the edges into one target
+    private class SourcesView extends AbstractMap<String, Integer> {
+        private final String target;
+        private final Set<String> sources;
+        
+        SourcesView(String target, Set<String> sources) {
+            this.target = target;
+            this.sources = sources;
+        }
+        
+        @Override public int size() {
+            return sources.size();
+        }
+        
+        @Override public boolean containsKey(Object source) {
+            return sources.contains(source);
+        }
+        
+        @Override public Integer get(Object source) {
+            return sources.contains(source) ? edges.get(position((String) source, target)).getWeight() : null;
+        }
+        
+        @Override public Set<Map.Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Integer>>() {
+                @Override public int size() {
+                    return sources.size();
+                }
+                
+                @Override public Iterator<Map.Entry<String, Integer>> iterator() {
+                    Iterator<String> iterator = sources.iterator();
+                    return new Iterator<Map.Entry<String, Integer>>() {
+                        @Override public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+                        
+                        @Override public Map.Entry<String, Integer> next() {
+                            String source = iterator.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(source,
+                                    edges.get(position(source, target)).getWeight());
+                        }
+                    };
+                }
+            };
+        }
+    }
+    
     // TODO toString()
     @Override
     public String toString() {
@@ -4,6 +4,7 @@
 package graph;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -15,17 +16,32 @@ import java.util.Set;
  * 
  * <p>PS2 instructions: you MUST use the provided rep.
  */
-public class ConcreteVerticesGraph implements Graph<String> {
+public class ConcreteVerticesGraph implements CountingGraph<String>, ViewableGraph<String> {
     
     private final List<Vertex> vertices = new ArrayList<>();
+    // Index over 'vertices' from label to Vertex
+    private final Map<String, Vertex> index = new HashMap<>();
+    private final Set<String> verticesView = Collections.unmodifiableSet(index.keySet());
+    // Number of null slots that removed vertices left in 'vertices'
+    private int removed = 0;
     
     // Abstraction function:
-    //   Represents a graph where each Vertex object in 'vertices' contains a vertex and its outgoing edges.
+    //   Represents a graph where each Vertex object in 'vertices' contains a vertex and its outgoing edges;
+    //   null elements are slots of removed vertices and represent nothing.
+    //   'index' and the in-edges of each Vertex are derived from 'vertices' and add nothing to the abstract value.
     // Representation invariant:
     //   - No two vertices in 'vertices' have the same source. i.e. vertices are not repeated.
+    //   - 'vertices' has exactly 'removed' null elements, and removed <= vertices.size() / 2.
+    //   - Each Vertex in 'vertices' is at its getPosition().
+    //   - 'index' maps exactly the labels of 'vertices' to their Vertex.
+    //   - Every out-edge a -> b : w has a matching in-edge on b from a with weight w, and vice versa.
     // Safety from rep exposure:
-    //   - vertices is private and final.
-    //   - Only copies of vertex labels and edge mappings are exposed.
+    //   - vertices and index are private and final.
+    //   - Only copies of vertex labels and edge mappings are exposed, or unmodifiable
+    //     wrappers of them from the view methods; labels and weights are immutable.
+    
+    // checkRep is O(V + E), so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = ConcreteVerticesGraph.class.desiredAssertionStatus();
     
     // TODO constructor
     /**
@@ -41,126 +57,170 @@ public class ConcreteVerticesGraph implements Graph<String> {
      * @throws AssertionError if the representation invariant is violated
      */
     private void checkRep() {
+        if (!CHECK_REP) {
+            return;
+        }
         // Ensure non duplication of vertices
-        Set<String> vertexSet = new HashSet<>();
-        for (Vertex vertex : vertices) {
-            String vertexString = vertex.getSource();
-            assert !vertexSet.contains(vertexString) : "Duplicate vertex";
-            vertexSet.add(vertexString);
+        assert index.size() == vertices.size() - removed : "Duplicate vertex";
+        assert removed <= vertices.size() / 2 : "Too many removed slots";
+        for (int position = 0; position < vertices.size(); position++) {
+            Vertex vertex = vertices.get(position);
+            if (vertex == null) {
+                continue;
+            }
+            assert vertex.getPosition() == position : "Wrong position";
+            assert index.get(vertex.getSource()) == vertex : "Vertex not indexed";
+            for (Map.Entry<String, Integer> edge : vertex.getOutEdges().entrySet()) {
+                Vertex target = index.get(edge.getKey());
+                assert target != null : "Target vertex not in vertices";
+                assert edge.getValue().equals(target.getInEdges().get(vertex.getSource())) : "Missing in-edge";
+            }
+            for (Map.Entry<String, Integer> edge : vertex.getInEdges().entrySet()) {
+                Vertex source = index.get(edge.getKey());
+                assert source != null : "Source vertex not in vertices";
+                assert edge.getValue().equals(source.getOutEdges().get(vertex.getSource())) : "Missing out-edge";
+            }
         }
     }
     
     @Override public boolean add(String vertex) {
         // Check if vertex already exists
-        for (Vertex v : vertices) {
-            if (v.getSource().equals(vertex)) {
-                return false;
-            }
+        if (index.containsKey(vertex)) {
+            return false;
         }
         // Else add it
-        vertices.add(new Vertex(vertex));
+        vertexFor(vertex);
         checkRep();
         return true;
     }
     
-    @Override public int set(String source, String target, int weight) {
-        // Check if source and target vertices exist
-        Vertex sourceVertex = null;
-        Vertex targetVertex = null;
-        for (Vertex v : vertices) {
-            if (v.getSource().equals(source)) {
-                sourceVertex = v;
-            }
-            if (v.getSource().equals(target)) {
-                targetVertex = v;
-            }
-        }
-        // If they don't exist, create them
-        if (sourceVertex == null) {
-            sourceVertex = new Vertex(source);
-            vertices.add(sourceVertex);
-        }
-        if (targetVertex == null) {
-            targetVertex = new Vertex(target);
-            vertices.add(targetVertex);
+    // Find the vertex with a label, creating it if it does not exist
+    private Vertex vertexFor(String label) {
+        Vertex vertex = index.get(label);
+        if (vertex == null) {
+            vertex = new Vertex(label);
+            vertex.setPosition(vertices.size());
+            vertices.add(vertex);
+            index.put(label, vertex);
         }
+        return vertex;
+    }
+    
+    @Override public int set(String source, String target, int weight) {
+        // Find source and target vertices, creating them if they don't exist
+        Vertex sourceVertex = vertexFor(source);
+        Vertex targetVertex = vertexFor(target);
         // Check if the outEdge already exists
-        int previousWeight = 0;
-        Map<String, Integer> outEdges = sourceVertex.getOutEdges();
-        if (outEdges.containsKey(target)) {
-            previousWeight = outEdges.get(target);
-        }
+        int previousWeight = sourceVertex.getOutEdge(target);
         if (weight == 0) {
             sourceVertex.removeOutEdge(target);
+            targetVertex.removeInEdge(source);
         } else {
             sourceVertex.addOutEdge(target, weight);
+            targetVertex.addInEdge(source, weight);
         }
         checkRep();
         return previousWeight;
     }
     
+    @Override public int increment(String source, String target, int delta) {
+        // Validate before creating any vertex, so a failed increment changes nothing
+        Vertex existing = index.get(source);
+        int previousWeight = existing == null ? 0 : existing.getOutEdge(target);
+        int weight = Math.addExact(previousWeight, delta);
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight);
+        }
+        set(source, target, weight);
+        return weight;
+    }
+    
     @Override public boolean remove(String vertex) {
         // Check if vertex exists
-        Vertex vertexToRemove = null;
-        for (Vertex v : vertices) {
-            if (v.getSource().equals(vertex)) {
-                vertexToRemove = v;
-            }
-        }
+        Vertex vertexToRemove = index.remove(vertex);
         if (vertexToRemove == null) {
             return false;
         }
-        // Remove the vertex
-        vertices.remove(vertexToRemove);
-        // Remove all edges with the vertex
-        for (Vertex v : vertices) {
-            v.removeOutEdge(vertex);
+        // Remove the vertex, leaving its slot empty so no other vertex moves
+        vertices.set(vertexToRemove.getPosition(), null);
+        removed++;
+        if (removed > vertices.size() / 2) {
+            compact();
+        }
+        // Remove all edges with the vertex, visiting only its neighbours
+        for (String target : vertexToRemove.getOutEdges().keySet()) {
+            Vertex v = index.get(target);
+            if (v != null) {
+                v.removeInEdge(vertex);
+            }
+        }
+        for (String source : vertexToRemove.getInEdges().keySet()) {
+            Vertex v = index.get(source);
+            if (v != null) {
+                v.removeOutEdge(vertex);
+            }
         }
         checkRep();
         return true;
     }
     
-    @Override public Set<String> vertices() {
-        Set<String> vertexSet = new HashSet<>();
-        for (Vertex v : vertices) {
-            vertexSet.add(v.getSource());
+    // Close up the empty slots, keeping the order of the vertices; O(V) once every V/2 removals
+    private void compact() {
+        int next = 0;
+        for (Vertex vertex : vertices) {
+            if (vertex != null) {
+                vertex.setPosition(next);
+                vertices.set(next++, vertex);
+            }
         }
-        return vertexSet;
+        vertices.subList(next, vertices.size()).clear();
+        removed = 0;
+    }
+    
+    @Override public Set<String> vertices() {
+        return new HashSet<>(index.keySet());
     }
     
     @Override public Map<String, Integer> sources(String target) {
-        Map<String, Integer> sources = new HashMap<>();
-        // Check all vertices for edges with the target
-        for (Vertex v : vertices) {
-            Map<String, Integer> outEdges = v.getOutEdges();
-            if (outEdges.containsKey(target)) {
-                sources.put(v.getSource(), outEdges.get(target));
-            }
+        // Return empty hash map if target does not exist
+        Vertex targetVertex = index.get(target);
+        if (targetVertex == null) {
+            return new HashMap<>();
         }
-        return sources;
+        return targetVertex.getInEdges();
     }
     
     @Override public Map<String, Integer> targets(String source) {  
-        // Check if source vertex exists
-        Vertex sourceVertex = null;
-        for (Vertex v : vertices) {
-            if (v.getSource().equals(source)) {
-                sourceVertex = v;
-            }
-        }
         // Return empty hash map if source does not exist
+        Vertex sourceVertex = index.get(source);
         if (sourceVertex == null) {
             return new HashMap<>();
         }
         return sourceVertex.getOutEdges();
     }
     
+    @Override public Set<String> verticesView() {
+        return verticesView;
+    }
+    
+    @Override public Map<String, Integer> sourcesView(String target) {
+        Vertex targetVertex = index.get(target);
+        return targetVertex == null ? Collections.emptyMap() : targetVertex.getInEdgesView();
+    }
+    
+    @Override public Map<String, Integer> targetsView(String source) {
+        Vertex sourceVertex = index.get(source);
+        return sourceVertex == null ? Collections.emptyMap() : sourceVertex.getOutEdgesView();
+    }
+    
     // TODO toString()
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         for (Vertex v : vertices) {
-            sb.append(v.toString());
+            if (v != null) {
+                sb.append(v.toString());
+            }
         }
         return sb.toString();
     }
@@ -170,7 +230,7 @@ public class ConcreteVerticesGraph implements Graph<String> {
  * TODO specification
  * Mutable.
  * Source should not be null.
- * Out edges should not contain null keys or values.
+ * Out edges and in edges should not contain null keys or values.
  * Weights should be > 0.
  * This class is internal to the rep of ConcreteVerticesGraph.
  * 
@@ -183,32 +243,57 @@ class Vertex {
     private final String source;
     // Create a map containing pairs, the first element is the target and the second element is the weight
     private final Map<String, Integer> outEdges;
+    // Same shape as outEdges, keyed by the source of each incoming edge
+    private final Map<String, Integer> inEdges;
+    // Unmodifiable wrappers of outEdges and inEdges, created once
+    private final Map<String, Integer> outEdgesView;
+    private final Map<String, Integer> inEdgesView;
+    // Index of this vertex in the list of the graph that holds it
+    private int position = 0;
     
     // Abstraction function:
     //   Represents a vertex in a graph, where 'source' is the vertex label, and 'outEdges'
     //   is a map of edges with target vertices and their corresponding weights.
+    //   'inEdges' is a map of edges from source vertices into this vertex and their weights.
     // Representation invariant:
     //   - source is non-null.
-    //   - outEdges does not contain null keys or values, and all weights are > 0.
+    //   - outEdges and inEdges do not contain null keys or values, and all weights are > 0.
+    //   - position >= 0.
     // Safety from rep exposure:
     //   - Fields are private and final where applicable.
-    //   - outEdges is exposed only as a copy to prevent external modification.
+    //   - outEdges and inEdges are exposed only as copies or unmodifiable views to prevent
+    //     external modification.
+    
+    // checkRep is O(degree), so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = Vertex.class.desiredAssertionStatus();
     
     // TODO constructor
     Vertex(String source) {
         this.source = source;
         this.outEdges = new HashMap<>();
+        this.inEdges = new HashMap<>();
+        this.outEdgesView = Collections.unmodifiableMap(outEdges);
+        this.inEdgesView = Collections.unmodifiableMap(inEdges);
         checkRep();
     }
     
     // TODO checkRep
     private void checkRep() {
+        if (!CHECK_REP) {
+            return;
+        }
         assert source != null;
         assert outEdges != null;
+        assert inEdges != null;
+        assert position >= 0;
         for (String target : outEdges.keySet()) {
             assert target != null;
             assert outEdges.get(target) > 0;
         }
+        for (String source : inEdges.keySet()) {
+            assert source != null;
+            assert inEdges.get(source) > 0;
+        }
     }
     
     // TODO methods
@@ -220,6 +305,23 @@ class Vertex {
         return source;
     }
 
+    /**
+     * Get the position of this vertex in its graph's list of vertices.
+     * @return the position
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Set the position of this vertex in its graph's list of vertices.
+     * @param position the position, >= 0
+     */
+    public void setPosition(int position) {
+        this.position = position;
+        checkRep();
+    }
+
     /**
      * Get a copy of the out edges.
      * @return a copy of the out edges
@@ -228,6 +330,39 @@ class Vertex {
         return new HashMap<>(outEdges);
     }
 
+    /**
+     * Get a read-only view of the out edges.
+     * @return an unmodifiable live view of the out edges
+     */
+    public Map<String, Integer> getOutEdgesView() {
+        return outEdgesView;
+    }
+
+    /**
+     * Get the weight of an out edge.
+     * @param target the target vertex
+     * @return the weight of the edge to target, or 0 if there is no such edge
+     */
+    public int getOutEdge(String target) {
+        return outEdges.getOrDefault(target, 0);
+    }
+
+    /**
+     * Get a copy of the in edges.
+     * @return a copy of the in edges, keyed by source vertex
+     */
+    public Map<String, Integer> getInEdges() {
+        return new HashMap<>(inEdges);
+    }
+
+    /**
+     * Get a read-only view of the in edges.
+     * @return an unmodifiable live view of the in edges, keyed by source vertex
+     */
+    public Map<String, Integer> getInEdgesView() {
+        return inEdgesView;
+    }
+
     /**
      * Add an out edge to the vertex.
      * @param target the target vertex
@@ -246,6 +381,25 @@ class Vertex {
         outEdges.remove(target);
         checkRep();
     }
+
+    /**
+     * Add an in edge to the vertex.
+     * @param source the source vertex
+     * @param weight the weight of the edge
+     */
+    public void addInEdge(String source, int weight) {
+        inEdges.put(source, weight);
+        checkRep();
+    }
+
+    /**
+     * Remove an in edge from the vertex.
+     * @param source the source vertex
+     */
+    public void removeInEdge(String source) {
+        inEdges.remove(source);
+        checkRep();
+    }
     
     // TODO toString()
     @Override
@@ -0,0 +1,309 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts directed edges from many threads at once, for building a graph
+ * from counts. Once counting is done, the counts are published into a
+ * CountingGraph as edge weights.
+ *
+ * <p>Each (source, target) pair has its own LongAdder, so concurrent
+ * increments are never lost and never wait on a lock once the pair has been
+ * seen; increments of a heavily shared pair are spread over the adder's
+ * cells instead of contending on one word of memory.
+ *
+ * <p>Each pair also keeps the least position it was counted at, if
+ * positions are given, so that orderedEdges() can list the edges in order
+ * of first occurrence in the input however the counting was split among
+ * threads.
+ *
+ * <p>Safe for concurrent use. Reads of counts that are being incremented
+ * concurrently see some value between the counts before and after those
+ * increments.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class ConcurrentEdgeCounter<L> {
+
+    private final ConcurrentHashMap<L, ConcurrentHashMap<L, Count>> counts = new ConcurrentHashMap<>();
+    private final Set<L> vertices = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The count of one edge, and the least position it was counted at.
+     */
+    private static final class Count {
+        private static final AtomicLongFieldUpdater<Count> FIRST =
+                AtomicLongFieldUpdater.newUpdater(Count.class, "first");
+
+        final LongAdder sum = new LongAdder();
+        volatile long first = Long.MAX_VALUE;
+
+        void add(long delta, long position) {
+            sum.add(delta);
+            // positions mostly increase along each thread's input, so this rarely writes
+            long least = first;
+            while (position < least && !FIRST.compareAndSet(this, least, position)) {
+                least = first;
+            }
+        }
+    }
+
+    // Abstraction function:
+    //   AF(counts, vertices) = a set of vertices 'vertices', and a count counts[s][t].sum.sum()
+    //     first counted at position counts[s][t].first, for each edge s -> t; the count is 0
+    //     for pairs not in 'counts'.
+    // Representation invariant:
+    //   - every key of counts, and of each inner map, is in vertices
+    //   - every Count has a positive sum, once the add() that created it returns
+    // Safety from rep exposure:
+    //   - All fields are private; observers return copies or fresh WeightedEdges.
+    // Thread safety argument:
+    //   - all state is in concurrent collections, LongAdders and atomically updated positions,
+    //     and is only added to (or lowered, for positions), never removed, so every update is
+    //     a single atomic operation on one of them
+
+    /**
+     * Create a counter with no vertices and no edges.
+     */
+    public ConcurrentEdgeCounter() {
+    }
+
+    /**
+     * Add a vertex, with no edges.
+     *
+     * @param vertex label of the vertex
+     */
+    public void add(L vertex) {
+        // contains() never locks, so check before add(), which may
+        if (!vertices.contains(vertex)) {
+            vertices.add(vertex);
+        }
+    }
+
+    /**
+     * Add one to the count of an edge, adding its vertices if needed.
+     *
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     */
+    public void increment(L source, L target) {
+        add(source, target, 1);
+    }
+
+    /**
+     * Add to the count of an edge, adding its vertices if needed.
+     *
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param delta amount to add, > 0
+     * @throws IllegalArgumentException if delta is not positive
+     */
+    public void add(L source, L target, long delta) {
+        add(source, target, delta, Long.MAX_VALUE);
+    }
+
+    /**
+     * Add one to the count of an edge, counted at a position in the input,
+     * adding its vertices if needed.
+     *
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param position position of the edge in the input, in any units that
+     *                 increase along the input
+     */
+    public void increment(L source, L target, long position) {
+        add(source, target, 1, position);
+    }
+
+    /**
+     * Add to the count of an edge, counted at a position in the input,
+     * adding its vertices if needed.
+     *
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param delta amount to add, > 0
+     * @param position position of the edge in the input, in any units that
+     *                 increase along the input
+     * @throws IllegalArgumentException if delta is not positive
+     */
+    public void add(L source, L target, long delta, long position) {
+        if (delta <= 0) {
+            throw new IllegalArgumentException("delta must be positive: " + delta);
+        }
+        add(source);
+        add(target);
+        ConcurrentHashMap<L, Count> row = counts.get(source);
+        if (row == null) {
+            row = counts.computeIfAbsent(source, s -> new ConcurrentHashMap<>());
+        }
+        Count count = row.get(target);
+        if (count == null) {
+            count = row.computeIfAbsent(target, t -> new Count());
+        }
+        count.add(delta, position);
+    }
+
+    /**
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @return the count of the edge from source to target, 0 if never counted
+     */
+    public long count(L source, L target) {
+        Map<L, Count> row = counts.get(source);
+        Count count = row == null ? null : row.get(target);
+        return count == null ? 0 : count.sum.sum();
+    }
+
+    /**
+     * @return the set of vertices added so far
+     */
+    public Set<L> vertices() {
+        return new HashSet<>(vertices);
+    }
+
+    /**
+     * Get the counted edges. Should only be used once no thread is counting,
+     * since counts are read as the edges are iterated.
+     *
+     * @return the edges with a positive count, weighted by their counts,
+     *         created as they are iterated; iteration throws
+     *         ArithmeticException if a count does not fit an int
+     */
+    public Iterable<WeightedEdge<L>> edges() {
+        return () -> new Iterator<WeightedEdge<L>>() {
+            private final Iterator<Map.Entry<L, ConcurrentHashMap<L, Count>>> rows = counts.entrySet().iterator();
+            private L source;
+            private Iterator<Map.Entry<L, Count>> row = null;
+            private WeightedEdge<L> next = advance();
+
+            private WeightedEdge<L> advance() {
+                while (true) {
+                    while (row == null || !row.hasNext()) {
+                        if (!rows.hasNext()) {
+                            return null;
+                        }
+                        Map.Entry<L, ConcurrentHashMap<L, Count>> entry = rows.next();
+                        source = entry.getKey();
+                        row = entry.getValue().entrySet().iterator();
+                    }
+                    Map.Entry<L, Count> edge = row.next();
+                    long count = edge.getValue().sum.sum();
+                    if (count > 0) { // an adder may be seen before its first add() lands
+                        return new WeightedEdge<>(source, edge.getKey(), Math.toIntExact(count));
+                    }
+                }
+            }
+
+            @Override public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override public WeightedEdge<L> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                WeightedEdge<L> edge = next;
+                next = advance();
+                return edge;
+            }
+        };
+    }
+
+    /**
+     * Get the counted edges in order of the least position each was counted
+     * at, as they first occurred in the input. Edges counted without a
+     * position come last, in no particular order. Should only be used once
+     * no thread is counting.
+     *
+     * @return the edges with a positive count, weighted by their counts, in
+     *         order of first position
+     * @throws ArithmeticException if a count does not fit an int
+     */
+    public List<WeightedEdge<L>> orderedEdges() {
+        List<WeightedEdge<L>> edges = new ArrayList<>();
+        long[] firsts = new long[16];
+        for (Map.Entry<L, ConcurrentHashMap<L, Count>> row : counts.entrySet()) {
+            for (Map.Entry<L, Count> edge : row.getValue().entrySet()) {
+                long count = edge.getValue().sum.sum();
+                if (count > 0) {
+                    if (edges.size() == firsts.length) {
+                        firsts = Arrays.copyOf(firsts, firsts.length * 2);
+                    }
+                    firsts[edges.size()] = edge.getValue().first;
+                    edges.add(new WeightedEdge<>(row.getKey(), edge.getKey(), Math.toIntExact(count)));
+                }
+            }
+        }
+        int size = edges.size();
+        List<WeightedEdge<L>> ranked = new ArrayList<>(Collections.nCopies(size, null));
+        // Sort (position, index) pairs packed into longs, when the positions leave room for the index
+        int indexBits = 32 - Integer.numberOfLeadingZeros(size);
+        long limit = Long.MAX_VALUE >>> indexBits;
+        long[] packed = new long[size];
+        int unpositioned = 0;
+        for (int i = 0; i < size && packed != null; i++) {
+            if (firsts[i] == Long.MAX_VALUE) {
+                ranked.set(size - ++unpositioned, edges.get(i));
+            } else if (firsts[i] < limit) {
+                packed[i - unpositioned] = firsts[i] << indexBits | i;
+            } else {
+                packed = null;
+            }
+        }
+        if (packed != null) {
+            int positioned = size - unpositioned;
+            Arrays.sort(packed, 0, positioned);
+            long mask = (1L << indexBits) - 1;
+            for (int rank = 0; rank < positioned; rank++) {
+                ranked.set(rank, edges.get((int) (packed[rank] & mask)));
+            }
+        } else {
+            final long[] positions = firsts;
+            Integer[] order = new Integer[size];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (x, y) -> Long.compare(positions[x], positions[y]));
+            for (int rank = 0; rank < size; rank++) {
+                ranked.set(rank, edges.get(order[rank]));
+            }
+        }
+        return ranked;
+    }
+
+    /**
+     * Add every vertex and counted edge to a graph, adding each count to the
+     * weight of the corresponding edge. Should only be used once no thread
+     * is counting.
+     *
+     * @param <G> type of the graph
+     * @param graph graph to add to
+     * @return graph
+     * @throws ArithmeticException if a weight would overflow an int
+     */
+    public <G extends CountingGraph<L>> G publishTo(G graph) {
+        for (L vertex : vertices) {
+            graph.add(vertex);
+        }
+        graph.addAll(edges());
+        return graph;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentEdgeCounter(" + vertices.size() + " vertices, "
+                + counts.values().stream().mapToInt(Map::size).sum() + " edges)";
+    }
+}
@@ -0,0 +1,245 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe implementation of Graph.
+ *
+ * <p>Adjacency is kept in ConcurrentHashMaps, so reads never block. Writers
+ * lock the stripes of the vertices they touch: add, set and increment lock
+ * the stripes of their source and target, in stripe order, and remove locks
+ * the stripe of its vertex. Writes that share a vertex are therefore
+ * serialized, while writes to unrelated vertices proceed in parallel.
+ *
+ * <p>Consistency: mutators are linearizable. vertices(), sources() and
+ * targets() return copies that reflect every write completed before the
+ * call; writes concurrent with the call may be reflected in part. Vertices
+ * are created before their edges and removed after them, so every edge a
+ * reader sees was, when read, between two vertices of the graph.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class ConcurrentGraph<L> implements CountingGraph<L> {
+
+    static final int DEFAULT_STRIPES = 64;
+
+    private final ConcurrentHashMap<L, Node<L>> nodes;
+    private final Object[] locks;
+
+    // Abstraction function:
+    //   AF(nodes) = a graph whose vertices are the keys of 'nodes', with an edge s -> t of
+    //     weight w for every entry t -> w in nodes.get(s).out.
+    //   The 'in' maps are derived from the 'out' maps and add nothing to the abstract value.
+    // Representation invariant (whenever no writer holds a lock):
+    //   - every key of a node's out or in map is a key of 'nodes'
+    //   - nodes.get(s).out has t -> w iff nodes.get(t).in has s -> w, and w > 0
+    //   - locks.length is a power of two
+    // Concurrency:
+    //   - nodes and their maps are only modified under stripe locks: update() holds the
+    //     stripes of both endpoints, and remove() the stripe of the removed vertex, which
+    //     every write touching that vertex also needs
+    // Safety from rep exposure:
+    //   - All fields are private; observers return fresh collections of immutable labels.
+
+    // checkRep reads shared state, so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = ConcurrentGraph.class.desiredAssertionStatus();
+
+    /**
+     * Create a new empty graph.
+     */
+    public ConcurrentGraph() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create a new empty graph with a given number of lock stripes.
+     *
+     * @param stripes number of lock stripes, >= 1; rounded up to a power of two.
+     *                More stripes let more writers proceed in parallel.
+     */
+    public ConcurrentGraph(int stripes) {
+        this(stripes, 0);
+    }
+
+    /**
+     * Create a new empty graph with a given number of lock stripes, sized so
+     * that its vertex table need not grow while the expected vertices are
+     * added.
+     *
+     * @param stripes number of lock stripes, >= 1; rounded up to a power of two.
+     * @param expectedVertices number of vertices to size for, >= 0
+     */
+    public ConcurrentGraph(int stripes, int expectedVertices) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        if (expectedVertices < 0) {
+            throw new IllegalArgumentException("negative expected vertices: " + expectedVertices);
+        }
+        nodes = new ConcurrentHashMap<>(expectedVertices);
+        int count = Integer.highestOneBit(stripes);
+        if (count < stripes) {
+            count <<= 1;
+        }
+        locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Check the part of the representation invariant about one edge position,
+     * which the caller must hold the stripe locks of.
+     * @throws AssertionError if the representation invariant is violated
+     */
+    private void checkRep(L source, L target) {
+        if (!CHECK_REP) {
+            return;
+        }
+        Node<L> s = nodes.get(source);
+        Node<L> t = nodes.get(target);
+        Integer out = s == null ? null : s.out.get(target);
+        Integer in = t == null ? null : t.in.get(source);
+        assert out == null ? in == null : out.equals(in) : "Edge not mirrored";
+        assert out == null || out > 0 : "Nonpositive weight";
+        assert out == null || (s != null && t != null) : "Edge to a missing vertex";
+    }
+
+    private int stripe(L label) {
+        int h = label.hashCode();
+        h ^= h >>> 16;
+        return h & (locks.length - 1);
+    }
+
+    private Object lockFor(L label) {
+        return locks[stripe(label)];
+    }
+
+    @Override public boolean add(L vertex) {
+        if (nodes.containsKey(vertex)) {
+            return false;
+        }
+        synchronized (lockFor(vertex)) {
+            return nodes.putIfAbsent(vertex, new Node<>()) == null;
+        }
+    }
+
+    @Override public int set(L source, L target, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight);
+        }
+        return update(source, target, weight, false);
+    }
+
+    @Override public int increment(L source, L target, int delta) {
+        return update(source, target, delta, true);
+    }
+
+    // Set (or, if relative, add to) the weight of an edge under both stripe locks;
+    // return the previous weight for set, the new weight for increment
+    private int update(L source, L target, int value, boolean relative) {
+        // Lock in stripe order, so that two updates never wait on each other
+        int a = stripe(source);
+        int b = stripe(target);
+        synchronized (locks[Math.min(a, b)]) {
+            synchronized (locks[Math.max(a, b)]) {
+                Node<L> s = nodes.get(source);
+                Node<L> t = nodes.get(target);
+                int previousWeight = s == null ? 0 : s.out.getOrDefault(target, 0);
+                int weight = relative ? Math.addExact(previousWeight, value) : value;
+                if (weight < 0) {
+                    throw new IllegalArgumentException("negative weight " + weight);
+                }
+                if (s == null) {
+                    s = nodes.computeIfAbsent(source, label -> new Node<>());
+                }
+                if (t == null) {
+                    t = nodes.computeIfAbsent(target, label -> new Node<>());
+                }
+                if (weight == 0) {
+                    s.out.remove(target);
+                    t.in.remove(source);
+                } else {
+                    s.out.put(target, weight);
+                    t.in.put(source, weight);
+                }
+                checkRep(source, target);
+                return relative ? weight : previousWeight;
+            }
+        }
+    }
+
+    @Override public boolean remove(L vertex) {
+        // Every write that touches vertex needs this lock, so no edge to or from
+        // vertex can appear while it is held
+        synchronized (lockFor(vertex)) {
+            Node<L> node = nodes.get(vertex);
+            if (node == null) {
+                return false;
+            }
+            // Remove edges before the vertex, so readers never see an edge to a missing vertex
+            for (L target : node.out.keySet()) {
+                node.out.remove(target);
+                Node<L> t = nodes.get(target);
+                if (t != null) {
+                    t.in.remove(vertex);
+                }
+            }
+            for (L source : node.in.keySet()) {
+                Node<L> s = nodes.get(source);
+                if (s != null) {
+                    s.out.remove(vertex);
+                }
+                node.in.remove(source);
+            }
+            nodes.remove(vertex);
+            return true;
+        }
+    }
+
+    @Override public Set<L> vertices() {
+        return new HashSet<>(nodes.keySet());
+    }
+
+    @Override public Map<L, Integer> sources(L target) {
+        Node<L> node = nodes.get(target);
+        return node == null ? new HashMap<>() : new HashMap<>(node.in);
+    }
+
+    @Override public Map<L, Integer> targets(L source) {
+        Node<L> node = nodes.get(source);
+        return node == null ? new HashMap<>() : new HashMap<>(node.out);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<L, Node<L>> vertex : nodes.entrySet()) {
+            Map<L, Integer> targets = vertex.getValue().out;
+            if (targets.isEmpty()) {
+                sb.append(vertex.getKey()).append(" -> \n");
+            }
+            for (Map.Entry<L, Integer> edge : targets.entrySet()) {
+                sb.append(vertex.getKey()).append(" -> ").append(edge.getKey())
+                  .append(" : ").append(edge.getValue()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The edges of one vertex. Mutable, and safe for concurrent reads.
+     */
+    private static final class Node<L> {
+        // target -> weight, and source -> weight
+        final Map<L, Integer> out = new ConcurrentHashMap<>();
+        final Map<L, Integer> in = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,51 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+/**
+ * A mutable weighted directed graph whose edge weights can be updated in place
+ * by a delta, for building graphs from counts.
+ * 
+ * <p>{@code increment(s, t, d)} has the same effect as
+ * {@code set(s, t, targets(s).getOrDefault(t, 0) + d)}, without reading the
+ * targets of s.
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public interface CountingGraph<L> extends Graph<L> {
+    
+    /**
+     * Add a delta to the weight of a directed edge in this graph.
+     * Vertices with the given labels are added to the graph if they do not
+     * already exist. If the new weight is zero, the edge is removed.
+     * 
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param delta amount to add to the weight of the edge, which is zero if
+     *              there is no such edge
+     * @return the new weight of the edge
+     * @throws IllegalArgumentException if the new weight would be negative
+     *         (and this graph is not modified)
+     * @throws ArithmeticException if the new weight would overflow an int
+     *         (and this graph is not modified)
+     */
+    public int increment(L source, L target, int delta);
+    
+    /**
+     * Add the weight of each of a sequence of edges to the weight of the
+     * corresponding edge in this graph, as if by
+     * {@link #increment(Object, Object, int) increment} in order.
+     * 
+     * @param edges edges to add; the same source and target may appear more
+     *              than once
+     * @throws ArithmeticException if a weight would overflow an int; the edges
+     *         before the overflowing one have been added
+     */
+    public default void addAll(Iterable<? extends WeightedEdge<L>> edges) {
+        for (WeightedEdge<L> edge : edges) {
+            increment(edge.getSource(), edge.getTarget(), edge.getWeight());
+        }
+    }
+    
+}
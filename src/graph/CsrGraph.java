@@ -0,0 +1,396 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable Graph in compressed sparse row form.
+ *
+ * <p>Vertices have dense int ids. The out-edges of vertex s are the edges
+ * e with {@code outStart(s) <= e < outEnd(s)}, with target {@code outTarget(e)}
+ * and weight {@code outWeight(e)}; in-edges are laid out the same way in a
+ * reverse table. Each table is three int arrays: row offsets, neighbour ids
+ * and weights. Labels are kept in a separate table.
+ *
+ * <p>Out-edge rows keep the iteration order of the source graph's targets(),
+ * so callers that break ties by first-seen target see the same order they
+ * saw before freezing. In-edge rows are sorted by source id, so single edge
+ * weights are found by binary search.
+ *
+ * <p>targets(), sources() and vertices() return unmodifiable views over the
+ * arrays; no adjacency is copied. add(), set() and remove() throw
+ * UnsupportedOperationException.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class CsrGraph<L> implements ViewableGraph<L> {
+
+    private final Object[] labels;
+    private final Map<L, Integer> ids;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] outWeights;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] inWeights;
+
+    // Abstraction function:
+    //   AF(labels, outOffsets, outTargets, outWeights) = a graph with vertices labels[0..n) and an
+    //     edge labels[s] -> labels[outTargets[e]] of weight outWeights[e] for each s and
+    //     outOffsets[s] <= e < outOffsets[s + 1].
+    //   'ids' and the in-edge table are derived and add nothing to the abstract value.
+    // Representation invariant:
+    //   - n = labels.length; ids maps labels[i] to i for each i, and nothing else
+    //   - outOffsets and inOffsets have length n + 1, start at 0, are nondecreasing, and
+    //     end at the number of edges m; the other arrays have length m
+    //   - all weights are > 0; targets within a row are distinct
+    //   - each in-row holds exactly the sources of edges into that vertex, with the same
+    //     weights, sorted by increasing source id
+    // Safety from rep exposure:
+    //   - All fields are private, final, and never mutated after construction.
+    //   - Views returned by targets(), sources() and vertices() are unmodifiable.
+
+    /**
+     * Freeze a graph into compressed sparse row form.
+     *
+     * @param <L> type of vertex labels in the graph
+     * @param graph graph to copy; it is only read
+     * @return an immutable graph with the same vertices and edges as graph
+     */
+    public static <L> CsrGraph<L> from(Graph<L> graph) {
+        Set<L> vertices = graph.vertices();
+        int n = vertices.size();
+        Object[] labels = new Object[n];
+        Map<L, Integer> ids = new HashMap<>(n * 4 / 3 + 1);
+        int id = 0;
+        for (L vertex : vertices) {
+            labels[id] = vertex;
+            ids.put(vertex, id++);
+        }
+        // Forward table, reading each vertex's targets once
+        int[] outOffsets = new int[n + 1];
+        int[] outTargets = new int[Math.max(16, n)];
+        int[] outWeights = new int[outTargets.length];
+        int[] inDegree = new int[n];
+        int m = 0;
+        for (int s = 0; s < n; s++) {
+            @SuppressWarnings("unchecked")
+            Map<L, Integer> targets = graph.targets((L) labels[s]);
+            if (m + targets.size() > outTargets.length) {
+                int capacity = Math.max(m + targets.size(), outTargets.length + (outTargets.length >> 1));
+                outTargets = Arrays.copyOf(outTargets, capacity);
+                outWeights = Arrays.copyOf(outWeights, capacity);
+            }
+            for (Map.Entry<L, Integer> edge : targets.entrySet()) {
+                int t = ids.get(edge.getKey());
+                outTargets[m] = t;
+                outWeights[m] = edge.getValue();
+                inDegree[t]++;
+                m++;
+            }
+            outOffsets[s + 1] = m;
+        }
+        outTargets = Arrays.copyOf(outTargets, m);
+        outWeights = Arrays.copyOf(outWeights, m);
+        // Reverse table by counting sort; visiting sources in id order sorts each row
+        int[] inOffsets = new int[n + 1];
+        for (int t = 0; t < n; t++) {
+            inOffsets[t + 1] = inOffsets[t] + inDegree[t];
+        }
+        int[] next = Arrays.copyOf(inOffsets, n);
+        int[] inSources = new int[m];
+        int[] inWeights = new int[m];
+        for (int s = 0; s < n; s++) {
+            for (int e = outOffsets[s]; e < outOffsets[s + 1]; e++) {
+                int slot = next[outTargets[e]]++;
+                inSources[slot] = s;
+                inWeights[slot] = outWeights[e];
+            }
+        }
+        return new CsrGraph<>(labels, ids, outOffsets, outTargets, outWeights, inOffsets, inSources, inWeights);
+    }
+
+    // Takes ownership of the arrays and map
+    CsrGraph(Object[] labels, Map<L, Integer> ids,
+             int[] outOffsets, int[] outTargets, int[] outWeights,
+             int[] inOffsets, int[] inSources, int[] inWeights) {
+        this.labels = labels;
+        this.ids = ids;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inWeights = inWeights;
+        checkRep();
+    }
+
+    // checkRep is O(V + E), so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = CsrGraph.class.desiredAssertionStatus();
+
+    /**
+     * Check the representation invariant.
+     * @throws AssertionError if the representation invariant is violated
+     */
+    private void checkRep() {
+        if (!CHECK_REP) {
+            return;
+        }
+        int n = labels.length;
+        int m = outTargets.length;
+        assert ids.size() == n : "Label table out of sync";
+        for (int i = 0; i < n; i++) {
+            assert ids.get(labels[i]) == i : "Label table out of sync";
+        }
+        assert outOffsets.length == n + 1 && inOffsets.length == n + 1;
+        assert outOffsets[0] == 0 && inOffsets[0] == 0 && outOffsets[n] == m && inOffsets[n] == m;
+        assert outWeights.length == m && inSources.length == m && inWeights.length == m;
+        for (int v = 0; v < n; v++) {
+            assert outOffsets[v] <= outOffsets[v + 1] && inOffsets[v] <= inOffsets[v + 1];
+            for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                assert outWeights[e] > 0 : "Nonpositive weight";
+                assert weight(v, outTargets[e]) == outWeights[e] : "In-edge missing";
+            }
+            for (int e = inOffsets[v] + 1; e < inOffsets[v + 1]; e++) {
+                assert inSources[e - 1] < inSources[e] : "In-row not sorted";
+            }
+        }
+    }
+
+    /**
+     * @return number of vertices in this graph; ids are 0 to vertexCount() - 1
+     */
+    public int vertexCount() {
+        return labels.length;
+    }
+
+    /**
+     * @return number of edges in this graph
+     */
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * Get the id of a vertex.
+     *
+     * @param vertex a label
+     * @return the id of the vertex with that label, or -1 if there is none
+     */
+    public int id(L vertex) {
+        Integer id = ids.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the label of a vertex.
+     *
+     * @param id id of a vertex, 0 <= id < vertexCount()
+     * @return the label of that vertex
+     */
+    @SuppressWarnings("unchecked")
+    public L label(int id) {
+        return (L) labels[id];
+    }
+
+    /**
+     * @param source id of a vertex
+     * @return index of the first out-edge of source
+     */
+    public int outStart(int source) {
+        return outOffsets[source];
+    }
+
+    /**
+     * @param source id of a vertex
+     * @return index one past the last out-edge of source
+     */
+    public int outEnd(int source) {
+        return outOffsets[source + 1];
+    }
+
+    /**
+     * @param edge index of an out-edge
+     * @return id of the target of that edge
+     */
+    public int outTarget(int edge) {
+        return outTargets[edge];
+    }
+
+    /**
+     * @param edge index of an out-edge
+     * @return weight of that edge
+     */
+    public int outWeight(int edge) {
+        return outWeights[edge];
+    }
+
+    /**
+     * @param target id of a vertex
+     * @return index of the first in-edge of target
+     */
+    public int inStart(int target) {
+        return inOffsets[target];
+    }
+
+    /**
+     * @param target id of a vertex
+     * @return index one past the last in-edge of target
+     */
+    public int inEnd(int target) {
+        return inOffsets[target + 1];
+    }
+
+    /**
+     * @param edge index of an in-edge
+     * @return id of the source of that edge
+     */
+    public int inSource(int edge) {
+        return inSources[edge];
+    }
+
+    /**
+     * @param edge index of an in-edge
+     * @return weight of that edge
+     */
+    public int inWeight(int edge) {
+        return inWeights[edge];
+    }
+
+    /**
+     * Get the weight of an edge by ids, in O(log in-degree of target).
+     *
+     * @param source id of a vertex
+     * @param target id of a vertex
+     * @return weight of the edge from source to target, or 0 if there is none
+     */
+    public int weight(int source, int target) {
+        int edge = Arrays.binarySearch(inSources, inOffsets[target], inOffsets[target + 1], source);
+        return edge < 0 ? 0 : inWeights[edge];
+    }
+
+    @Override public boolean add(L vertex) {
+        throw new UnsupportedOperationException("CsrGraph is immutable");
+    }
+
+    @Override public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("CsrGraph is immutable");
+    }
+
+    @Override public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("CsrGraph is immutable");
+    }
+
+    // The copying methods already return views, so the view methods are the same
+    @Override public Set<L> verticesView() {
+        return vertices();
+    }
+
+    @Override public Map<L, Integer> sourcesView(L target) {
+        return sources(target);
+    }
+
+    @Override public Map<L, Integer> targetsView(L source) {
+        return targets(source);
+    }
+
+    @Override public Set<L> vertices() {
+        return Collections.unmodifiableSet(ids.keySet());
+    }
+
+    @Override public Map<L, Integer> sources(L target) {
+        int t = id(target);
+        return t < 0 ? Collections.emptyMap() : new Row(t, false);
+    }
+
+    @Override public Map<L, Integer> targets(L source) {
+        int s = id(source);
+        return s < 0 ? Collections.emptyMap() : new Row(s, true);
+    }
+
+    /**
+     * Read-only view of one row of the out-edge or in-edge table, keyed by
+     * neighbour label.
+     */
+    private class Row extends AbstractMap<L, Integer> {
+
+        private final int vertex;
+        private final boolean outgoing;
+
+        Row(int vertex, boolean outgoing) {
+            this.vertex = vertex;
+            this.outgoing = outgoing;
+        }
+
+        @Override public int size() {
+            return outgoing ? outEnd(vertex) - outStart(vertex) : inEnd(vertex) - inStart(vertex);
+        }
+
+        @Override public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override public Integer get(Object key) {
+            Integer neighbour = ids.get(key);
+            if (neighbour == null) {
+                return null;
+            }
+            int weight = outgoing ? weight(vertex, neighbour) : weight(neighbour, vertex);
+            return weight == 0 ? null : weight;
+        }
+
+        @Override public Set<Map.Entry<L, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<L, Integer>>() {
+                @Override public int size() {
+                    return Row.this.size();
+                }
+
+                @Override public Iterator<Map.Entry<L, Integer>> iterator() {
+                    final int end = outgoing ? outEnd(vertex) : inEnd(vertex);
+                    return new Iterator<Map.Entry<L, Integer>>() {
+                        private int edge = outgoing ? outStart(vertex) : inStart(vertex);
+
+                        @Override public boolean hasNext() {
+                            return edge < end;
+                        }
+
+                        @Override public Map.Entry<L, Integer> next() {
+                            if (edge >= end) {
+                                throw new NoSuchElementException();
+                            }
+                            int e = edge++;
+                            return outgoing
+                                    ? new SimpleImmutableEntry<>(label(outTargets[e]), outWeights[e])
+                                    : new SimpleImmutableEntry<>(label(inSources[e]), inWeights[e]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < labels.length; s++) {
+            if (outStart(s) == outEnd(s)) {
+                sb.append(labels[s]).append(" -> \n");
+            }
+            for (int e = outStart(s); e < outEnd(s); e++) {
+                sb.append(labels[s]).append(" -> ").append(labels[outTargets[e]])
+                  .append(" : ").append(outWeights[e]).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,410 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An implementation of Graph that interns each vertex label once to a dense
+ * int id and keeps adjacency in primitive {@link IntIntMap}s.
+ *
+ * <p>Besides the Graph operations, it offers an id-based API for hot loops:
+ * {@link #id(Object)} and {@link #label(int)} translate between labels and
+ * ids, and {@link #targetsOf(int)}, {@link #sourcesOf(int)} and
+ * {@link #weight(int, int)} read adjacency without boxing or hashing labels.
+ * Ids are dense: they are reused after their vertex is removed.
+ *
+ * <p>targets() and sources() iterate in edge insertion order, up to removals.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class DenseGraph<L> implements CountingGraph<L>, ViewableGraph<L> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Map<L, Integer> ids;
+    private final Set<L> verticesView;
+    private Object[] labels;
+    private IntIntMap[] out;
+    private IntIntMap[] in;
+    // Initial capacity of each adjacency row
+    private final int rowCapacity;
+    // Ids below nextId that are free for reuse, as a stack
+    private int[] freeIds = new int[0];
+    private int freeCount = 0;
+    private int nextId = 0;
+
+    // Abstraction function:
+    //   AF(ids, labels, out, in) = a graph whose vertices are the keys of 'ids', with an edge
+    //     label(s) -> label(t) of weight w for every entry t -> w in out[s].
+    //   'in' is derived from 'out' and adds nothing to the abstract value.
+    // Representation invariant:
+    //   - ids maps each label to an id in [0, nextId), labels[ids.get(l)] == l, and the
+    //     ids in freeIds[0..freeCount) are exactly those in [0, nextId) with labels[id] == null.
+    //   - out[id] and in[id] are null unless labels[id] != null; null means no edges.
+    //   - rowCapacity >= 0
+    //   - out[s] has t -> w iff in[t] has s -> w, and both s and t are live ids.
+    // Safety from rep exposure:
+    //   - All fields are private.
+    //   - targets(), sources() and vertices() return fresh collections; the view
+    //     methods return unmodifiable wrappers over immutable labels and ints.
+    //   - targetsOf() and sourcesOf() return IntIntMaps, which cannot be mutated
+    //     outside this package.
+
+    // checkRep is O(V + E), so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = DenseGraph.class.desiredAssertionStatus();
+
+    /**
+     * Create a new empty graph.
+     */
+    public DenseGraph() {
+        this(0, 0);
+    }
+
+    /**
+     * Create a new empty graph sized for a workload, so that it need not grow
+     * while the expected vertices and edges are added. The vertex tables are
+     * sized for expectedVertices, and each vertex's rows for the mean degree,
+     * up to the size at which rows start to hash; the graph still grows as
+     * needed past either number.
+     *
+     * @param expectedVertices number of vertices to size for, >= 0
+     * @param expectedEdges number of edges to size for, >= 0
+     */
+    public DenseGraph(int expectedVertices, long expectedEdges) {
+        if (expectedVertices < 0 || expectedEdges < 0) {
+            throw new IllegalArgumentException("negative expected size: "
+                    + expectedVertices + " vertices, " + expectedEdges + " edges");
+        }
+        int capacity = Math.max(DEFAULT_CAPACITY, expectedVertices);
+        this.ids = new HashMap<>((int) Math.min(Integer.MAX_VALUE, capacity * 4L / 3 + 1));
+        this.verticesView = Collections.unmodifiableSet(ids.keySet());
+        this.labels = new Object[capacity];
+        this.out = new IntIntMap[capacity];
+        this.in = new IntIntMap[capacity];
+        this.rowCapacity = expectedVertices == 0 ? 0
+                : (int) Math.min(IntIntMap.LINEAR_LIMIT, expectedEdges / expectedVertices);
+        checkRep();
+    }
+
+    /**
+     * Check the representation invariant.
+     * @throws AssertionError if the representation invariant is violated
+     */
+    private void checkRep() {
+        if (!CHECK_REP) {
+            return;
+        }
+        assert ids.size() + freeCount == nextId : "Leaked id";
+        for (Map.Entry<L, Integer> entry : ids.entrySet()) {
+            assert labels[entry.getValue()] == entry.getKey() : "Label table out of sync";
+        }
+        for (int i = 0; i < freeCount; i++) {
+            assert labels[freeIds[i]] == null : "Free id in use";
+        }
+        for (int s = 0; s < nextId; s++) {
+            if (labels[s] == null) {
+                assert out[s] == null && in[s] == null : "Edges on a free id";
+                continue;
+            }
+            IntIntMap targets = targetsOf(s);
+            for (int i = 0; i < targets.size(); i++) {
+                int t = targets.keyAt(i);
+                assert labels[t] != null : "Edge to a free id";
+                assert sourcesOf(t).get(s) == targets.valueAt(i) : "Missing in-edge";
+            }
+            IntIntMap sources = sourcesOf(s);
+            for (int i = 0; i < sources.size(); i++) {
+                assert targetsOf(sources.keyAt(i)).get(s) == sources.valueAt(i) : "Missing out-edge";
+            }
+        }
+    }
+
+    /**
+     * Get the id of a vertex.
+     *
+     * @param vertex a label
+     * @return the id of the vertex with that label, or -1 if there is none
+     */
+    public int id(L vertex) {
+        Integer id = ids.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the label of a vertex.
+     *
+     * @param id id of a vertex in this graph
+     * @return the label of that vertex
+     * @throws IllegalArgumentException if no vertex has that id
+     */
+    @SuppressWarnings("unchecked")
+    public L label(int id) {
+        if (id < 0 || id >= nextId || labels[id] == null) {
+            throw new IllegalArgumentException("no vertex with id " + id);
+        }
+        return (L) labels[id];
+    }
+
+    /**
+     * Get the out-edges of a vertex by id.
+     *
+     * @param source id of a vertex in this graph
+     * @return read-only live map from target id to edge weight; it must not
+     *         be used after this graph is modified
+     */
+    public IntIntMap targetsOf(int source) {
+        IntIntMap targets = out[source];
+        return targets == null ? IntIntMap.EMPTY : targets;
+    }
+
+    /**
+     * Get the in-edges of a vertex by id.
+     *
+     * @param target id of a vertex in this graph
+     * @return read-only live map from source id to edge weight; it must not
+     *         be used after this graph is modified
+     */
+    public IntIntMap sourcesOf(int target) {
+        IntIntMap sources = in[target];
+        return sources == null ? IntIntMap.EMPTY : sources;
+    }
+
+    /**
+     * Get the weight of an edge by ids.
+     *
+     * @param source id of a vertex in this graph
+     * @param target id of a vertex in this graph
+     * @return weight of the edge from source to target, or 0 if there is none
+     */
+    public int weight(int source, int target) {
+        return targetsOf(source).get(target);
+    }
+
+    @Override public boolean add(L vertex) {
+        if (ids.containsKey(vertex)) {
+            return false;
+        }
+        intern(vertex);
+        checkRep();
+        return true;
+    }
+
+    // Id of a vertex, creating the vertex if it does not exist
+    private int intern(L vertex) {
+        Integer existing = ids.get(vertex);
+        if (existing != null) {
+            return existing;
+        }
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == labels.length) {
+                int capacity = labels.length * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                out = Arrays.copyOf(out, capacity);
+                in = Arrays.copyOf(in, capacity);
+            }
+        }
+        labels[id] = vertex;
+        ids.put(vertex, id);
+        return id;
+    }
+
+    @Override public int set(L source, L target, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight);
+        }
+        int s = intern(source);
+        int t = intern(target);
+        int previousWeight;
+        if (weight == 0) {
+            previousWeight = out[s] == null ? 0 : out[s].remove(t);
+            if (in[t] != null) {
+                in[t].remove(s);
+            }
+        } else {
+            previousWeight = outgoing(s).put(t, weight);
+            incoming(t).put(s, weight);
+        }
+        checkRep();
+        return previousWeight;
+    }
+
+    @Override public int increment(L source, L target, int delta) {
+        int s = id(source);
+        int t = id(target);
+        int previousWeight = s < 0 || t < 0 ? 0 : weight(s, t);
+        int weight = Math.addExact(previousWeight, delta);
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight);
+        }
+        s = intern(source);
+        t = intern(target);
+        if (delta != 0) {
+            outgoing(s).add(t, delta);
+            incoming(t).add(s, delta);
+        }
+        checkRep();
+        return weight;
+    }
+
+    private IntIntMap outgoing(int s) {
+        if (out[s] == null) {
+            out[s] = new IntIntMap(rowCapacity);
+        }
+        return out[s];
+    }
+
+    private IntIntMap incoming(int t) {
+        if (in[t] == null) {
+            in[t] = new IntIntMap(rowCapacity);
+        }
+        return in[t];
+    }
+
+    @Override public boolean remove(L vertex) {
+        Integer boxed = ids.remove(vertex);
+        if (boxed == null) {
+            return false;
+        }
+        int id = boxed;
+        IntIntMap targets = targetsOf(id);
+        for (int i = 0; i < targets.size(); i++) {
+            in[targets.keyAt(i)].remove(id);
+        }
+        IntIntMap sources = sourcesOf(id);
+        for (int i = 0; i < sources.size(); i++) {
+            out[sources.keyAt(i)].remove(id);
+        }
+        labels[id] = null;
+        out[id] = null;
+        in[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, Math.max(4, freeCount * 2));
+        }
+        freeIds[freeCount++] = id;
+        checkRep();
+        return true;
+    }
+
+    @Override public Set<L> vertices() {
+        return new HashSet<>(ids.keySet());
+    }
+
+    @Override public Map<L, Integer> sources(L target) {
+        int t = id(target);
+        return t < 0 ? new LinkedHashMap<>() : toLabelMap(sourcesOf(t));
+    }
+
+    @Override public Map<L, Integer> targets(L source) {
+        int s = id(source);
+        return s < 0 ? new LinkedHashMap<>() : toLabelMap(targetsOf(s));
+    }
+
+    @Override public Set<L> verticesView() {
+        return verticesView;
+    }
+
+    @Override public Map<L, Integer> sourcesView(L target) {
+        int t = id(target);
+        return t < 0 ? Collections.emptyMap() : new AdjacencyView(sourcesOf(t));
+    }
+
+    @Override public Map<L, Integer> targetsView(L source) {
+        int s = id(source);
+        return s < 0 ? Collections.emptyMap() : new AdjacencyView(targetsOf(s));
+    }
+
+    // Read-only view of one adjacency map, translating ids to labels
+    private class AdjacencyView extends AbstractMap<L, Integer> {
+        private final IntIntMap adjacency;
+
+        AdjacencyView(IntIntMap adjacency) {
+            this.adjacency = adjacency;
+        }
+
+        @Override public int size() {
+            return adjacency.size();
+        }
+
+        @Override public boolean containsKey(Object key) {
+            Integer id = ids.get(key);
+            return id != null && adjacency.containsKey(id);
+        }
+
+        @Override public Integer get(Object key) {
+            Integer id = ids.get(key);
+            int weight = id == null ? 0 : adjacency.get(id);
+            return weight == 0 ? null : weight;
+        }
+
+        @Override public Set<Map.Entry<L, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<L, Integer>>() {
+                @Override public int size() {
+                    return adjacency.size();
+                }
+
+                @Override public Iterator<Map.Entry<L, Integer>> iterator() {
+                    return new Iterator<Map.Entry<L, Integer>>() {
+                        private int position = 0;
+
+                        @Override public boolean hasNext() {
+                            return position < adjacency.size();
+                        }
+
+                        @Override public Map.Entry<L, Integer> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<L, Integer> entry = new AbstractMap.SimpleImmutableEntry<>(
+                                    label(adjacency.keyAt(position)), adjacency.valueAt(position));
+                            position++;
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private Map<L, Integer> toLabelMap(IntIntMap adjacency) {
+        Map<L, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < adjacency.size(); i++) {
+            map.put(label(adjacency.keyAt(i)), adjacency.valueAt(i));
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < nextId; s++) {
+            if (labels[s] == null) {
+                continue;
+            }
+            IntIntMap targets = targetsOf(s);
+            if (targets.isEmpty()) {
+                sb.append(labels[s]).append(" -> \n");
+            }
+            for (int i = 0; i < targets.size(); i++) {
+                sb.append(labels[s]).append(" -> ").append(labels[targets.keyAt(i)])
+                  .append(" : ").append(targets.valueAt(i)).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
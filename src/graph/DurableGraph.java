@@ -0,0 +1,707 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * A word graph that survives crashes: every mutation is applied to a graph in
+ * memory and appended to a write-ahead log in a directory, and reopening the
+ * directory recovers the graph.
+ *
+ * <p>The directory holds a snapshot, a GraphFile of the graph at the last
+ * checkpoint (absent before the first one), and the log of mutations since.
+ * A checkpoint writes a new snapshot and starts an empty log; both files are
+ * numbered by checkpoint, so a crash part way through one leaves either the
+ * old pair or the new pair to recover from.
+ *
+ * <p>Durability: mutators only encode their record into a memory buffer.
+ * A committer thread writes the buffer out and forces it to the device every
+ * sync interval, so a crash loses at most the mutations of the last interval
+ * or so; sync() makes everything before it durable at once. Concurrent
+ * sync() calls share one force (group commit), and so do all the mutations
+ * of an interval. The committer also checkpoints once the log outgrows a
+ * given size, which bounds both the log and the time to recover.
+ *
+ * <p>The log is little-endian: magic "GPHW" and a format version (int32),
+ * then records of payload length (int32), CRC-32C of the payload (int32),
+ * and payload. A payload is an operation byte, labels as varint byte length
+ * and UTF-8 bytes, and a varint weight (set) or zigzag delta (increment).
+ * Recovery replays records up to the first one that is cut short or fails
+ * its checksum, as the last records before a crash may be, and truncates
+ * the log there.
+ *
+ * <p>Safe for concurrent use; operations on the graph are serialized.
+ */
+public final class DurableGraph implements CountingGraph<String>, AutoCloseable {
+
+    private static final int MAGIC = 'G' | 'P' << 8 | 'H' << 16 | 'W' << 24;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_VARINT_BYTES = 5;
+    private static final byte ADD = 1;
+    private static final byte SET = 2;
+    private static final byte INCREMENT = 3;
+    private static final byte REMOVE = 4;
+
+    private static final long DEFAULT_SYNC_MILLIS = 10;
+    private static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+    // Buffered records past which a mutator writes them out itself, without forcing
+    private static final int WRITE_BEHIND_BYTES = 1 << 20;
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.graph");
+    private static final Pattern LOG = Pattern.compile("log-(\\d+)\\.wal");
+
+    private final Path directory;
+    private final CountingGraph<String> graph;
+    private final long checkpointBytes;
+    private final ScheduledExecutorService committer;
+
+    // Guards graph, pending, crc, appended, closed and failure
+    private final Object lock = new Object();
+    // Guards log, spare, written, durable, generation and logStart; taken before lock, never after
+    private final Object ioLock = new Object();
+
+    private ByteBuffer pending = newBuffer(READ_BUFFER_BYTES);
+    private ByteBuffer spare = newBuffer(READ_BUFFER_BYTES);
+    private final CRC32C crc = new CRC32C();
+    // Log positions count every byte ever appended, across checkpoints
+    private long appended;
+    private long written;
+    private long durable;
+    private long logStart;
+    private FileChannel log;
+    private long generation;
+    private boolean closed = false;
+    private IOException failure;
+
+    // Abstraction function:
+    //   AF(graph, closed) = the graph 'graph', which is also recorded in the directory as
+    //     the snapshot of 'generation' followed by the records of its log and then 'pending';
+    //     mutators are rejected if closed.
+    // Representation invariant:
+    //   - logStart <= durable <= written <= appended
+    //   - written - logStart + HEADER_BYTES is the size of the log file, and
+    //     appended - written is the number of bytes in pending
+    //   - failure != null only after a write to the log failed
+    // Safety from rep exposure:
+    //   - All fields are private; graph is created by or handed over to this object, and
+    //     its observers already return copies.
+    // Thread safety argument:
+    //   - the graph and the pending buffer change together under lock, so the log holds
+    //     records in the order they were applied.
+    //   - file writes and forces happen under ioLock, which writers acquire before lock and
+    //     only hold lock inside of briefly, to swap pending and spare.
+
+    private DurableGraph(Path directory, CountingGraph<String> graph, long generation,
+            FileChannel log, long logBytes, long syncMillis, long checkpointBytes) {
+        this.directory = directory;
+        this.graph = graph;
+        this.generation = generation;
+        this.log = log;
+        this.appended = this.written = this.durable = logBytes;
+        this.logStart = 0;
+        this.checkpointBytes = checkpointBytes;
+        this.committer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "DurableGraph committer " + directory);
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commit, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open or create a durable graph, with default sync interval and
+     * checkpoint size, recovering it into an OverlayGraph over the snapshot.
+     *
+     * @param directory directory of the graph's files; created if missing
+     * @return the graph as of the last durable mutation
+     * @throws IOException if the directory cannot be read or written, or its
+     *         snapshot is not a valid graph file
+     */
+    public static DurableGraph open(Path directory) throws IOException {
+        return open(directory, null, DEFAULT_SYNC_MILLIS, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Open or create a durable graph.
+     *
+     * @param directory directory of the graph's files; created if missing
+     * @param graph empty graph to recover into and keep the graph in, which
+     *              must not be used by anyone else afterwards; or null for an
+     *              OverlayGraph over the snapshot, which recovers fastest
+     * @param syncMillis sync interval in milliseconds, > 0
+     * @param checkpointBytes log size past which to checkpoint, > 0
+     * @return the graph as of the last durable mutation
+     * @throws IOException if the directory cannot be read or written, or its
+     *         snapshot is not a valid graph file
+     */
+    public static DurableGraph open(Path directory, CountingGraph<String> graph, long syncMillis,
+            long checkpointBytes) throws IOException {
+        if (graph != null && !graph.vertices().isEmpty()) {
+            throw new IllegalArgumentException("graph to recover into is not empty");
+        }
+        if (syncMillis <= 0 || checkpointBytes <= 0) {
+            throw new IllegalArgumentException("sync interval and checkpoint size must be positive");
+        }
+        Files.createDirectories(directory);
+        long generation = latestSnapshot(directory);
+        CsrGraph<String> snapshot = generation < 0
+                ? CsrGraph.from(new DenseGraph<String>())
+                : GraphFile.load(snapshotFile(directory, generation)).graph();
+        generation = Math.max(generation, 0);
+        if (graph == null) {
+            graph = new OverlayGraph<>(snapshot);
+        } else {
+            for (String vertex : snapshot.verticesView()) {
+                graph.add(vertex);
+                for (Map.Entry<String, Integer> edge : snapshot.targetsView(vertex).entrySet()) {
+                    graph.set(vertex, edge.getKey(), edge.getValue());
+                }
+            }
+        }
+        FileChannel log = FileChannel.open(logFile(directory, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = replay(log, graph, logFile(directory, generation));
+            log.truncate(end);
+            log.position(end);
+            deleteStale(directory, generation);
+            return new DurableGraph(directory, graph, generation, log, end - HEADER_BYTES,
+                    syncMillis, checkpointBytes);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    private static Path snapshotFile(Path directory, long generation) {
+        return directory.resolve("snapshot-" + generation + ".graph");
+    }
+
+    private static Path logFile(Path directory, long generation) {
+        return directory.resolve("log-" + generation + ".wal");
+    }
+
+    // Generation of the newest snapshot in the directory, or -1 if there is none
+    private static long latestSnapshot(Path directory) throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = SNAPSHOT.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    latest = Math.max(latest, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return latest;
+    }
+
+    // Delete the files of other generations, and temporary files of unfinished checkpoints
+    private static void deleteStale(Path directory, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher snapshot = SNAPSHOT.matcher(name);
+                Matcher log = LOG.matcher(name);
+                if ((snapshot.matches() && Long.parseLong(snapshot.group(1)) != generation)
+                        || (log.matches() && Long.parseLong(log.group(1)) != generation)
+                        || (name.startsWith("snapshot-") && name.endsWith(".tmp"))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /*
+     * Recovery
+     */
+
+    // Apply the intact records of a log to graph; return the position after the last one,
+    // writing a header first if the log is new or was cut short before its header was complete
+    private static long replay(FileChannel log, CountingGraph<String> graph, Path file) throws IOException {
+        LogReader in = new LogReader(log);
+        if (!in.fill(HEADER_BYTES)) {
+            writeHeader(log);
+            return HEADER_BYTES;
+        }
+        if (in.buffer.getInt() != MAGIC) {
+            throw new IOException("not a graph log: " + file);
+        }
+        int version = in.buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported graph log version " + version + ": " + file);
+        }
+        long position = HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        while (in.fill(RECORD_HEADER_BYTES)) {
+            int length = in.buffer.getInt(in.buffer.position());
+            int checksum = in.buffer.getInt(in.buffer.position() + 4);
+            if (length <= 0 || length > log.size() - position - RECORD_HEADER_BYTES) {
+                break;
+            }
+            in.buffer.position(in.buffer.position() + RECORD_HEADER_BYTES);
+            if (!in.fill(length)) {
+                break;
+            }
+            ByteBuffer payload = in.buffer.slice().limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(payload, graph, file);
+            in.buffer.position(in.buffer.position() + length);
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    // Apply one intact record; a record that does not decode is corruption, not a torn write
+    private static void apply(ByteBuffer payload, CountingGraph<String> graph, Path file) throws IOException {
+        try {
+            byte operation = payload.get();
+            String source = string(payload);
+            switch (operation) {
+            case ADD:
+                graph.add(source);
+                break;
+            case REMOVE:
+                graph.remove(source);
+                break;
+            case SET:
+                graph.set(source, string(payload), varint(payload));
+                break;
+            case INCREMENT:
+                graph.increment(source, string(payload), unzigzag(varint(payload)));
+                break;
+            default:
+                throw new IOException("unknown operation " + operation + " in graph log: " + file);
+            }
+            if (payload.hasRemaining()) {
+                throw new IOException("trailing bytes in graph log record: " + file);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("malformed record in graph log: " + file, e);
+        }
+    }
+
+    private static int varint(ByteBuffer bytes) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+            byte b = bytes.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in graph log");
+    }
+
+    private static String string(ByteBuffer bytes) throws IOException {
+        int length = varint(bytes);
+        if (length < 0 || length > bytes.remaining()) {
+            throw new IOException("string runs past end of graph log record");
+        }
+        String text = new String(bytes.array(), bytes.arrayOffset() + bytes.position(), length,
+                StandardCharsets.UTF_8);
+        bytes.position(bytes.position() + length);
+        return text;
+    }
+
+    /**
+     * Reads a log through a window that is refilled as it is consumed.
+     */
+    private static final class LogReader {
+        private final FileChannel channel;
+        private long position = 0;
+        ByteBuffer buffer = newBuffer(READ_BUFFER_BYTES).limit(0);
+
+        LogReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        // Make at least the given number of bytes available; false if the log ends first
+        boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = newBuffer(Math.max(bytes, buffer.capacity() * 2)).put(buffer).flip();
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+    }
+
+    private static void writeHeader(FileChannel log) throws IOException {
+        ByteBuffer header = newBuffer(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+        log.truncate(0);
+        while (header.hasRemaining()) {
+            log.write(header, HEADER_BYTES - header.remaining());
+        }
+        log.force(false);
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Logging
+     */
+
+    // Fail if the graph can no longer be changed; caller holds lock
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("graph is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("graph log failed; reopen the graph to recover", failure);
+        }
+    }
+
+    // Append one record to pending; return whether pending should be written out.
+    // Caller holds lock, and has already applied the mutation.
+    private boolean record(byte operation, String source, String target, int value) {
+        byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+        byte[] targetBytes = target == null ? null : target.getBytes(StandardCharsets.UTF_8);
+        int bound = RECORD_HEADER_BYTES + 1 + 3 * MAX_VARINT_BYTES + sourceBytes.length
+                + (targetBytes == null ? 0 : targetBytes.length);
+        if (pending.remaining() < bound) {
+            pending = newBuffer(Math.max(pending.capacity() * 2, pending.position() + bound)).put(pending.flip());
+        }
+        int start = pending.position();
+        pending.position(start + RECORD_HEADER_BYTES);
+        pending.put(operation);
+        putString(sourceBytes);
+        if (targetBytes != null) {
+            putString(targetBytes);
+            putVarint(operation == INCREMENT ? zigzag(value) : value);
+        }
+        int length = pending.position() - start - RECORD_HEADER_BYTES;
+        crc.reset();
+        crc.update(pending.array(), start + RECORD_HEADER_BYTES, length);
+        pending.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+        appended += RECORD_HEADER_BYTES + length;
+        return appended - written >= WRITE_BEHIND_BYTES;
+    }
+
+    private void putString(byte[] bytes) {
+        putVarint(bytes.length);
+        pending.put(bytes);
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            pending.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        pending.put((byte) value);
+    }
+
+    // Map signed deltas to unsigned, so small negative deltas stay short
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Write out a full pending buffer on behalf of a mutator, without forcing it
+    private void writeBehind() {
+        try {
+            synchronized (ioLock) {
+                write();
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw new UncheckedIOException("graph log failed; reopen the graph to recover", e);
+        }
+    }
+
+    // Write out everything appended so far; caller holds ioLock but not lock
+    private void write() throws IOException {
+        long end;
+        synchronized (lock) {
+            ByteBuffer batch = pending;
+            pending = spare;
+            spare = batch;
+            end = appended;
+        }
+        spare.flip();
+        while (spare.hasRemaining()) {
+            log.write(spare);
+        }
+        spare.clear();
+        written = end;
+    }
+
+    private void fail(IOException e) {
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Make every mutation that completed before this call durable. Callers
+     * that sync at the same time share the work of forcing the log.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+            target = appended;
+        }
+        synchronized (ioLock) {
+            if (durable >= target) {
+                // another sync forced our records along with its own
+                return;
+            }
+            try {
+                write();
+                log.force(false);
+                durable = written;
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot of the graph and start an empty log. Mutators wait
+     * until the checkpoint is done.
+     *
+     * @throws IOException if the snapshot or new log cannot be written
+     */
+    public void checkpoint() throws IOException {
+        synchronized (ioLock) {
+            synchronized (lock) {
+                checkWritable();
+                try {
+                    long next = generation + 1;
+                    // saved through a forced temporary file, renamed into place
+                    GraphFile.save(graph, snapshotFile(directory, next));
+                    FileChannel nextLog = FileChannel.open(logFile(directory, next),
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    writeHeader(nextLog);
+                    nextLog.position(HEADER_BYTES);
+                    forceDirectory();
+                    // the new snapshot holds every record, so pending is not needed any more
+                    pending.clear();
+                    log.close();
+                    log = nextLog;
+                    generation = next;
+                    logStart = written = durable = appended;
+                    deleteStale(directory, generation);
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+                if (graph instanceof OverlayGraph) {
+                    ((OverlayGraph<String>) graph).compact();
+                }
+            }
+        }
+    }
+
+    // Make the renamed snapshot durable where the platform allows syncing a directory
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on this platform; the rename becomes durable when the OS gets to it
+        }
+    }
+
+    // Run by the committer thread every sync interval
+    private void commit() {
+        try {
+            sync();
+            boolean large;
+            synchronized (lock) {
+                large = !closed && appended - logStart >= checkpointBytes;
+            }
+            if (large) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (IllegalStateException | UncheckedIOException e) {
+            // closed or failed since the size check; failure is already recorded
+        }
+    }
+
+    /**
+     * @return number of bytes of records in the current log, written or not
+     */
+    public long logBytes() {
+        synchronized (lock) {
+            return appended - logStart;
+        }
+    }
+
+    /**
+     * Sync the log and release its files. Mutators throw
+     * IllegalStateException afterwards; observers still work.
+     *
+     * @throws IOException if the log cannot be written, or an earlier write
+     *         to it failed
+     */
+    @Override public void close() throws IOException {
+        committer.shutdown();
+        boolean interrupted = false;
+        while (!committer.isTerminated()) {
+            try {
+                committer.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+                write();
+                log.force(false);
+                durable = written;
+            } finally {
+                log.close();
+            }
+        }
+    }
+
+    /*
+     * Graph operations
+     */
+
+    @Override public boolean add(String vertex) {
+        boolean added;
+        boolean full = false;
+        synchronized (lock) {
+            checkWritable();
+            added = graph.add(vertex);
+            if (added) {
+                full = record(ADD, vertex, null, 0);
+            }
+        }
+        if (full) {
+            writeBehind();
+        }
+        return added;
+    }
+
+    @Override public int set(String source, String target, int weight) {
+        int previousWeight;
+        boolean full;
+        synchronized (lock) {
+            checkWritable();
+            previousWeight = graph.set(source, target, weight);
+            full = record(SET, source, target, weight);
+        }
+        if (full) {
+            writeBehind();
+        }
+        return previousWeight;
+    }
+
+    @Override public int increment(String source, String target, int delta) {
+        int weight;
+        boolean full;
+        synchronized (lock) {
+            checkWritable();
+            weight = graph.increment(source, target, delta);
+            full = record(INCREMENT, source, target, delta);
+        }
+        if (full) {
+            writeBehind();
+        }
+        return weight;
+    }
+
+    @Override public boolean remove(String vertex) {
+        boolean removed;
+        boolean full = false;
+        synchronized (lock) {
+            checkWritable();
+            removed = graph.remove(vertex);
+            if (removed) {
+                full = record(REMOVE, vertex, null, 0);
+            }
+        }
+        if (full) {
+            writeBehind();
+        }
+        return removed;
+    }
+
+    @Override public Set<String> vertices() {
+        synchronized (lock) {
+            return graph.vertices();
+        }
+    }
+
+    @Override public Map<String, Integer> sources(String target) {
+        synchronized (lock) {
+            return graph.sources(target);
+        }
+    }
+
+    @Override public Map<String, Integer> targets(String source) {
+        synchronized (lock) {
+            return graph.targets(source);
+        }
+    }
+
+    @Override public String toString() {
+        synchronized (lock) {
+            return graph.toString();
+        }
+    }
+}
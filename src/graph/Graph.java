@@ -26,7 +26,18 @@ public interface Graph<L> {
      * @return a new empty weighted directed graph
      */
     public static <L> Graph<L> empty() {
-        throw new RuntimeException("not implemented");
+        return new DenseGraph<>();
+    }
+    
+    /**
+     * Start building an empty graph whose implementation is chosen and sized
+     * for a declared workload.
+     * 
+     * @return a builder for a small graph used by one thread, until told
+     *         otherwise
+     */
+    public static GraphBuilder builder() {
+        return new GraphBuilder();
     }
     
     /**
@@ -0,0 +1,111 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+/**
+ * Builds an empty graph, choosing and sizing its implementation for a
+ * declared workload. Start from {@link Graph#builder()}:
+ * {@code Graph.builder().expectedVertices(n).expectedEdges(m).concurrent(true).build()}.
+ *
+ * <p>The choice:
+ * <ul>
+ * <li>for one thread, a {@link DenseGraph}, pre-sized for the expected
+ *     vertices and edges; its views already read without copying, so
+ *     readMostly() does not change the choice;
+ * <li>for concurrent writers, a {@link ConcurrentGraph}, whose vertex table is
+ *     pre-sized, and whose reads never block;
+ * <li>for concurrent use that is read-mostly, a {@link VersionedGraph}, whose
+ *     readers take lock-free snapshots while writes copy a path of its tries.
+ *     Persistent tries have nothing to pre-size.
+ * </ul>
+ * Every graph built is a CountingGraph. The expected sizes are hints: graphs
+ * grow past them as needed.
+ */
+public final class GraphBuilder {
+
+    private int expectedVertices = 0;
+    private long expectedEdges = 0;
+    private boolean concurrent = false;
+    private boolean readMostly = false;
+
+    // Abstraction function:
+    //   AF(expectedVertices, ...) = a workload of about expectedVertices vertices and
+    //     expectedEdges edges, used by many threads at once iff concurrent, and read far
+    //     more often than written iff readMostly
+    // Representation invariant:
+    //   - expectedVertices >= 0 and expectedEdges >= 0
+    // Safety from rep exposure:
+    //   - All fields are private and immutable values.
+
+    /**
+     * Create a builder for a small graph used by one thread; use
+     * {@link Graph#builder()}.
+     */
+    GraphBuilder() {
+    }
+
+    /**
+     * @param vertices number of vertices the graph is expected to reach, >= 0
+     * @return this builder
+     */
+    public GraphBuilder expectedVertices(int vertices) {
+        if (vertices < 0) {
+            throw new IllegalArgumentException("negative expected vertices: " + vertices);
+        }
+        this.expectedVertices = vertices;
+        return this;
+    }
+
+    /**
+     * @param edges number of edges the graph is expected to reach, >= 0
+     * @return this builder
+     */
+    public GraphBuilder expectedEdges(long edges) {
+        if (edges < 0) {
+            throw new IllegalArgumentException("negative expected edges: " + edges);
+        }
+        this.expectedEdges = edges;
+        return this;
+    }
+
+    /**
+     * @param concurrent true iff the graph will be used by many threads at once
+     * @return this builder
+     */
+    public GraphBuilder concurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+        return this;
+    }
+
+    /**
+     * @param readMostly true iff the graph will be read far more often than written
+     * @return this builder
+     */
+    public GraphBuilder readMostly(boolean readMostly) {
+        this.readMostly = readMostly;
+        return this;
+    }
+
+    /**
+     * Create an empty graph for the declared workload.
+     *
+     * @param <L> type of vertex labels in the graph, must be immutable
+     * @return a new empty graph, safe for concurrent use if concurrent(true)
+     *         was declared
+     */
+    public <L> CountingGraph<L> build() {
+        if (!concurrent) {
+            return new DenseGraph<>(expectedVertices, expectedEdges);
+        } else if (readMostly) {
+            return new VersionedGraph<>();
+        } else {
+            return new ConcurrentGraph<>(ConcurrentGraph.DEFAULT_STRIPES, expectedVertices);
+        }
+    }
+
+    @Override public String toString() {
+        return "GraphBuilder(" + expectedVertices + " vertices, " + expectedEdges + " edges"
+                + (concurrent ? ", concurrent" : "") + (readMostly ? ", read-mostly" : "") + ")";
+    }
+}
@@ -0,0 +1,425 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * A word graph saved in a compact binary file, with an optional display
+ * name for each vertex.
+ *
+ * <p>The file is little-endian:
+ * <pre>
+ *   magic "GPHG", format version (int32)
+ *   vertex count n, edge count m                             (varints)
+ *   n labels: byte length, UTF-8 bytes                       (varint, bytes)
+ *   display name count k, then k of: vertex id, byte length, UTF-8 bytes
+ *   n rows: out-degree d, then d of: zigzag(target - previous target), weight
+ *   CRC-32C of everything above                              (int32)
+ * </pre>
+ * <p>Varints are unsigned LEB128. Vertex ids are positions in the label
+ * table, and a row's "previous target" starts at 0. Rows keep the
+ * iteration order of the saved graph's targets(), so ties broken by
+ * first-seen target break the same way after loading.
+ *
+ * <p>Loading maps the file, verifies the checksum, and decodes straight
+ * into the arrays of a CsrGraph, with no intermediate graph.
+ *
+ * <p>Saving writes a sibling file named with a ".tmp" suffix, forces it to
+ * the device, and renames it over the target atomically, so a failed or
+ * interrupted save leaves any previous file intact.
+ */
+public final class GraphFile {
+
+    private static final int MAGIC = 'G' | 'P' << 8 | 'H' << 16 | 'G' << 24;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int CHECKSUM_BYTES = 4;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+    // Largest encoding of an int varint
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private final CsrGraph<String> graph;
+    private final Map<String, String> displayNames;
+
+    // Abstraction function:
+    //   AF(graph, displayNames) = the contents of a graph file: the word graph 'graph', where
+    //     each vertex v is displayed as displayNames.get(v) if present, else as v itself.
+    // Representation invariant:
+    //   - every key of displayNames is a vertex of graph, and maps to a different string
+    // Safety from rep exposure:
+    //   - graph is immutable; displayNames is returned as an unmodifiable view.
+
+    private GraphFile(CsrGraph<String> graph, Map<String, String> displayNames) {
+        this.graph = graph;
+        this.displayNames = displayNames;
+        checkRep();
+    }
+
+    private void checkRep() {
+        for (Map.Entry<String, String> name : displayNames.entrySet()) {
+            assert graph.id(name.getKey()) >= 0 : "Display name of a missing vertex";
+            assert !name.getKey().equals(name.getValue()) : "Redundant display name";
+        }
+    }
+
+    /**
+     * @return the graph read from the file
+     */
+    public CsrGraph<String> graph() {
+        return graph;
+    }
+
+    /**
+     * @return unmodifiable map from each vertex that has a display name
+     *         different from its label to that name
+     */
+    public Map<String, String> displayNames() {
+        return Collections.unmodifiableMap(displayNames);
+    }
+
+    /**
+     * Save a graph without display names.
+     *
+     * @param graph graph to save; it is only read
+     * @param file file to write, atomically replacing any existing file
+     * @throws IOException if the file cannot be written; any existing file is
+     *         then unchanged
+     */
+    public static void save(Graph<String> graph, Path file) throws IOException {
+        save(graph, Collections.emptyMap(), file);
+    }
+
+    /**
+     * Save a graph with display names.
+     *
+     * @param graph graph to save; it is only read
+     * @param displayNames map from vertices to the names to display them by;
+     *                     entries for other strings, or equal to their key,
+     *                     are not saved
+     * @param file file to write, atomically replacing any existing file
+     * @throws IOException if the file cannot be written; any existing file is
+     *         then unchanged
+     */
+    public static void save(Graph<String> graph, Map<String, String> displayNames, Path file) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        String[] labels = graph.vertices().toArray(new String[0]);
+        for (int id = 0; id < labels.length; id++) {
+            ids.put(labels[id], id);
+        }
+        long edges = 0;
+        for (String label : labels) {
+            edges += targets(graph, label).size();
+        }
+        int names = 0;
+        for (String label : labels) {
+            String name = displayNames.get(label);
+            if (name != null && !name.equals(label)) {
+                names++;
+            }
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = new Writer(temporary)) {
+            out.buffer.putInt(MAGIC).putInt(VERSION);
+            out.varint(labels.length);
+            out.varint(Math.toIntExact(edges));
+            for (String label : labels) {
+                out.string(label);
+            }
+            out.varint(names);
+            for (int id = 0; id < labels.length; id++) {
+                String name = displayNames.get(labels[id]);
+                if (name != null && !name.equals(labels[id])) {
+                    out.varint(id);
+                    out.string(name);
+                }
+            }
+            for (String label : labels) {
+                Map<String, Integer> row = targets(graph, label);
+                out.varint(row.size());
+                int previous = 0;
+                for (Map.Entry<String, Integer> edge : row.entrySet()) {
+                    int target = ids.get(edge.getKey());
+                    out.varint(zigzag(target - previous));
+                    out.varint(edge.getValue());
+                    previous = target;
+                }
+            }
+            out.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    // Rows are only read here, so use views when the graph offers them
+    private static Map<String, Integer> targets(Graph<String> graph, String label) {
+        return graph instanceof ViewableGraph ? ((ViewableGraph<String>) graph).targetsView(label) : graph.targets(label);
+    }
+
+    /**
+     * Load a graph file.
+     *
+     * @param file file written by save()
+     * @return the graph and display names saved in the file
+     * @throws IOException if the file cannot be read, or is not a valid graph
+     *         file (wrong format version, failed checksum, or inconsistent
+     *         contents)
+     */
+    public static GraphFile load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("graph file too large: " + size + " bytes");
+            }
+            if (size < HEADER_BYTES + CHECKSUM_BYTES) {
+                throw new IOException("not a graph file: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer bytes = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (bytes.getInt(0) != MAGIC) {
+                throw new IOException("not a graph file: " + file);
+            }
+            if (bytes.getInt(4) != VERSION) {
+                throw new IOException("unsupported graph file version " + bytes.getInt(4) + ": " + file);
+            }
+            int end = (int) size - CHECKSUM_BYTES;
+            CRC32C crc = new CRC32C();
+            crc.update(bytes.duplicate().limit(end));
+            if ((int) crc.getValue() != bytes.getInt(end)) {
+                throw new IOException("graph file checksum mismatch: " + file);
+            }
+            bytes.position(HEADER_BYTES).limit(end);
+            try {
+                GraphFile loaded = decode(bytes);
+                if (bytes.hasRemaining()) {
+                    throw new IOException("trailing bytes in graph file: " + file);
+                }
+                return loaded;
+            } catch (BufferUnderflowException e) {
+                throw new IOException("truncated graph file: " + file, e);
+            }
+        }
+    }
+
+    // Decode the body of a graph file, from the vertex count up to the checksum
+    private static GraphFile decode(ByteBuffer bytes) throws IOException {
+        Decoder in = new Decoder(bytes);
+        int n = in.varint();
+        int m = in.varint();
+        Object[] labels = new Object[n];
+        Map<String, Integer> ids = new HashMap<>(n * 4 / 3 + 1);
+        for (int id = 0; id < n; id++) {
+            String label = in.string();
+            labels[id] = label;
+            if (ids.put(label, id) != null) {
+                throw new IOException("duplicate vertex in graph file: " + label);
+            }
+        }
+        int names = in.varint();
+        Map<String, String> displayNames = new HashMap<>(names * 4 / 3 + 1);
+        for (int i = 0; i < names; i++) {
+            String label = (String) labels[in.vertex(n)];
+            String name = in.string();
+            if (name.equals(label) || displayNames.put(label, name) != null) {
+                throw new IOException("redundant display name in graph file: " + label);
+            }
+        }
+        int[] outOffsets = new int[n + 1];
+        int[] outTargets = new int[m];
+        int[] outWeights = new int[m];
+        // in-degrees are counted into inOffsets[t + 1], then summed in place
+        int[] inOffsets = new int[n + 1];
+        int e = 0;
+        for (int s = 0; s < n; s++) {
+            int degree = in.varint();
+            if (degree > m - e) {
+                throw new IOException("more edges than declared in graph file");
+            }
+            int target = 0;
+            for (int end = e + degree; e < end; e++) {
+                target += unzigzag(in.varint());
+                if (target < 0 || target >= n) {
+                    throw new IOException("vertex id out of range in graph file: " + target);
+                }
+                int weight = in.varint();
+                if (weight <= 0) {
+                    throw new IOException("nonpositive weight in graph file: " + weight);
+                }
+                outTargets[e] = target;
+                outWeights[e] = weight;
+                inOffsets[target + 1]++;
+            }
+            outOffsets[s + 1] = e;
+        }
+        if (e != m) {
+            throw new IOException("fewer edges than declared in graph file");
+        }
+        for (int t = 0; t < n; t++) {
+            inOffsets[t + 1] += inOffsets[t];
+        }
+        // Reverse table by counting sort; visiting sources in id order sorts each row,
+        // so a repeated edge shows up as the same source twice in a row
+        int[] next = Arrays.copyOf(inOffsets, n);
+        int[] inSources = new int[m];
+        int[] inWeights = new int[m];
+        for (int s = 0; s < n; s++) {
+            for (int edge = outOffsets[s]; edge < outOffsets[s + 1]; edge++) {
+                int t = outTargets[edge];
+                int slot = next[t]++;
+                if (slot > inOffsets[t] && inSources[slot - 1] == s) {
+                    throw new IOException("duplicate edge in graph file: " + labels[s] + " -> " + labels[t]);
+                }
+                inSources[slot] = s;
+                inWeights[slot] = outWeights[edge];
+            }
+        }
+        CsrGraph<String> graph = new CsrGraph<>(labels, ids,
+                outOffsets, outTargets, outWeights, inOffsets, inSources, inWeights);
+        return new GraphFile(graph, displayNames);
+    }
+
+    // Map signed deltas to unsigned, so small negative deltas stay short
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads varints and strings from a graph file body.
+     */
+    private static final class Decoder {
+        private final ByteBuffer bytes;
+        // reused for every string, grown as needed
+        private byte[] scratch = new byte[64];
+
+        Decoder(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+                byte b = bytes.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint in graph file");
+        }
+
+        int vertex(int n) throws IOException {
+            int id = varint();
+            if (id < 0 || id >= n) {
+                throw new IOException("vertex id out of range in graph file: " + id);
+            }
+            return id;
+        }
+
+        String string() throws IOException {
+            int length = varint();
+            if (length < 0 || length > bytes.remaining()) {
+                throw new IOException("string runs past end of graph file");
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            bytes.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes varints and strings to a file through one buffer, keeping a
+     * running checksum of everything written.
+     */
+    private static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+
+        Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        void varint(int value) throws IOException {
+            ensure(MAX_VARINT_BYTES);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void string(String text) throws IOException {
+            byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+            varint(encoded.length);
+            for (int offset = 0; offset < encoded.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), encoded.length - offset);
+                buffer.put(encoded, offset, length);
+                offset += length;
+            }
+        }
+
+        // Write out the rest of the buffer, then the checksum of everything written, and force it all out
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            write();
+            channel.force(true);
+        }
+
+        // Make room for the given number of bytes, writing out the buffer if needed
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            write();
+        }
+
+        private void write() throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
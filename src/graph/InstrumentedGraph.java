@@ -0,0 +1,315 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A graph that passes every operation on to another graph, recording a
+ * sample of the calls in a LatencyHistogram per operation.
+ *
+ * <p>The histograms record add, set, increment, remove, sources and targets;
+ * the views count as the operation they view. vertices() is not recorded.
+ * Recording allocates nothing, and only one call in sampleEvery reads the
+ * clock or updates a histogram, so the overhead stays small even for
+ * operations of tens of nanoseconds.
+ *
+ * <p>An InstrumentedGraph is its own MXBean: register it with an MBeanServer
+ * to read its histograms and the size of the graph over JMX. The four size
+ * attributes come from one walk of the whole graph, under the given read
+ * lock, if any, which is kept until a write is made through this graph or
+ * it is MAX_SIZE_AGE_NANOS old; so polling them walks the graph at most
+ * once per write, and writes made to the wrapped graph other than through
+ * this one are seen within that age.
+ *
+ * <p>increment() is passed on if the wrapped graph is a CountingGraph, and
+ * otherwise done with targets() and set(); the views are passed on if it is
+ * a ViewableGraph, and otherwise are unmodifiable copies. Safe for
+ * concurrent use if the wrapped graph is.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class InstrumentedGraph<L> implements CountingGraph<L>, ViewableGraph<L>, InstrumentedGraphMXBean {
+
+    /** One call in this many is recorded, by default. */
+    public static final int DEFAULT_SAMPLE_EVERY = 64;
+
+    /** The size attributes are recomputed once they are this old, even if nothing was written through this graph. */
+    public static final long MAX_SIZE_AGE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Graph<L> graph;
+    private final Lock readLock;
+    private final LatencyHistogram add;
+    private final LatencyHistogram set;
+    private final LatencyHistogram increment;
+    private final LatencyHistogram remove;
+    private final LatencyHistogram sources;
+    private final LatencyHistogram targets;
+    // Size from the last walk of graph, or null before the first
+    private volatile Size size = null;
+    // Whether a write has been made through this graph since size was computed
+    private volatile boolean written = false;
+
+    // Abstraction function:
+    //   AF(graph, add, ...) = the graph 'graph', with the calls of each operation on it
+    //     recorded in the histogram named after the operation
+    // Representation invariant:
+    //   - true; graph is checked by its own checkRep
+    // Safety from rep exposure:
+    //   - All fields are private; observers return what graph returns, which it does not
+    //     share, or unmodifiable views.
+    // Thread safety argument:
+    //   - histograms are thread-safe, size and written are volatile, and every other field is
+    //     final; operations on graph are as safe as graph's own
+    //   - size is only computed in synchronized refreshSize(), which clears written before it
+    //     walks, so a write that ends during the walk leaves it set, for the next read to see
+
+    /**
+     * Vertex count, edge count, max out-degree and max in-degree of the
+     * graph, from one walk of it. Immutable.
+     */
+    private static final class Size {
+        final int vertices;
+        final long edges;
+        final int maxOut;
+        final int maxIn;
+        // System.nanoTime() when the walk started
+        final long computedAt;
+
+        Size(int vertices, long edges, int maxOut, int maxIn, long computedAt) {
+            this.vertices = vertices;
+            this.edges = edges;
+            this.maxOut = maxOut;
+            this.maxIn = maxIn;
+            this.computedAt = computedAt;
+        }
+    }
+
+    /**
+     * Record the operations on a graph, one call in DEFAULT_SAMPLE_EVERY,
+     * reading its size without a lock.
+     *
+     * @param graph graph to pass operations on to
+     */
+    public InstrumentedGraph(Graph<L> graph) {
+        this(graph, DEFAULT_SAMPLE_EVERY, null);
+    }
+
+    /**
+     * Record the operations on a graph.
+     *
+     * @param graph graph to pass operations on to
+     * @param sampleEvery record one call in this many, >= 1; 1 records every
+     *                    call, so counts are exact
+     * @param readLock lock to hold while the size attributes walk graph, or
+     *                 null if graph may be read concurrently with its writers
+     */
+    public InstrumentedGraph(Graph<L> graph, int sampleEvery, Lock readLock) {
+        this.graph = graph;
+        this.readLock = readLock;
+        this.add = new LatencyHistogram(sampleEvery);
+        this.set = new LatencyHistogram(sampleEvery);
+        this.increment = new LatencyHistogram(sampleEvery);
+        this.remove = new LatencyHistogram(sampleEvery);
+        this.sources = new LatencyHistogram(sampleEvery);
+        this.targets = new LatencyHistogram(sampleEvery);
+    }
+
+    @Override public boolean add(L vertex) {
+        long start = add.start();
+        boolean added = graph.add(vertex);
+        add.stop(start);
+        written();
+        return added;
+    }
+
+    @Override public int set(L source, L target, int weight) {
+        long start = set.start();
+        int previous = graph.set(source, target, weight);
+        set.stop(start);
+        written();
+        return previous;
+    }
+
+    @Override public int increment(L source, L target, int delta) {
+        long start = increment.start();
+        int weight;
+        if (graph instanceof CountingGraph) {
+            weight = ((CountingGraph<L>) graph).increment(source, target, delta);
+        } else {
+            weight = Math.addExact(graph.targets(source).getOrDefault(target, 0), delta);
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight " + weight);
+            }
+            graph.set(source, target, weight);
+        }
+        increment.stop(start);
+        written();
+        return weight;
+    }
+
+    @Override public boolean remove(L vertex) {
+        long start = remove.start();
+        boolean removed = graph.remove(vertex);
+        remove.stop(start);
+        written();
+        return removed;
+    }
+
+    @Override public Set<L> vertices() {
+        return graph.vertices();
+    }
+
+    @Override public Map<L, Integer> sources(L target) {
+        long start = sources.start();
+        Map<L, Integer> result = graph.sources(target);
+        sources.stop(start);
+        return result;
+    }
+
+    @Override public Map<L, Integer> targets(L source) {
+        long start = targets.start();
+        Map<L, Integer> result = graph.targets(source);
+        targets.stop(start);
+        return result;
+    }
+
+    @Override public Set<L> verticesView() {
+        return graph instanceof ViewableGraph
+                ? ((ViewableGraph<L>) graph).verticesView()
+                : Collections.unmodifiableSet(graph.vertices());
+    }
+
+    @Override public Map<L, Integer> sourcesView(L target) {
+        long start = sources.start();
+        Map<L, Integer> result = graph instanceof ViewableGraph
+                ? ((ViewableGraph<L>) graph).sourcesView(target)
+                : Collections.unmodifiableMap(graph.sources(target));
+        sources.stop(start);
+        return result;
+    }
+
+    @Override public Map<L, Integer> targetsView(L source) {
+        long start = targets.start();
+        Map<L, Integer> result = graph instanceof ViewableGraph
+                ? ((ViewableGraph<L>) graph).targetsView(source)
+                : Collections.unmodifiableMap(graph.targets(source));
+        targets.stop(start);
+        return result;
+    }
+
+    @Override public LatencyHistogram.Summary getAdd() {
+        return add.summary();
+    }
+
+    @Override public LatencyHistogram.Summary getSet() {
+        return set.summary();
+    }
+
+    @Override public LatencyHistogram.Summary getIncrement() {
+        return increment.summary();
+    }
+
+    @Override public LatencyHistogram.Summary getRemove() {
+        return remove.summary();
+    }
+
+    @Override public LatencyHistogram.Summary getSources() {
+        return sources.summary();
+    }
+
+    @Override public LatencyHistogram.Summary getTargets() {
+        return targets.summary();
+    }
+
+    // Read the wrapped graph's vertices and rows, bypassing the histograms
+    private Set<L> unrecordedVertices() {
+        return graph instanceof ViewableGraph ? ((ViewableGraph<L>) graph).verticesView() : graph.vertices();
+    }
+
+    private Map<L, Integer> unrecordedTargets(L source) {
+        return graph instanceof ViewableGraph ? ((ViewableGraph<L>) graph).targetsView(source) : graph.targets(source);
+    }
+
+    // Mark the size out of date; a volatile read, unless it was up to date
+    private void written() {
+        if (!written) {
+            written = true;
+        }
+    }
+
+    // The size, walking the graph again if it is out of date
+    private Size size() {
+        Size current = size;
+        if (current != null && !written && System.nanoTime() - current.computedAt < MAX_SIZE_AGE_NANOS) {
+            return current;
+        }
+        return refreshSize();
+    }
+
+    // Walk the graph once; polls that arrive meanwhile wait and share the result
+    private synchronized Size refreshSize() {
+        Size current = size;
+        if (current != null && !written && System.nanoTime() - current.computedAt < MAX_SIZE_AGE_NANOS) {
+            return current;
+        }
+        written = false;
+        long start = System.nanoTime();
+        if (readLock != null) {
+            readLock.lock();
+        }
+        try {
+            Set<L> vertices = unrecordedVertices();
+            // copied rows are not worth making for their sizes, so count sources unless there are views
+            Map<L, Integer> inDegrees = graph instanceof ViewableGraph ? null : new HashMap<>();
+            long edges = 0;
+            int maxOut = 0;
+            int maxIn = 0;
+            for (L vertex : vertices) {
+                Map<L, Integer> out = unrecordedTargets(vertex);
+                edges += out.size();
+                maxOut = Math.max(maxOut, out.size());
+                if (inDegrees == null) {
+                    maxIn = Math.max(maxIn, ((ViewableGraph<L>) graph).sourcesView(vertex).size());
+                } else {
+                    for (L target : out.keySet()) {
+                        maxIn = Math.max(maxIn, inDegrees.merge(target, 1, Integer::sum));
+                    }
+                }
+            }
+            current = new Size(vertices.size(), edges, maxOut, maxIn, start);
+        } finally {
+            if (readLock != null) {
+                readLock.unlock();
+            }
+        }
+        size = current;
+        return current;
+    }
+
+    @Override public int getVertexCount() {
+        return size().vertices;
+    }
+
+    @Override public long getEdgeCount() {
+        return size().edges;
+    }
+
+    @Override public int getMaxOutDegree() {
+        return size().maxOut;
+    }
+
+    @Override public int getMaxInDegree() {
+        return size().maxIn;
+    }
+
+    @Override public String toString() {
+        return graph.toString();
+    }
+}
@@ -0,0 +1,41 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+/**
+ * The management interface of an InstrumentedGraph: calls and latencies of
+ * each operation on the graph, and the size of the graph.
+ */
+public interface InstrumentedGraphMXBean {
+
+    /** @return calls and latencies of add() */
+    public LatencyHistogram.Summary getAdd();
+
+    /** @return calls and latencies of set() */
+    public LatencyHistogram.Summary getSet();
+
+    /** @return calls and latencies of increment() */
+    public LatencyHistogram.Summary getIncrement();
+
+    /** @return calls and latencies of remove() */
+    public LatencyHistogram.Summary getRemove();
+
+    /** @return calls and latencies of sources() and sourcesView() */
+    public LatencyHistogram.Summary getSources();
+
+    /** @return calls and latencies of targets() and targetsView() */
+    public LatencyHistogram.Summary getTargets();
+
+    /** @return number of vertices in the graph */
+    public int getVertexCount();
+
+    /** @return number of edges in the graph */
+    public long getEdgeCount();
+
+    /** @return greatest number of targets of any vertex, or 0 if there are no edges */
+    public int getMaxOutDegree();
+
+    /** @return greatest number of sources of any vertex, or 0 if there are no edges */
+    public int getMaxInDegree();
+}
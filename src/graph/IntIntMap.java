@@ -0,0 +1,314 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * A map from int keys to nonzero int values, with no boxing.
+ *
+ * <p>Entries are stored densely in insertion order, so they can be visited
+ * with a positional cursor: {@code for (int i = 0; i < map.size(); i++)}
+ * reading {@link #keyAt(int)} and {@link #valueAt(int)}. Removing an entry
+ * moves the last entry into its position, so insertion order is kept only
+ * up to removals. Small maps are searched linearly; larger maps add an
+ * open-addressing (linear probing) index of positions.
+ *
+ * <p>Instances are read-only outside this package. Maps handed out by a
+ * graph are live views of that graph's adjacency.
+ */
+public final class IntIntMap {
+
+    // Maps up to this size have no hash index
+    static final int LINEAR_LIMIT = 16;
+
+    /** An empty map, shared. */
+    static final IntIntMap EMPTY = new IntIntMap(0);
+
+    // Key of entry i at entries[2i], its value at entries[2i + 1]
+    private int[] entries;
+    private int size;
+    // Open-addressing index: position + 1 of the entry in that slot, 0 if
+    // the slot is free; null while size <= LINEAR_LIMIT
+    private int[] slots;
+
+    // Abstraction function:
+    //   AF(entries, size) = { entries[2i] -> entries[2i + 1] | 0 <= i < size }
+    // Representation invariant:
+    //   - the keys entries[2i] for 0 <= i < size are distinct, and their values are nonzero
+    //   - slots == null iff size <= LINEAR_LIMIT
+    //   - if slots != null, slots.length is a power of two, size <= 3/4 slots.length,
+    //     every position in [0, size) appears exactly once in slots (as position + 1),
+    //     reachable by linear probing from the home slot of that position's key
+    // Safety from rep exposure:
+    //   - All fields are private; mutators are package-private and only graphs
+    //     in this package call them.
+    //   - Entries are observed only as ints.
+
+    /**
+     * Create an empty map.
+     *
+     * @param expectedSize number of entries to size the map for
+     */
+    IntIntMap(int expectedSize) {
+        entries = new int[2 * Math.max(expectedSize, 0)];
+    }
+
+    /**
+     * @return number of entries in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true iff this map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param position a position, 0 <= position < size()
+     * @return the key of the entry at that position
+     */
+    public int keyAt(int position) {
+        checkPosition(position);
+        return entries[2 * position];
+    }
+
+    /**
+     * @param position a position, 0 <= position < size()
+     * @return the value of the entry at that position
+     */
+    public int valueAt(int position) {
+        checkPosition(position);
+        return entries[2 * position + 1];
+    }
+
+    /**
+     * @param key a key
+     * @return the value for key, or 0 if there is no entry for key
+     */
+    public int get(int key) {
+        int position = find(key);
+        return position < 0 ? 0 : entries[2 * position + 1];
+    }
+
+    /**
+     * @param key a key
+     * @return true iff this map has an entry for key
+     */
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Set the value for a key; a value of 0 removes the entry.
+     *
+     * @param key a key
+     * @param value the new value
+     * @return the previous value for key, or 0 if there was none
+     */
+    int put(int key, int value) {
+        if (value == 0) {
+            return remove(key);
+        }
+        int position = find(key);
+        if (position >= 0) {
+            int previous = entries[2 * position + 1];
+            entries[2 * position + 1] = value;
+            return previous;
+        }
+        append(key, value);
+        return 0;
+    }
+
+    /**
+     * Add to the value for a key, creating or removing the entry as needed.
+     *
+     * @param key a key
+     * @param delta amount to add
+     * @return the new value for key
+     */
+    int add(int key, int delta) {
+        int position = find(key);
+        if (position < 0) {
+            if (delta != 0) {
+                append(key, delta);
+            }
+            return delta;
+        }
+        int value = entries[2 * position + 1] + delta;
+        if (value == 0) {
+            remove(key);
+        } else {
+            entries[2 * position + 1] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Remove the entry for a key.
+     *
+     * @param key a key
+     * @return the removed value, or 0 if there was no entry for key
+     */
+    int remove(int key) {
+        int position = find(key);
+        if (position < 0) {
+            return 0;
+        }
+        int previous = entries[2 * position + 1];
+        int last = size - 1;
+        if (slots != null) {
+            clearSlot(slotOf(position));
+            if (position != last) {
+                slots[slotOf(last)] = position + 1;
+            }
+        }
+        entries[2 * position] = entries[2 * last];
+        entries[2 * position + 1] = entries[2 * last + 1];
+        size = last;
+        if (slots != null && size <= LINEAR_LIMIT) {
+            slots = null;
+        }
+        checkRep();
+        return previous;
+    }
+
+    // Position of the entry for key, or -1 if absent
+    private int find(int key) {
+        if (slots == null) {
+            for (int i = 0; i < size; i++) {
+                if (entries[2 * i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int position = slots[slot] - 1;
+            if (entries[2 * position] == key) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    // Slot holding a position that is in the index
+    private int slotOf(int position) {
+        int mask = slots.length - 1;
+        int slot = hash(entries[2 * position]) & mask;
+        while (slots[slot] != position + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void append(int key, int value) {
+        if (2 * size == entries.length) {
+            // grow by half: adjacency is the bulk of a graph's heap
+            entries = Arrays.copyOf(entries, 2 * Math.max(2, size + (size >> 1)));
+        }
+        entries[2 * size] = key;
+        entries[2 * size + 1] = value;
+        size++;
+        if (slots != null) {
+            if (size * 4 > slots.length * 3) {
+                rehash(slots.length * 2);
+            } else {
+                insertSlot(size - 1);
+            }
+        } else if (size > LINEAR_LIMIT) {
+            rehash(tableSizeFor(size));
+        }
+        checkRep();
+    }
+
+    private void insertSlot(int position) {
+        int mask = slots.length - 1;
+        int slot = hash(entries[2 * position]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = position + 1;
+    }
+
+    // Backward-shift deletion, so lookups never need tombstones
+    private void clearSlot(int hole) {
+        int mask = slots.length - 1;
+        slots[hole] = 0;
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int home = hash(entries[2 * (slots[slot] - 1)]) & mask;
+            // move the entry back unless its home lies cyclically in (hole, slot]
+            boolean stays = hole <= slot ? (hole < home && home <= slot) : (hole < home || home <= slot);
+            if (!stays) {
+                slots[hole] = slots[slot];
+                slots[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private void rehash(int tableSize) {
+        slots = new int[tableSize];
+        for (int position = 0; position < size; position++) {
+            insertSlot(position);
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position " + position + " of " + size);
+        }
+    }
+
+    // Smallest power of two table that holds n entries at load <= 3/4
+    private static int tableSizeFor(int n) {
+        int tableSize = 16;
+        while (tableSize * 3 < n * 4) {
+            tableSize *= 2;
+        }
+        return tableSize;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // checkRep is O(size), so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = IntIntMap.class.desiredAssertionStatus();
+
+    private void checkRep() {
+        if (!CHECK_REP) {
+            return;
+        }
+        assert 2 * size <= entries.length;
+        assert (slots == null) == (size <= LINEAR_LIMIT);
+        for (int i = 0; i < size; i++) {
+            assert entries[2 * i + 1] != 0 : "Zero value";
+            assert find(entries[2 * i]) == i : "Duplicate or unindexed key";
+        }
+        if (slots != null) {
+            assert Integer.bitCount(slots.length) == 1 && size * 4 <= slots.length * 3;
+            int used = 0;
+            for (int slot : slots) {
+                used += slot != 0 ? 1 : 0;
+            }
+            assert used == size : "Stale slot";
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "" : ", ").append(entries[2 * i]).append('=').append(entries[2 * i + 1]);
+        }
+        return sb.append('}').toString();
+    }
+}
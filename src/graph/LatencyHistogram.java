@@ -0,0 +1,255 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of a sample of the calls of an operation in a histogram
+ * of fixed buckets, and estimates the number of calls from the sample.
+ *
+ * <p>Buckets are log-linear, as in HdrHistogram: every power of two of
+ * nanoseconds is split into 16 buckets, so a recorded latency is known to
+ * within 1/16 of itself, from 1 ns up to any long. The buckets are allocated
+ * once; start() and stop() allocate nothing.
+ *
+ * <p>Only one call in sampleEvery, chosen at random, is timed, and the others
+ * cost one thread-local random number: no clock read and no atomic update,
+ * so recording costs little even for operations of tens of nanoseconds. The
+ * number of calls is estimated as sampleEvery times the number timed, so it
+ * is exact when sampleEvery is 1. Calls that throw are not recorded.
+ * Percentiles are of the timed calls.
+ *
+ * <p>Safe for concurrent use. A summary taken while calls are recorded may
+ * miss some of them.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    /** Returned by start() for a call that is not timed. */
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final int sampleEvery;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder timedNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    // Abstraction function:
+    //   AF(buckets, timedNanos, maxNanos) = about sampleEvery times as many calls of an operation
+    //     as were timed, of which buckets.get(i) were timed at more than highest(i - 1) and at most highest(i) ns, for
+    //     each bucket i; the timed calls took timedNanos.sum() ns in all, and at most
+    //     maxNanos.get() ns each
+    // Representation invariant:
+    //   - sampleEvery >= 1
+    //   - every bucket count is >= 0
+    // Safety from rep exposure:
+    //   - All fields are private; summaries are immutable copies.
+    // Thread safety argument:
+    //   - every field is final and either immutable or a thread-safe atomic, adder or accumulator
+
+    /**
+     * An immutable summary of a LatencyHistogram, in nanoseconds. Its getters
+     * make it an attribute of an MXBean.
+     */
+    public static final class Summary {
+        private final long count;
+        private final long timed;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        private Summary(long count, long timed, double mean, long p50, long p90, long p99, long p999, long max) {
+            this.count = count;
+            this.timed = timed;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        /** @return estimated number of calls: the number timed, times sampleEvery */
+        public long getCount() {
+            return count;
+        }
+
+        /** @return number of calls timed */
+        public long getTimed() {
+            return timed;
+        }
+
+        /** @return mean latency of the timed calls, or 0 if none */
+        public double getMeanNanos() {
+            return mean;
+        }
+
+        /** @return median latency of the timed calls, or 0 if none */
+        public long getP50Nanos() {
+            return p50;
+        }
+
+        /** @return 90th percentile latency of the timed calls, or 0 if none */
+        public long getP90Nanos() {
+            return p90;
+        }
+
+        /** @return 99th percentile latency of the timed calls, or 0 if none */
+        public long getP99Nanos() {
+            return p99;
+        }
+
+        /** @return 99.9th percentile latency of the timed calls, or 0 if none */
+        public long getP999Nanos() {
+            return p999;
+        }
+
+        /** @return greatest latency of the timed calls, or 0 if none */
+        public long getMaxNanos() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d calls, %d timed: mean %.0f ns, p50 %d ns, p90 %d ns, p99 %d ns, "
+                    + "p99.9 %d ns, max %d ns", count, timed, mean, p50, p90, p99, p999, max);
+        }
+    }
+
+    /**
+     * Create an empty histogram.
+     *
+     * @param sampleEvery time one call in this many, on average; >= 1, and 1
+     *                    times every call
+     */
+    public LatencyHistogram(int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+        }
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Note a call that is starting.
+     *
+     * @return value to pass to stop() when the call returns
+     */
+    public long start() {
+        if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the latency of a call, if it was chosen to be timed.
+     *
+     * @param start value that start() returned for the call
+     */
+    public void stop(long start) {
+        if (start != NOT_TIMED) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record the latency of one timed call.
+     *
+     * @param nanos latency of the call; negative latencies are recorded as 0
+     */
+    void record(long nanos) {
+        long latency = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(latency));
+        timedNanos.add(latency);
+        maxNanos.accumulate(latency);
+    }
+
+    /**
+     * @param nanos a latency, >= 0
+     * @return index of the bucket that holds nanos
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) << SUB_BUCKET_BITS | (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+    }
+
+    /**
+     * @param bucket index of a bucket
+     * @return greatest latency that bucket holds
+     */
+    static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS | bucket & (SUB_BUCKETS - 1)) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+
+    /**
+     * @return estimated number of calls recorded so far: the number timed,
+     *         times sampleEvery
+     */
+    public long count() {
+        long timed = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            timed += buckets.get(i);
+        }
+        return timed * sampleEvery;
+    }
+
+    /**
+     * Summarize the calls recorded so far. Each percentile is reported as the
+     * greatest latency of its bucket, but no more than the greatest latency
+     * recorded.
+     *
+     * @return a summary of this histogram
+     */
+    public Summary summary() {
+        long[] counts = new long[BUCKETS];
+        long timed = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            timed += counts[i];
+        }
+        long max = maxNanos.get();
+        double mean = timed == 0 ? 0 : timedNanos.sum() / (double) timed;
+        return new Summary(timed * sampleEvery, timed, mean, percentile(counts, timed, 50, max),
+                percentile(counts, timed, 90, max), percentile(counts, timed, 99, max),
+                percentile(counts, timed, 99.9, max), max);
+    }
+
+    // The p-th percentile by nearest rank, as its bucket's greatest latency
+    private static long percentile(long[] counts, long timed, double p, long max) {
+        if (timed == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * timed));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return summary().toString();
+    }
+}
@@ -0,0 +1,632 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable word graph stored off-heap, in a memory-mapped file.
+ *
+ * <p>The file holds the same compressed sparse row tables as CsrGraph, plus
+ * a label dictionary: the UTF-8 bytes of every label, and an open-addressing
+ * hash table from label to vertex id. Everything is read straight from the
+ * mapping, so the heap holds only a few buffer objects however large the
+ * graph is, and processes that open the same file share one copy of it in
+ * the page cache. Labels are decoded when they are returned.
+ *
+ * <p>Like CsrGraph, out-edge rows keep the iteration order of the written
+ * graph's targets(), and in-edge rows are sorted by source id.
+ * targets(), sources() and vertices() return unmodifiable views over the
+ * mapping; add(), set() and remove() throw UnsupportedOperationException.
+ * The mapping is released when the graph is garbage-collected.
+ *
+ * <p>The file is little-endian: a header
+ * {@code magic "GPHM", format version, n, m, hash table size h} (int32 each),
+ * then int32 tables outOffsets[n+1], outTargets[m], outWeights[m],
+ * inOffsets[n+1], inSources[m], inWeights[m], labelOffsets[n+1],
+ * labelHashes[n], table[h], and finally the label bytes. labelHashes holds
+ * String.hashCode() of each label, which the language specifies, so files are
+ * portable between JVMs. Each table slot is a vertex id plus one, or 0 if empty.
+ */
+public class MappedGraph implements ViewableGraph<String> {
+
+    private static final int MAGIC = 'G' | 'P' << 8 | 'H' << 16 | 'M' << 24;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private final int n;
+    private final int m;
+    private final IntBuffer outOffsets;
+    private final IntBuffer outTargets;
+    private final IntBuffer outWeights;
+    private final IntBuffer inOffsets;
+    private final IntBuffer inSources;
+    private final IntBuffer inWeights;
+    private final IntBuffer labelOffsets;
+    private final IntBuffer labelHashes;
+    private final IntBuffer table;
+    private final ByteBuffer labels;
+
+    // Abstraction function:
+    //   AF(n, outOffsets, outTargets, outWeights, labelOffsets, labels) = a graph with vertices
+    //     label(0) .. label(n - 1), where label(i) is the UTF-8 string in
+    //     labels[labelOffsets[i] .. labelOffsets[i + 1]), and an edge label(s) -> label(outTargets[e])
+    //     of weight outWeights[e] for each s and outOffsets[s] <= e < outOffsets[s + 1].
+    //   The in-edge tables, labelHashes and table are derived and add nothing to the abstract value.
+    // Representation invariant:
+    //   - the labels are distinct; labelOffsets is nondecreasing from 0 to labels.limit()
+    //   - labelHashes[i] == label(i).hashCode()
+    //   - table has a power-of-two length h > n; each id appears in exactly one slot, found by
+    //     probing linearly from slot(labelHashes[id])
+    //   - outOffsets and inOffsets have length n + 1, start at 0, are nondecreasing, and
+    //     end at m; the other edge tables have length m
+    //   - all weights are > 0; targets within a row are distinct
+    //   - each in-row holds exactly the sources of edges into that vertex, with the same
+    //     weights, sorted by increasing source id
+    // Safety from rep exposure:
+    //   - All fields are private and final, and the buffers are read-only mappings that
+    //     are only read with absolute gets, so concurrent readers do not interfere.
+    //   - Views returned by targets(), sources() and vertices() are unmodifiable.
+
+    /**
+     * Write a graph to a file that open() can map.
+     *
+     * <p>The graph is written to a sibling file named with a ".tmp" suffix,
+     * forced to the device, and renamed over the target atomically. Graphs
+     * already opened from the target keep mapping the file they opened, so
+     * rewriting a shared file does not disturb its readers; only later calls
+     * to open() see the new graph. A failed write leaves any previous file
+     * intact.
+     *
+     * @param graph graph to write; it is only read
+     * @param file file to write, replacing any existing file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Graph<String> graph, Path file) throws IOException {
+        @SuppressWarnings("unchecked")
+        CsrGraph<String> csr = graph instanceof CsrGraph ? (CsrGraph<String>) graph : CsrGraph.from(graph);
+        int n = csr.vertexCount();
+        int m = csr.edgeCount();
+        int h = Integer.highestOneBit(2 * n + 1) << 1;
+        byte[][] encoded = new byte[n][];
+        int[] table = new int[h];
+        for (int id = 0; id < n; id++) {
+            String label = csr.label(id);
+            encoded[id] = label.getBytes(StandardCharsets.UTF_8);
+            int slot = slot(label.hashCode(), h);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (h - 1);
+            }
+            table[slot] = id + 1;
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(h);
+            buffer = putOffsets(channel, buffer, n, csr::outStart, m);
+            for (int e = 0; e < m; e++) {
+                buffer = putInt(channel, buffer, csr.outTarget(e));
+            }
+            for (int e = 0; e < m; e++) {
+                buffer = putInt(channel, buffer, csr.outWeight(e));
+            }
+            buffer = putOffsets(channel, buffer, n, csr::inStart, m);
+            for (int e = 0; e < m; e++) {
+                buffer = putInt(channel, buffer, csr.inSource(e));
+            }
+            for (int e = 0; e < m; e++) {
+                buffer = putInt(channel, buffer, csr.inWeight(e));
+            }
+            long offset = 0;
+            for (int id = 0; id <= n; id++) {
+                buffer = putInt(channel, buffer, Math.toIntExact(offset));
+                offset += id < n ? encoded[id].length : 0;
+            }
+            for (int id = 0; id < n; id++) {
+                buffer = putInt(channel, buffer, csr.label(id).hashCode());
+            }
+            for (int slot : table) {
+                buffer = putInt(channel, buffer, slot);
+            }
+            for (byte[] label : encoded) {
+                for (int i = 0; i < label.length; ) {
+                    if (!buffer.hasRemaining()) {
+                        buffer = drain(channel, buffer);
+                    }
+                    int length = Math.min(buffer.remaining(), label.length - i);
+                    buffer.put(label, i, length);
+                    i += length;
+                }
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private interface Offsets {
+        int start(int vertex);
+    }
+
+    // Put a row offset table: the start of each row, then the total
+    private static ByteBuffer putOffsets(FileChannel channel, ByteBuffer buffer, int n, Offsets offsets, int m)
+            throws IOException {
+        for (int v = 0; v < n; v++) {
+            buffer = putInt(channel, buffer, offsets.start(v));
+        }
+        return putInt(channel, buffer, m);
+    }
+
+    private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            buffer = drain(channel, buffer);
+        }
+        return buffer.putInt(value);
+    }
+
+    // Write out the buffer and return it cleared
+    private static ByteBuffer drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * Map a graph file written by write(). The offset, id, weight and hash
+     * tables are read through once, so that a corrupt file fails here rather
+     * than in a later read; the label bytes and their hashes are not.
+     *
+     * @param file file written by write()
+     * @return the graph in the file
+     * @throws IOException if the file cannot be mapped, its header is not
+     *         that of a graph file of its size, or its offsets, ids, weights
+     *         or hash table are out of range
+     */
+    public static MappedGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException("not a mapped graph file: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("unsupported mapped graph file version " + header.getInt(4) + ": " + file);
+            }
+            int n = header.getInt(8);
+            int m = header.getInt(12);
+            int h = header.getInt(16);
+            if (n < 0 || m < 0 || h <= n || Integer.bitCount(h) != 1) {
+                throw new IOException("corrupt mapped graph file header: " + file);
+            }
+            // The file stays mapped after the channel is closed
+            Sections sections = new Sections(channel, HEADER_BYTES);
+            IntBuffer outOffsets = sections.ints(n + 1L);
+            IntBuffer outTargets = sections.ints(m);
+            IntBuffer outWeights = sections.ints(m);
+            IntBuffer inOffsets = sections.ints(n + 1L);
+            IntBuffer inSources = sections.ints(m);
+            IntBuffer inWeights = sections.ints(m);
+            IntBuffer labelOffsets = sections.ints(n + 1L);
+            IntBuffer labelHashes = sections.ints(n);
+            IntBuffer table = sections.ints(h);
+            long labelBytes = size - sections.position;
+            if (labelBytes < 0 || labelBytes != labelOffsets.get(n) || labelOffsets.get(0) != 0) {
+                throw new IOException("mapped graph file has the wrong size: " + file);
+            }
+            ByteBuffer labels = sections.bytes(labelBytes);
+            if (!validOffsets(outOffsets, m) || !validOffsets(inOffsets, m)
+                    || !validOffsets(labelOffsets, Math.toIntExact(labelBytes))
+                    || !validIds(outTargets, n) || !validIds(inSources, n)
+                    || !validWeights(outWeights) || !validWeights(inWeights) || !validTable(table, n)) {
+                throw new IOException("corrupt mapped graph file tables: " + file);
+            }
+            return new MappedGraph(n, m, outOffsets, outTargets, outWeights, inOffsets, inSources, inWeights,
+                    labelOffsets, labelHashes, table, labels);
+        }
+    }
+
+    // Whether offsets is nondecreasing from 0 to end
+    private static boolean validOffsets(IntBuffer offsets, int end) {
+        int previous = 0;
+        for (int i = 0; i < offsets.limit(); i++) {
+            int offset = offsets.get(i);
+            if (offset < previous || offset > end) {
+                return false;
+            }
+            previous = offset;
+        }
+        return offsets.get(0) == 0 && previous == end;
+    }
+
+    // Whether every entry is a vertex id, 0 <= id < n
+    private static boolean validIds(IntBuffer ids, int n) {
+        for (int i = 0; i < ids.limit(); i++) {
+            if (ids.get(i) < 0 || ids.get(i) >= n) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean validWeights(IntBuffer weights) {
+        for (int i = 0; i < weights.limit(); i++) {
+            if (weights.get(i) <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether every slot is empty or a vertex id plus one, and at least one is empty, so probes end
+    private static boolean validTable(IntBuffer table, int n) {
+        boolean empty = false;
+        for (int slot = 0; slot < table.limit(); slot++) {
+            int entry = table.get(slot);
+            if (entry < 0 || entry > n) {
+                return false;
+            }
+            empty |= entry == 0;
+        }
+        return empty;
+    }
+
+    /**
+     * Consecutive sections of a file, each mapped on its own so that no single
+     * mapping need exceed 2 GB.
+     */
+    private static final class Sections {
+        private final FileChannel channel;
+        private long position;
+
+        Sections(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        IntBuffer ints(long count) throws IOException {
+            return bytes(count * Integer.BYTES).asIntBuffer();
+        }
+
+        ByteBuffer bytes(long count) throws IOException {
+            if (count > Integer.MAX_VALUE || position + count > channel.size()) {
+                throw new IOException("mapped graph file is truncated or corrupt");
+            }
+            ByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, position, count)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            position += count;
+            return section;
+        }
+    }
+
+    private MappedGraph(int n, int m, IntBuffer outOffsets, IntBuffer outTargets, IntBuffer outWeights,
+            IntBuffer inOffsets, IntBuffer inSources, IntBuffer inWeights,
+            IntBuffer labelOffsets, IntBuffer labelHashes, IntBuffer table, ByteBuffer labels) {
+        this.n = n;
+        this.m = m;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inWeights = inWeights;
+        this.labelOffsets = labelOffsets;
+        this.labelHashes = labelHashes;
+        this.table = table;
+        this.labels = labels;
+        checkRep();
+    }
+
+    // checkRep is O(V + E) and touches every page, so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = MappedGraph.class.desiredAssertionStatus();
+
+    /**
+     * Check the representation invariant.
+     * @throws AssertionError if the representation invariant is violated
+     */
+    private void checkRep() {
+        if (!CHECK_REP) {
+            return;
+        }
+        assert outOffsets.limit() == n + 1 && inOffsets.limit() == n + 1;
+        assert outOffsets.get(0) == 0 && inOffsets.get(0) == 0 && outOffsets.get(n) == m && inOffsets.get(n) == m;
+        assert labelOffsets.get(n) == labels.limit();
+        for (int v = 0; v < n; v++) {
+            assert labelOffsets.get(v) <= labelOffsets.get(v + 1);
+            assert labelHashes.get(v) == label(v).hashCode() : "Wrong label hash";
+            assert id(label(v)) == v : "Label table out of sync";
+            assert outOffsets.get(v) <= outOffsets.get(v + 1) && inOffsets.get(v) <= inOffsets.get(v + 1);
+            for (int e = outOffsets.get(v); e < outOffsets.get(v + 1); e++) {
+                assert outWeights.get(e) > 0 : "Nonpositive weight";
+                assert weight(v, outTargets.get(e)) == outWeights.get(e) : "In-edge missing";
+            }
+            for (int e = inOffsets.get(v) + 1; e < inOffsets.get(v + 1); e++) {
+                assert inSources.get(e - 1) < inSources.get(e) : "In-row not sorted";
+            }
+        }
+    }
+
+    // Home slot of a hash in a table of power-of-two size h
+    private static int slot(int hash, int h) {
+        return (hash ^ (hash >>> 16)) & (h - 1);
+    }
+
+    /**
+     * @return number of vertices in this graph; ids are 0 to vertexCount() - 1
+     */
+    public int vertexCount() {
+        return n;
+    }
+
+    /**
+     * @return number of edges in this graph
+     */
+    public int edgeCount() {
+        return m;
+    }
+
+    /**
+     * Get the id of a vertex.
+     *
+     * @param vertex a label
+     * @return the id of the vertex with that label, or -1 if there is none
+     */
+    public int id(String vertex) {
+        int hash = vertex.hashCode();
+        int mask = table.limit() - 1;
+        int slot = slot(hash, table.limit());
+        for (int probes = 0; probes < table.limit(); probes++, slot = (slot + 1) & mask) {
+            int id = table.get(slot) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (labelHashes.get(id) == hash && labelEquals(id, vertex)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    // Compare a stored label with a string, without decoding it if the string is ASCII
+    private boolean labelEquals(int id, String vertex) {
+        int start = labelOffsets.get(id);
+        int length = labelOffsets.get(id + 1) - start;
+        // UTF-8 takes at least one byte per char
+        if (length < vertex.length()) {
+            return false;
+        }
+        if (length == vertex.length()) {
+            for (int i = 0; i < length; i++) {
+                char c = vertex.charAt(i);
+                if (c >= 0x80) {
+                    return label(id).equals(vertex);
+                }
+                if (labels.get(start + i) != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return label(id).equals(vertex);
+    }
+
+    /**
+     * Get the label of a vertex. Decodes a new string on every call.
+     *
+     * @param id id of a vertex, 0 <= id < vertexCount()
+     * @return the label of that vertex
+     */
+    public String label(int id) {
+        int start = labelOffsets.get(id);
+        byte[] bytes = new byte[labelOffsets.get(id + 1) - start];
+        labels.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the weight of an edge by ids, in O(log in-degree of target).
+     *
+     * @param source id of a vertex
+     * @param target id of a vertex
+     * @return weight of the edge from source to target, or 0 if there is none
+     */
+    public int weight(int source, int target) {
+        int low = inOffsets.get(target);
+        int high = inOffsets.get(target + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = inSources.get(middle);
+            if (found < source) {
+                low = middle + 1;
+            } else if (found > source) {
+                high = middle - 1;
+            } else {
+                return inWeights.get(middle);
+            }
+        }
+        return 0;
+    }
+
+    @Override public boolean add(String vertex) {
+        throw new UnsupportedOperationException("MappedGraph is immutable");
+    }
+
+    @Override public int set(String source, String target, int weight) {
+        throw new UnsupportedOperationException("MappedGraph is immutable");
+    }
+
+    @Override public boolean remove(String vertex) {
+        throw new UnsupportedOperationException("MappedGraph is immutable");
+    }
+
+    // The copying methods already return views, so the view methods are the same
+    @Override public Set<String> verticesView() {
+        return vertices();
+    }
+
+    @Override public Map<String, Integer> sourcesView(String target) {
+        return sources(target);
+    }
+
+    @Override public Map<String, Integer> targetsView(String source) {
+        return targets(source);
+    }
+
+    @Override public Set<String> vertices() {
+        return new AbstractSet<String>() {
+            @Override public int size() {
+                return n;
+            }
+
+            @Override public boolean contains(Object o) {
+                return o instanceof String && id((String) o) >= 0;
+            }
+
+            @Override public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next = 0;
+
+                    @Override public boolean hasNext() {
+                        return next < n;
+                    }
+
+                    @Override public String next() {
+                        if (next >= n) {
+                            throw new NoSuchElementException();
+                        }
+                        return label(next++);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override public Map<String, Integer> sources(String target) {
+        int t = id(target);
+        return t < 0 ? Collections.emptyMap() : new Row(t, false);
+    }
+
+    @Override public Map<String, Integer> targets(String source) {
+        int s = id(source);
+        return s < 0 ? Collections.emptyMap() : new Row(s, true);
+    }
+
+    /**
+     * Read-only view of one row of the out-edge or in-edge table, keyed by
+     * neighbour label.
+     */
+    private class Row extends AbstractMap<String, Integer> {
+
+        private final int vertex;
+        private final boolean outgoing;
+
+        Row(int vertex, boolean outgoing) {
+            this.vertex = vertex;
+            this.outgoing = outgoing;
+        }
+
+        private int start() {
+            return outgoing ? outOffsets.get(vertex) : inOffsets.get(vertex);
+        }
+
+        private int end() {
+            return outgoing ? outOffsets.get(vertex + 1) : inOffsets.get(vertex + 1);
+        }
+
+        @Override public int size() {
+            return end() - start();
+        }
+
+        @Override public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override public Integer get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int neighbour = id((String) key);
+            if (neighbour < 0) {
+                return null;
+            }
+            int weight = outgoing ? weight(vertex, neighbour) : weight(neighbour, vertex);
+            return weight == 0 ? null : weight;
+        }
+
+        @Override public Set<Map.Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Integer>>() {
+                @Override public int size() {
+                    return Row.this.size();
+                }
+
+                @Override public Iterator<Map.Entry<String, Integer>> iterator() {
+                    final int end = end();
+                    return new Iterator<Map.Entry<String, Integer>>() {
+                        private int edge = start();
+
+                        @Override public boolean hasNext() {
+                            return edge < end;
+                        }
+
+                        @Override public Map.Entry<String, Integer> next() {
+                            if (edge >= end) {
+                                throw new NoSuchElementException();
+                            }
+                            int e = edge++;
+                            return outgoing
+                                    ? new SimpleImmutableEntry<>(label(outTargets.get(e)), outWeights.get(e))
+                                    : new SimpleImmutableEntry<>(label(inSources.get(e)), inWeights.get(e));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < n; s++) {
+            String label = label(s);
+            if (outOffsets.get(s) == outOffsets.get(s + 1)) {
+                sb.append(label).append(" -> \n");
+            }
+            for (int e = outOffsets.get(s); e < outOffsets.get(s + 1); e++) {
+                sb.append(label).append(" -> ").append(label(outTargets.get(e)))
+                  .append(" : ").append(outWeights.get(e)).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,382 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A mutable graph made of an immutable CsrGraph and a small table of changes
+ * to it.
+ *
+ * <p>Mutations only touch the change table, so their cost does not depend on
+ * the size of the base graph. Vertices and rows without changes are read
+ * straight from the base. A changed row reads as a view of the base row with
+ * changed weights applied and removed edges skipped, followed by new edges in
+ * the order they were first set. compact() folds the changes into a new base.
+ *
+ * <p>Not safe for concurrent use.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class OverlayGraph<L> implements CountingGraph<L>, ViewableGraph<L> {
+
+    private CsrGraph<L> base;
+    // Changed edges: outChanges.get(s).get(t) is the weight of s -> t, 0 if removed
+    private final Map<L, Map<L, Integer>> outChanges = new HashMap<>();
+    // The same changes, by target
+    private final Map<L, Map<L, Integer>> inChanges = new HashMap<>();
+    // Vertices not in base, and vertices of base that have been removed
+    private final Set<L> added = new LinkedHashSet<>();
+    private final Set<L> removed = new HashSet<>();
+    private int changedEdges = 0;
+
+    // Abstraction function:
+    //   AF(base, outChanges, added, removed) = the graph whose vertices are those of base not in
+    //     removed, plus added, and where the weight of s -> t is outChanges.get(s).get(t) if present,
+    //     else its weight in base (an edge of weight 0 is absent).
+    //   inChanges mirrors outChanges and adds nothing to the abstract value.
+    // Representation invariant:
+    //   - added is disjoint from base's vertices; removed is a subset of them
+    //   - inChanges.get(t).get(s) == outChanges.get(s).get(t) for every change, and no row is empty
+    //   - every change differs from the base weight, and is >= 0
+    //   - the endpoints of every edge of nonzero weight are vertices
+    //   - changedEdges is the number of changes
+    // Safety from rep exposure:
+    //   - All fields are private; vertices(), sources() and targets() return new collections,
+    //     and the view methods return unmodifiable ones.
+
+    /**
+     * Create a graph equal to a frozen graph, ready to be changed.
+     *
+     * @param base initial graph
+     */
+    public OverlayGraph(CsrGraph<L> base) {
+        this.base = base;
+        checkRep();
+    }
+
+    // checkRep is O(number of changes), so it only runs when assertions are enabled
+    private static final boolean CHECK_REP = OverlayGraph.class.desiredAssertionStatus();
+
+    /**
+     * Check the representation invariant.
+     * @throws AssertionError if the representation invariant is violated
+     */
+    private void checkRep() {
+        if (!CHECK_REP) {
+            return;
+        }
+        int changes = 0;
+        for (L vertex : added) {
+            assert base.id(vertex) < 0 : "Added vertex already in base";
+        }
+        for (L vertex : removed) {
+            assert base.id(vertex) >= 0 : "Removed vertex not in base";
+        }
+        for (Map.Entry<L, Map<L, Integer>> row : outChanges.entrySet()) {
+            L source = row.getKey();
+            assert !row.getValue().isEmpty() : "Empty change row";
+            for (Map.Entry<L, Integer> change : row.getValue().entrySet()) {
+                L target = change.getKey();
+                int weight = change.getValue();
+                assert weight >= 0 : "Negative weight";
+                assert weight != baseWeight(source, target) : "Redundant change";
+                assert inChanges.get(target).get(source) == weight : "Change tables out of sync";
+                assert weight == 0 || (contains(source) && contains(target)) : "Edge to a missing vertex";
+                changes++;
+            }
+        }
+        assert changes == changedEdges : "Change count out of sync";
+    }
+
+    /**
+     * @return number of edges whose weight differs from the base graph
+     */
+    public int changedEdges() {
+        return changedEdges;
+    }
+
+    /**
+     * @return number of edges in the base graph, as of the last compaction
+     */
+    public int baseEdges() {
+        return base.edgeCount();
+    }
+
+    /**
+     * Fold all changes into a new base graph, in O(V + E). The abstract
+     * value of this graph, and the order of its rows, do not change.
+     */
+    public void compact() {
+        if (changedEdges == 0 && added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        base = CsrGraph.from(this);
+        outChanges.clear();
+        inChanges.clear();
+        added.clear();
+        removed.clear();
+        changedEdges = 0;
+        checkRep();
+    }
+
+    private boolean contains(L vertex) {
+        return added.contains(vertex) || (base.id(vertex) >= 0 && !removed.contains(vertex));
+    }
+
+    private int baseWeight(L source, L target) {
+        int s = base.id(source);
+        int t = base.id(target);
+        return s < 0 || t < 0 ? 0 : base.weight(s, t);
+    }
+
+    private int weight(L source, L target) {
+        Map<L, Integer> changes = outChanges.get(source);
+        Integer changed = changes == null ? null : changes.get(target);
+        return changed != null ? changed : baseWeight(source, target);
+    }
+
+    // Record a new weight for an edge whose endpoints are vertices, given its current weight
+    private void change(L source, L target, int weight, int previousWeight) {
+        if (weight == previousWeight) {
+            return;
+        }
+        Map<L, Integer> changes = outChanges.get(source);
+        boolean wasChanged = changes != null && changes.containsKey(target);
+        if (weight == baseWeight(source, target)) {
+            if (wasChanged) {
+                removeChange(outChanges, source, target);
+                removeChange(inChanges, target, source);
+                changedEdges--;
+            }
+        } else {
+            if (changes == null) {
+                changes = new LinkedHashMap<>();
+                outChanges.put(source, changes);
+            }
+            changes.put(target, weight);
+            inChanges.computeIfAbsent(target, k -> new LinkedHashMap<>()).put(source, weight);
+            if (!wasChanged) {
+                changedEdges++;
+            }
+        }
+    }
+
+    private static <L> void removeChange(Map<L, Map<L, Integer>> changes, L row, L column) {
+        Map<L, Integer> changed = changes.get(row);
+        changed.remove(column);
+        if (changed.isEmpty()) {
+            changes.remove(row);
+        }
+    }
+
+    @Override public boolean add(L vertex) {
+        if (contains(vertex)) {
+            return false;
+        }
+        if (!removed.remove(vertex)) {
+            added.add(vertex);
+        }
+        checkRep();
+        return true;
+    }
+
+    @Override public int set(L source, L target, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight);
+        }
+        add(source);
+        add(target);
+        int previousWeight = weight(source, target);
+        change(source, target, weight, previousWeight);
+        checkRep();
+        return previousWeight;
+    }
+
+    @Override public int increment(L source, L target, int delta) {
+        // edges of a missing vertex read as 0, since remove() zeroes them
+        int previousWeight = weight(source, target);
+        int weight = Math.addExact(previousWeight, delta);
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight);
+        }
+        add(source);
+        add(target);
+        change(source, target, weight, previousWeight);
+        checkRep();
+        return weight;
+    }
+
+    @Override public boolean remove(L vertex) {
+        if (!contains(vertex)) {
+            return false;
+        }
+        for (Map.Entry<L, Integer> edge : new ArrayList<>(targetsView(vertex).entrySet())) {
+            change(vertex, edge.getKey(), 0, edge.getValue());
+        }
+        for (Map.Entry<L, Integer> edge : new ArrayList<>(sourcesView(vertex).entrySet())) {
+            change(edge.getKey(), vertex, 0, edge.getValue());
+        }
+        if (!added.remove(vertex)) {
+            removed.add(vertex);
+        }
+        checkRep();
+        return true;
+    }
+
+    @Override public Set<L> vertices() {
+        Set<L> vertices = new LinkedHashSet<>(base.verticesView());
+        vertices.removeAll(removed);
+        vertices.addAll(added);
+        return vertices;
+    }
+
+    @Override public Map<L, Integer> sources(L target) {
+        return new LinkedHashMap<>(sourcesView(target));
+    }
+
+    @Override public Map<L, Integer> targets(L source) {
+        return new LinkedHashMap<>(targetsView(source));
+    }
+
+    @Override public Set<L> verticesView() {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return base.verticesView();
+        }
+        return Collections.unmodifiableSet(vertices());
+    }
+
+    @Override public Map<L, Integer> sourcesView(L target) {
+        return row(target, base.sourcesView(target), inChanges.get(target));
+    }
+
+    @Override public Map<L, Integer> targetsView(L source) {
+        return row(source, base.targetsView(source), outChanges.get(source));
+    }
+
+    // A base row with changes applied, without copying either
+    private Map<L, Integer> row(L vertex, Map<L, Integer> baseRow, Map<L, Integer> changes) {
+        if (changes == null) {
+            // a removed vertex has every edge changed, so an unchanged row is still current
+            return contains(vertex) ? baseRow : Collections.emptyMap();
+        }
+        return new MergedRow<>(baseRow, changes);
+    }
+
+    /**
+     * Read-only view of a base row with changes applied: base order first,
+     * then new neighbours in the order they were first changed.
+     */
+    private static final class MergedRow<L> extends AbstractMap<L, Integer> {
+
+        private final Map<L, Integer> baseRow;
+        private final Map<L, Integer> changes;
+        // computed on first use; views are not used after the graph changes
+        private int size = -1;
+
+        MergedRow(Map<L, Integer> baseRow, Map<L, Integer> changes) {
+            this.baseRow = baseRow;
+            this.changes = changes;
+        }
+
+        @Override public Integer get(Object key) {
+            Integer changed = changes.get(key);
+            if (changed != null) {
+                return changed > 0 ? changed : null;
+            }
+            return baseRow.get(key);
+        }
+
+        @Override public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override public int size() {
+            if (size < 0) {
+                int count = 0;
+                for (Iterator<Map.Entry<L, Integer>> it = entrySet().iterator(); it.hasNext(); it.next()) {
+                    count++;
+                }
+                size = count;
+            }
+            return size;
+        }
+
+        @Override public Set<Map.Entry<L, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<L, Integer>>() {
+                @Override public int size() {
+                    return MergedRow.this.size();
+                }
+
+                @Override public Iterator<Map.Entry<L, Integer>> iterator() {
+                    return new Iterator<Map.Entry<L, Integer>>() {
+                        private final Iterator<Map.Entry<L, Integer>> base = baseRow.entrySet().iterator();
+                        private final Iterator<Map.Entry<L, Integer>> changed = changes.entrySet().iterator();
+                        private Map.Entry<L, Integer> next = advance();
+
+                        // The next entry with positive weight, or null
+                        private Map.Entry<L, Integer> advance() {
+                            while (base.hasNext()) {
+                                Map.Entry<L, Integer> edge = base.next();
+                                Integer weight = changes.get(edge.getKey());
+                                if (weight == null) {
+                                    return edge;
+                                } else if (weight > 0) {
+                                    return new SimpleImmutableEntry<>(edge.getKey(), weight);
+                                }
+                            }
+                            while (changed.hasNext()) {
+                                Map.Entry<L, Integer> edge = changed.next();
+                                if (edge.getValue() > 0 && !baseRow.containsKey(edge.getKey())) {
+                                    return new SimpleImmutableEntry<>(edge);
+                                }
+                            }
+                            return null;
+                        }
+
+                        @Override public boolean hasNext() {
+                            return next != null;
+                        }
+
+                        @Override public Map.Entry<L, Integer> next() {
+                            if (next == null) {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<L, Integer> result = next;
+                            next = advance();
+                            return result;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (L source : verticesView()) {
+            Map<L, Integer> targets = targetsView(source);
+            if (targets.isEmpty()) {
+                sb.append(source).append(" -> \n");
+            }
+            for (Map.Entry<L, Integer> edge : targets.entrySet()) {
+                sb.append(source).append(" -> ").append(edge.getKey())
+                  .append(" : ").append(edge.getValue()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
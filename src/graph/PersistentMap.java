@@ -0,0 +1,366 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable map, as a hash array mapped trie (HAMT).
+ *
+ * <p>{@link #plus(Object, Object)} and {@link #minus(Object)} return new maps
+ * that share every trie node off the path to the changed key, so an update
+ * copies O(log32 n) small arrays instead of the whole map. Lookups follow
+ * 5 bits of the key's hash per level.
+ *
+ * <p>The java.util.Map mutators throw UnsupportedOperationException. Keys
+ * and values must not be null.
+ *
+ * @param <K> type of keys, must be immutable
+ * @param <V> type of values, must be immutable
+ */
+final class PersistentMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // Levels with hash bits left, plus one level of collision nodes
+    private static final int MAX_DEPTH = (32 + BITS - 1) / BITS + 1;
+
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    // Abstraction function:
+    //   AF(root, size) = the map holding every key/value pair stored in the trie under root
+    //     (the empty map if root is null).
+    // Representation invariant:
+    //   - size is the number of pairs in the trie
+    //   - a pair is stored under the path given by its key's hash, 5 bits per level; a
+    //     node at a level with no hash bits left is a collision node
+    //   - no node is empty, and no key appears twice
+    // Safety from rep exposure:
+    //   - Nodes are never mutated after construction and never leave this class;
+    //     entries are returned as immutable entries of immutable keys and values.
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param <K> type of keys
+     * @param <V> type of values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @Override public int size() {
+        return size;
+    }
+
+    @Override public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.find(hash(key), 0, key);
+    }
+
+    /**
+     * @param key a key
+     * @param value value for key
+     * @return a map equal to this one except that key maps to value; this map
+     *         itself if key already maps to that same value object
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        boolean[] added = new boolean[1];
+        Node newRoot = root == null
+                ? BitmapNode.EMPTY.put(hash(key), 0, key, value, added)
+                : root.put(hash(key), 0, key, value, added);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @param key a key
+     * @return a map equal to this one except that it has no value for key;
+     *         this map itself if it has no value for key
+     */
+    PersistentMap<K, V> minus(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node newRoot = root.remove(hash(key), 0, key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentMap<>(newRoot, size - 1);
+    }
+
+    @Override public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override public int size() {
+                return size;
+            }
+
+            @Override public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /**
+     * A trie node. Immutable. Its array holds key/value pairs at even/odd
+     * positions; a null key means the value is a child node.
+     */
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int hash, int shift, Object key);
+
+        // Node with key mapped to value; this if unchanged. Sets added[0] if key is new.
+        abstract Node put(int hash, int shift, Object key, Object value, boolean[] added);
+
+        // Node without key; this if key is absent, null if the node becomes empty
+        abstract Node remove(int hash, int shift, Object key);
+    }
+
+    /**
+     * A node with one slot per 5-bit hash chunk present in its bitmap.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override Object find(int hash, int shift, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(hash, shift + BITS, key);
+            }
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override Node put(int hash, int shift, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, i);
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy(array, i, copy, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(hash, shift + BITS, key, value, added);
+                return child == v ? this : with(i, null, child);
+            }
+            if (key.equals(k)) {
+                // identity, not equals(), which may be as slow as the value is large
+                return value == v ? this : with(i, k, value);
+            }
+            // Two keys share this slot: push both down into a new child
+            added[0] = true;
+            return with(i, null, pair(shift + BITS, hash(k), k, v, hash, key, value));
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[i] = key;
+            copy[i + 1] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private static Node pair(int shift, int hash1, Object key1, Object value1,
+                int hash2, Object key2, Object value2) {
+            if (shift >= 32) {
+                return new CollisionNode(new Object[] { key1, value1, key2, value2 });
+            }
+            boolean[] ignored = new boolean[1];
+            return EMPTY.put(hash1, shift, key1, value1, ignored).put(hash2, shift, key2, value2, ignored);
+        }
+
+        @Override Node remove(int hash, int shift, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).remove(hash, shift + BITS, key);
+                if (child == v) {
+                    return this;
+                }
+                if (child != null) {
+                    // Pull a lone pair back up, so the trie stays as shallow as it would be
+                    // had the removed key never been added
+                    return child.array.length == 2 && child.array[0] != null
+                            ? with(i, child.array[0], child.array[1])
+                            : with(i, null, child);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+    }
+
+    /**
+     * A node for keys whose hashes are entirely equal, searched linearly.
+     */
+    private static final class CollisionNode extends Node {
+
+        CollisionNode(Object[] array) {
+            super(array);
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override Object find(int hash, int shift, Object key) {
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override Node put(int hash, int shift, Object key, Object value, boolean[] added) {
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (value == array[i + 1]) {
+                    return this;
+                }
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(copy);
+            }
+            Object[] copy = Arrays.copyOf(array, array.length + 2);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(copy);
+        }
+
+        @Override Node remove(int hash, int shift, Object key) {
+            int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new CollisionNode(copy);
+        }
+    }
+
+    /**
+     * Depth-first iterator over the pairs of the trie.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = -1;
+        private Map.Entry<K, V> next;
+
+        EntryIterator() {
+            if (root != null) {
+                arrays[++depth] = root.array;
+            }
+            next = advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map.Entry<K, V> advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position == array.length) {
+                    positions[depth--] = 0;
+                    continue;
+                }
+                positions[depth] += 2;
+                if (array[position] == null) {
+                    arrays[++depth] = ((Node) array[position + 1]).array;
+                } else {
+                    return new AbstractMap.SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                }
+            }
+            return null;
+        }
+
+        @Override public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = next;
+            next = advance();
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe Graph that publishes each version of itself as an immutable
+ * snapshot.
+ *
+ * <p>Readers call {@link #snapshot()} to pin the current version, and can
+ * then read it for as long as they like, without locks and without seeing
+ * later writes. Writers apply a batch of mutations with
+ * {@link #update(Consumer)}, which publishes the result as one new version;
+ * the Graph mutators each publish a version of their own. Writers are
+ * serialized, and every mutation is atomic and linearizable.
+ *
+ * <p>Snapshots are persistent: adjacency is held in hash array mapped tries,
+ * so a new version shares all unchanged structure with the one before it and
+ * a single-edge write copies O(log n) small nodes.
+ *
+ * <p>The Graph observers read the current snapshot, so vertices(), sources()
+ * and targets() return unmodifiable maps and sets that never change.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class VersionedGraph<L> implements CountingGraph<L>, ViewableGraph<L> {
+
+    private final AtomicReference<Snapshot<L>> current;
+    private final Object writeLock = new Object();
+
+    // Abstraction function:
+    //   AF(current) = the graph current.get().
+    // Representation invariant:
+    //   - current.get() is never null, and its version only increases
+    // Safety from rep exposure:
+    //   - current is private; snapshots are immutable, so sharing them is safe.
+    // Thread safety argument:
+    //   - all writes happen under writeLock and publish by a single atomic set of current;
+    //     readers only read current once per operation.
+
+    /**
+     * Create a new empty graph, at version 0.
+     */
+    public VersionedGraph() {
+        current = new AtomicReference<>(new Snapshot<L>(0, PersistentMap.empty(), PersistentMap.empty()));
+    }
+
+    /**
+     * Create a new graph with the vertices and edges of another, at version 0.
+     *
+     * @param graph graph to copy
+     */
+    public VersionedGraph(Graph<L> graph) {
+        Batch<L> copy = new Batch<>(new Snapshot<L>(0, PersistentMap.empty(), PersistentMap.empty()));
+        for (L vertex : graph.vertices()) {
+            copy.add(vertex);
+            for (Map.Entry<L, Integer> edge : graph.targets(vertex).entrySet()) {
+                copy.set(vertex, edge.getKey(), edge.getValue());
+            }
+        }
+        current = new AtomicReference<>(new Snapshot<>(0, copy.out, copy.in));
+    }
+
+    /**
+     * @return the current version of this graph, which later writes do not change
+     */
+    public Snapshot<L> snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Apply a batch of mutations and publish them as one new version. Readers
+     * see either none of the batch or all of it.
+     *
+     * @param batch mutates the graph it is given, which starts as the current
+     *              version and may be read as well as written; it must not be
+     *              used after batch returns. If batch throws, nothing is
+     *              published and the exception is rethrown.
+     * @return the new version; the current one if batch changed nothing
+     */
+    public Snapshot<L> update(Consumer<? super CountingGraph<L>> batch) {
+        synchronized (writeLock) {
+            Batch<L> working = new Batch<>(current.get());
+            try {
+                batch.accept(working);
+            } finally {
+                working.closed = true;
+            }
+            return publish(working);
+        }
+    }
+
+    // Publish the batch as the next version, unless it changed nothing; caller holds writeLock
+    private Snapshot<L> publish(Batch<L> batch) {
+        Snapshot<L> base = current.get();
+        if (batch.out == base.out && batch.in == base.in) {
+            return base;
+        }
+        Snapshot<L> next = new Snapshot<>(base.version + 1, batch.out, batch.in);
+        current.set(next);
+        return next;
+    }
+
+    @Override public boolean add(L vertex) {
+        synchronized (writeLock) {
+            Batch<L> working = new Batch<>(current.get());
+            boolean added = working.add(vertex);
+            publish(working);
+            return added;
+        }
+    }
+
+    @Override public int set(L source, L target, int weight) {
+        synchronized (writeLock) {
+            Batch<L> working = new Batch<>(current.get());
+            int previousWeight = working.set(source, target, weight);
+            publish(working);
+            return previousWeight;
+        }
+    }
+
+    @Override public int increment(L source, L target, int delta) {
+        synchronized (writeLock) {
+            Batch<L> working = new Batch<>(current.get());
+            int weight = working.increment(source, target, delta);
+            publish(working);
+            return weight;
+        }
+    }
+
+    @Override public boolean remove(L vertex) {
+        synchronized (writeLock) {
+            Batch<L> working = new Batch<>(current.get());
+            boolean removed = working.remove(vertex);
+            publish(working);
+            return removed;
+        }
+    }
+
+    @Override public Set<L> vertices() {
+        return snapshot().vertices();
+    }
+
+    @Override public Map<L, Integer> sources(L target) {
+        return snapshot().sources(target);
+    }
+
+    @Override public Map<L, Integer> targets(L source) {
+        return snapshot().targets(source);
+    }
+
+    @Override public Set<L> verticesView() {
+        return vertices();
+    }
+
+    @Override public Map<L, Integer> sourcesView(L target) {
+        return sources(target);
+    }
+
+    @Override public Map<L, Integer> targetsView(L source) {
+        return targets(source);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * One version of a VersionedGraph. Immutable: add(), set() and remove()
+     * throw UnsupportedOperationException, and vertices(), sources() and
+     * targets() return unmodifiable collections that are views of the
+     * snapshot, not copies.
+     *
+     * @param <L> type of vertex labels in this graph, must be immutable
+     */
+    public static final class Snapshot<L> implements ViewableGraph<L> {
+
+        private final long version;
+        // vertex -> (target -> weight) and vertex -> (source -> weight); every vertex is a key of both
+        private final PersistentMap<L, PersistentMap<L, Integer>> out;
+        private final PersistentMap<L, PersistentMap<L, Integer>> in;
+
+        // Abstraction function:
+        //   AF(version, out) = version 'version' of a graph whose vertices are the keys of
+        //     out, with an edge s -> t of weight w for every entry t -> w in out.get(s).
+        //   'in' is derived from 'out' and adds nothing to the abstract value.
+        // Representation invariant:
+        //   - out and in have the same keys, and every key of an inner map is one of them
+        //   - out.get(s) has t -> w iff in.get(t) has s -> w, and w > 0
+        // Safety from rep exposure:
+        //   - All fields are private and final, and the maps are immutable.
+
+        // checkRep is O(V + E), so it only runs when assertions are enabled
+        private static final boolean CHECK_REP = Snapshot.class.desiredAssertionStatus();
+
+        private Snapshot(long version, PersistentMap<L, PersistentMap<L, Integer>> out,
+                PersistentMap<L, PersistentMap<L, Integer>> in) {
+            this.version = version;
+            this.out = out;
+            this.in = in;
+            checkRep();
+        }
+
+        private void checkRep() {
+            if (!CHECK_REP) {
+                return;
+            }
+            assert out.keySet().equals(in.keySet()) : "Vertex sets differ";
+            for (Map.Entry<L, PersistentMap<L, Integer>> row : out.entrySet()) {
+                for (Map.Entry<L, Integer> edge : row.getValue().entrySet()) {
+                    assert edge.getValue() > 0 : "Nonpositive weight";
+                    PersistentMap<L, Integer> sources = in.get(edge.getKey());
+                    assert sources != null && edge.getValue().equals(sources.get(row.getKey())) : "Missing in-edge";
+                }
+            }
+            for (Map.Entry<L, PersistentMap<L, Integer>> row : in.entrySet()) {
+                for (Map.Entry<L, Integer> edge : row.getValue().entrySet()) {
+                    PersistentMap<L, Integer> targets = out.get(edge.getKey());
+                    assert targets != null && edge.getValue().equals(targets.get(row.getKey())) : "Missing out-edge";
+                }
+            }
+        }
+
+        /**
+         * @return the version number of this snapshot; each update of a
+         *         VersionedGraph publishes a snapshot with the next number
+         */
+        public long version() {
+            return version;
+        }
+
+        @Override public boolean add(L vertex) {
+            throw new UnsupportedOperationException("snapshots are immutable");
+        }
+
+        @Override public int set(L source, L target, int weight) {
+            throw new UnsupportedOperationException("snapshots are immutable");
+        }
+
+        @Override public boolean remove(L vertex) {
+            throw new UnsupportedOperationException("snapshots are immutable");
+        }
+
+        @Override public Set<L> vertices() {
+            return Collections.unmodifiableSet(out.keySet());
+        }
+
+        @Override public Map<L, Integer> sources(L target) {
+            PersistentMap<L, Integer> sources = in.get(target);
+            return sources == null ? Collections.emptyMap() : sources;
+        }
+
+        @Override public Map<L, Integer> targets(L source) {
+            PersistentMap<L, Integer> targets = out.get(source);
+            return targets == null ? Collections.emptyMap() : targets;
+        }
+
+        @Override public Set<L> verticesView() {
+            return vertices();
+        }
+
+        @Override public Map<L, Integer> sourcesView(L target) {
+            return sources(target);
+        }
+
+        @Override public Map<L, Integer> targetsView(L source) {
+            return targets(source);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<L, PersistentMap<L, Integer>> row : out.entrySet()) {
+                if (row.getValue().isEmpty()) {
+                    sb.append(row.getKey()).append(" -> \n");
+                }
+                for (Map.Entry<L, Integer> edge : row.getValue().entrySet()) {
+                    sb.append(row.getKey()).append(" -> ").append(edge.getKey())
+                      .append(" : ").append(edge.getValue()).append("\n");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A graph being derived from a snapshot by a batch of mutations. Mutable,
+     * and only used by one writer.
+     */
+    private static final class Batch<L> implements CountingGraph<L> {
+
+        private PersistentMap<L, PersistentMap<L, Integer>> out;
+        private PersistentMap<L, PersistentMap<L, Integer>> in;
+        private boolean closed = false;
+
+        // Abstraction function and representation invariant: as for Snapshot.
+        // Safety from rep exposure:
+        //   - observers return immutable maps.
+
+        Batch(Snapshot<L> base) {
+            this.out = base.out;
+            this.in = base.in;
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("batch graph used after its update returned");
+            }
+        }
+
+        @Override public boolean add(L vertex) {
+            checkOpen();
+            if (out.containsKey(vertex)) {
+                return false;
+            }
+            out = out.plus(vertex, PersistentMap.empty());
+            in = in.plus(vertex, PersistentMap.empty());
+            return true;
+        }
+
+        @Override public int set(L source, L target, int weight) {
+            checkOpen();
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight " + weight);
+            }
+            add(source);
+            add(target);
+            PersistentMap<L, Integer> targets = out.get(source);
+            int previousWeight = targets.getOrDefault(target, 0);
+            if (weight == previousWeight) {
+                return previousWeight;
+            } else if (weight == 0) {
+                out = out.plus(source, targets.minus(target));
+                // re-read, in case source == target
+                in = in.plus(target, in.get(target).minus(source));
+            } else {
+                out = out.plus(source, targets.plus(target, weight));
+                in = in.plus(target, in.get(target).plus(source, weight));
+            }
+            return previousWeight;
+        }
+
+        @Override public int increment(L source, L target, int delta) {
+            checkOpen();
+            PersistentMap<L, Integer> targets = out.get(source);
+            int previousWeight = targets == null ? 0 : targets.getOrDefault(target, 0);
+            int weight = Math.addExact(previousWeight, delta);
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight " + weight);
+            }
+            set(source, target, weight);
+            return weight;
+        }
+
+        @Override public boolean remove(L vertex) {
+            checkOpen();
+            PersistentMap<L, Integer> targets = out.get(vertex);
+            if (targets == null) {
+                return false;
+            }
+            for (L target : targets.keySet()) {
+                in = in.plus(target, in.get(target).minus(vertex));
+            }
+            for (L source : in.get(vertex).keySet()) {
+                out = out.plus(source, out.get(source).minus(vertex));
+            }
+            out = out.minus(vertex);
+            in = in.minus(vertex);
+            return true;
+        }
+
+        @Override public Set<L> vertices() {
+            checkOpen();
+            return Collections.unmodifiableSet(out.keySet());
+        }
+
+        @Override public Map<L, Integer> sources(L target) {
+            checkOpen();
+            PersistentMap<L, Integer> sources = in.get(target);
+            return sources == null ? Collections.emptyMap() : sources;
+        }
+
+        @Override public Map<L, Integer> targets(L source) {
+            checkOpen();
+            PersistentMap<L, Integer> targets = out.get(source);
+            return targets == null ? Collections.emptyMap() : targets;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A weighted directed graph that can also be read without copying.
+ * 
+ * <p>Graph's vertices(), sources() and targets() return fresh collections that
+ * the caller owns. The view methods here return unmodifiable views onto this
+ * graph instead, for read-heavy callers that do not keep the result. A view
+ * equals what the corresponding copying method would return at the time of
+ * the call; it must not be used after this graph is modified.
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public interface ViewableGraph<L> extends Graph<L> {
+    
+    /**
+     * Get all the vertices in this graph, without copying.
+     * 
+     * @return unmodifiable view of the set of labels of vertices in this graph
+     */
+    public Set<L> verticesView();
+    
+    /**
+     * Get the sources of a target vertex, without copying.
+     * 
+     * @param target a label
+     * @return unmodifiable view of the map that {@link #sources(Object)
+     *         sources(target)} would return
+     */
+    public Map<L, Integer> sourcesView(L target);
+    
+    /**
+     * Get the targets of a source vertex, without copying.
+     * 
+     * @param source a label
+     * @return unmodifiable view of the map that {@link #targets(Object)
+     *         targets(source)} would return
+     */
+    public Map<L, Integer> targetsView(L source);
+    
+}
@@ -0,0 +1,417 @@
+package poet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * A size-bounded cache of bridge-word answers, keyed by word pair (w1, w2).
+ * Answers of "no bridge" are cached like any other.
+ *
+ * <p>Pairs are spread over segments by hash, each guarded by its own lock
+ * and holding an equal share of the capacity, so concurrent lookups of
+ * different pairs rarely wait for each other. Within a segment, eviction
+ * follows the cache's policy:
+ * <ul><li>{@link Policy#LRU} evicts the least recently used pair.
+ *     <li>{@link Policy#TINY_LFU} follows W-TinyLFU: new pairs enter a small
+ *         LRU window; a pair leaving the window is admitted to the main
+ *         segmented LRU only if it has been looked up more often than the
+ *         pair it would evict, as estimated by a count-min sketch whose counts
+ *         are halved periodically so that old popularity fades. A burst of
+ *         one-off pairs therefore cannot flush out the pairs that keep coming
+ *         back. </ul>
+ *
+ * <p>Counts hits, misses and evictions. A cache belongs to one BridgeIndex,
+ * which decides whether a cached answer is still current; stale answers
+ * count as misses.
+ */
+public class BridgeCache {
+
+    /**
+     * Which pair to evict when a segment is full.
+     */
+    public enum Policy {
+        /** Evict the least recently used pair. */
+        LRU,
+        /** Admit new pairs by estimated frequency (W-TinyLFU). */
+        TINY_LFU
+    }
+
+    private static final int MAX_SEGMENTS = 16;
+    // Pairs per segment below which more segments are not worth their share of capacity
+    private static final int MIN_SEGMENT_CAPACITY = 64;
+
+    private final Policy policy;
+    private final int capacity;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Abstraction function:
+    //   AF(segments, hits, misses, evictions) = a partial map from word pairs to answers, the
+    //     union of the segments' maps, with counts of hits, misses and evictions so far.
+    // Representation invariant:
+    //   - segments.length is a power of two, and each pair is only in segment(pair)
+    //   - the segments' capacities sum to capacity, and no segment holds more pairs than its own
+    // Safety from rep exposure:
+    //   - All fields are private; answers are immutable.
+    // Thread safety argument:
+    //   - each segment's state is only accessed while holding that segment's lock;
+    //     counters are LongAdders.
+
+    /**
+     * Create an empty cache.
+     *
+     * @param capacity maximum number of pairs to hold, >= 1
+     * @param policy which pairs to keep when the cache is full
+     */
+    public BridgeCache(int capacity, Policy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.policy = Objects.requireNonNull(policy);
+        this.capacity = capacity;
+        int count = Math.max(1, Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity / MIN_SEGMENT_CAPACITY)));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // spread the remainder over the first segments
+            int share = capacity / count + (i < capacity % count ? 1 : 0);
+            segments[i] = policy == Policy.LRU ? new LruSegment(share) : new TinyLfuSegment(share);
+        }
+    }
+
+    /**
+     * @return eviction policy of this cache
+     */
+    public Policy policy() {
+        return policy;
+    }
+
+    /**
+     * @return maximum number of pairs this cache holds
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of pairs this cache holds now, current or stale
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return number of lookups answered from this cache
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups not answered from this cache, including
+     *         lookups that found a stale answer
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of pairs evicted to make room for others, including
+     *         new pairs that TINY_LFU declined to admit
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Look up the answer for a pair.
+     *
+     * @param w1 first word
+     * @param w2 second word
+     * @param current whether a cached answer is still valid
+     * @return the cached answer for (w1, w2) if there is one and it is
+     *         current, else null
+     */
+    BridgeIndex.Answer get(String w1, String w2, Predicate<BridgeIndex.Answer> current) {
+        Pair pair = new Pair(w1, w2);
+        Segment segment = segment(pair);
+        BridgeIndex.Answer answer;
+        synchronized (segment) {
+            answer = segment.get(pair);
+        }
+        if (answer != null && current.test(answer)) {
+            hits.increment();
+            return answer;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache the answer for a pair, replacing any answer it had.
+     *
+     * @param w1 first word
+     * @param w2 second word
+     * @param answer answer for (w1, w2)
+     */
+    void put(String w1, String w2, BridgeIndex.Answer answer) {
+        Pair pair = new Pair(w1, w2);
+        Segment segment = segment(pair);
+        int evicted;
+        synchronized (segment) {
+            evicted = segment.put(pair, answer);
+        }
+        if (evicted > 0) {
+            evictions.add(evicted);
+        }
+    }
+
+    private Segment segment(Pair pair) {
+        int hash = pair.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return "BridgeCache(" + policy + ", " + size() + "/" + capacity + " pairs, " + hits() + " hits, "
+                + misses() + " misses, " + evictions() + " evictions)";
+    }
+
+    /**
+     * A word pair. Immutable.
+     */
+    private static final class Pair {
+        private final String w1;
+        private final String w2;
+        private final int hash;
+
+        Pair(String w1, String w2) {
+            this.w1 = w1;
+            this.w2 = w2;
+            this.hash = 31 * w1.hashCode() + w2.hashCode();
+        }
+
+        @Override public boolean equals(Object that) {
+            return that instanceof Pair && ((Pair) that).w1.equals(w1) && ((Pair) that).w2.equals(w2);
+        }
+
+        @Override public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * One segment's pairs and eviction state. Not safe for concurrent use;
+     * callers hold the segment's lock.
+     */
+    private interface Segment {
+        /** @return the answer for pair, or null; counts as a use of pair */
+        BridgeIndex.Answer get(Pair pair);
+
+        /** Store an answer; @return number of pairs evicted to make room */
+        int put(Pair pair, BridgeIndex.Answer answer);
+
+        int size();
+    }
+
+    // An access-ordered map, so iteration starts from the least recently used pair
+    private static LinkedHashMap<Pair, BridgeIndex.Answer> lruMap() {
+        return new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // Remove and return the least recently used pair of a nonempty access-ordered map
+    private static Pair removeEldest(Map<Pair, BridgeIndex.Answer> map) {
+        Iterator<Pair> eldest = map.keySet().iterator();
+        Pair pair = eldest.next();
+        eldest.remove();
+        return pair;
+    }
+
+    /**
+     * A segment that evicts its least recently used pair.
+     */
+    private static final class LruSegment implements Segment {
+        private final int capacity;
+        private final LinkedHashMap<Pair, BridgeIndex.Answer> pairs = lruMap();
+
+        LruSegment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override public BridgeIndex.Answer get(Pair pair) {
+            return pairs.get(pair);
+        }
+
+        @Override public int put(Pair pair, BridgeIndex.Answer answer) {
+            pairs.put(pair, answer);
+            if (pairs.size() > capacity) {
+                removeEldest(pairs);
+                return 1;
+            }
+            return 0;
+        }
+
+        @Override public int size() {
+            return pairs.size();
+        }
+    }
+
+    /**
+     * A W-TinyLFU segment: an LRU window of about 1% of the capacity in front
+     * of a main segmented LRU, whose protected part (80%) holds pairs used
+     * again while on probation.
+     */
+    private static final class TinyLfuSegment implements Segment {
+        private final int windowCapacity;
+        private final int mainCapacity;
+        private final int protectedCapacity;
+        private final LinkedHashMap<Pair, BridgeIndex.Answer> window = lruMap();
+        private final LinkedHashMap<Pair, BridgeIndex.Answer> probation = lruMap();
+        private final LinkedHashMap<Pair, BridgeIndex.Answer> protectedPairs = lruMap();
+        private final FrequencySketch sketch;
+
+        TinyLfuSegment(int capacity) {
+            this.windowCapacity = Math.max(1, capacity / 100);
+            this.mainCapacity = capacity - windowCapacity;
+            this.protectedCapacity = mainCapacity * 4 / 5;
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        @Override public BridgeIndex.Answer get(Pair pair) {
+            sketch.increment(pair.hashCode());
+            BridgeIndex.Answer answer = window.get(pair);
+            if (answer != null) {
+                return answer;
+            }
+            answer = protectedPairs.get(pair);
+            if (answer != null) {
+                return answer;
+            }
+            answer = probation.remove(pair);
+            if (answer != null) {
+                promote(pair, answer);
+            }
+            return answer;
+        }
+
+        // Move a pair used again on probation to the protected part, demoting the
+        // protected part's least recently used pair if it is full
+        private void promote(Pair pair, BridgeIndex.Answer answer) {
+            protectedPairs.put(pair, answer);
+            if (protectedPairs.size() > protectedCapacity) {
+                Iterator<Map.Entry<Pair, BridgeIndex.Answer>> eldest = protectedPairs.entrySet().iterator();
+                Map.Entry<Pair, BridgeIndex.Answer> demoted = eldest.next();
+                probation.put(demoted.getKey(), demoted.getValue());
+                eldest.remove();
+            }
+        }
+
+        @Override public int put(Pair pair, BridgeIndex.Answer answer) {
+            if (window.containsKey(pair)) {
+                window.put(pair, answer);
+                return 0;
+            } else if (protectedPairs.containsKey(pair)) {
+                protectedPairs.put(pair, answer);
+                return 0;
+            } else if (probation.containsKey(pair)) {
+                probation.put(pair, answer);
+                return 0;
+            }
+            window.put(pair, answer);
+            if (window.size() <= windowCapacity) {
+                return 0;
+            }
+            // The window overflowed: its eldest pair is a candidate for the main part
+            Map.Entry<Pair, BridgeIndex.Answer> eldest = window.entrySet().iterator().next();
+            Pair candidate = eldest.getKey();
+            BridgeIndex.Answer candidateAnswer = window.remove(candidate);
+            if (probation.size() + protectedPairs.size() < mainCapacity) {
+                probation.put(candidate, candidateAnswer);
+                return 0;
+            }
+            Map<Pair, BridgeIndex.Answer> victims = probation.isEmpty() ? protectedPairs : probation;
+            if (victims.isEmpty()) {
+                return 1; // no main part at all, so the candidate is dropped
+            }
+            Pair victim = victims.keySet().iterator().next();
+            if (sketch.frequency(candidate.hashCode()) > sketch.frequency(victim.hashCode())) {
+                victims.remove(victim);
+                probation.put(candidate, candidateAnswer);
+            }
+            return 1;
+        }
+
+        @Override public int size() {
+            return window.size() + probation.size() + protectedPairs.size();
+        }
+    }
+
+    /**
+     * Estimates how often each hash has been seen recently: a count-min sketch
+     * of four rows of counters capped at 15, all halved once the number of
+     * increments reaches ten times the capacity it was sized for.
+     */
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[][] counts;
+        private final int mask;
+        private final int sampleSize;
+        private int increments = 0;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+            counts = new byte[ROWS][width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(1, capacity);
+        }
+
+        private int index(int hash, int row) {
+            int mixed = hash * SEEDS[row];
+            return (mixed ^ (mixed >>> 15)) & mask;
+        }
+
+        void increment(int hash) {
+            for (int row = 0; row < ROWS; row++) {
+                int i = index(hash, row);
+                if (counts[row][i] < MAX_COUNT) {
+                    counts[row][i]++;
+                }
+            }
+            if (++increments >= sampleSize) {
+                age();
+            }
+        }
+
+        int frequency(int hash) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                min = Math.min(min, counts[row][index(hash, row)]);
+            }
+            return min;
+        }
+
+        // Halve every count, so that pairs popular long ago give way to pairs popular now
+        private void age() {
+            for (byte[] row : counts) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            increments /= 2;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package poet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import graph.Graph;
+import graph.ViewableGraph;
+
+/**
+ * Ranked and sampled bridge words for a read-only word graph.
+ *
+ * <p>Candidates and scores are those of BridgeIndex: every target b of w1
+ * is a candidate with score {@code weight(w1, b) + weight(b, w2)}, where a
+ * missing edge weighs 0. topK() ranks candidates by score, breaking ties by
+ * {@code targets(w1)} iteration order, so its first bridge is the one
+ * BridgeIndex answers. sample() draws a candidate with probability
+ * proportional to its score.
+ *
+ * <p>Both read precomputed rows: the targets of w1 and the sources of w2,
+ * each sorted by weight, with an index by word and an alias table for
+ * drawing one in O(1). A row is built the first time it is read, in time
+ * linear in its length, and kept, as below. topK() walks the two
+ * rows down from their heaviest edges at once, as in Fagin's threshold
+ * algorithm, and stops as soon as no word further down either row can
+ * outrank the k-th best so far. When scores are distinct that is usually
+ * after a few more than k words; when many candidates tie, the ranking
+ * may read the whole target row, as a search does.
+ *
+ * <p>sample() draws from the target row of w1 or the source row of w2, in
+ * proportion to their total weights, and rejects a source of w2 that is not
+ * a target of w1; the expected number of draws is at most (A + C) / A,
+ * where A and C are the total weights of the two rows. After MAX_DRAWS
+ * rejections it falls back to one scan of the target row.
+ *
+ * <p>Rows of words that have no neighbors in a direction, which includes
+ * words that are not in the graph, are not kept. The rows kept hold at most
+ * maxCachedNeighbors neighbors in all; past that, arbitrary rows are
+ * dropped, to be rebuilt when next read.
+ *
+ * <p>When the graph is mutated, invalidate() the changed edges; the other
+ * rows stay valid. Safe for concurrent lookups, but not concurrently with
+ * mutation of the graph or invalidate().
+ */
+final class BridgeCandidates {
+
+    // Draws before sample() falls back to scanning the target row
+    private static final int MAX_DRAWS = 16;
+    /** Neighbors kept in rows, in all, by default: some tens of MB. */
+    static final long DEFAULT_MAX_CACHED_NEIGHBORS = 1 << 20;
+
+    private final Graph<String> graph;
+    private final long maxCachedNeighbors;
+    // Rows of targets, and of sources, of words read so far
+    private final Map<String, Row> targetRows = new ConcurrentHashMap<>();
+    private final Map<String, Row> sourceRows = new ConcurrentHashMap<>();
+    // Neighbors in all rows kept
+    private final AtomicLong cachedNeighbors = new AtomicLong();
+
+    // Abstraction function:
+    //   AF(graph, targetRows, sourceRows) = the functions topK(w1, w2, k) and sample(w1, w2, random)
+    //     over the words of graph, where targetRows and sourceRows cache some of the rows they read
+    // Representation invariant:
+    //   - targetRows.get(w) is the row of graph.targets(w), and sourceRows.get(w) the row of
+    //     graph.sources(w), for every key w, except between a mutation of graph and invalidate()
+    //   - no row kept is empty
+    //   - cachedNeighbors is the total length of the rows kept, and is at most
+    //     maxCachedNeighbors once no row is being kept or dropped
+    // Safety from rep exposure:
+    //   - All fields are private; rows are immutable and never returned.
+    // Thread safety argument:
+    //   - rows are immutable and published through concurrent maps; two threads may build
+    //     the same row, and only the one put first is kept and counted
+    //   - a row's length is added to cachedNeighbors only by the thread that put it, and
+    //     subtracted only by the thread that removed it
+
+    /**
+     * The neighbors of one word in one direction, by weight.
+     */
+    private static final class Row {
+        static final Row EMPTY = new Row(Collections.emptyMap());
+
+        // Neighbors, heaviest first, and in iteration order among equal weights
+        final String[] words;
+        final int[] weights;
+        // Position of each neighbor in iteration order, and the least position from each index on
+        final int[] positions;
+        final int[] leastPositionFrom;
+        // Open-addressing table of the index in words of each neighbor, plus one; 0 if empty
+        final int[] slots;
+        final long total;
+        // Alias table: draw i uniformly, then keep it with probability keep[i], else take alias[i]
+        final double[] keep;
+        final int[] alias;
+
+        Row(Map<String, Integer> neighbors) {
+            int n = neighbors.size();
+            Integer[] order = new Integer[n];
+            String[] inOrder = new String[n];
+            int[] weightsInOrder = new int[n];
+            int position = 0;
+            for (Map.Entry<String, Integer> neighbor : neighbors.entrySet()) {
+                order[position] = position;
+                inOrder[position] = neighbor.getKey();
+                weightsInOrder[position] = neighbor.getValue();
+                position++;
+            }
+            // stable, so equal weights stay in iteration order
+            Arrays.sort(order, (a, b) -> Integer.compare(weightsInOrder[b], weightsInOrder[a]));
+            words = new String[n];
+            weights = new int[n];
+            positions = new int[n];
+            slots = new int[Integer.highestOneBit(2 * n + 1) << 1];
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                words[i] = inOrder[order[i]];
+                weights[i] = weightsInOrder[order[i]];
+                positions[i] = order[i];
+                int slot = slot(words[i]);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = i + 1;
+                sum += weights[i];
+            }
+            total = sum;
+            leastPositionFrom = new int[n + 1];
+            leastPositionFrom[n] = Integer.MAX_VALUE;
+            for (int i = n - 1; i >= 0; i--) {
+                leastPositionFrom[i] = Math.min(positions[i], leastPositionFrom[i + 1]);
+            }
+            keep = new double[n];
+            alias = new int[n];
+            buildAliasTable();
+        }
+
+        // Vose's alias method: O(n) to build, O(1) to draw
+        private void buildAliasTable() {
+            int n = words.length;
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smalls = 0;
+            int larges = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * (double) n / total;
+                if (scaled[i] < 1) {
+                    small[smalls++] = i;
+                } else {
+                    large[larges++] = i;
+                }
+            }
+            while (smalls > 0 && larges > 0) {
+                int less = small[--smalls];
+                int more = large[--larges];
+                keep[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] -= 1 - scaled[less];
+                if (scaled[more] < 1) {
+                    small[smalls++] = more;
+                } else {
+                    large[larges++] = more;
+                }
+            }
+            // what is left has probability 1, up to rounding
+            while (larges > 0) {
+                keep[large[--larges]] = 1;
+            }
+            while (smalls > 0) {
+                keep[small[--smalls]] = 1;
+            }
+        }
+
+        /** @return index of a neighbor drawn in proportion to its weight; the row must not be empty */
+        int draw(Random random) {
+            int i = random.nextInt(words.length);
+            return random.nextDouble() < keep[i] ? i : alias[i];
+        }
+
+        private int slot(String word) {
+            int hash = word.hashCode();
+            return (hash ^ (hash >>> 16)) & (slots.length - 1);
+        }
+
+        /** @return index in words of a neighbor, or -1 if word is not one */
+        int indexOf(String word) {
+            for (int slot = slot(word); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                if (words[slots[slot] - 1].equals(word)) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /** @return weight of the edge to or from word, or 0 if there is none */
+        int weight(String word) {
+            int i = indexOf(word);
+            return i < 0 ? 0 : weights[i];
+        }
+    }
+
+    /**
+     * Create ranked and sampled bridges over a graph, keeping rows of at
+     * most DEFAULT_MAX_CACHED_NEIGHBORS neighbors in all.
+     *
+     * @param graph word graph; after it is mutated, invalidate() must be
+     *              called before the next lookup
+     */
+    BridgeCandidates(Graph<String> graph) {
+        this(graph, DEFAULT_MAX_CACHED_NEIGHBORS);
+    }
+
+    /**
+     * Create ranked and sampled bridges over a graph.
+     *
+     * @param graph word graph; after it is mutated, invalidate() must be
+     *              called before the next lookup
+     * @param maxCachedNeighbors greatest number of neighbors to keep in rows,
+     *                           in all, >= 0
+     */
+    BridgeCandidates(Graph<String> graph, long maxCachedNeighbors) {
+        if (maxCachedNeighbors < 0) {
+            throw new IllegalArgumentException("maxCachedNeighbors must be nonnegative: " + maxCachedNeighbors);
+        }
+        this.graph = graph;
+        this.maxCachedNeighbors = maxCachedNeighbors;
+    }
+
+    private Row targets(String word) {
+        Row row = targetRows.get(word);
+        if (row == null) {
+            Map<String, Integer> targets = graph instanceof ViewableGraph
+                    ? ((ViewableGraph<String>) graph).targetsView(word) : graph.targets(word);
+            row = keep(targetRows, word, targets);
+        }
+        return row;
+    }
+
+    private Row sources(String word) {
+        Row row = sourceRows.get(word);
+        if (row == null) {
+            Map<String, Integer> sources = graph instanceof ViewableGraph
+                    ? ((ViewableGraph<String>) graph).sourcesView(word) : graph.sources(word);
+            row = keep(sourceRows, word, sources);
+        }
+        return row;
+    }
+
+    // Build a row of neighbors, and keep it in rows if it is not empty and fits
+    private Row keep(Map<String, Row> rows, String word, Map<String, Integer> neighbors) {
+        if (neighbors.isEmpty()) {
+            return Row.EMPTY;
+        }
+        Row row = new Row(neighbors);
+        if (row.words.length > maxCachedNeighbors) {
+            return row;
+        }
+        Row kept = rows.putIfAbsent(word, row);
+        if (kept != null) {
+            return kept;
+        }
+        if (cachedNeighbors.addAndGet(row.words.length) > maxCachedNeighbors) {
+            evict(rows, word);
+        }
+        return row;
+    }
+
+    // Drop rows other than the one just kept until the rows kept fit
+    private void evict(Map<String, Row> keptIn, String word) {
+        for (Map<String, Row> rows : List.of(targetRows, sourceRows)) {
+            for (String key : rows.keySet()) {
+                if (cachedNeighbors.get() <= maxCachedNeighbors) {
+                    return;
+                }
+                if (rows != keptIn || !key.equals(word)) {
+                    drop(rows, key);
+                }
+            }
+        }
+    }
+
+    private void drop(Map<String, Row> rows, String word) {
+        Row dropped = rows.remove(word);
+        if (dropped != null) {
+            cachedNeighbors.addAndGet(-dropped.words.length);
+        }
+    }
+
+    /**
+     * @return number of neighbors in the rows kept
+     */
+    long cachedNeighbors() {
+        return cachedNeighbors.get();
+    }
+
+    /**
+     * Rank the bridges between two words.
+     *
+     * @param w1 lower-case first word
+     * @param w2 lower-case second word
+     * @param k maximum number of bridges to return, >= 0
+     * @return the k candidates with the highest scores (or all of them, if
+     *         fewer), highest first; equal scores in targets(w1) order
+     */
+    List<String> topK(String w1, String w2, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be nonnegative: " + k);
+        }
+        Row out = targets(w1);
+        Row in = sources(w2);
+        int limit = Math.min(k, out.words.length);
+        // The best candidates so far, best first: indexes into out, and their scores
+        int[] best = new int[limit];
+        long[] bestScores = new long[limit];
+        int found = 0;
+        // Candidates reached down the source row, by index in out
+        BitSet reachedFromSources = new BitSet();
+        int i = 0;
+        int j = 0;
+        while (i < out.words.length && limit > 0) {
+            // No candidate unseen in both rows can score more than this, and all come after
+            // leastPositionFrom[i] in iteration order
+            long threshold = (long) out.weights[i] + (j < in.words.length ? in.weights[j] : 0);
+            if (found == limit && outranksFrom(out, best[limit - 1], bestScores[limit - 1],
+                    out.leastPositionFrom[i], threshold)) {
+                break;
+            }
+            if (!reachedFromSources.get(i)) {
+                found = offer(out, best, bestScores, found, i, (long) out.weights[i] + in.weight(out.words[i]));
+            }
+            i++;
+            if (j < in.words.length) {
+                int candidate = out.indexOf(in.words[j]);
+                if (candidate >= i) {
+                    reachedFromSources.set(candidate);
+                    found = offer(out, best, bestScores, found, candidate,
+                            (long) out.weights[candidate] + in.weights[j]);
+                }
+                j++;
+            }
+        }
+        List<String> bridges = new ArrayList<>(found);
+        for (int r = 0; r < found; r++) {
+            bridges.add(out.words[best[r]]);
+        }
+        return bridges;
+    }
+
+    // Insert candidate into the first found of best, keeping at most best.length; return the new count
+    private static int offer(Row out, int[] best, long[] bestScores, int found, int candidate, long score) {
+        int r = found;
+        while (r > 0 && outranks(out, candidate, score, best[r - 1], bestScores[r - 1])) {
+            r--;
+        }
+        if (r == best.length) {
+            return found;
+        }
+        int count = Math.min(found + 1, best.length);
+        System.arraycopy(best, r, best, r + 1, count - r - 1);
+        System.arraycopy(bestScores, r, bestScores, r + 1, count - r - 1);
+        best[r] = candidate;
+        bestScores[r] = score;
+        return count;
+    }
+
+    // Whether candidate a outranks candidate b, both indexes into out
+    private static boolean outranks(Row out, int a, long aScore, int b, long bScore) {
+        return outranksFrom(out, a, aScore, out.positions[b], bScore);
+    }
+
+    // Whether candidate a outranks every candidate at bPosition or later with at most bScore
+    private static boolean outranksFrom(Row out, int a, long aScore, int bPosition, long bScore) {
+        return aScore != bScore ? aScore > bScore : out.positions[a] < bPosition;
+    }
+
+    /**
+     * Draw a bridge between two words at random.
+     *
+     * @param w1 lower-case first word
+     * @param w2 lower-case second word
+     * @param random source of randomness
+     * @return a candidate drawn with probability proportional to its score,
+     *         or null if w1 has no targets
+     */
+    String sample(String w1, String w2, Random random) {
+        Row out = targets(w1);
+        if (out.words.length == 0) {
+            return null;
+        }
+        Row in = sources(w2);
+        double total = (double) out.total + in.total;
+        for (int draw = 0; draw < MAX_DRAWS; draw++) {
+            if (random.nextDouble() * total < out.total) {
+                return out.words[out.draw(random)];
+            }
+            String source = in.words[in.draw(random)];
+            if (out.indexOf(source) >= 0) {
+                return source;
+            }
+        }
+        // Mostly sources of w2 that are not targets of w1: draw from the scores directly
+        long sum = 0;
+        long[] cumulative = new long[out.words.length];
+        for (int i = 0; i < out.words.length; i++) {
+            sum += out.weights[i] + in.weight(out.words[i]);
+            cumulative[i] = sum;
+        }
+        long target = (long) (random.nextDouble() * sum);
+        int i = Arrays.binarySearch(cumulative, target + 1);
+        return out.words[i >= 0 ? i : -i - 1];
+    }
+
+    /**
+     * Forget the rows that changed edges are in.
+     *
+     * @param sources sources of changed edges
+     * @param targets targets of changed edges
+     */
+    void invalidate(Iterable<String> sources, Iterable<String> targets) {
+        for (String source : sources) {
+            drop(targetRows, source);
+        }
+        for (String target : targets) {
+            drop(sourceRows, target);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package poet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import graph.Graph;
+import graph.ViewableGraph;
+
+/**
+ * Bridge-word lookups for a read-only word graph.
+ *
+ * <p>The bridge from w1 to w2 is chosen exactly as GraphPoet always has:
+ * every target b of w1 is a candidate with score
+ * {@code weight(w1, b) + weight(b, w2)}, where a missing edge weighs 0, and
+ * the first candidate in {@code targets(w1)} iteration order with the highest
+ * score wins. There is no bridge iff w1 has no targets.
+ *
+ * <p>When w2 is not reached from w1 by any two-edge path, the answer is the
+ * <i>default bridge</i> of w1, its first maximum-weight target. An index
+ * therefore stores one default per word, plus an override for each pair
+ * (w1, w2) whose answer differs from w1's default.
+ *
+ * <ul><li>{@link Mode#NONE} searches the graph on every lookup.
+ *     <li>{@link Mode#LAZY} searches on the first lookup of a pair and
+ *         memoizes the answer.
+ *     <li>{@link Mode#EAGER} materializes defaults and overrides for every
+ *         word at construction time. </ul>
+ *
+ * <p>A limit on materialized pairs bounds memory in both LAZY and EAGER modes:
+ * once it is reached, nothing more is memoized and words not yet indexed are
+ * searched on every lookup. Alternatively, a {@link BridgeCache} holds a
+ * bounded number of answers and evicts the least valuable ones to make
+ * room: given one, lookups that the EAGER index does not answer go through
+ * the cache instead of the LAZY memo, in any mode. Answers are the same in
+ * every mode.
+ *
+ * <p>When the graph is mutated, invalidate() the changed edges; the rest of
+ * the index stays valid. Safe for concurrent lookups,
+ * but not concurrently with mutation of the graph or invalidate().
+ */
+public class BridgeIndex {
+
+    /**
+     * How much of the index to build ahead of lookups.
+     */
+    public enum Mode {
+        /** No index: search on every lookup. */
+        NONE,
+        /** Memoize each pair on its first lookup. */
+        LAZY,
+        /** Index every word at construction time. */
+        EAGER
+    }
+
+    private final Graph<String> graph;
+    private final Mode mode;
+    private final AtomicInteger budget;
+    // Default bridge of each fully indexed word that has targets
+    private final Map<String, String> defaults = new HashMap<>();
+    // Overrides of each fully indexed word; a word is fully indexed iff it is a key here
+    private final Map<String, Map<String, String>> overrides = new HashMap<>();
+    // Generation in which each fully indexed word was indexed
+    private final Map<String, Long> indexedAt = new HashMap<>();
+    // Memoized answers, by w1 and then w2
+    private final Map<String, Map<String, Answer>> memo = new ConcurrentHashMap<>();
+    // Bounded cache of answers, used instead of memo if not null
+    private final BridgeCache cache;
+    // Number of calls to invalidate()
+    private long generation = 0;
+    // Generation in which each word was last the source, or target, of a changed edge
+    private final Map<String, Long> sourceChanged = new HashMap<>();
+    private final Map<String, Long> targetChanged = new HashMap<>();
+
+    // Abstraction function:
+    //   AF(graph, defaults, overrides, memo) = the function bridge(w1, w2) over the words of graph,
+    //     where defaults, overrides and memo cache some of its values.
+    //   An entry for (w1, w2) made in generation g is current iff w2 has not been the target of
+    //     a changed edge since: g >= targetChanged.get(w2), or w2 is not a key.
+    //   A cached answer for (w1, w2) made in generation g is current iff it is current as an
+    //     entry, and w1 has not been the source of a changed edge since: g >= sourceChanged.get(w1).
+    // Representation invariant:
+    //   - for each key w1 of overrides, and every w2 for which indexedAt.get(w1) is current,
+    //     bridge(w1, w2) is overrides.get(w1).get(w2) if present, else defaults.get(w1) (null if absent)
+    //   - each memo entry w1 -> w2 -> answer whose generation is current has
+    //     answer.bridge == bridge(w1, w2), and so has each current answer in cache
+    //   - defaults, overrides, indexedAt, sourceChanged and targetChanged are only modified by
+    //     the constructor and invalidate(); overrides and indexedAt have the same keys
+    //   - budget >= 0 is the number of pairs that may still be materialized
+    // Safety from rep exposure:
+    //   - All fields are private; only single bridge words are returned.
+
+    /**
+     * Create a bridge index.
+     *
+     * @param graph word graph; after it is mutated, invalidate() must be
+     *              called before the next lookup
+     * @param mode how much to index ahead of lookups
+     * @param maxPairs maximum number of pairs (defaults, overrides and
+     *                 memoized answers) to materialize, >= 0
+     */
+    public BridgeIndex(Graph<String> graph, Mode mode, int maxPairs) {
+        this(graph, mode, maxPairs, null);
+    }
+
+    /**
+     * Create a bridge index with a bounded cache of answers.
+     *
+     * @param graph word graph; after it is mutated, invalidate() must be
+     *              called before the next lookup
+     * @param mode how much to index ahead of lookups
+     * @param maxPairs maximum number of pairs (defaults and overrides) to
+     *                 materialize ahead of lookups, >= 0
+     * @param cache empty cache to answer the lookups that the index does not,
+     *              not shared with any other index; or null to memoize them
+     *              as described above
+     */
+    public BridgeIndex(Graph<String> graph, Mode mode, int maxPairs, BridgeCache cache) {
+        if (maxPairs < 0) {
+            throw new IllegalArgumentException("maxPairs must be nonnegative: " + maxPairs);
+        }
+        this.graph = graph;
+        this.mode = Objects.requireNonNull(mode);
+        this.budget = new AtomicInteger(maxPairs);
+        this.cache = cache;
+        if (mode == Mode.EAGER) {
+            for (String w1 : graph.vertices()) {
+                if (!indexWord(w1)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the bridge word between two words.
+     *
+     * @param w1 lower-case first word
+     * @param w2 lower-case second word
+     * @return the bridge word (a vertex label) as specified above, or null if
+     *         there is none
+     */
+    public String bridge(String w1, String w2) {
+        Map<String, String> indexed = overrides.get(w1);
+        if (indexed != null && current(indexedAt.get(w1), w2)) {
+            String override = indexed.get(w2);
+            return override != null ? override : defaults.get(w1);
+        }
+        if (cache != null) {
+            Answer cached = cache.get(w1, w2,
+                    answer -> current(answer.generation, w2) && current(sourceChanged, answer.generation, w1));
+            if (cached != null) {
+                return cached.bridge;
+            }
+            String found = search(graph, w1, w2);
+            cache.put(w1, w2, new Answer(found, generation));
+            return found;
+        }
+        if (mode == Mode.NONE) {
+            return search(graph, w1, w2);
+        }
+        Map<String, Answer> row = memo.get(w1);
+        Answer memoized = row == null ? null : row.get(w2);
+        if (memoized != null && current(memoized.generation, w2)) {
+            return memoized.bridge;
+        }
+        String found = search(graph, w1, w2);
+        if (memoized != null) {
+            row.put(w2, new Answer(found, generation)); // replaces a stale answer, so costs no budget
+        } else if (budget.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            memo.computeIfAbsent(w1, k -> new ConcurrentHashMap<>()).put(w2, new Answer(found, generation));
+        }
+        return found;
+    }
+
+    /**
+     * @return the cache of this index, or null if it has none
+     */
+    BridgeCache cache() {
+        return cache;
+    }
+
+    // An entry for a pair ending in w2, made in the given generation, is still current
+    private boolean current(long made, String w2) {
+        return current(targetChanged, made, w2);
+    }
+
+    // An entry made in the given generation is newer than the last change to word
+    private static boolean current(Map<String, Long> changes, long made, String word) {
+        Long changed = changes.get(word);
+        return changed == null || made >= changed;
+    }
+
+    /**
+     * Forget the bridges that may have changed after some edges of the graph
+     * changed weight (or were added or removed). Changing s -> t changes the
+     * bridges from s to any word, and from any word to t, so the cost is
+     * proportional to the number of changed edges, not to the size of the
+     * graph. Words that were indexed ahead of lookups and are forgotten are
+     * memoized like in LAZY mode (or cached) from then on. Must not be called
+     * concurrently with bridge().
+     *
+     * @param sources lower-case sources of the changed edges
+     * @param targets lower-case targets of the changed edges
+     */
+    public void invalidate(Iterable<String> sources, Iterable<String> targets) {
+        generation++;
+        for (String w1 : sources) {
+            sourceChanged.put(w1, generation);
+            Map<String, Answer> row = memo.remove(w1);
+            if (row != null) {
+                budget.addAndGet(row.size());
+            }
+            Map<String, String> indexed = overrides.remove(w1);
+            if (indexed != null) {
+                defaults.remove(w1);
+                indexedAt.remove(w1);
+                budget.addAndGet(1 + indexed.size());
+            }
+        }
+        for (String w2 : targets) {
+            targetChanged.put(w2, generation);
+        }
+    }
+
+    /**
+     * Search the graph for a bridge, without any index.
+     *
+     * @param graph word graph
+     * @param w1 lower-case first word
+     * @param w2 lower-case second word
+     * @return the bridge word as specified above, or null if there is none
+     */
+    static String search(Graph<String> graph, String w1, String w2) {
+        String bestBridge = null;
+        int maxWeight = 0;
+        Map<String, Integer> targets = targets(graph, w1);
+        Map<String, Integer> sources = sources(graph, w2);
+        for (Map.Entry<String, Integer> intermediate : targets.entrySet()) {
+            int weight = intermediate.getValue() + sources.getOrDefault(intermediate.getKey(), 0);
+            if (weight > maxWeight) {
+                maxWeight = weight;
+                bestBridge = intermediate.getKey();
+            }
+        }
+        return bestBridge;
+    }
+
+    // Targets and sources are only read here, so use views when the graph offers them
+    private static Map<String, Integer> targets(Graph<String> graph, String word) {
+        return graph instanceof ViewableGraph ? ((ViewableGraph<String>) graph).targetsView(word) : graph.targets(word);
+    }
+    
+    private static Map<String, Integer> sources(Graph<String> graph, String word) {
+        return graph instanceof ViewableGraph ? ((ViewableGraph<String>) graph).sourcesView(word) : graph.sources(word);
+    }
+    
+    // Materialize the default and overrides of w1, if the budget allows;
+    // return false once the budget is exhausted
+    private boolean indexWord(String w1) {
+        List<String> candidates = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int defaultPosition = -1;
+        int maxWeight = 0;
+        for (Map.Entry<String, Integer> target : targets(graph, w1).entrySet()) {
+            if (target.getValue() > maxWeight) {
+                maxWeight = target.getValue();
+                defaultPosition = candidates.size();
+            }
+            candidates.add(target.getKey());
+            weights.add(target.getValue());
+        }
+        if (candidates.isEmpty()) {
+            return true; // no bridges from w1, nothing to store
+        }
+        // Best two-edge path to each w2 reached from w1, earliest candidate on ties
+        Map<String, int[]> best = new HashMap<>();
+        for (int position = 0; position < candidates.size(); position++) {
+            for (Map.Entry<String, Integer> next : targets(graph, candidates.get(position)).entrySet()) {
+                int score = weights.get(position) + next.getValue();
+                int[] scoreAndPosition = best.get(next.getKey());
+                if (scoreAndPosition == null) {
+                    best.put(next.getKey(), new int[] { score, position });
+                } else if (score > scoreAndPosition[0]) {
+                    scoreAndPosition[0] = score;
+                    scoreAndPosition[1] = position;
+                }
+            }
+        }
+        // A candidate that does not reach w2 scores its own weight, so the default
+        // wins unless a path scores more, or scores the same from an earlier candidate
+        Map<String, String> w1Overrides = new HashMap<>();
+        for (Map.Entry<String, int[]> pathTo : best.entrySet()) {
+            int score = pathTo.getValue()[0];
+            int position = pathTo.getValue()[1];
+            if (score > maxWeight || (score == maxWeight && position < defaultPosition)) {
+                if (position != defaultPosition) {
+                    w1Overrides.put(pathTo.getKey(), candidates.get(position));
+                }
+            }
+        }
+        int pairs = 1 + w1Overrides.size();
+        if (budget.getAndUpdate(n -> n >= pairs ? n - pairs : n) < pairs) {
+            return false;
+        }
+        defaults.put(w1, candidates.get(defaultPosition));
+        overrides.put(w1, w1Overrides.isEmpty() ? Collections.emptyMap() : w1Overrides);
+        indexedAt.put(w1, generation);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "BridgeIndex(" + mode + ", " + overrides.size() + " words indexed, "
+                + (cache != null ? cache : memo.values().stream().mapToInt(Map::size).sum() + " pairs memoized") + ")";
+    }
+
+    /**
+     * A memoized or cached bridge, or null for none, and the generation it
+     * was found in. Immutable.
+     */
+    static final class Answer {
+        private final String bridge;
+        private final long generation;
+
+        Answer(String bridge, long generation) {
+            this.bridge = bridge;
+            this.generation = generation;
+        }
+    }
+}
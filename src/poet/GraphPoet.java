@@ -2,15 +2,44 @@ package poet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import graph.Graph;
-import graph.ConcreteVerticesGraph; // Choose one of the implementations
+import graph.CountingGraph;
+import graph.CsrGraph;
+import graph.GraphFile;
+import graph.InstrumentedGraph;
+import graph.OverlayGraph;
+import graph.VersionedGraph;
+import graph.WeightedEdge;
 
 /**
  * A graph-based poetry generator.
@@ -58,8 +87,28 @@ import graph.ConcreteVerticesGraph; // Choose one of the implementations
 
 public class GraphPoet {
     
+    // Compact learned changes once they outnumber a quarter of the frozen edges, and this many
+    private static final int COMPACTION_DIVISOR = 4;
+    private static final int COMPACTION_MIN = 1 << 16;
+    // Number of word pairs, or of poems, in each task of a batch
+    private static final int BATCH_CHUNK = 256;
+    // Buffers for poem(CharSequence, Appendable), one per thread
+    private static final ThreadLocal<PoemWriter> WRITERS = ThreadLocal.withInitial(PoemWriter::new);
+    
     private final Graph<String> graph;
-    private final Map<String, String> lowerCaseWords = new HashMap<>();
+    // The canonical instance and display case of every word in graph, shared with graph
+    private final Vocabulary vocabulary = new Vocabulary();
+    private final BridgeIndex bridges;
+    // Ranked and sampled bridges of the learned graph, or null if graph is live
+    private final BridgeCandidates candidates;
+    // Frozen corpus graph with learned changes, or null if graph is live
+    private final OverlayGraph<String> learned;
+    // Live graph that each poem pins one snapshot of, or null if graph is not live
+    private final VersionedGraph<String> live;
+    // Guards learned and bridges: poems are written under the read lock, and learned under the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Metrics of this poet, or null if it does not record them
+    private final PoetMetrics metrics;
 
     /**
      * Create a new poet with the graph from corpus (as described above).
@@ -68,28 +117,459 @@ public class GraphPoet {
      * @throws IOException if the corpus file cannot be found or read
      */
     public GraphPoet(File corpus) throws IOException {
-        this.graph = new ConcreteVerticesGraph(); // Use the appropriate Graph implementation
-        constructGraph(corpus);
-    }
-    
-    // Construct the graph from the corpus
-    private void constructGraph(File corpus) throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(corpus.getPath()));
-        for (String line : lines) {
-            String[] words = line.split("\\s+");
-            for (int i = 0; i < words.length; i++) {
-                String word1 = words[i].toLowerCase();
-                lowerCaseWords.put(word1, words[i]); // Store original case
-                
-                // Add words to graph
-                graph.add(word1);
-                
-                if (i < words.length - 1) {
-                    String word2 = words[i + 1].toLowerCase();
-                    graph.add(word2);
-                    graph.set(word1, word2, graph.targets(word1).getOrDefault(word2, 0) + 1);
-                }
+        this(corpus.toPath());
+    }
+    
+    /**
+     * Create a new poet with the graph from a UTF-8 corpus file, reading it
+     * incrementally.
+     * 
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @throws IOException if the corpus file cannot be found or read
+     */
+    public GraphPoet(Path corpus) throws IOException {
+        this(corpus, new Builder());
+    }
+    
+    /**
+     * Create a new poet with the graph from corpus text, reading it
+     * incrementally.
+     * 
+     * @param corpus text from which to derive the poet's affinity graph;
+     *               read to the end, but not closed
+     * @throws IOException if the corpus cannot be read
+     */
+    public GraphPoet(Reader corpus) throws IOException {
+        this(corpus, new Builder());
+    }
+    
+    /**
+     * Create a new poet with the graph from an encoded corpus, reading it
+     * incrementally.
+     * 
+     * @param corpus bytes from which to derive the poet's affinity graph;
+     *               read to the end, but not closed
+     * @param charset encoding of corpus
+     * @throws IOException if the corpus cannot be read or is not valid in charset
+     */
+    public GraphPoet(InputStream corpus, Charset charset) throws IOException {
+        this(new InputStreamReader(corpus, charset.newDecoder()), new Builder());
+    }
+    
+    private GraphPoet(Path corpus, Builder options) throws IOException {
+        this.metrics = options.newMetrics();
+        long start = System.nanoTime();
+        CountingGraph<String> building;
+        if (options.parallelism > 1) {
+            ParallelCorpusReader.Counts counts = ParallelCorpusReader.read(corpus, options.parallelism);
+            // The vocabulary is known before the graph is built, so size the graph for it
+            building = Graph.builder().expectedVertices(counts.words.size()).build();
+            constructGraph(counts, building, start);
+        } else {
+            building = Graph.builder().build();
+            try (Reader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+                constructGraph(reader, building, start);
+            }
+        }
+        this.learned = new OverlayGraph<>(freeze(building));
+        this.graph = options.observe(learned, lock, metrics);
+        this.bridges = options.newBridgeIndex(graph);
+        this.candidates = new BridgeCandidates(graph);
+        this.live = null;
+    }
+    
+    private GraphPoet(Reader corpus, Builder options) throws IOException {
+        this.metrics = options.newMetrics();
+        long start = System.nanoTime();
+        CountingGraph<String> building = Graph.builder().build();
+        constructGraph(corpus, building, start);
+        this.learned = new OverlayGraph<>(freeze(building));
+        this.graph = options.observe(learned, lock, metrics);
+        this.bridges = options.newBridgeIndex(graph);
+        this.candidates = new BridgeCandidates(graph);
+        this.live = null;
+    }
+    
+    private GraphPoet(GraphFile saved, Builder options) {
+        this.metrics = options.newMetrics();
+        this.learned = new OverlayGraph<>(saved.graph());
+        this.graph = options.observe(learned, lock, metrics);
+        Map<String, String> displayNames = saved.displayNames();
+        for (String word : saved.graph().vertices()) {
+            vocabulary.add(word, displayNames.getOrDefault(word, word));
+        }
+        this.bridges = options.newBridgeIndex(graph);
+        this.candidates = new BridgeCandidates(graph);
+        this.live = null;
+    }
+    
+    private GraphPoet(VersionedGraph<String> live, Builder options) {
+        this.metrics = options.newMetrics();
+        this.graph = live;
+        this.bridges = null;
+        this.candidates = null;
+        this.learned = null;
+        this.live = live;
+    }
+    
+    // The corpus graph only changes by learn(), so keep it in the compact frozen form
+    private static CsrGraph<String> freeze(Graph<String> building) {
+        return CsrGraph.from(building);
+    }
+    
+    /**
+     * Create a new poet from a graph file written by save(), without reading
+     * or tokenizing any corpus.
+     * 
+     * @param file graph file written by save()
+     * @return a new poet that writes the same poems as the poet that saved
+     *         the file
+     * @throws IOException if the file cannot be read or is not a valid graph file
+     */
+    public static GraphPoet fromGraphFile(Path file) throws IOException {
+        return new GraphPoet(GraphFile.load(file), new Builder());
+    }
+    
+    /**
+     * Save this poet's affinity graph, and the original case of its words,
+     * to a graph file that fromGraphFile() can load. A poet over a versioned
+     * graph saves the graph's current snapshot.
+     * 
+     * @param file file to write, atomically replacing any existing file
+     * @throws IOException if the file cannot be written; any existing file is
+     *         then unchanged
+     */
+    public void save(Path file) throws IOException {
+        if (live != null) {
+            GraphFile.save(live.snapshot(), vocabulary.displayNames(), file);
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            GraphFile.save(learned, vocabulary.displayNames(), file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Learn more text, as if it were appended to the corpus after a line
+     * break: edge weights grow by the text's adjacencies, and its words take
+     * their case from it. Poems written afterwards are those of a poet whose
+     * corpus included the text, up to ties between equally good bridge words.
+     * 
+     * <p>The cost is proportional to the text, not the corpus: the frozen
+     * graph is not rebuilt, and only the bridge lookups of words whose
+     * bridges may have changed are forgotten. Poems may be written
+     * concurrently; they see the graph before or after the text, never
+     * partway through.
+     * 
+     * @param text text to learn
+     */
+    public void learn(CharSequence text) {
+        try {
+            learn(new StringReader(text.toString()));
+        } catch (IOException e) {
+            throw new AssertionError("StringReader does not throw", e);
+        }
+    }
+    
+    /**
+     * Learn more text from a UTF-8 file, as learn(CharSequence) does.
+     * 
+     * @param text text file to learn
+     * @throws IOException if the file cannot be found or read; the poet is
+     *         then unchanged
+     */
+    public void learn(Path text) throws IOException {
+        try (Reader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8)) {
+            learn(reader);
+        }
+    }
+    
+    // Count the text first, so poems only wait while the counts are applied
+    private void learn(Reader text) throws IOException {
+        long start = System.nanoTime();
+        ParallelCorpusReader.Counts counts = new ParallelCorpusReader.Counts();
+        WordScanner scanner = new WordScanner(text);
+        String previous = null;
+        for (String word = scanner.next(); word != null; word = scanner.next()) {
+            String lowerCase = word.toLowerCase();
+            counts.words.put(lowerCase, word);
+            counts.tokens++;
+            if (previous != null) {
+                counts.adjacencies.increment(previous, lowerCase, counts.bigrams);
+                counts.bigrams++;
+            }
+            previous = lowerCase;
+        }
+        if (live != null) {
+            live.update(g -> constructGraph(counts, g, start));
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            constructGraph(counts, metrics == null ? learned : metrics.graph(), start);
+            Set<String> sources = new HashSet<>();
+            Set<String> targets = new HashSet<>();
+            for (WeightedEdge<String> edge : counts.edges()) {
+                sources.add(edge.getSource());
+                targets.add(edge.getTarget());
+            }
+            bridges.invalidate(sources, targets);
+            candidates.invalidate(sources, targets);
+            if (learned.changedEdges() > COMPACTION_MIN + learned.baseEdges() / COMPACTION_DIVISOR) {
+                learned.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * @return a builder for a poet with non-default options
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Options for creating a GraphPoet. By default, bridge words are
+     * searched for on every lookup (BridgeIndex.Mode.NONE).
+     */
+    public static class Builder {
+        
+        private BridgeIndex.Mode bridgeMode = BridgeIndex.Mode.NONE;
+        private int maxBridgePairs = Integer.MAX_VALUE;
+        private int cacheCapacity = 0;
+        private BridgeCache.Policy cachePolicy = null;
+        private int parallelism = 1;
+        private int metricsSampleEvery = 0;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Precompute or memoize bridge words; poems are the same in every mode.
+         * 
+         * @param mode how much of the bridge index to build ahead of lookups
+         * @param maxPairs maximum number of word pairs the index may hold, >= 0
+         * @return this builder
+         */
+        public Builder bridgeIndex(BridgeIndex.Mode mode, int maxPairs) {
+            if (maxPairs < 0) {
+                throw new IllegalArgumentException("maxPairs must be nonnegative: " + maxPairs);
             }
+            this.bridgeMode = mode;
+            this.maxBridgePairs = maxPairs;
+            return this;
+        }
+        
+        /**
+         * Keep the answers of bridge lookups in a bounded cache, which
+         * evicts pairs by the given policy once it holds capacity pairs. The
+         * cache replaces the memo of BridgeIndex.Mode.LAZY, and answers the
+         * lookups that an EAGER index does not. Poems are the same with or
+         * without a cache. Poets over a versioned graph do not cache.
+         * 
+         * @param capacity maximum number of word pairs to cache, >= 1
+         * @param policy which pairs to evict when the cache is full
+         * @return this builder
+         */
+        public Builder bridgeCache(int capacity, BridgeCache.Policy policy) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity must be positive: " + capacity);
+            }
+            this.cacheCapacity = capacity;
+            this.cachePolicy = Objects.requireNonNull(policy);
+            return this;
+        }
+        
+        // New metrics, if they are to be recorded
+        private PoetMetrics newMetrics() {
+            return metricsSampleEvery == 0 ? null : new PoetMetrics(metricsSampleEvery);
+        }
+        
+        // The graph to read bridges from: learned, instrumented if metrics are recorded
+        private Graph<String> observe(OverlayGraph<String> learned, ReadWriteLock lock, PoetMetrics metrics) {
+            if (metrics == null) {
+                return learned;
+            }
+            InstrumentedGraph<String> instrumented = new InstrumentedGraph<>(learned,
+                    metrics.sampleEvery(), lock.readLock());
+            metrics.observe(instrumented);
+            return instrumented;
+        }
+        
+        // A new bridge index over graph with these options
+        private BridgeIndex newBridgeIndex(Graph<String> graph) {
+            BridgeCache cache = cachePolicy == null ? null : new BridgeCache(cacheCapacity, cachePolicy);
+            return new BridgeIndex(graph, bridgeMode, maxBridgePairs, cache);
+        }
+        
+        /**
+         * Record metrics of ingestion, poems and bridge lookups, and of the
+         * operations on the graph, which metrics() returns, sampling one
+         * call in InstrumentedGraph.DEFAULT_SAMPLE_EVERY.
+         * 
+         * @return this builder
+         */
+        public Builder recordMetrics() {
+            return recordMetrics(InstrumentedGraph.DEFAULT_SAMPLE_EVERY);
+        }
+        
+        /**
+         * Record metrics of ingestion, poems and bridge lookups, and of the
+         * operations on the graph, which metrics() returns. Recording
+         * allocates nothing.
+         * 
+         * @param sampleEvery record one call in this many, >= 1; 1 records
+         *                    every call, so counts are exact
+         * @return this builder
+         */
+        public Builder recordMetrics(int sampleEvery) {
+            if (sampleEvery < 1) {
+                throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+            }
+            this.metricsSampleEvery = sampleEvery;
+            return this;
+        }
+        
+        /**
+         * Read corpus files with several threads. The file is memory-mapped,
+         * split at whitespace, and counted chunk by chunk; the graph is the
+         * same as when it is read sequentially. Readers and streams are always
+         * read sequentially.
+         * 
+         * @param threads number of threads to read files with, >= 1
+         * @return this builder
+         */
+        public Builder parallelism(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be positive: " + threads);
+            }
+            this.parallelism = threads;
+            return this;
+        }
+        
+        /**
+         * Create a new poet with the graph from corpus.
+         * 
+         * @param corpus text file from which to derive the poet's affinity graph
+         * @return a new poet
+         * @throws IOException if the corpus file cannot be found or read
+         */
+        public GraphPoet build(File corpus) throws IOException {
+            return new GraphPoet(corpus.toPath(), this);
+        }
+        
+        /**
+         * Create a new poet with the graph from a UTF-8 corpus file.
+         * 
+         * @param corpus text file from which to derive the poet's affinity graph
+         * @return a new poet
+         * @throws IOException if the corpus file cannot be found or read
+         */
+        public GraphPoet build(Path corpus) throws IOException {
+            return new GraphPoet(corpus, this);
+        }
+        
+        /**
+         * Create a new poet with the graph from corpus text.
+         * 
+         * @param corpus text from which to derive the poet's affinity graph;
+         *               read to the end, but not closed
+         * @return a new poet
+         * @throws IOException if the corpus cannot be read
+         */
+        public GraphPoet build(Reader corpus) throws IOException {
+            return new GraphPoet(corpus, this);
+        }
+        
+        /**
+         * Create a new poet with the graph from an encoded corpus.
+         * 
+         * @param corpus bytes from which to derive the poet's affinity graph;
+         *               read to the end, but not closed
+         * @param charset encoding of corpus
+         * @return a new poet
+         * @throws IOException if the corpus cannot be read or is not valid in charset
+         */
+        public GraphPoet build(InputStream corpus, Charset charset) throws IOException {
+            return new GraphPoet(new InputStreamReader(corpus, charset.newDecoder()), this);
+        }
+        
+        /**
+         * Create a new poet from a graph file written by save(), without
+         * reading or tokenizing any corpus.
+         * 
+         * @param file graph file written by save()
+         * @return a new poet
+         * @throws IOException if the file cannot be read or is not a valid graph file
+         */
+        public GraphPoet buildFromGraphFile(Path file) throws IOException {
+            return new GraphPoet(GraphFile.load(file), this);
+        }
+        
+        /**
+         * Create a new poet over a graph that other threads may keep updating.
+         * Each call to poem() pins the graph's current snapshot and reads only
+         * that, so a poem never mixes two versions of the graph, and neither
+         * readers nor writers wait for each other. Bridge words are searched
+         * for in the pinned snapshot on every lookup; the bridge index
+         * option does not apply.
+         * 
+         * @param graph affinity graph whose vertices are lower-case words, as
+         *              described above; bridge words appear in the poem as
+         *              their vertex labels, unless learn() has seen them
+         * @return a new poet
+         */
+        public GraphPoet build(VersionedGraph<String> graph) {
+            return new GraphPoet(graph, this);
+        }
+    }
+    
+    // Construct the graph from counts read in parallel, since start in nanoTime
+    private void constructGraph(ParallelCorpusReader.Counts counts, CountingGraph<String> graph, long start) {
+        for (Map.Entry<String, String> word : counts.words.entrySet()) {
+            graph.add(vocabulary.add(word.getKey(), word.getValue())); // Store original case
+        }
+        // The counted edges hold the counting threads' copies of each word; the graph keeps the canonical one.
+        // Rows keep the order edges are added in, which breaks bridge ties, so add them as the corpus has them.
+        for (WeightedEdge<String> edge : counts.orderedEdges()) {
+            graph.increment(vocabulary.canonical(edge.getSource()), vocabulary.canonical(edge.getTarget()),
+                    edge.getWeight());
+        }
+        ingested(counts.tokens, counts.bigrams, start);
+    }
+    
+    // Construct the graph from the corpus, one word at a time, since start in nanoTime
+    private void constructGraph(Reader corpus, CountingGraph<String> graph, long start) throws IOException {
+        WordScanner scanner = new WordScanner(corpus);
+        String previous = null;
+        long tokens = 0;
+        long bigrams = 0;
+        for (String word = scanner.next(); word != null; word = scanner.next()) {
+            String lowerCase = vocabulary.add(word.toLowerCase(), word); // Store original case
+            tokens++;
+            
+            // Add words to graph
+            graph.add(lowerCase);
+            
+            // Adjacencies cross line breaks, like any other whitespace
+            if (previous != null) {
+                graph.increment(previous, lowerCase, 1);
+                bigrams++;
+            }
+            previous = lowerCase;
+        }
+        ingested(tokens, bigrams, start);
+    }
+    
+    // Record text ingested since start in nanoTime
+    private void ingested(long tokens, long bigrams, long start) {
+        if (metrics != null) {
+            metrics.ingested(tokens, bigrams, System.nanoTime() - start);
         }
     }
 
@@ -100,7 +580,139 @@ public class GraphPoet {
      * @return poem (as described above)
      */
     public String poem(String input) {
-        String[] inputWords = input.split("\\s+");
+        StringBuilder poem = new StringBuilder(input.length() + input.length() / 2);
+        try {
+            poem(input, poem);
+        } catch (IOException e) {
+            throw new AssertionError("StringBuilder does not throw", e);
+        }
+        return poem.toString();
+    }
+    
+    /**
+     * Generate a poem, as poem(String) would, and append it to out.
+     * 
+     * <p>The input is scanned in place, and each word is lower-cased into a
+     * reusable buffer and found in the poet's vocabulary without making a
+     * String of it. Unless out itself allocates, as a Writer may, writing a
+     * poem allocates nothing for words the poet has seen whose characters
+     * are all Latin-1, when its bridge words are answered by an eager index
+     * or a cache; other words are lower-cased into new Strings.
+     * 
+     * @param input text from which to create the poem
+     * @param out where to append the poem; if it throws, part of the poem
+     *            may have been appended
+     * @throws IOException if out throws
+     */
+    public void poem(CharSequence input, Appendable out) throws IOException {
+        if (metrics == null) {
+            write(input, out);
+            return;
+        }
+        long start = metrics.poemStarted();
+        write(input, out);
+        metrics.poemDone(start);
+    }
+    
+    // Write a poem from the current graph
+    private void write(CharSequence input, Appendable out) throws IOException {
+        PoemWriter writer = WRITERS.get();
+        if (writer.busy()) {
+            writer = new PoemWriter(); // out wrote another poem on this thread, from inside append()
+        }
+        if (live != null) {
+            // Pin one version of a live graph for the whole poem
+            poem(input, out, live.snapshot(), writer);
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            poem(input, out, null, writer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Write a poem from the pinned snapshot, or from the learned graph if null, as
+    // poem(String[], BinaryOperator) would from the words of input.split("\\s+")
+    private void poem(CharSequence input, Appendable out, Graph<String> pinned, PoemWriter writer)
+            throws IOException {
+        int length = input.length();
+        int start = 0;
+        int end;
+        if (length > 0 && WordScanner.isWhitespace(input.charAt(0))) {
+            if (skipWhitespace(input, 0) == length) {
+                return; // split() finds no words in whitespace
+            }
+            end = 0; // split() finds an empty first word before leading whitespace
+        } else {
+            end = wordEnd(input, 0);
+        }
+        writer.begin(out);
+        try {
+            String current = null;
+            while (true) {
+                // Retain original case
+                writer.write(input, start, end);
+                writer.space();
+                int next = skipWhitespace(input, end);
+                if (next == length) {
+                    return;
+                }
+                int nextEnd = wordEnd(input, next);
+                if (current == null) {
+                    current = lowerCase(input, start, end, writer);
+                }
+                String following = lowerCase(input, next, nextEnd, writer);
+                String bridgeWord = findBestBridge(pinned, current, following);
+                if (bridgeWord != null) {
+                    writer.write(bridgeWord, 0, bridgeWord.length());
+                    writer.space();
+                }
+                current = following;
+                start = next;
+                end = nextEnd;
+            }
+        } finally {
+            writer.finish();
+        }
+    }
+    
+    // Index of the first character at or after from that is not whitespace, or the length of text
+    private static int skipWhitespace(CharSequence text, int from) {
+        int i = from;
+        while (i < text.length() && WordScanner.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+    
+    // Index of the first whitespace character at or after from, or the length of text
+    private static int wordEnd(CharSequence text, int from) {
+        int i = from;
+        while (i < text.length() && !WordScanner.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+    
+    // The word text[start..end) in lower case: the vocabulary's instance if it has one
+    private String lowerCase(CharSequence text, int start, int end, PoemWriter writer) {
+        int length = writer.fold(text, start, end);
+        if (length < 0) {
+            return text.subSequence(start, end).toString().toLowerCase();
+        }
+        String canonical = vocabulary.canonical(writer.folded(), length);
+        return canonical != null ? canonical : new String(writer.folded(), 0, length);
+    }
+    
+    // Split an input into its words
+    private static String[] words(String input) {
+        return input.split("\\s+");
+    }
+    
+    // Write a poem from the input's words, with the bridge word between each pair of lower-case words
+    private static String poem(String[] inputWords, BinaryOperator<String> bridge) {
         StringBuilder poemBuilder = new StringBuilder();
 
         for (int i = 0; i < inputWords.length; i++) {
@@ -112,7 +724,7 @@ public class GraphPoet {
             // Check for bridge word
             if (i < inputWords.length - 1) {
                 String nextWord = inputWords[i + 1].toLowerCase();
-                String bridgeWord = findBestBridge(currentWord.toLowerCase(), nextWord);
+                String bridgeWord = bridge.apply(currentWord.toLowerCase(), nextWord);
                 if (bridgeWord != null) {
                     poemBuilder.append(bridgeWord).append(" ");
                 }
@@ -120,23 +732,236 @@ public class GraphPoet {
         }
         return poemBuilder.toString().trim();
     }
-
-    // Find the best bridge word between two words
-    private String findBestBridge(String w1, String w2) {
-        String bestBridge = null;
-        int maxWeight = 0;
-
-        // Get neighbors of the first word
-        Map<String, Integer> targets = graph.targets(w1);
-        for (String intermediate : targets.keySet()) {
-            int weight = targets.get(intermediate) + graph.sources(w2).getOrDefault(intermediate, 0);
-            if (weight > maxWeight) {
-                maxWeight = weight;
-                bestBridge = intermediate;
+    
+    /**
+     * Generate one of many poems, with each bridge word drawn at random
+     * rather than the best one. Where poem() writes the bridge word b with
+     * the highest score weight(w1, b) + weight(b, w2), this draws each target
+     * b of w1 with probability proportional to that score, as
+     * sampleBridge() does.
+     * 
+     * @param input string from which to create the poem
+     * @param random source of randomness; seed it to write the same poem again
+     * @return a poem, as described above
+     */
+    public String poem(String input, Random random) {
+        Objects.requireNonNull(random);
+        return withCandidates(pinned -> poem(words(input), (w1, w2) -> display(pinned.sample(w1, w2, random))));
+    }
+    
+    /**
+     * Rank the bridge words between two words. Scores are those poem() picks
+     * the best of: weight(w1, b) + weight(b, w2) for each target b of w1,
+     * where a missing edge weighs 0. Rows of neighbors sorted by weight are
+     * built on first use and kept, within a bound, so ranking usually reads
+     * only a few more than k of them. A poet over a versioned graph keeps no
+     * rows: it builds the rows of w1 and w2 from its pinned snapshot on every
+     * call, in time linear in their length.
+     * 
+     * @param w1 first word, in any case
+     * @param w2 second word, in any case
+     * @param k maximum number of bridge words, >= 0
+     * @return the k bridge words with the highest scores (or all of them, if
+     *         fewer), highest first, in their original case; the first is the
+     *         bridge word poem() writes between w1 and w2
+     */
+    public List<String> bridges(String w1, String w2, int k) {
+        String first = w1.toLowerCase();
+        String second = w2.toLowerCase();
+        List<String> ranked = withCandidates(pinned -> pinned.topK(first, second, k));
+        ranked.replaceAll(this::display);
+        return ranked;
+    }
+    
+    /**
+     * Draw a bridge word between two words at random, with probability
+     * proportional to its score, as ranked by bridges(). Each draw takes
+     * expected constant time, from alias tables kept with the rows that
+     * bridges() describes; a poet over a versioned graph builds them on
+     * every call.
+     * 
+     * @param w1 first word, in any case
+     * @param w2 second word, in any case
+     * @param random source of randomness; seed it to draw the same bridges again
+     * @return a bridge word in its original case, or null if there is none
+     */
+    public String sampleBridge(String w1, String w2, Random random) {
+        Objects.requireNonNull(random);
+        String first = w1.toLowerCase();
+        String second = w2.toLowerCase();
+        return display(withCandidates(pinned -> pinned.sample(first, second, random)));
+    }
+    
+    // Read bridge candidates of the current graph: of one pinned snapshot if it is live
+    private <T> T withCandidates(Function<BridgeCandidates, T> read) {
+        if (live != null) {
+            return read.apply(new BridgeCandidates(live.snapshot()));
+        }
+        lock.readLock().lock();
+        try {
+            return read.apply(candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // The original case of a word, or null if word is null
+    private String display(String word) {
+        return word != null ? vocabulary.display(word) : null;
+    }
+    
+    /**
+     * Generate a poem for each of a batch of inputs, in parallel on the
+     * common fork-join pool, as poems(List, ExecutorService) does.
+     * 
+     * @param inputs strings from which to create the poems
+     * @return the poem of each input, as poem() would write it, in input order
+     */
+    public List<String> poems(List<String> inputs) {
+        return poems(inputs, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Generate a poem for each of a stream of inputs, in parallel on the
+     * common fork-join pool, as poems(List, ExecutorService) does. The whole
+     * stream is read before any bridge word is looked up.
+     * 
+     * @param inputs strings from which to create the poems; must be finite
+     * @return the poem of each input, as poem() would write it, in stream
+     *         encounter order
+     */
+    public List<String> poems(Stream<String> inputs) {
+        return poems(inputs.collect(Collectors.toList()));
+    }
+    
+    /**
+     * Generate a poem for each of a batch of inputs. Each distinct pair of
+     * adjacent input words in the batch is looked up once, however many
+     * inputs it appears in; the lookups, and then the poems, are divided
+     * among tasks run on executor. The whole batch reads one version of the
+     * graph: learn() waits until the batch is done, and a poet over a
+     * versioned graph pins one snapshot for the batch.
+     * 
+     * @param inputs strings from which to create the poems
+     * @param executor runs the batch's tasks; the calling thread waits for them,
+     *                 so it must not be one that executor needs to run them
+     * @return the poem of each input, as poem() would write it, in input order
+     */
+    public List<String> poems(List<String> inputs, ExecutorService executor) {
+        Objects.requireNonNull(executor);
+        if (metrics != null) {
+            metrics.batched(inputs.size());
+        }
+        if (live != null) {
+            return poems(inputs, executor, live.snapshot());
+        }
+        lock.readLock().lock();
+        try {
+            return poems(inputs, executor, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Write a batch of poems from the pinned snapshot, or from the learned graph if null
+    private List<String> poems(List<String> inputs, ExecutorService executor, Graph<String> pinned) {
+        String[][] inputWords = new String[inputs.size()][];
+        // Number each distinct pair of adjacent lower-case words, in order of first appearance
+        Map<String, Map<String, Integer>> pairNumbers = new HashMap<>();
+        List<String> firsts = new ArrayList<>();
+        List<String> seconds = new ArrayList<>();
+        for (int i = 0; i < inputWords.length; i++) {
+            String[] words = words(inputs.get(i));
+            inputWords[i] = words;
+            for (int j = 0; j < words.length - 1; j++) {
+                String w1 = words[j].toLowerCase();
+                String w2 = words[j + 1].toLowerCase();
+                Map<String, Integer> row = pairNumbers.computeIfAbsent(w1, k -> new HashMap<>());
+                if (!row.containsKey(w2)) {
+                    row.put(w2, firsts.size());
+                    firsts.add(w1);
+                    seconds.add(w2);
+                }
             }
         }
+        
+        String[] found = new String[firsts.size()];
+        inParallel(executor, found.length, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                found[k] = findBestBridge(pinned, firsts.get(k), seconds.get(k));
+            }
+        });
+        
+        String[] poems = new String[inputWords.length];
+        inParallel(executor, poems.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                poems[i] = poem(inputWords[i], (w1, w2) -> found[pairNumbers.get(w1).get(w2)]);
+            }
+        });
+        return Arrays.asList(poems);
+    }
+    
+    // Work on the range [from, to) of a batch
+    private interface Chunk {
+        void run(int from, int to);
+    }
+    
+    // Run chunk over [0, count) in tasks of BATCH_CHUNK, and wait for them all
+    private static void inParallel(ExecutorService executor, int count, Chunk chunk) {
+        if (count <= BATCH_CHUNK) {
+            chunk.run(0, count);
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < count; from += BATCH_CHUNK) {
+            final int start = from;
+            final int end = Math.min(count, from + BATCH_CHUNK);
+            tasks.add(() -> {
+                chunk.run(start, end);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> task : executor.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("batch failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while writing poems");
+        }
+    }
+
+    /**
+     * @return the metrics of this poet, which may be registered as MBeans; or
+     *         null if this poet was built without recording them
+     */
+    public PoetMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the cache of bridge lookups, whose counters show how well it
+     *         works; or null if this poet was built without one
+     */
+    public BridgeCache bridgeCache() {
+        return bridges == null ? null : bridges.cache();
+    }
 
-        return bestBridge != null ? lowerCaseWords.get(bestBridge) : null;
+    // Find the best bridge word between two words, in the pinned snapshot if there is one
+    private String findBestBridge(Graph<String> pinned, String w1, String w2) {
+        long start = metrics == null ? 0 : metrics.lookupStarted();
+        String bestBridge = pinned == null ? bridges.bridge(w1, w2) : BridgeIndex.search(pinned, w1, w2);
+        if (metrics != null) {
+            metrics.lookupDone(start);
+        }
+        return bestBridge != null ? vocabulary.display(bestBridge) : null;
     }
 
     @Override
@@ -5,6 +5,10 @@ package poet;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import javax.management.JMException;
 
 /**
  * Example program using GraphPoet.
@@ -13,14 +17,33 @@ import java.io.IOException;
  */
 public class Main {
     
+    private static final String CORPUS = "src/poet/mugar-omni-theater.txt";
+    private static final int DEFAULT_PORT = 8080;
+    
     /**
-     * Generate example poetry.
+     * Generate example poetry, or with arguments {@code serve [PORT [CORPUS]]},
+     * serve poems from the corpus (by default, the example corpus) over HTTP
+     * on a port of the loopback address (by default, 8080) until the process
+     * is stopped, with the poet's metrics registered as MBeans named
+     * "server"; see PoemServer and PoetMetrics.
      * 
-     * @param args unused
-     * @throws IOException if a poet corpus file cannot be found or read
+     * @param args none, or serve and its options
+     * @throws IOException if a poet corpus file cannot be found or read, or
+     *         the server cannot listen on the port
+     * @throws JMException if the metrics cannot be registered
      */
-    public static void main(String[] args) throws IOException {
-        final GraphPoet nimoy = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"));
+    public static void main(String[] args) throws IOException, JMException {
+        if (args.length > 0 && args[0].equals("serve")) {
+            final int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            final GraphPoet poet = GraphPoet.builder().recordMetrics().build(new File(args.length > 2 ? args[2] : CORPUS));
+            poet.metrics().register("server");
+            final PoemServer server = PoemServer.start(poet,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            System.out.println("POST inputs to http://" + server.address().getHostString() + ":"
+                    + server.address().getPort() + "/poem");
+            return;
+        }
+        final GraphPoet nimoy = new GraphPoet(new File(CORPUS));
         final String input = "Test the system.";
         System.out.println(input + "\n>>>\n" + nimoy.poem(input));
     }
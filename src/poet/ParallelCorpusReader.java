@@ -0,0 +1,271 @@
+package poet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import graph.ConcurrentEdgeCounter;
+import graph.WeightedEdge;
+
+/**
+ * Counts the words and adjacencies of a UTF-8 corpus file in parallel.
+ *
+ * <p>The file is memory-mapped and cut into chunks at whitespace, so no word
+ * is split. Each chunk is tokenized on a fork-join pool, and its adjacencies
+ * are counted straight into one shared ConcurrentEdgeCounter, so there is
+ * nothing to merge but each chunk's words. The chunks' words are merged in
+ * file order, and the adjacency between the last word of one chunk and the
+ * first word of the next is added as they are merged.
+ *
+ * <p>Words and adjacencies are exactly those that GraphPoet
+ * reads sequentially with WordScanner, so the counts are identical. Each
+ * adjacency is counted at the file offset of its second word, so the
+ * adjacencies can be listed in the order they first occur, as a sequential
+ * reader meets them.
+ */
+final class ParallelCorpusReader {
+
+    // Chunks smaller than this are not worth a task
+    private static final long MIN_CHUNK = 1 << 20;
+    // Chunks are mapped one at a time, so each must fit one MappedByteBuffer
+    private static final long MAX_CHUNK = 1 << 28;
+    // Aim for a few chunks per thread, to balance uneven chunks
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Words and adjacency counts of a corpus. Mutable.
+     */
+    static final class Counts {
+        /** Each lower-case word, mapped to its last-seen original case, in order of first appearance. */
+        final Map<String, String> words = new LinkedHashMap<>();
+        /** The number of times w2 follows w1, for each w1 -> w2, counted at
+         *  increasing positions along the corpus. */
+        final ConcurrentEdgeCounter<String> adjacencies = new ConcurrentEdgeCounter<>();
+        /** The number of words, and of adjacencies, counted. */
+        long tokens;
+        long bigrams;
+
+        /** @return the adjacencies as edges, created as they are iterated */
+        Iterable<WeightedEdge<String>> edges() {
+            return adjacencies.edges();
+        }
+
+        /** @return the adjacencies as edges, in order of first occurrence in the corpus */
+        List<WeightedEdge<String>> orderedEdges() {
+            return adjacencies.orderedEdges();
+        }
+    }
+
+    private ParallelCorpusReader() {
+        throw new AssertionError("uninstantiable");
+    }
+
+    /**
+     * Count the words and adjacencies of a corpus.
+     *
+     * @param corpus UTF-8 text file
+     * @param parallelism number of threads to use, >= 1
+     * @return the counts
+     * @throws IOException if the file cannot be read or is not valid UTF-8
+     */
+    static Counts read(Path corpus, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(corpus, StandardOpenOption.READ)) {
+            long chunkSize = Math.min(MAX_CHUNK,
+                    Math.max(MIN_CHUNK, channel.size() / ((long) parallelism * CHUNKS_PER_THREAD) + 1));
+            return read(channel, parallelism, chunkSize);
+        }
+    }
+
+    /**
+     * Count the words and adjacencies of a corpus, with a given chunk size.
+     *
+     * @param channel open UTF-8 text file; not closed
+     * @param parallelism number of threads to use, >= 1
+     * @param chunkSize number of bytes to aim for in each chunk, >= 1
+     * @return the counts
+     * @throws IOException if the file cannot be read or is not valid UTF-8
+     */
+    static Counts read(FileChannel channel, int parallelism, long chunkSize) throws IOException {
+        List<long[]> chunks = split(channel, chunkSize);
+        Counts counts = new Counts();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            for (long[] range : chunks) {
+                tasks.add(pool.submit(() -> {
+                    try {
+                        return scan(channel, range[0], range[1], counts.adjacencies);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            // Merge words in file order, stitching adjacencies across chunk boundaries
+            String previous = null;
+            for (ForkJoinTask<Chunk> task : tasks) {
+                Chunk chunk = join(task);
+                counts.tokens += chunk.tokens;
+                counts.bigrams += chunk.bigrams;
+                if (chunk.first == null) {
+                    continue;
+                }
+                if (previous != null) {
+                    counts.adjacencies.increment(previous, chunk.first, chunk.firstPosition);
+                    counts.bigrams++;
+                }
+                // re-put, so the value is the last-seen case and the key keeps first-seen order
+                counts.words.putAll(chunk.words);
+                previous = chunk.last;
+            }
+            return counts;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Chunk join(ForkJoinTask<Chunk> task) throws IOException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            // the pool may wrap the task's exception in a copy of itself
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+            }
+            throw new IllegalStateException("chunk failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading corpus");
+        }
+    }
+
+    // Cut the file into [start, end) ranges that each begin at whitespace or the start of file
+    private static List<long[]> split(FileChannel channel, long target) throws IOException {
+        long size = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + target >= size ? size : nextWhitespace(channel, start + target, size);
+            if (end - start > MAX_CHUNK) {
+                // a single word longer than MAX_CHUNK cannot be mapped in one piece
+                throw new IOException("word longer than " + MAX_CHUNK + " bytes at offset " + start);
+            }
+            chunks.add(new long[] { start, end });
+            start = end;
+        }
+        return chunks;
+    }
+
+    // Offset of the first whitespace byte at or after from, or size if none
+    private static long nextWhitespace(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (isWhitespace(buffer.get(i))) {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        // multi-byte UTF-8 sequences only contain bytes >= 0x80, so ASCII tests are exact
+        return b >= 0 && WordScanner.isWhitespace((char) b);
+    }
+
+    // Tokenize one chunk, counting its adjacencies into a shared counter
+    private static Chunk scan(FileChannel channel, long start, long end,
+            ConcurrentEdgeCounter<String> adjacencies) throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        Chunk chunk = new Chunk();
+        byte[] word = new byte[64];
+        int limit = bytes.limit();
+        int position = 0;
+        String previous = null;
+        while (true) {
+            while (position < limit && isWhitespace(bytes.get(position))) {
+                position++;
+            }
+            if (position == limit) {
+                break;
+            }
+            int wordStart = position;
+            while (position < limit && !isWhitespace(bytes.get(position))) {
+                position++;
+            }
+            int length = position - wordStart;
+            if (length > word.length) {
+                word = new byte[Math.max(length, word.length * 2)];
+            }
+            bytes.get(wordStart, word, 0, length);
+            String original = decode(decoder, word, length);
+            String lowerCase = original.toLowerCase();
+            // re-put, so the value is the last-seen case and the key keeps first-seen order
+            chunk.words.put(lowerCase, original);
+            chunk.tokens++;
+            if (previous == null) {
+                chunk.first = lowerCase;
+                chunk.firstPosition = start + wordStart;
+            } else {
+                // the file offset of the second word orders adjacencies as they occur
+                adjacencies.increment(previous, lowerCase, start + wordStart);
+                chunk.bigrams++;
+            }
+            previous = lowerCase;
+        }
+        chunk.last = previous;
+        return chunk;
+    }
+
+    private static String decode(CharsetDecoder decoder, byte[] word, int length) throws CharacterCodingException {
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = word[i] >= 0;
+        }
+        if (ascii) {
+            return new String(word, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        return decoder.decode(ByteBuffer.wrap(word, 0, length)).toString();
+    }
+
+    /**
+     * Words of one chunk, with what is needed to stitch it to its neighbours.
+     */
+    private static final class Chunk {
+        // each lower-case word, mapped to its last-seen original case, in order of first appearance
+        final Map<String, String> words = new LinkedHashMap<>();
+        // first and last word of the chunk, or null if it has none
+        String first;
+        String last;
+        // file offset of the first word
+        long firstPosition;
+        // number of words, and of adjacencies within the chunk
+        long tokens;
+        long bigrams;
+    }
+}
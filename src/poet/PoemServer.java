@@ -0,0 +1,375 @@
+package poet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server that writes poems with a GraphPoet shared by all requests.
+ *
+ * <p>{@code POST /poem} with the input as a UTF-8 request body of at most
+ * 64 KiB answers {@code 200} with the poem as a {@code text/plain} UTF-8
+ * body, the same poem that poem() writes. Other methods answer {@code 405},
+ * and larger bodies {@code 413}.
+ *
+ * <p>Batching: requests wait in a bounded queue, and a batcher thread takes
+ * everything queued, up to a maximum batch size, and writes it with one call
+ * to GraphPoet.poems(), which looks up each distinct pair of words in the
+ * batch once and in parallel. Requests that arrive while a batch is being
+ * written form the next batch, so batches grow with the load instead of
+ * waiting for a timer.
+ *
+ * <p>Backpressure: when the queue is full, a request is refused at once with
+ * {@code 503} and {@code Retry-After}, rather than adding to the latency of
+ * every request behind it.
+ *
+ * <p>Each exchange is handled on a virtual thread when the JVM has them
+ * (Java 21 and later), and otherwise on a bounded pool of platform threads.
+ * Each platform thread holds at most one request in the queue while it waits
+ * for its poem, so exchanges that find every thread busy wait in the pool's
+ * own queue, bounded so that the two together hold at most the queue size;
+ * once it is full too, the server's dispatcher thread refuses exchanges with
+ * {@code 503} itself.
+ *
+ * <p>Safe for concurrent use.
+ */
+public final class PoemServer implements AutoCloseable {
+
+    /** Requests that may wait for a batch before more are refused, by default. */
+    public static final int DEFAULT_MAX_PENDING = 1024;
+    /** Requests written in one batch at most, by default. */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private static final String PATH = "/poem";
+    private static final int MAX_INPUT_BYTES = 1 << 16;
+    private static final int PLATFORM_HANDLERS = 64;
+    // Seconds close() waits for handlers to answer before closing connections
+    private static final int STOP_SECONDS = 1;
+    private static final int OK = 200;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int INTERNAL_ERROR = 500;
+    private static final int UNAVAILABLE = 503;
+
+    private final Function<List<String>, List<String>> poems;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final boolean virtualThreads;
+    private final BlockingQueue<Request> pending;
+    // Set while the dispatcher thread runs an exchange that the platform pool refused
+    private final ThreadLocal<Boolean> overflow = ThreadLocal.withInitial(() -> false);
+    private final int maxBatch;
+    private final Thread batcher;
+    private volatile boolean closed = false;
+    private final LongAdder served = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    // Abstraction function:
+    //   AF(server, pending, ...) = a server listening at server's address, whose queued
+    //     requests are pending, each to be answered with poems(its batch of inputs);
+    //     closed once close() has been called
+    // Representation invariant:
+    //   - maxBatch >= 1
+    //   - every request taken from pending is completed, with its poem or an exception
+    // Safety from rep exposure:
+    //   - All fields are private; requests are never returned.
+    // Thread safety argument:
+    //   - pending is a thread-safe queue, and only the batcher thread takes from it
+    //   - overflow is thread-local, and only set on the dispatcher thread
+    //   - each request's poem is a CompletableFuture, completed by the batcher and read
+    //     by its handler
+    //   - closed is volatile, and counters are LongAdders
+
+    // An input, and the poem it will be answered with
+    private static final class Request {
+        private final String input;
+        private final CompletableFuture<String> poem = new CompletableFuture<>();
+
+        private Request(String input) {
+            this.input = input;
+        }
+    }
+
+    /**
+     * Start serving poems by poet, with the default queue and batch sizes.
+     *
+     * @param poet writes the poems
+     * @param address address to listen at; port 0 picks a free port
+     * @return a running server
+     * @throws IOException if the server cannot listen at address
+     */
+    public static PoemServer start(GraphPoet poet, InetSocketAddress address) throws IOException {
+        return start(poet, address, DEFAULT_MAX_PENDING, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Start serving poems by poet.
+     *
+     * @param poet writes the poems
+     * @param address address to listen at; port 0 picks a free port
+     * @param maxPending requests that may wait for a batch before more are
+     *                   refused, >= 1
+     * @param maxBatch requests written in one batch at most, >= 1
+     * @return a running server
+     * @throws IOException if the server cannot listen at address
+     */
+    public static PoemServer start(GraphPoet poet, InetSocketAddress address, int maxPending, int maxBatch)
+            throws IOException {
+        Objects.requireNonNull(poet);
+        return start(poet::poems, address, maxPending, maxBatch);
+    }
+
+    /**
+     * Start serving the poems that a function writes for each batch.
+     *
+     * @param poems writes the poem of each input of a batch, in order
+     * @param address address to listen at; port 0 picks a free port
+     * @param maxPending requests that may wait for a batch, >= 1
+     * @param maxBatch requests written in one batch at most, >= 1
+     * @return a running server
+     * @throws IOException if the server cannot listen at address
+     */
+    static PoemServer start(Function<List<String>, List<String>> poems, InetSocketAddress address,
+            int maxPending, int maxBatch) throws IOException {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+        }
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        return new PoemServer(poems, HttpServer.create(address, 0), maxPending, maxBatch);
+    }
+
+    private PoemServer(Function<List<String>, List<String>> poems, HttpServer server, int maxPending, int maxBatch) {
+        this.poems = poems;
+        this.server = server;
+        this.pending = new ArrayBlockingQueue<>(maxPending);
+        this.maxBatch = maxBatch;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.handlers = virtual != null ? virtual : new ThreadPoolExecutor(PLATFORM_HANDLERS, PLATFORM_HANDLERS,
+                0, TimeUnit.MILLISECONDS, handlerQueue(maxPending), task -> {
+                    Thread thread = new Thread(task, "PoemServer handler");
+                    thread.setDaemon(true);
+                    return thread;
+                }, this::refuseOverflow);
+        this.batcher = new Thread(this::batch, "PoemServer batcher " + server.getAddress());
+        batcher.setDaemon(true);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(handlers);
+        batcher.start();
+        server.start();
+    }
+
+    // An executor that starts a virtual thread per task, or null if this JVM has none
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // before Java 21, or a preview that is not enabled
+            return null;
+        }
+    }
+
+    // Queue for exchanges waiting for a platform thread, so that they and the requests
+    // the busy threads hold in pending number at most maxPending
+    private static BlockingQueue<Runnable> handlerQueue(int maxPending) {
+        return maxPending > PLATFORM_HANDLERS ? new LinkedBlockingQueue<>(maxPending - PLATFORM_HANDLERS)
+                : new SynchronousQueue<>();
+    }
+
+    // Run an exchange that the platform pool cannot take on the dispatcher thread, which refuses it
+    private void refuseOverflow(Runnable exchange, ThreadPoolExecutor pool) {
+        overflow.set(true);
+        try {
+            exchange.run();
+        } finally {
+            overflow.set(false);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (overflow.get()) {
+                refuse(exchange);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, METHOD_NOT_ALLOWED, "POST the input to " + PATH);
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_INPUT_BYTES + 1);
+            if (body.length > MAX_INPUT_BYTES) {
+                respond(exchange, PAYLOAD_TOO_LARGE, "input longer than " + MAX_INPUT_BYTES + " bytes");
+                return;
+            }
+            Request request = new Request(new String(body, StandardCharsets.UTF_8));
+            // Once closed, the batcher may have drained the queue for the last time
+            if (!pending.offer(request) || (closed && pending.remove(request))) {
+                refuse(exchange);
+                return;
+            }
+            String poem;
+            try {
+                poem = request.poem.get();
+            } catch (CancellationException e) {
+                respond(exchange, UNAVAILABLE, "server closing");
+                return;
+            } catch (ExecutionException e) {
+                respond(exchange, INTERNAL_ERROR, "no poem: " + e.getCause());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, UNAVAILABLE, "server closing");
+                return;
+            }
+            served.increment();
+            respond(exchange, OK, poem);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void refuse(HttpExchange exchange) throws IOException {
+        refused.increment();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, UNAVAILABLE, closed ? "server closing" : "too many requests");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Write batches of queued requests until interrupted, then refuse the rest
+    private void batch() {
+        List<Request> batch = new ArrayList<>();
+        List<String> inputs = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            pending.drainTo(batch, maxBatch - 1);
+            for (Request request : batch) {
+                inputs.add(request.input);
+            }
+            try {
+                List<String> written = poems.apply(inputs);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).poem.complete(written.get(i));
+                }
+            } catch (RuntimeException | Error e) {
+                for (Request request : batch) {
+                    request.poem.completeExceptionally(e);
+                }
+            }
+            batches.increment();
+            batch.clear();
+            inputs.clear();
+            if (Thread.interrupted()) {
+                break;
+            }
+        }
+        pending.drainTo(batch);
+        for (Request request : batch) {
+            request.poem.completeExceptionally(new CancellationException("server closed"));
+        }
+    }
+
+    /**
+     * @return the address this server listens at
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return true iff exchanges are handled on virtual threads
+     */
+    public boolean virtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return number of requests answered with a poem so far
+     */
+    public long served() {
+        return served.sum();
+    }
+
+    /**
+     * @return number of requests refused because the queue was full or the
+     *         server was closing
+     */
+    public long refused() {
+        return refused.sum();
+    }
+
+    /**
+     * @return number of batches written so far
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    // Requests waiting for a batch
+    int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Stop serving. The batch being written is finished, requests still
+     * waiting for a batch are answered with {@code 503}, and the server stops
+     * listening.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        batcher.interrupt();
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(STOP_SECONDS);
+        handlers.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "PoemServer at " + address() + " (" + served() + " served, " + refused() + " refused, "
+                + batches() + " batches" + (virtualThreads ? ", virtual threads" : "") + ")";
+    }
+}
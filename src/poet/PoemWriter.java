@@ -0,0 +1,142 @@
+package poet;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Reusable buffers for writing one poem at a time into an Appendable,
+ * without allocating: a buffer that input words are case-folded into, and
+ * the output's pending whitespace.
+ *
+ * <p>Output is written as String.trim() would leave it: characters up to
+ * and including U+0020 are dropped before the first other character, and
+ * held back after it until another one follows, so none end the poem.
+ *
+ * <p>Not safe for concurrent use; GraphPoet keeps one per thread.
+ */
+final class PoemWriter {
+
+    private static final int INITIAL_WORD_LENGTH = 32;
+
+    private char[] folded = new char[INITIAL_WORD_LENGTH];
+    // Characters <= U+0020 written since the last other character
+    private final StringBuilder held = new StringBuilder();
+    private Appendable out = null;
+    private boolean started = false;
+    // Whether the default locale lower-cases Latin-1 as Character.toLowerCase() does
+    private boolean foldable = false;
+
+    // Abstraction function:
+    //   AF(out, started, held) = a poem being written to out, which has been written to up
+    //     to the held characters; if out is null, no poem is being written
+    // Representation invariant:
+    //   - held is empty unless started
+    // Safety from rep exposure:
+    //   - All fields are private; folded() exposes the fold buffer only to this package,
+    //     until the next fold().
+
+    /**
+     * Start writing a poem.
+     *
+     * @param out where to write the poem
+     */
+    void begin(Appendable out) {
+        this.out = out;
+        this.started = false;
+        this.held.setLength(0);
+        String language = Locale.getDefault().getLanguage();
+        // These locales lower-case I, and some accented Is, differently
+        this.foldable = !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+    }
+
+    /**
+     * @return true iff a poem is being written
+     */
+    boolean busy() {
+        return out != null;
+    }
+
+    /**
+     * Finish the poem, dropping any held whitespace.
+     */
+    void finish() {
+        out = null;
+        held.setLength(0);
+    }
+
+    /**
+     * Write characters of the poem.
+     *
+     * @param text text to write from
+     * @param start index of the first character to write
+     * @param end index after the last character to write
+     * @throws IOException if out fails
+     */
+    void write(CharSequence text, int start, int end) throws IOException {
+        int i = start;
+        while (i < end) {
+            if (text.charAt(i) <= ' ') {
+                if (started) {
+                    held.append(text.charAt(i));
+                }
+                i++;
+                continue;
+            }
+            int run = i;
+            while (run < end && text.charAt(run) > ' ') {
+                run++;
+            }
+            if (held.length() > 0) {
+                out.append(held);
+                held.setLength(0);
+            }
+            out.append(text, i, run);
+            started = true;
+            i = run;
+        }
+    }
+
+    /**
+     * Write a space between words of the poem.
+     */
+    void space() {
+        if (started) {
+            held.append(' ');
+        }
+    }
+
+    /**
+     * Lower-case a word into the fold buffer, as String.toLowerCase() would
+     * in the default locale, if that can be done one character at a time.
+     *
+     * @param text text the word is in
+     * @param start index of the word's first character
+     * @param end index after the word's last character
+     * @return length of the lower-case word in folded(), or -1 if it could
+     *         not be folded here
+     */
+    int fold(CharSequence text, int start, int end) {
+        if (!foldable) {
+            return -1;
+        }
+        int length = end - start;
+        if (length > folded.length) {
+            folded = new char[Math.max(length, folded.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(start + i);
+            if (c > '\u00FF') {
+                return -1; // beyond Latin-1, case mappings may change the length
+            }
+            folded[i] = c < 'A' ? c : Character.toLowerCase(c);
+        }
+        return length;
+    }
+
+    /**
+     * @return the fold buffer, which holds the word last folded
+     */
+    char[] folded() {
+        return folded;
+    }
+}
@@ -0,0 +1,176 @@
+package poet;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import graph.InstrumentedGraph;
+import graph.LatencyHistogram;
+
+/**
+ * Metrics of one GraphPoet, built with GraphPoet.Builder.recordMetrics():
+ * how fast it ingests text, how many bridge words its poems look up, and how
+ * long poems and lookups take. Lookups are counted by the poet, so lookups
+ * answered by a bridge index or cache count as well.
+ *
+ * <p>One poem and one lookup in sampleEvery is timed, and counts of poems
+ * and lookups are estimated from those, as in LatencyHistogram; the poet's
+ * instrumented graph samples its operations at the same rate. Recording
+ * allocates nothing.
+ *
+ * <p>A PoetMetrics is its own MXBean; register() exports it, and the
+ * instrumented graph the poet looks bridge words up in, over JMX.
+ *
+ * <p>Safe for concurrent use.
+ */
+public final class PoetMetrics implements PoetMetricsMXBean {
+
+    private final int sampleEvery;
+    private final LatencyHistogram poems;
+    private final LatencyHistogram lookups;
+    private final LongAdder batchedPoems = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder bigrams = new LongAdder();
+    private final LongAdder ingestNanos = new LongAdder();
+    // Set once, when the poet's graph is built
+    private volatile InstrumentedGraph<String> graph = null;
+
+    // Abstraction function:
+    //   AF(poems, lookups, ...) = the poems, batched poems and bridge lookups of a poet, and the
+    //     tokens and bigrams it ingested in ingestNanos ns, reading its bridges from graph if
+    //     graph is not null
+    // Representation invariant:
+    //   - true
+    // Safety from rep exposure:
+    //   - All fields are private; summaries are immutable, and graph is the poet's to share.
+    // Thread safety argument:
+    //   - histograms and adders are thread-safe, and graph is volatile
+
+    /**
+     * Create empty metrics, without a graph.
+     *
+     * @param sampleEvery record one call in this many, >= 1
+     */
+    PoetMetrics(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+        this.poems = new LatencyHistogram(sampleEvery);
+        this.lookups = new LatencyHistogram(sampleEvery);
+    }
+
+    /**
+     * @return one call in this many is recorded
+     */
+    public int sampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * Record the operations on the poet's graph.
+     *
+     * @param graph instrumented graph the poet reads bridges from
+     */
+    void observe(InstrumentedGraph<String> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @return the instrumented graph the poet reads bridges from and learns
+     *         into, or null if it has none (a poet over a versioned graph)
+     */
+    public InstrumentedGraph<String> graph() {
+        return graph;
+    }
+
+    /**
+     * Register these metrics with the platform MBean server as
+     * {@code poet:type=GraphPoet,name=NAME}, and the poet's graph, if any,
+     * as {@code poet:type=Graph,name=NAME}.
+     *
+     * @param name name to tell this poet's MBeans from others'
+     * @throws JMException if name is not valid in an ObjectName, or MBeans
+     *         of this name are already registered
+     */
+    public void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String quoted = ObjectName.quote(name);
+        server.registerMBean(this, new ObjectName("poet:type=GraphPoet,name=" + quoted));
+        InstrumentedGraph<String> observed = graph;
+        if (observed != null) {
+            server.registerMBean(observed, new ObjectName("poet:type=Graph,name=" + quoted));
+        }
+    }
+
+    /** @return value to pass to poemDone() */
+    long poemStarted() {
+        return poems.start();
+    }
+
+    void poemDone(long start) {
+        poems.stop(start);
+    }
+
+    /** @return value to pass to lookupDone() */
+    long lookupStarted() {
+        return lookups.start();
+    }
+
+    void lookupDone(long start) {
+        lookups.stop(start);
+    }
+
+    void batched(int count) {
+        batchedPoems.add(count);
+    }
+
+    void ingested(long tokenCount, long bigramCount, long nanos) {
+        tokens.add(tokenCount);
+        bigrams.add(bigramCount);
+        ingestNanos.add(nanos);
+    }
+
+    @Override public long getTokens() {
+        return tokens.sum();
+    }
+
+    @Override public long getBigrams() {
+        return bigrams.sum();
+    }
+
+    @Override public double getTokensPerSecond() {
+        return perSecond(tokens.sum());
+    }
+
+    @Override public double getBigramsPerSecond() {
+        return perSecond(bigrams.sum());
+    }
+
+    private double perSecond(long count) {
+        long nanos = ingestNanos.sum();
+        return nanos == 0 ? 0 : count / (nanos / 1e9);
+    }
+
+    @Override public LatencyHistogram.Summary getPoems() {
+        return poems.summary();
+    }
+
+    @Override public long getBatchedPoems() {
+        return batchedPoems.sum();
+    }
+
+    @Override public LatencyHistogram.Summary getBridgeLookups() {
+        return lookups.summary();
+    }
+
+    @Override public double getLookupsPerPoem() {
+        long written = poems.count() + batchedPoems.sum();
+        return written == 0 ? 0 : lookups.count() / (double) written;
+    }
+
+    @Override public String toString() {
+        return String.format("%d tokens and %d bigrams at %.0f tokens/s; poems: %s; lookups: %s",
+                getTokens(), getBigrams(), getTokensPerSecond(), getPoems(), getBridgeLookups());
+    }
+}
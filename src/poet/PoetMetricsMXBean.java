@@ -0,0 +1,34 @@
+package poet;
+
+import graph.LatencyHistogram;
+
+/**
+ * The management interface of PoetMetrics: corpus ingestion, and the poems
+ * and bridge lookups of a GraphPoet.
+ */
+public interface PoetMetricsMXBean {
+
+    /** @return words read from corpora and learned text */
+    public long getTokens();
+
+    /** @return adjacencies counted from corpora and learned text */
+    public long getBigrams();
+
+    /** @return words read per second of ingestion, or 0 before any */
+    public double getTokensPerSecond();
+
+    /** @return adjacencies counted per second of ingestion, or 0 before any */
+    public double getBigramsPerSecond();
+
+    /** @return calls and latencies of poem() */
+    public LatencyHistogram.Summary getPoems();
+
+    /** @return poems written by poems(), which are not in getPoems() */
+    public long getBatchedPoems();
+
+    /** @return calls and latencies of bridge-word lookups */
+    public LatencyHistogram.Summary getBridgeLookups();
+
+    /** @return bridge-word lookups per poem written, or 0 before any */
+    public double getLookupsPerPoem();
+}
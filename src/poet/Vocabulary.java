@@ -0,0 +1,244 @@
+package poet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The words of a poet: one canonical lower-case String per distinct word,
+ * shared by the graph and the case table, and the case to display each word
+ * in.
+ *
+ * <p>Every token of a corpus is canonicalized with add() or canonical(), so
+ * however often a word occurs, the poet retains one String for it, and a
+ * second only if the word is displayed in a different case. Words and
+ * display forms are kept in an open-addressing table of two parallel
+ * arrays, with no entry object per word. Strings are already stored one
+ * byte per character when they are Latin-1, so the words themselves need no
+ * further packing.
+ *
+ * <p>add() is serialized; canonical() and display() never block.
+ * A reader sees every word added before an action that happens-before its
+ * read, such as releasing a lock the reader then takes, or publishing a
+ * snapshot it then reads. Words added concurrently with a read may be
+ * missed.
+ */
+final class Vocabulary {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // An open-addressing (linear probing) table; replaced whole when it grows
+    private static final class Table {
+        // Lower-case word in each slot, or null if the slot is free
+        final String[] words;
+        // Display form of the word in each slot, or null if it is the word itself
+        final String[] displays;
+
+        Table(int capacity) {
+            words = new String[capacity];
+            displays = new String[capacity];
+        }
+    }
+
+    private volatile Table table;
+    // Number of words in table; guarded by this
+    private int size = 0;
+
+    // Abstraction function:
+    //   AF(table) = the words table.words[i] != null, each displayed as table.displays[i] if that
+    //     is not null, else as itself
+    // Representation invariant:
+    //   - table.words.length is a power of two >= MIN_CAPACITY, and size <= 3/4 of it
+    //   - size is the number of non-null table.words, which are distinct, and each is
+    //     reachable by linear probing from its home slot
+    //   - table.displays[i] is null if table.words[i] is null, and otherwise is null or
+    //     different from table.words[i]
+    // Safety from rep exposure:
+    //   - All fields are private; Strings are immutable.
+    // Thread safety argument:
+    //   - writers hold this; a table's slots are only written before it is published
+    //     (when it grows) or by add(), and readers read table once per operation, so
+    //     each read probes one table whose contents are complete up to the last
+    //     happens-before edge with a writer. Strings are safely published by their
+    //     final fields, so a racing reader sees either a whole String or null.
+
+    /**
+     * Create an empty vocabulary.
+     */
+    Vocabulary() {
+        this(0);
+    }
+
+    /**
+     * Create an empty vocabulary sized so that it need not grow while the
+     * expected words are added.
+     *
+     * @param expectedWords number of distinct words to size for, >= 0
+     */
+    Vocabulary(int expectedWords) {
+        table = new Table(capacityFor(expectedWords));
+    }
+
+    // Smallest power of two that holds words at a load factor of 3/4
+    private static int capacityFor(int words) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 4 * 3 < words) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Home slot of a word in a table of the given capacity
+    private static int home(String word, int capacity) {
+        int h = word.hashCode();
+        h ^= h >>> 16;
+        return h & (capacity - 1);
+    }
+
+    // Slot of word in table, or the free slot where it would go
+    private static int slot(Table table, String word) {
+        String[] words = table.words;
+        int mask = words.length - 1;
+        for (int i = home(word, words.length); ; i = (i + 1) & mask) {
+            String existing = words[i];
+            if (existing == null || existing.equals(word)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Add a word, or note a new display form for a word already added.
+     *
+     * @param word a lower-case word
+     * @param display case to display word in from now on
+     * @return the canonical instance of word: word itself if it was not yet
+     *         in this vocabulary, and otherwise the instance first added
+     */
+    synchronized String add(String word, String display) {
+        Table current = table;
+        int i = slot(current, word);
+        String canonical = current.words[i];
+        if (canonical == null) {
+            if (size + 1 > current.words.length / 4 * 3) {
+                current = grow(current);
+                i = slot(current, word);
+            }
+            canonical = word;
+            current.displays[i] = display.equals(word) ? null : display;
+            current.words[i] = word;
+            size++;
+        } else if (display.equals(canonical)) {
+            current.displays[i] = null;
+        } else if (!display.equals(current.displays[i])) {
+            current.displays[i] = display;
+        }
+        return canonical;
+    }
+
+    // Publish a table of twice the capacity, with the words of current
+    private Table grow(Table current) {
+        Table grown = new Table(current.words.length * 2);
+        for (int i = 0; i < current.words.length; i++) {
+            String word = current.words[i];
+            if (word != null) {
+                int j = slot(grown, word);
+                grown.words[j] = word;
+                grown.displays[j] = current.displays[i];
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    /**
+     * @param word a lower-case word
+     * @return the canonical instance of word, or word itself if it is not in
+     *         this vocabulary
+     */
+    String canonical(String word) {
+        Table current = table;
+        String canonical = current.words[slot(current, word)];
+        // a racing add() may have filled the free slot with another word
+        return canonical != null && canonical.equals(word) ? canonical : word;
+    }
+
+    /**
+     * Find a word by its characters, without making a String of them.
+     *
+     * @param chars characters of a lower-case word in chars[0..length)
+     * @param length number of characters in the word
+     * @return the canonical instance of the word, or null if it is not in
+     *         this vocabulary
+     */
+    String canonical(char[] chars, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[i]; // String.hashCode()
+        }
+        h ^= h >>> 16;
+        String[] words = table.words;
+        int mask = words.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String existing = words[i];
+            if (existing == null) {
+                return null;
+            } else if (matches(existing, chars, length)) {
+                return existing;
+            }
+        }
+    }
+
+    private static boolean matches(String word, char[] chars, int length) {
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param word a lower-case word
+     * @return the case to display word in, or word itself if it is not in
+     *         this vocabulary
+     */
+    String display(String word) {
+        Table current = table;
+        int i = slot(current, word);
+        String canonical = current.words[i];
+        if (canonical == null || !canonical.equals(word)) {
+            return word;
+        }
+        String display = current.displays[i];
+        return display != null ? display : canonical;
+    }
+
+    /**
+     * @return number of distinct words in this vocabulary
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return a new map from each word displayed in a different case to its
+     *         display form
+     */
+    synchronized Map<String, String> displayNames() {
+        Table current = table;
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < current.words.length; i++) {
+            if (current.displays[i] != null) {
+                names.put(current.words[i], current.displays[i]);
+            }
+        }
+        return names;
+    }
+
+    @Override public String toString() {
+        return "Vocabulary(" + size() + " words)";
+    }
+}
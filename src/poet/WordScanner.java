@@ -0,0 +1,108 @@
+package poet;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a stream of text into words, reading it incrementally.
+ *
+ * <p>Words are maximal non-empty runs of characters other than space, tab,
+ * line feed, vertical tab, form feed and carriage return (the characters
+ * matched by the regex {@code \s}). Line breaks separate words like any
+ * other whitespace.
+ *
+ * <p>Only a fixed-size character buffer and the current word are held in
+ * memory. The scanner does not close its reader.
+ */
+final class WordScanner {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private final StringBuilder word = new StringBuilder();
+
+    // Abstraction function:
+    //   AF(in, buffer, position, limit) = the text not yet scanned: buffer[position..limit)
+    //     followed by the rest of in.
+    // Representation invariant:
+    //   - 0 <= position <= limit <= buffer.length
+    //   - eof implies in has nothing more to read
+    // Safety from rep exposure:
+    //   - All fields are private; next() returns a new String.
+
+    /**
+     * Create a scanner over a reader.
+     *
+     * @param in text to scan; read incrementally and not closed
+     */
+    WordScanner(Reader in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    WordScanner(Reader in, int bufferSize) {
+        this.in = in;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * @param c a character
+     * @return true iff c separates words
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Read the next word.
+     *
+     * @return the next word, or null if the text has no more words
+     * @throws IOException if the text cannot be read
+     */
+    String next() throws IOException {
+        // Skip whitespace
+        while (true) {
+            if (position == limit && !fill()) {
+                return null;
+            }
+            if (!isWhitespace(buffer[position])) {
+                break;
+            }
+            position++;
+        }
+        // Collect the word, which may span buffer refills
+        word.setLength(0);
+        while (true) {
+            int start = position;
+            while (position < limit && !isWhitespace(buffer[position])) {
+                position++;
+            }
+            word.append(buffer, start, position - start);
+            if (position < limit || !fill()) {
+                return word.toString();
+            }
+        }
+    }
+
+    // Refill the buffer; return false at end of text
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+            position = limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
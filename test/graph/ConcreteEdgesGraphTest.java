@@ -5,22 +5,25 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.util.Collections;
+import java.util.Map;
+
 import org.junit.Test;
 
 /**
  * Tests for ConcreteEdgesGraph.
  * 
- * This class runs the GraphInstanceTest tests against ConcreteEdgesGraph, as
- * well as tests for that particular implementation.
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against ConcreteEdgesGraph, as well as tests for that particular implementation.
  * 
  * Tests against the Graph spec should be in GraphInstanceTest.
  */
-public class ConcreteEdgesGraphTest extends GraphInstanceTest {
+public class ConcreteEdgesGraphTest extends CountingGraphInstanceTest {
     
     /*
-     * Provide a ConcreteEdgesGraph for tests in GraphInstanceTest.
+     * Provide a ConcreteEdgesGraph for tests in CountingGraphInstanceTest.
      */
-    @Override public Graph<String> emptyInstance() {
+    @Override public CountingGraph<String> emptyInstance() {
         return new ConcreteEdgesGraph();
     }
     
@@ -56,6 +59,37 @@ public class ConcreteEdgesGraphTest extends GraphInstanceTest {
     }
 
 
+    // Testing strategy for the edge indexes
+    //   Update weight of an existing edge
+    //   Remove an edge from the middle and from the end of the edge list
+    //   Remove a vertex with both incoming and outgoing edges
+    @Test
+    public void testConcreteEdgesGraphIndexes() {
+        Graph<String> graph = emptyInstance();
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 2);
+        graph.set("b", "c", 3);
+        graph.set("c", "a", 4);
+
+        assertEquals(1, graph.set("a", "b", 5));
+        assertEquals(Map.of("b", 5, "c", 2), graph.targets("a"));
+
+        // middle of the list: the last edge takes its place
+        assertEquals(2, graph.set("a", "c", 0));
+        assertEquals(Map.of("b", 3), graph.sources("c"));
+        assertEquals(Map.of("b", 5), graph.targets("a"));
+        assertEquals(Map.of("c", 4), graph.sources("a"));
+        // end of the list
+        assertEquals(3, graph.set("b", "c", 0));
+        assertEquals(Collections.emptyMap(), graph.sources("c"));
+
+        assertTrue(graph.remove("a"));
+        assertEquals(Collections.emptyMap(), graph.targets("c"));
+        assertEquals(Collections.emptyMap(), graph.sources("b"));
+        assertEquals(0, graph.set("c", "b", 6));
+        assertEquals(Map.of("c", 6), graph.sources("b"));
+    }
+
     /*
      * Testing Edge...
      */
@@ -5,22 +5,28 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
 /**
  * Tests for ConcreteVerticesGraph.
  * 
- * This class runs the GraphInstanceTest tests against ConcreteVerticesGraph, as
- * well as tests for that particular implementation.
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against ConcreteVerticesGraph, as well as tests for that particular implementation.
  * 
  * Tests against the Graph spec should be in GraphInstanceTest.
  */
-public class ConcreteVerticesGraphTest extends GraphInstanceTest {
+public class ConcreteVerticesGraphTest extends CountingGraphInstanceTest {
     
     /*
-     * Provide a ConcreteVerticesGraph for tests in GraphInstanceTest.
+     * Provide a ConcreteVerticesGraph for tests in CountingGraphInstanceTest.
      */
-    @Override public Graph<String> emptyInstance() {
+    @Override public CountingGraph<String> emptyInstance() {
         return new ConcreteVerticesGraph();
     }
     
@@ -56,6 +62,68 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
     }
 
 
+    // Testing strategy for the label index and in edges
+    //   Remove a vertex from the middle of the list, toString keeps insertion order
+    //   Remove a vertex with both incoming and outgoing edges
+    //   Re-add a removed vertex
+    //   Remove most vertices, in and out of insertion order, so removed slots are closed up
+    @Test
+    public void testConcreteVerticesGraphIndex() {
+        Graph<String> graph = emptyInstance();
+        graph.set("a", "b", 1);
+        graph.set("b", "c", 2);
+        graph.set("c", "b", 3);
+        graph.add("d");
+        assertEquals(Map.of("a", 1, "c", 3), graph.sources("b"));
+
+        assertTrue(graph.remove("b"));
+        assertEquals("a -> \nc -> \nd -> \n", graph.toString());
+        assertEquals(Collections.emptyMap(), graph.targets("a"));
+        assertEquals(Collections.emptyMap(), graph.sources("c"));
+
+        assertTrue(graph.add("b"));
+        assertEquals(Collections.emptyMap(), graph.sources("b"));
+        graph.set("d", "b", 4);
+        assertEquals("a -> \nc -> \nd -> b : 4\nb -> \n", graph.toString());
+        assertEquals(Map.of("d", 4), graph.sources("b"));
+    }
+
+    @Test
+    public void testRemoveManyKeepsOrder() {
+        Graph<String> graph = emptyInstance();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            graph.set("v" + i, "v" + (i + 1) % 1_000, 1);
+            expected.add("v" + i);
+        }
+        // every third from the front, then the rest from the back, leaving a few
+        for (int i = 0; i < 1_000; i += 3) {
+            assertTrue(graph.remove("v" + i));
+            expected.remove("v" + i);
+        }
+        for (int i = 999; i > 900; i--) {
+            if (graph.remove("v" + i)) {
+                expected.remove("v" + i);
+            }
+        }
+        for (int i = 0; i < 800; i++) {
+            if (graph.remove("v" + i)) {
+                expected.remove("v" + i);
+            }
+        }
+        assertTrue(graph.add("new"));
+        expected.add("new");
+        StringBuilder order = new StringBuilder();
+        for (String line : graph.toString().split("\n")) {
+            String label = line.substring(0, line.indexOf(" -> "));
+            if (order.length() == 0 || !order.toString().endsWith("," + label)) {
+                order.append(",").append(label);
+            }
+        }
+        assertEquals("," + String.join(",", expected), order.toString());
+        assertEquals(new HashSet<>(expected), graph.vertices());
+    }
+
     /*
      * Testing Vertex...
      */
@@ -107,6 +175,22 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
         assertFalse(vertex.getOutEdges().containsKey("c"));
     }
 
+    @Test
+    public void testVertexInEdges() {
+        Vertex vertex = new Vertex("a");
+        assertTrue(vertex.getInEdges().isEmpty());
+
+        vertex.addInEdge("b", 1);
+        vertex.addInEdge("c", 2);
+        assertEquals(Map.of("b", 1, "c", 2), vertex.getInEdges());
+        // in edges are not part of the out edges
+        assertEquals(0, vertex.getOutEdge("b"));
+
+        vertex.removeInEdge("b");
+        assertEquals(Map.of("c", 2), vertex.getInEdges());
+        assertEquals("a -> \n", vertex.toString());
+    }
+
     @Test
     public void testVertexToString() {
         Vertex vertex = new Vertex("a");
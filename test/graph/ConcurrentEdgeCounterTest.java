@@ -0,0 +1,143 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for ConcurrentEdgeCounter.
+ */
+public class ConcurrentEdgeCounterTest {
+    
+    // Testing strategy
+    //   add(vertex): new vertex, existing vertex
+    //   add(s, t, delta): new edge, existing edge, self-loop, delta <= 0 (rejected)
+    //   count(): counted edge, never counted edge, unknown source
+    //   edges(): no edges, several edges; count that overflows an int
+    //   orderedEdges(): by least position, counted in and out of order; edges without a
+    //          position last; positions small and large
+    //   publishTo(): empty graph, graph with existing edges
+    //   many threads incrementing the same and different edges: no lost updates
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    @Test
+    public void testEmpty() {
+        ConcurrentEdgeCounter<String> counter = new ConcurrentEdgeCounter<>();
+        assertEquals(Collections.emptySet(), counter.vertices());
+        assertFalse(counter.edges().iterator().hasNext());
+        assertEquals(0, counter.count("a", "b"));
+    }
+    
+    @Test
+    public void testCounts() {
+        ConcurrentEdgeCounter<String> counter = new ConcurrentEdgeCounter<>();
+        counter.add("lonely");
+        counter.add("lonely");
+        counter.increment("a", "b");
+        counter.increment("a", "b");
+        counter.add("a", "c", 5);
+        counter.increment("c", "c");
+        assertEquals(new HashSet<>(List.of("lonely", "a", "b", "c")), counter.vertices());
+        assertEquals(2, counter.count("a", "b"));
+        assertEquals(5, counter.count("a", "c"));
+        assertEquals(1, counter.count("c", "c"));
+        assertEquals(0, counter.count("b", "a"));
+        Set<WeightedEdge<String>> edges = new HashSet<>();
+        counter.edges().forEach(edges::add);
+        assertEquals(Set.of(new WeightedEdge<>("a", "b", 2), new WeightedEdge<>("a", "c", 5),
+                new WeightedEdge<>("c", "c", 1)), edges);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testNonPositiveDelta() {
+        new ConcurrentEdgeCounter<String>().add("a", "b", 0);
+    }
+    
+    @Test(expected=ArithmeticException.class)
+    public void testOverflow() {
+        ConcurrentEdgeCounter<String> counter = new ConcurrentEdgeCounter<>();
+        counter.add("a", "b", Integer.MAX_VALUE + 1L);
+        counter.edges().iterator().next();
+    }
+    
+    @Test
+    public void testOrderedEdges() {
+        ConcurrentEdgeCounter<String> counter = new ConcurrentEdgeCounter<>();
+        assertEquals(List.of(), counter.orderedEdges());
+        counter.add("z", "a", 4);
+        counter.increment("b", "c", 30);
+        counter.increment("a", "b", 20);
+        counter.increment("b", "c", 10);
+        counter.increment("c", "a", 15);
+        counter.increment("a", "b", 40);
+        assertEquals(List.of(new WeightedEdge<>("b", "c", 2), new WeightedEdge<>("c", "a", 1),
+                new WeightedEdge<>("a", "b", 2), new WeightedEdge<>("z", "a", 4)), counter.orderedEdges());
+        // positions too large to pack with an index
+        counter.increment("y", "x", Long.MAX_VALUE - 1);
+        counter.increment("x", "y", Long.MAX_VALUE / 2);
+        assertEquals(List.of(new WeightedEdge<>("b", "c", 2), new WeightedEdge<>("c", "a", 1),
+                new WeightedEdge<>("a", "b", 2), new WeightedEdge<>("x", "y", 1), new WeightedEdge<>("y", "x", 1),
+                new WeightedEdge<>("z", "a", 4)), counter.orderedEdges());
+    }
+    
+    @Test
+    public void testPublishTo() {
+        ConcurrentEdgeCounter<String> counter = new ConcurrentEdgeCounter<>();
+        counter.add("lonely");
+        counter.add("a", "b", 3);
+        CountingGraph<String> graph = new DenseGraph<>();
+        graph.set("a", "b", 1);
+        assertSame(graph, counter.publishTo(graph));
+        assertEquals(Set.of("lonely", "a", "b"), graph.vertices());
+        assertEquals(Map.of("b", 4), graph.targets("a"));
+    }
+    
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        ConcurrentEdgeCounter<String> counter = new ConcurrentEdgeCounter<>();
+        int threads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        int increments = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                String own = "t" + thread;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < increments; i++) {
+                        counter.increment("shared", "hub");      // every thread, same edge
+                        counter.increment(own, "w" + (i % 100)); // this thread only
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals((long) threads * increments, counter.count("shared", "hub"));
+        for (int thread = 0; thread < threads; thread++) {
+            for (int w = 0; w < 100; w++) {
+                assertEquals(increments / 100, counter.count("t" + thread, "w" + w));
+            }
+        }
+    }
+}
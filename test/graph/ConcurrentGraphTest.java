@@ -0,0 +1,207 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for ConcurrentGraph.
+ * 
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against ConcurrentGraph, as well as concurrency stress tests.
+ * 
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class ConcurrentGraphTest extends CountingGraphInstanceTest {
+    
+    /*
+     * Provide a ConcurrentGraph for tests in CountingGraphInstanceTest.
+     */
+    @Override public CountingGraph<String> emptyInstance() {
+        return new ConcurrentGraph<>();
+    }
+    
+    /*
+     * Testing ConcurrentGraph...
+     */
+    
+    // Testing strategy for concurrency
+    //   threads: at least 4, and twice the number of processors
+    //   stripes: 1 (every write contends), many
+    //   writes: increments only (final weights are exact),
+    //           mixed add/set/remove/increment with concurrent readers
+    //   readers check that every weight they see is positive
+    //   after all writers finish, the graph satisfies the rep invariant
+    
+    private static final int THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final int OPERATIONS = 20_000;
+    private static final String[] WORDS = new String[32];
+    static {
+        for (int i = 0; i < WORDS.length; i++) {
+            WORDS[i] = "w" + i;
+        }
+    }
+    
+    // Run the tasks together on their own threads, and rethrow the first failure
+    private static void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    // Assert that sources and targets mirror each other and only name vertices
+    private static void assertConsistent(Graph<String> graph) {
+        Set<String> vertices = graph.vertices();
+        for (String vertex : vertices) {
+            for (Map.Entry<String, Integer> edge : graph.targets(vertex).entrySet()) {
+                assertTrue(vertices.contains(edge.getKey()));
+                assertEquals(edge.getValue(), graph.sources(edge.getKey()).get(vertex));
+            }
+            for (Map.Entry<String, Integer> edge : graph.sources(vertex).entrySet()) {
+                assertTrue(vertices.contains(edge.getKey()));
+                assertEquals(edge.getValue(), graph.targets(edge.getKey()).get(vertex));
+            }
+        }
+    }
+    
+    // Covers increments only, 1 stripe and many stripes
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        for (int stripes : new int[] { 1, 64 }) {
+            ConcurrentGraph<String> graph = new ConcurrentGraph<>(stripes);
+            int[][][] expected = new int[THREADS][WORDS.length][WORDS.length];
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int[][] counts = expected[thread];
+                Random random = new Random(thread);
+                tasks.add(() -> {
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        int s = random.nextInt(WORDS.length);
+                        int t = random.nextInt(WORDS.length);
+                        graph.increment(WORDS[s], WORDS[t], 1);
+                        counts[s][t]++;
+                    }
+                    return null;
+                });
+            }
+            runConcurrently(tasks);
+            for (int s = 0; s < WORDS.length; s++) {
+                for (int t = 0; t < WORDS.length; t++) {
+                    int total = 0;
+                    for (int thread = 0; thread < THREADS; thread++) {
+                        total += expected[thread][s][t];
+                    }
+                    assertEquals(total, graph.targets(WORDS[s]).getOrDefault(WORDS[t], 0).intValue());
+                }
+            }
+            assertConsistent(graph);
+        }
+    }
+    
+    // Covers mixed writes with concurrent readers
+    @Test
+    public void testConcurrentMixedOperations() throws Exception {
+        ConcurrentGraph<String> graph = new ConcurrentGraph<>(8);
+        List<Callable<Void>> writers = new ArrayList<>();
+        for (int thread = 0; thread < THREADS / 2; thread++) {
+            Random random = new Random(thread);
+            writers.add(() -> {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    String s = WORDS[random.nextInt(WORDS.length)];
+                    String t = WORDS[random.nextInt(WORDS.length)];
+                    switch (random.nextInt(8)) {
+                    case 0:
+                        graph.remove(s);
+                        break;
+                    case 1:
+                        graph.add(s);
+                        break;
+                    case 2:
+                        graph.set(s, t, 0);
+                        break;
+                    case 3:
+                        graph.set(s, t, 1 + random.nextInt(5));
+                        break;
+                    default:
+                        graph.increment(s, t, 1);
+                    }
+                }
+                return null;
+            });
+        }
+        AtomicInteger writing = new AtomicInteger(writers.size());
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Callable<Void> writer : writers) {
+            tasks.add(() -> {
+                try {
+                    return writer.call();
+                } finally {
+                    writing.decrementAndGet();
+                }
+            });
+        }
+        for (int thread = 0; thread < THREADS - writers.size(); thread++) {
+            Random random = new Random(-thread);
+            tasks.add(() -> {
+                while (writing.get() > 0) {
+                    String vertex = WORDS[random.nextInt(WORDS.length)];
+                    for (int weight : graph.targets(vertex).values()) {
+                        assertTrue(weight > 0);
+                    }
+                    for (int weight : graph.sources(vertex).values()) {
+                        assertTrue(weight > 0);
+                    }
+                    graph.vertices();
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+        assertConsistent(graph);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoStripes() {
+        new ConcurrentGraph<String>(0);
+    }
+    
+    @Test
+    public void testConcurrentGraphToString() {
+        Graph<String> graph = emptyInstance();
+        graph.set("a", "b", 2);
+        graph.add("c");
+        String string = graph.toString();
+        assertTrue(string.contains("a -> b : 2"));
+        assertTrue(string.contains("c -> "));
+    }
+}
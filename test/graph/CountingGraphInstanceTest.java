@@ -0,0 +1,114 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for instance methods of CountingGraph, in addition to the Graph tests
+ * in GraphInstanceTest.
+ * 
+ * <p>Tests only obtain CountingGraph instances by calling emptyInstance(), and
+ * do not refer to specific concrete implementations.
+ */
+public abstract class CountingGraphInstanceTest extends GraphInstanceTest {
+    
+    // Testing strategy
+    //   increment(): edge does not exist, edge exists
+    //     vertices do not exist, vertices exist
+    //     delta > 0, delta == 0, delta < 0
+    //     new weight > 0, == 0 (edge removed), < 0 (rejected), overflows (rejected)
+    //   addAll(): no edges, distinct edges, repeated edges
+    
+    /**
+     * Overridden by implementation-specific test classes.
+     * 
+     * @return a new empty graph of the particular implementation being tested
+     */
+    @Override public abstract CountingGraph<String> emptyInstance();
+    
+    // Covers edge does not exist, vertices do not exist, delta > 0, edge exists
+    @Test
+    public void testIncrementAddsEdge() {
+        CountingGraph<String> graph = emptyInstance();
+        assertEquals(1, graph.increment("a", "b", 1));
+        assertEquals(Set.of("a", "b"), graph.vertices());
+        assertEquals(3, graph.increment("a", "b", 2));
+        assertEquals(Map.of("b", 3), graph.targets("a"));
+        assertEquals(Map.of("a", 3), graph.sources("b"));
+    }
+    
+    // Covers delta == 0, delta < 0, new weight == 0
+    @Test
+    public void testIncrementRemovesEdge() {
+        CountingGraph<String> graph = emptyInstance();
+        graph.set("a", "a", 2);
+        assertEquals(2, graph.increment("a", "a", 0));
+        assertEquals(1, graph.increment("a", "a", -1));
+        assertEquals(0, graph.increment("a", "a", -1));
+        assertEquals(Collections.emptyMap(), graph.targets("a"));
+        assertEquals(Collections.emptyMap(), graph.sources("a"));
+        assertEquals(Set.of("a"), graph.vertices());
+        assertEquals(0, graph.increment("a", "b", 0));
+        assertEquals(Collections.emptyMap(), graph.targets("a"));
+    }
+    
+    // Covers new weight < 0
+    @Test
+    public void testIncrementNegative() {
+        CountingGraph<String> graph = emptyInstance();
+        graph.set("a", "b", 1);
+        try {
+            graph.increment("a", "b", -2);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            graph.increment("c", "d", -1);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(Map.of("b", 1), graph.targets("a"));
+        assertEquals(Set.of("a", "b"), graph.vertices());
+    }
+    
+    // Covers new weight overflows
+    @Test
+    public void testIncrementOverflow() {
+        CountingGraph<String> graph = emptyInstance();
+        graph.set("a", "b", Integer.MAX_VALUE);
+        try {
+            graph.increment("a", "b", 1);
+            fail("expected ArithmeticException");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+        assertEquals(Map.of("b", Integer.MAX_VALUE), graph.targets("a"));
+    }
+    
+    // Covers no edges, distinct edges, repeated edges
+    @Test
+    public void testAddAll() {
+        CountingGraph<String> graph = emptyInstance();
+        graph.addAll(Collections.emptyList());
+        assertEquals(Collections.emptySet(), graph.vertices());
+        graph.set("a", "b", 1);
+        graph.addAll(Arrays.asList(
+                new WeightedEdge<>("a", "b", 2),
+                new WeightedEdge<>("b", "c", 1),
+                new WeightedEdge<>("a", "b", 4)));
+        assertEquals(Map.of("b", 7), graph.targets("a"));
+        assertEquals(Map.of("c", 1), graph.targets("b"));
+        assertEquals(Map.of("b", 1), graph.sources("c"));
+    }
+}
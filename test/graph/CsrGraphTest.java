@@ -0,0 +1,141 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for CsrGraph.
+ * 
+ * CsrGraph is immutable, so it does not run GraphInstanceTest; instead each
+ * test freezes a graph built with a mutable implementation and compares.
+ */
+public class CsrGraphTest {
+    
+    // Testing strategy
+    //   from(): empty graph, vertices without edges, vertices with edges
+    //   sources(), targets(): vertex absent, no edges, one edge, several edges
+    //   views: get() on absent key, iteration order, unmodifiable
+    //   id API: id(), label(), row bounds, weight() present and absent
+    //   mutators throw UnsupportedOperationException
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static Graph<String> sample() {
+        Graph<String> graph = new ConcreteVerticesGraph();
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 2);
+        graph.set("b", "c", 3);
+        graph.set("c", "a", 4);
+        graph.add("d");
+        return graph;
+    }
+    
+    @Test
+    public void testFromEmpty() {
+        CsrGraph<String> graph = CsrGraph.from(new ConcreteVerticesGraph());
+        assertEquals(Collections.emptySet(), graph.vertices());
+        assertEquals(0, graph.vertexCount());
+        assertEquals(0, graph.edgeCount());
+        assertEquals(Collections.emptyMap(), graph.targets("a"));
+    }
+    
+    @Test
+    public void testFromSameEdges() {
+        Graph<String> source = sample();
+        CsrGraph<String> graph = CsrGraph.from(source);
+        assertEquals(Set.of("a", "b", "c", "d"), graph.vertices());
+        assertEquals(4, graph.edgeCount());
+        for (String vertex : source.vertices()) {
+            assertEquals(source.targets(vertex), graph.targets(vertex));
+            assertEquals(source.sources(vertex), graph.sources(vertex));
+        }
+        assertEquals(Collections.emptyMap(), graph.targets("d"));
+        assertEquals(Collections.emptyMap(), graph.sources("e"));
+    }
+    
+    @Test
+    public void testViews() {
+        CsrGraph<String> graph = CsrGraph.from(sample());
+        Map<String, Integer> targets = graph.targets("a");
+        assertEquals(2, targets.size());
+        assertEquals(2, targets.get("c").intValue());
+        assertNull(targets.get("d"));
+        assertNull(targets.get("nowhere"));
+        assertTrue(graph.sources("c").containsKey("b"));
+        assertFalse(graph.sources("c").containsKey("c"));
+    }
+    
+    @Test
+    public void testViewMethods() {
+        CsrGraph<String> graph = CsrGraph.from(sample());
+        assertEquals(graph.vertices(), graph.verticesView());
+        for (String vertex : Set.of("a", "b", "c", "d", "e")) {
+            assertEquals(graph.targets(vertex), graph.targetsView(vertex));
+            assertEquals(graph.sources(vertex), graph.sourcesView(vertex));
+        }
+    }
+    
+    // out-edge rows keep the source graph's targets() order
+    @Test
+    public void testTargetsOrder() {
+        Graph<String> source = new DenseGraph<>();
+        for (int i = 30; i > 0; i--) {
+            source.set("hub", "w" + i, i);
+        }
+        List<String> expected = new ArrayList<>(source.targets("hub").keySet());
+        assertEquals(expected, new ArrayList<>(CsrGraph.from(source).targets("hub").keySet()));
+    }
+    
+    @Test
+    public void testIds() {
+        CsrGraph<String> graph = CsrGraph.from(sample());
+        int a = graph.id("a");
+        int c = graph.id("c");
+        assertEquals(-1, graph.id("e"));
+        assertEquals("a", graph.label(a));
+        assertEquals(2, graph.outEnd(a) - graph.outStart(a));
+        int total = 0;
+        for (int e = graph.outStart(a); e < graph.outEnd(a); e++) {
+            total += graph.outWeight(e);
+            assertEquals(graph.outWeight(e), graph.weight(a, graph.outTarget(e)));
+        }
+        assertEquals(3, total);
+        assertEquals(2, graph.inEnd(c) - graph.inStart(c));
+        assertTrue(graph.inSource(graph.inStart(c)) < graph.inSource(graph.inStart(c) + 1));
+        assertEquals(2, graph.weight(a, c));
+        assertEquals(0, graph.weight(c, graph.id("b")));
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTargetsUnmodifiable() {
+        CsrGraph.from(sample()).targets("a").put("d", 1);
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testVerticesUnmodifiable() {
+        CsrGraph.from(sample()).vertices().remove("a");
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSetUnsupported() {
+        CsrGraph.from(sample()).set("a", "b", 2);
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveUnsupported() {
+        CsrGraph.from(sample()).remove("a");
+    }
+}
@@ -0,0 +1,92 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for DenseGraph.
+ * 
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against DenseGraph, as well as tests for that particular implementation.
+ * 
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class DenseGraphTest extends CountingGraphInstanceTest {
+    
+    /*
+     * Provide a DenseGraph for tests in CountingGraphInstanceTest.
+     */
+    @Override public CountingGraph<String> emptyInstance() {
+        return new DenseGraph<>();
+    }
+    
+    /*
+     * Testing DenseGraph...
+     */
+    
+    // Testing strategy for the id API
+    //   id(): vertex exists, vertex does not exist
+    //   targetsOf(), sourcesOf(): no edges, some edges
+    //   weight(): edge exists, edge does not exist
+    //   ids are reused after remove
+    @Test
+    public void testDenseGraphIds() {
+        DenseGraph<String> graph = new DenseGraph<>();
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 2);
+        int a = graph.id("a");
+        int b = graph.id("b");
+        int c = graph.id("c");
+        assertEquals(-1, graph.id("d"));
+        assertEquals("a", graph.label(a));
+
+        IntIntMap targets = graph.targetsOf(a);
+        assertEquals(2, targets.size());
+        assertEquals(b, targets.keyAt(0));
+        assertEquals(1, targets.valueAt(0));
+        assertEquals(c, targets.keyAt(1));
+        assertEquals(2, targets.valueAt(1));
+        assertEquals(0, graph.targetsOf(c).size());
+        assertEquals(2, graph.sourcesOf(c).get(a));
+
+        assertEquals(2, graph.weight(a, c));
+        assertEquals(0, graph.weight(c, a));
+
+        assertTrue(graph.remove("b"));
+        assertEquals(1, graph.targetsOf(a).size());
+        assertTrue(graph.add("d"));
+        assertEquals(b, graph.id("d"));
+        assertEquals(0, graph.weight(a, graph.id("d")));
+    }
+
+    // targets() follows edge insertion order
+    @Test
+    public void testDenseGraphTargetsOrder() {
+        Graph<String> graph = emptyInstance();
+        List<String> expected = new ArrayList<>();
+        for (int i = 20; i > 0; i--) {
+            graph.set("hub", "w" + i, i);
+            expected.add("w" + i);
+        }
+        Map<String, Integer> targets = graph.targets("hub");
+        assertEquals(expected, new ArrayList<>(targets.keySet()));
+        assertEquals(20, targets.get("w20").intValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDenseGraphLabelOfFreeId() {
+        DenseGraph<String> graph = new DenseGraph<>();
+        graph.add("a");
+        int a = graph.id("a");
+        graph.remove("a");
+        graph.label(a);
+    }
+}
@@ -0,0 +1,14 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+/**
+ * Runs the ViewableGraphInstanceTest tests against DenseGraph.
+ */
+public class DenseGraphViewTest extends ViewableGraphInstanceTest {
+    
+    @Override public ViewableGraph<String> emptyInstance() {
+        return new DenseGraph<>();
+    }
+}
@@ -0,0 +1,423 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for DurableGraph.
+ *
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against DurableGraph, as well as tests of recovery from its files.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class DurableGraphTest extends CountingGraphInstanceTest {
+
+    // A sync interval long enough that the committer never runs during a test
+    private static final long NEVER = 3_600_000;
+
+    private final List<DurableGraph> opened = new ArrayList<>();
+    private final List<Path> directories = new ArrayList<>();
+
+    /*
+     * Provide a DurableGraph for tests in CountingGraphInstanceTest.
+     */
+    @Override public CountingGraph<String> emptyInstance() {
+        try {
+            return open(newDirectory(), NEVER, Long.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        for (DurableGraph graph : opened) {
+            try {
+                graph.close();
+            } catch (IOException | IllegalStateException e) {
+                // tests may leave a graph failed or closed
+            }
+        }
+        for (Path directory : directories) {
+            deleteDirectory(directory);
+        }
+    }
+
+    /*
+     * Testing DurableGraph...
+     */
+
+    // Testing strategy for DurableGraph
+    //   open(): new directory, missing directory, directory with a log only, with a snapshot
+    //           and log, with leftovers of an unfinished checkpoint; into an OverlayGraph or
+    //           a given graph (empty, not empty)
+    //   log tail: intact, cut short at every byte, last record corrupted
+    //   log header: missing, cut short, wrong magic
+    //   operations: add, set, increment (positive, negative delta), remove; labels
+    //               with non-ASCII characters; rejected mutations are not logged
+    //   sync(): nothing to sync, records to sync, concurrent callers
+    //   checkpoint(): explicit, triggered by log size; followed by more mutations
+    //   close(): then reopen; mutators after close
+
+    private Path newDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("durable");
+        directories.add(directory);
+        return directory;
+    }
+
+    private DurableGraph open(Path directory, long syncMillis, long checkpointBytes) throws IOException {
+        DurableGraph graph = DurableGraph.open(directory, null, syncMillis, checkpointBytes);
+        opened.add(graph);
+        return graph;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    // Copy the files of a directory, as a crash would leave them on disk
+    private Path crashImage(Path directory) throws IOException {
+        Path image = newDirectory();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.copy(file, image.resolve(file.getFileName()));
+            }
+        }
+        return image;
+    }
+
+    private static Set<String> fileNames(Path directory) throws IOException {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    // The vertices and rows of a graph, in a form that compares by value
+    private static Map<String, Map<String, Integer>> contents(Graph<String> graph) {
+        Map<String, Map<String, Integer>> contents = new LinkedHashMap<>();
+        for (String vertex : graph.vertices()) {
+            contents.put(vertex, graph.targets(vertex));
+        }
+        return contents;
+    }
+
+    // Apply a random mix of operations to both graphs, recording the expected contents after each
+    private static List<Map<String, Map<String, Integer>>> randomOperations(Random random, int count,
+            CountingGraph<String> graph, CountingGraph<String> expected) {
+        List<Map<String, Map<String, Integer>>> states = new ArrayList<>();
+        states.add(contents(expected));
+        for (int i = 0; i < count; i++) {
+            String source = "w\u00e9" + random.nextInt(20);
+            String target = "w" + random.nextInt(20);
+            switch (random.nextInt(6)) {
+            case 0:
+                assertEquals(expected.add(source), graph.add(source));
+                break;
+            case 1:
+                assertEquals(expected.remove(target), graph.remove(target));
+                break;
+            case 2:
+                int weight = random.nextInt(3);
+                assertEquals(expected.set(source, target, weight), graph.set(source, target, weight));
+                break;
+            default:
+                int delta = random.nextInt(4) - 1;
+                if (expected.targets(source).getOrDefault(target, 0) + delta >= 0) {
+                    assertEquals(expected.increment(source, target, delta), graph.increment(source, target, delta));
+                }
+            }
+            states.add(contents(expected));
+        }
+        return states;
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        CountingGraph<String> expected = new DenseGraph<>();
+        randomOperations(new Random(1), 500, graph, expected);
+        graph.close();
+        DurableGraph reopened = open(directory, NEVER, Long.MAX_VALUE);
+        assertEquals(contents(expected), contents(reopened));
+        assertEquals(Set.of("log-0.wal"), fileNames(directory));
+    }
+
+    @Test
+    public void testMissingDirectory() throws IOException {
+        Path directory = newDirectory().resolve("graph");
+        directories.add(0, directory);
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        graph.set("a", "b", 2);
+        graph.close();
+        assertEquals(Map.of("b", 2), open(directory, NEVER, Long.MAX_VALUE).targets("a"));
+    }
+
+    @Test
+    public void testRejectedMutationNotLogged() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        graph.set("a", "b", 1);
+        long bytes = graph.logBytes();
+        try {
+            graph.increment("a", "b", -2);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertFalse(graph.add("a"));
+        assertFalse(graph.remove("c"));
+        assertEquals(bytes, graph.logBytes());
+        graph.close();
+        assertEquals(Map.of("b", 1), open(directory, NEVER, Long.MAX_VALUE).targets("a"));
+    }
+
+    @Test
+    public void testSyncedRecordsSurviveCrash() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        graph.sync();
+        graph.increment("a", "b", 3);
+        graph.increment("a", "b", -1);
+        graph.sync();
+        graph.sync();
+        // not synced, so not on disk yet
+        graph.set("c", "d", 1);
+        DurableGraph recovered = open(crashImage(directory), NEVER, Long.MAX_VALUE);
+        assertEquals(Set.of("a", "b"), recovered.vertices());
+        assertEquals(Map.of("b", 2), recovered.targets("a"));
+    }
+
+    @Test
+    public void testTruncatedTail() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        List<Map<String, Map<String, Integer>>> states =
+                randomOperations(new Random(2), 60, graph, new DenseGraph<>());
+        graph.sync();
+        Path image = crashImage(directory);
+        long size = Files.size(image.resolve("log-0.wal"));
+        int previous = 0;
+        for (long cut = 0; cut <= size; cut++) {
+            Path torn = crashImage(image);
+            try (FileChannel log = FileChannel.open(torn.resolve("log-0.wal"), StandardOpenOption.WRITE)) {
+                log.truncate(cut);
+            }
+            DurableGraph recovered = open(torn, NEVER, Long.MAX_VALUE);
+            // a torn log recovers some prefix of the operations, which grows with the log
+            int prefix = previous;
+            while (prefix < states.size() && !states.get(prefix).equals(contents(recovered))) {
+                prefix++;
+            }
+            assertTrue("no prefix matches at " + cut, prefix < states.size());
+            previous = prefix;
+            // the torn tail is gone, so new records follow the recovered ones
+            recovered.set("x", "y", 7);
+            recovered.close();
+            DurableGraph reopened = open(torn, NEVER, Long.MAX_VALUE);
+            assertEquals(Map.of("y", 7), reopened.targets("x"));
+            reopened.close();
+            deleteDirectory(torn);
+        }
+        // the whole log recovers every operation
+        assertEquals(states.get(states.size() - 1), states.get(previous));
+    }
+
+    @Test
+    public void testCorruptLastRecord() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 2);
+        graph.close();
+        Path log = directory.resolve("log-0.wal");
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(log, bytes);
+        DurableGraph recovered = open(directory, NEVER, Long.MAX_VALUE);
+        assertEquals(Map.of("b", 1), recovered.targets("a"));
+        assertEquals(Set.of("a", "b"), recovered.vertices());
+    }
+
+    @Test
+    public void testInvalidLog() throws IOException {
+        Path directory = newDirectory();
+        Files.write(directory.resolve("log-0.wal"), new byte[] { 'X', 'P', 'H', 'W', 1, 0, 0, 0 });
+        try {
+            open(directory, NEVER, Long.MAX_VALUE);
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShortHeader() throws IOException {
+        Path directory = newDirectory();
+        Files.write(directory.resolve("log-0.wal"), new byte[] { 'G', 'P' });
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        assertEquals(Set.of(), graph.vertices());
+        graph.add("a");
+        graph.close();
+        assertEquals(Set.of("a"), open(directory, NEVER, Long.MAX_VALUE).vertices());
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        CountingGraph<String> expected = new DenseGraph<>();
+        Random random = new Random(3);
+        randomOperations(random, 200, graph, expected);
+        graph.checkpoint();
+        assertEquals(0, graph.logBytes());
+        assertEquals(Set.of("snapshot-1.graph", "log-1.wal"), fileNames(directory));
+        randomOperations(random, 200, graph, expected);
+        assertEquals(contents(expected), contents(graph));
+        graph.sync();
+        assertEquals(contents(expected), contents(open(crashImage(directory), NEVER, Long.MAX_VALUE)));
+        graph.close();
+        assertEquals(contents(expected), contents(open(directory, NEVER, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testUnfinishedCheckpoint() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        graph.set("a", "b", 1);
+        graph.checkpoint();
+        graph.set("a", "c", 2);
+        graph.close();
+        // a crash while writing the next snapshot leaves a temporary file behind
+        Files.write(directory.resolve("snapshot-2.tmp"), new byte[] { 1, 2, 3 });
+        // a crash before the old files were deleted leaves them behind
+        Files.write(directory.resolve("log-0.wal"), new byte[] { 1, 2, 3 });
+        DurableGraph recovered = open(directory, NEVER, Long.MAX_VALUE);
+        assertEquals(Map.of("b", 1, "c", 2), recovered.targets("a"));
+        assertEquals(Set.of("snapshot-1.graph", "log-1.wal"), fileNames(directory));
+    }
+
+    @Test
+    public void testCommitterCheckpoints() throws IOException, InterruptedException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, 1, 1_000);
+        CountingGraph<String> expected = new DenseGraph<>();
+        randomOperations(new Random(4), 300, graph, expected);
+        // the committer checkpoints on its own once the log outgrows 1000 bytes
+        for (int i = 0; i < 10_000 && graph.logBytes() >= 1_000; i++) {
+            Thread.sleep(1);
+        }
+        assertTrue(graph.logBytes() < 1_000);
+        assertFalse(fileNames(directory).contains("snapshot-0.graph"));
+        assertTrue(fileNames(directory).toString(), fileNames(directory).stream().anyMatch(
+                name -> name.startsWith("snapshot-")));
+        graph.close();
+        assertEquals(contents(expected), contents(open(directory, NEVER, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testRecoverIntoGivenGraph() throws IOException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        graph.set("a", "b", 1);
+        graph.checkpoint();
+        graph.increment("a", "b", 4);
+        graph.close();
+        ConcurrentGraph<String> into = new ConcurrentGraph<>();
+        DurableGraph recovered = DurableGraph.open(directory, into, NEVER, Long.MAX_VALUE);
+        opened.add(recovered);
+        assertEquals(Map.of("b", 5), recovered.targets("a"));
+        assertEquals(Map.of("b", 5), into.targets("a"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testRecoverIntoNonEmptyGraph() throws IOException {
+        ConcurrentGraph<String> into = new ConcurrentGraph<>();
+        into.add("a");
+        DurableGraph.open(newDirectory(), into, NEVER, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testClosed() throws IOException {
+        DurableGraph graph = open(newDirectory(), NEVER, Long.MAX_VALUE);
+        graph.add("a");
+        graph.close();
+        graph.close();
+        assertEquals(Set.of("a"), graph.vertices());
+        try {
+            graph.add("b");
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentSync() throws IOException, InterruptedException {
+        Path directory = newDirectory();
+        DurableGraph graph = open(directory, NEVER, Long.MAX_VALUE);
+        final int threads = 4;
+        final int increments = 500;
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String source = "t" + t;
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int i = 0; i < increments; i++) {
+                        graph.increment(source, "shared", 1);
+                        graph.sync();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(List.of(), errors);
+        DurableGraph recovered = open(crashImage(directory), NEVER, Long.MAX_VALUE);
+        assertEquals(threads, recovered.sources("shared").size());
+        for (int weight : recovered.sources("shared").values()) {
+            assertEquals(increments, weight);
+        }
+    }
+}
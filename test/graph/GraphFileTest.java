@@ -0,0 +1,215 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * Tests for GraphFile.
+ */
+public class GraphFileTest {
+
+    // Testing strategy
+    //   graph: empty, vertices without edges, self-loops, large weights and ids,
+    //          non-ASCII labels, random graph with edges in both id directions
+    //   display names: none, some equal to their label (not saved), some different
+    //   target order within a row is preserved
+    //   load() of invalid files: too short, wrong magic, wrong version,
+    //          any single corrupted byte, truncated, checksum of wrong contents
+    //   save() over an existing file: succeeds and replaces it; fails partway and leaves
+    //          it, and no temporary file
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Save and load a graph through a temporary file
+    private static GraphFile roundTrip(Graph<String> graph, Map<String, String> displayNames) throws IOException {
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            GraphFile.save(graph, displayNames, file);
+            return GraphFile.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Assert the same vertices, and the same edges in the same target order
+    private static void assertSameGraph(Graph<String> expected, Graph<String> actual) {
+        assertEquals(expected.vertices(), actual.vertices());
+        for (String vertex : expected.vertices()) {
+            assertEquals(new ArrayList<>(expected.targets(vertex).entrySet()),
+                    new ArrayList<>(actual.targets(vertex).entrySet()));
+            assertEquals(expected.sources(vertex), actual.sources(vertex));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        GraphFile loaded = roundTrip(new ConcreteEdgesGraph(), Collections.emptyMap());
+        assertEquals(Collections.emptySet(), loaded.graph().vertices());
+        assertEquals(Collections.emptyMap(), loaded.displayNames());
+    }
+
+    @Test
+    public void testSmallGraph() throws IOException {
+        Graph<String> graph = new ConcreteVerticesGraph();
+        graph.set("c", "a", 1);
+        graph.set("c", "b", Integer.MAX_VALUE);
+        graph.set("a", "a", 3);
+        graph.set("\u00e9t\u00e9", "c", 2);
+        graph.add("lonely");
+        GraphFile loaded = roundTrip(graph, Map.of("c", "C", "a", "a", "missing", "M"));
+        assertSameGraph(graph, loaded.graph());
+        assertEquals(Map.of("c", "C"), loaded.displayNames());
+    }
+
+    @Test
+    public void testRandomGraph() throws IOException {
+        Random random = new Random(6005);
+        Graph<String> graph = new DenseGraph<>();
+        for (int i = 0; i < 3_000; i++) {
+            graph.set("w" + random.nextInt(500), "w" + random.nextInt(500), 1 + random.nextInt(1_000));
+        }
+        GraphFile loaded = roundTrip(CsrGraph.from(graph), Collections.emptyMap());
+        assertSameGraph(graph, loaded.graph());
+        assertEquals(CsrGraph.from(graph).edgeCount(), loaded.graph().edgeCount());
+    }
+
+    // Save a small graph and return the file's bytes
+    private static byte[] sampleBytes() throws IOException {
+        Graph<String> graph = new ConcreteEdgesGraph();
+        graph.set("a", "b", 1);
+        graph.set("b", "c", 300);
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            GraphFile.save(graph, Map.of("a", "A"), file);
+            return Files.readAllBytes(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Assert that load() rejects the given bytes
+    private static void assertInvalid(byte[] bytes) throws IOException {
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            Files.write(file, bytes);
+            GraphFile.load(file);
+            fail("expected IOException for " + Arrays.toString(bytes));
+        } catch (IOException e) {
+            // expected
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testInvalidFiles() throws IOException {
+        byte[] valid = sampleBytes();
+        assertInvalid(new byte[0]);
+        assertInvalid(Arrays.copyOf(valid, 11));
+        assertInvalid(Arrays.copyOf(valid, valid.length - 1));
+        for (int i = 0; i < valid.length; i++) {
+            byte[] corrupt = valid.clone();
+            corrupt[i] ^= 0x10;
+            assertInvalid(corrupt);
+        }
+    }
+
+    @Test
+    public void testVersion() throws IOException {
+        byte[] bytes = sampleBytes();
+        bytes[4] = 2;
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            Files.write(file, bytes);
+            GraphFile.load(file);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSampleLoads() throws IOException {
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            Files.write(file, sampleBytes());
+            GraphFile loaded = GraphFile.load(file);
+            assertEquals(Set.of("a", "b", "c"), loaded.graph().vertices());
+            assertEquals(Map.of("c", 300), loaded.graph().targets("b"));
+            assertEquals(Map.of("a", "A"), loaded.displayNames());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSaveReplacesAtomically() throws IOException {
+        Path directory = Files.createTempDirectory("graphs");
+        Path file = directory.resolve("poet.graph");
+        try {
+            Graph<String> first = new DenseGraph<>();
+            first.set("a", "b", 1);
+            GraphFile.save(first, file);
+            Graph<String> second = new DenseGraph<>();
+            second.set("a", "c", 2);
+            GraphFile.save(second, file);
+            assertEquals(Map.of("c", 2), GraphFile.load(file).graph().targets("a"));
+            // a graph that fails while its rows are being written
+            DenseGraph<String> failing = new DenseGraph<>() {
+                private int reads = 0;
+
+                @Override public Map<String, Integer> targetsView(String source) {
+                    if (++reads > vertices().size()) {
+                        throw new IllegalStateException("failed partway");
+                    }
+                    return super.targetsView(source);
+                }
+            };
+            for (int i = 0; i < 10_000; i++) {
+                failing.set("w" + i, "w" + (i + 1), 1);
+            }
+            try {
+                GraphFile.save(failing, file);
+                fail("expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            assertEquals(Map.of("c", 2), GraphFile.load(file).graph().targets("a"));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(List.of(file), files.collect(Collectors.toList()));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testDisplayNamesUnmodifiable() throws IOException {
+        Graph<String> graph = new ConcreteEdgesGraph();
+        graph.add("a");
+        roundTrip(graph, Map.of("a", "A")).displayNames().put("b", "B");
+    }
+}
@@ -5,7 +5,11 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -21,6 +25,11 @@ public class GraphStaticTest {
     //   empty()
     //     no inputs, only output is empty graph
     //     observe with vertices()
+    //     vertex labels: String, Integer, List
+    //   builder()
+    //     concurrent: false, true
+    //     readMostly: false, true
+    //     expected sizes: default, 0, > 0, exceeded, negative
     
     @Test(expected=AssertionError.class)
     public void testAssertionsEnabled() {
@@ -33,6 +42,84 @@ public class GraphStaticTest {
                 Collections.emptySet(), Graph.empty().vertices());
     }
     
-    // TODO test other vertex label types in Problem 3.2
+    @Test
+    public void testEmptyIntegerLabels() {
+        Graph<Integer> graph = Graph.empty();
+        assertEquals(0, graph.set(1, 2, 5));
+        assertEquals(0, graph.set(2, 1, 3));
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), graph.vertices());
+        assertEquals(Collections.singletonMap(2, 5), graph.targets(1));
+        assertEquals(Collections.singletonMap(2, 3), graph.sources(1));
+    }
+    
+    @Test
+    public void testEmptyListLabels() {
+        Graph<List<String>> graph = Graph.empty();
+        List<String> ab = Arrays.asList("a", "b");
+        List<String> c = Collections.singletonList("c");
+        assertTrue(graph.add(ab));
+        assertFalse(graph.add(Arrays.asList("a", "b")));
+        graph.set(ab, c, 1);
+        assertEquals(Collections.singletonMap(c, 1), graph.targets(Arrays.asList("a", "b")));
+        assertTrue(graph.remove(c));
+        assertEquals(Collections.singleton(ab), graph.vertices());
+        assertEquals(Collections.emptyMap(), graph.targets(ab));
+    }
+    
+    @Test
+    public void testEmptyGraphsAreDistinct() {
+        Graph<String> first = Graph.empty();
+        Graph<String> second = Graph.empty();
+        first.add("a");
+        assertEquals(Collections.emptySet(), second.vertices());
+    }
+    
+    @Test
+    public void testBuilderDefault() {
+        CountingGraph<String> graph = Graph.builder().build();
+        assertTrue(graph instanceof DenseGraph);
+        assertEquals(Collections.emptySet(), graph.vertices());
+    }
+    
+    @Test
+    public void testBuilderSingleThreadedGrowsPastExpected() {
+        CountingGraph<Integer> graph = Graph.builder().expectedVertices(4).expectedEdges(8).readMostly(true).build();
+        assertTrue(graph instanceof DenseGraph);
+        for (int i = 0; i < 100; i++) {
+            graph.increment(i, i + 1, 1);
+            graph.increment(0, i + 1, 1);
+        }
+        assertEquals(101, graph.vertices().size());
+        assertEquals(100, graph.targets(0).size());
+        assertEquals(Integer.valueOf(2), graph.targets(0).get(1));
+    }
+    
+    @Test
+    public void testBuilderConcurrent() {
+        CountingGraph<String> graph = Graph.builder().expectedVertices(1000).concurrent(true).build();
+        assertTrue(graph instanceof ConcurrentGraph);
+        graph.increment("a", "b", 2);
+        assertEquals(Collections.singletonMap("b", 2), graph.targets("a"));
+    }
+    
+    @Test
+    public void testBuilderConcurrentReadMostly() {
+        CountingGraph<String> graph = Graph.builder().expectedVertices(0).expectedEdges(0)
+                .concurrent(true).readMostly(true).build();
+        assertTrue(graph instanceof VersionedGraph);
+        graph.set("a", "b", 1);
+        Map<String, Integer> targets = graph.targets("a");
+        assertEquals(Collections.singletonMap("b", 1), targets);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testBuilderNegativeVertices() {
+        Graph.builder().expectedVertices(-1);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testBuilderNegativeEdges() {
+        Graph.builder().expectedEdges(-1);
+    }
     
 }
@@ -0,0 +1,199 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+/**
+ * Tests for InstrumentedGraph.
+ * 
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against an InstrumentedGraph of a graph that is neither a CountingGraph nor
+ * a ViewableGraph, so that increment() and the views take their fallbacks,
+ * as well as tests of what it records.
+ * 
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class InstrumentedGraphTest extends CountingGraphInstanceTest {
+    
+    // A graph that only offers the Graph interface of a ConcurrentGraph
+    @SuppressWarnings("unchecked")
+    private static Graph<String> plainGraph() {
+        ConcurrentGraph<String> graph = new ConcurrentGraph<>();
+        return (Graph<String>) Proxy.newProxyInstance(Graph.class.getClassLoader(), new Class<?>[] { Graph.class },
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(graph, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+    
+    /*
+     * Provide an InstrumentedGraph for tests in CountingGraphInstanceTest.
+     */
+    @Override public CountingGraph<String> emptyInstance() {
+        return new InstrumentedGraph<>(plainGraph());
+    }
+    
+    /*
+     * Testing InstrumentedGraph...
+     */
+    
+    // Testing strategy
+    //   wrapped graph: plain Graph (fallbacks), CountingGraph and ViewableGraph (passed on)
+    //   each operation, and its view, counts one call; vertices() counts none;
+    //     sampleEvery 1 times every call
+    //   failing calls (negative weight) are not recorded
+    //   sampleEvery > 1 estimates the number of calls
+    //   size: empty graph, edges with max in- and out-degree on different vertices
+    //   size reads hold the read lock
+    //   size is cached: writes around the wrapper are not seen, writes through it are;
+    //     all four attributes come from one walk; plain and viewable wrapped graphs
+    //   registered as an MXBean: attributes read as numbers and composite data
+    
+    @Test
+    public void testCountsCalls() {
+        for (Graph<String> wrapped : List.<Graph<String>>of(plainGraph(), new DenseGraph<>())) {
+            InstrumentedGraph<String> graph = new InstrumentedGraph<>(wrapped, 1, null);
+            graph.add("a");
+            graph.set("a", "b", 2);
+            graph.increment("a", "b", 3);
+            graph.increment("b", "c", 1);
+            assertEquals(Map.of("b", 5), graph.targets("a"));
+            assertEquals(Map.of("b", 5), graph.targetsView("a"));
+            assertEquals(Map.of("a", 5), graph.sourcesView("b"));
+            graph.vertices();
+            graph.verticesView();
+            graph.remove("c");
+            try {
+                graph.set("a", "b", -1);
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            assertEquals(1, graph.getAdd().getCount());
+            assertEquals(1, graph.getSet().getCount());
+            assertEquals(2, graph.getIncrement().getCount());
+            assertEquals(2, graph.getIncrement().getTimed());
+            assertEquals(1, graph.getRemove().getCount());
+            assertEquals(1, graph.getSources().getCount());
+            assertEquals(2, graph.getTargets().getCount());
+            assertTrue(graph.getTargets().getMaxNanos() >= 0);
+        }
+    }
+    
+    @Test
+    public void testSampledCounts() {
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(new DenseGraph<>(), 16, null);
+        for (int i = 0; i < 16_000; i++) {
+            graph.targetsView("a");
+        }
+        long timed = graph.getTargets().getTimed();
+        assertTrue("timed " + timed, timed > 500 && timed < 1500);
+        assertEquals(16 * timed, graph.getTargets().getCount());
+    }
+    
+    @Test
+    public void testSize() {
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(new DenseGraph<>());
+        assertEquals(0, graph.getVertexCount());
+        assertEquals(0, graph.getEdgeCount());
+        assertEquals(0, graph.getMaxOutDegree());
+        assertEquals(0, graph.getMaxInDegree());
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 1);
+        graph.set("a", "d", 1);
+        graph.set("b", "d", 1);
+        graph.set("c", "d", 1);
+        graph.add("e");
+        assertEquals(5, graph.getVertexCount());
+        assertEquals(5, graph.getEdgeCount());
+        assertEquals(3, graph.getMaxOutDegree());
+        assertEquals(3, graph.getMaxInDegree());
+        // reading the size is not an operation on the graph
+        assertEquals(0, graph.getTargets().getCount());
+    }
+    
+    @Test
+    public void testSizeCached() {
+        for (Graph<String> wrapped : List.<Graph<String>>of(plainGraph(), new DenseGraph<>())) {
+            InstrumentedGraph<String> graph = new InstrumentedGraph<>(wrapped, 1, null);
+            graph.set("a", "b", 1);
+            graph.set("c", "b", 1);
+            assertEquals(3, graph.getVertexCount());
+            // written around the wrapper: the walk already made is kept for every attribute
+            wrapped.set("a", "d", 1);
+            wrapped.set("a", "e", 1);
+            assertEquals(3, graph.getVertexCount());
+            assertEquals(2, graph.getEdgeCount());
+            assertEquals(1, graph.getMaxOutDegree());
+            assertEquals(2, graph.getMaxInDegree());
+            // written through the wrapper: walked again
+            graph.increment("e", "b", 1);
+            assertEquals(5, graph.getVertexCount());
+            assertEquals(5, graph.getEdgeCount());
+            assertEquals(3, graph.getMaxOutDegree());
+            assertEquals(3, graph.getMaxInDegree());
+            graph.remove("e");
+            assertEquals(4, graph.getVertexCount());
+            assertEquals(2, graph.getMaxInDegree());
+        }
+    }
+    
+    @Test
+    public void testSizeHoldsReadLock() throws InterruptedException {
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(new DenseGraph<>(), 1, lock.readLock());
+        graph.set("a", "b", 1);
+        lock.writeLock().lock();
+        int[] vertices = { -1 };
+        Thread reader = new Thread(() -> vertices[0] = graph.getVertexCount());
+        try {
+            reader.start();
+            reader.join(100);
+            assertTrue(reader.isAlive());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reader.join();
+        assertEquals(2, vertices[0]);
+        assertEquals(0, lock.getReadLockCount());
+    }
+    
+    @Test
+    public void testMXBean() throws JMException {
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(new DenseGraph<>(), 1, null);
+        graph.set("a", "b", 1);
+        graph.targets("a");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("graph:type=InstrumentedGraph,name=test");
+        server.registerMBean(graph, name);
+        try {
+            assertEquals(2, server.getAttribute(name, "VertexCount"));
+            assertEquals(1L, server.getAttribute(name, "EdgeCount"));
+            CompositeData targets = (CompositeData) server.getAttribute(name, "Targets");
+            assertEquals(1L, targets.get("count"));
+            assertEquals(1L, targets.get("timed"));
+            assertTrue((Long) targets.get("p99Nanos") >= 0);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
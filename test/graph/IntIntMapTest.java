@@ -0,0 +1,100 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for IntIntMap.
+ */
+public class IntIntMapTest {
+    
+    // Testing strategy
+    //   size: 0, small (linear search), large (hash index)
+    //   put: new key, existing key, value 0
+    //   add: new key, existing key, result 0
+    //   remove: absent key, last position, middle position
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    @Test
+    public void testSmallMap() {
+        IntIntMap map = new IntIntMap(0);
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.get(1));
+        
+        assertEquals(0, map.put(1, 10));
+        assertEquals(0, map.put(2, 20));
+        assertEquals(10, map.put(1, 11));
+        assertEquals(11, map.get(1));
+        assertEquals(2, map.size());
+        
+        assertEquals(25, map.add(2, 5));
+        assertEquals(3, map.add(3, 3));
+        assertEquals(0, map.add(3, -3));
+        assertFalse(map.containsKey(3));
+        
+        // removing the first entry moves the last into its place
+        assertEquals(11, map.remove(1));
+        assertEquals(0, map.remove(1));
+        assertEquals(2, map.keyAt(0));
+        assertEquals(25, map.valueAt(0));
+        assertEquals(25, map.put(2, 0));
+        assertTrue(map.isEmpty());
+    }
+    
+    @Test
+    public void testInsertionOrder() {
+        IntIntMap map = new IntIntMap(0);
+        for (int key = 100; key > 0; key--) {
+            map.put(key * 7, key);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals((100 - i) * 7, map.keyAt(i));
+            assertEquals(100 - i, map.valueAt(i));
+        }
+    }
+    
+    // Random operations against HashMap, crossing the linear/hashed boundary both ways
+    @Test
+    public void testAgainstHashMap() {
+        Random random = new Random(6005);
+        IntIntMap map = new IntIntMap(0);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 20_000; step++) {
+            int key = random.nextInt(step % 2000 < 1000 ? 40 : 6);
+            int op = random.nextInt(3);
+            if (op == 0) {
+                int value = random.nextInt(5);
+                Integer previous = value == 0 ? expected.remove(key) : expected.put(key, value);
+                assertEquals(previous == null ? 0 : previous, map.put(key, value));
+            } else if (op == 1) {
+                Integer previous = expected.remove(key);
+                assertEquals(previous == null ? 0 : previous, map.remove(key));
+            } else {
+                assertEquals(expected.getOrDefault(key, 0).intValue(), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int i = 0; i < map.size(); i++) {
+            assertEquals(expected.get(map.keyAt(i)).intValue(), map.valueAt(i));
+        }
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testKeyAtOutOfRange() {
+        IntIntMap map = new IntIntMap(0);
+        map.put(1, 1);
+        map.keyAt(1);
+    }
+}
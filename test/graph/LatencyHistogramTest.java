@@ -0,0 +1,128 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    // Testing strategy
+    //   bucket(): 0, below 16, powers of two and their neighbours, Long.MAX_VALUE;
+    //     every value is within its bucket, and within 1/16 of its bucket's greatest value
+    //   summary(): empty; one value; 1..1000; a slow outlier; values above the greatest bucket bound
+    //   start()/stop(): sampleEvery 1 counts and times every call exactly, larger times some
+    //     and estimates the count from them
+    //   sampleEvery < 1 is rejected
+    //   concurrent start()/stop() count every call
+
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testBuckets() {
+        List<Long> values = new ArrayList<>(List.of(0L, 1L, 15L, Long.MAX_VALUE, Long.MAX_VALUE - 1));
+        for (int shift = 4; shift < 63; shift++) {
+            values.add((1L << shift) - 1);
+            values.add(1L << shift);
+            values.add((1L << shift) + 1);
+            values.add((1L << shift) + (1L << shift) / 3);
+        }
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value + " above its bucket", value <= LatencyHistogram.highest(bucket));
+            assertTrue(value + " below its bucket", bucket == 0 || value > LatencyHistogram.highest(bucket - 1));
+            assertTrue(value + " imprecise", LatencyHistogram.highest(bucket) - value <= value / 16);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highest(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testEmptySummary() {
+        LatencyHistogram.Summary summary = new LatencyHistogram(1).summary();
+        assertEquals(0, summary.getCount());
+        assertEquals(0, summary.getTimed());
+        assertEquals(0, summary.getP50Nanos());
+        assertEquals(0, summary.getMaxNanos());
+        assertEquals(0, summary.getMeanNanos(), 0);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        histogram.record(7);
+        assertEquals(7, histogram.summary().getP50Nanos());
+        assertEquals(7, histogram.summary().getP999Nanos());
+        
+        histogram = new LatencyHistogram(1);
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos);
+        }
+        LatencyHistogram.Summary summary = histogram.summary();
+        assertEquals(1000, summary.getCount());
+        assertEquals(1000, summary.getTimed());
+        assertEquals(500.5, summary.getMeanNanos(), 1e-9);
+        assertTrue(summary.getP50Nanos() >= 500 && summary.getP50Nanos() <= 500 + 500 / 16);
+        assertTrue(summary.getP90Nanos() >= 900 && summary.getP90Nanos() <= 900 + 900 / 16);
+        assertTrue(summary.getP99Nanos() >= 990 && summary.getP99Nanos() <= 1000);
+        assertEquals(1000, summary.getMaxNanos());
+        
+        histogram.record(1_000_000_000);
+        histogram.record(-5);
+        summary = histogram.summary();
+        assertEquals(1_000_000_000, summary.getMaxNanos());
+        assertTrue(summary.getP99Nanos() <= 1000);
+        assertEquals(1002, summary.getTimed());
+    }
+
+    @Test
+    public void testSampling() {
+        LatencyHistogram every = new LatencyHistogram(1);
+        LatencyHistogram some = new LatencyHistogram(16);
+        for (int i = 0; i < 16_000; i++) {
+            every.stop(every.start());
+            some.stop(some.start());
+        }
+        assertEquals(16_000, every.count());
+        assertEquals(16_000, every.summary().getTimed());
+        long timed = some.summary().getTimed();
+        assertTrue("timed " + timed, timed > 500 && timed < 1500);
+        assertEquals(16 * timed, some.summary().getCount());
+        assertEquals(16 * timed, some.count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroSampleEvery() {
+        new LatencyHistogram(0);
+    }
+
+    @Test
+    public void testConcurrentCalls() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    histogram.stop(histogram.start());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000, histogram.summary().getTimed());
+    }
+}
@@ -0,0 +1,273 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for MappedGraph.
+ *
+ * MappedGraph is immutable, so it does not run GraphInstanceTest; instead each
+ * test writes a graph built with a mutable implementation, maps it, and compares.
+ */
+public class MappedGraphTest {
+
+    // Testing strategy
+    //   write()/open(): empty graph, vertices without edges, self-loops, random graph
+    //   write() over a file that is mapped: old mapping still reads the old graph
+    //   labels: ASCII, non-ASCII, surrogate pairs, distinct labels with equal hash codes
+    //   id(), sources(), targets(), vertices().contains(): label present, absent,
+    //          absent with the hash code of a present label
+    //   target order within a row is preserved
+    //   mutators throw UnsupportedOperationException; views are unmodifiable
+    //   open() of invalid files: too short, wrong magic, wrong version, truncated, extended
+    //   open() of corrupt tables: no empty hash slot, slot, target or source out of id range,
+    //          offsets decreasing, past their table, or not starting at 0, nonpositive weight
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Write and map a graph through a temporary file, which is deleted once mapped
+    private static MappedGraph roundTrip(Graph<String> graph) throws IOException {
+        Path file = Files.createTempFile("graph", ".mapped");
+        try {
+            MappedGraph.write(graph, file);
+            return MappedGraph.open(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Assert the same vertices, and the same edges in the same target order
+    private static void assertSameGraph(Graph<String> expected, MappedGraph actual) {
+        assertEquals(expected.vertices(), actual.vertices());
+        assertEquals(actual.vertices(), expected.vertices());
+        for (String vertex : expected.vertices()) {
+            assertEquals(new ArrayList<>(expected.targets(vertex).entrySet()),
+                    new ArrayList<>(actual.targets(vertex).entrySet()));
+            assertEquals(expected.sources(vertex), actual.sources(vertex));
+            assertEquals(vertex, actual.label(actual.id(vertex)));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        MappedGraph graph = roundTrip(new ConcreteEdgesGraph());
+        assertEquals(Collections.emptySet(), graph.vertices());
+        assertEquals(0, graph.edgeCount());
+        assertEquals(-1, graph.id("a"));
+        assertEquals(Collections.emptyMap(), graph.targets("a"));
+    }
+
+    @Test
+    public void testLabels() throws IOException {
+        // "Aa" and "BB" have the same hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        Graph<String> source = new ConcreteVerticesGraph();
+        source.set("Aa", "\u00e9t\u00e9", 2);
+        source.set("\u00e9t\u00e9", "\ud83d\ude00", 3);
+        source.set("\ud83d\ude00", "\ud83d\ude00", 1);
+        source.set("Aa", "word", Integer.MAX_VALUE);
+        source.add("BB");
+        MappedGraph graph = roundTrip(source);
+        assertSameGraph(source, graph);
+        assertEquals(-1, graph.id("C#"));
+        assertEquals(-1, graph.id("ete"));
+        assertFalse(graph.vertices().contains("C#"));
+        assertFalse(graph.vertices().contains(1));
+        assertTrue(graph.vertices().contains("BB"));
+        assertEquals(Collections.emptyMap(), graph.targets("BB"));
+        assertEquals(Map.of("Aa", 2), graph.sources("\u00e9t\u00e9"));
+        assertNull(graph.targets("Aa").get("BB"));
+        assertNull(graph.targets("Aa").get(5));
+    }
+
+    @Test
+    public void testRandomGraph() throws IOException {
+        // many labels with colliding hash codes, so the hash table probes long runs
+        Random random = new Random(15);
+        String[] halves = { "Aa", "BB" };
+        Graph<String> source = new DenseGraph<>();
+        for (int i = 0; i < 2_000; i++) {
+            String a = halves[random.nextInt(2)] + halves[random.nextInt(2)] + halves[random.nextInt(2)]
+                    + random.nextInt(40);
+            String b = "v" + random.nextInt(300);
+            source.set(a, b, 1 + random.nextInt(50));
+            source.set(b, a, 1 + random.nextInt(50));
+        }
+        MappedGraph graph = roundTrip(source);
+        assertSameGraph(source, graph);
+        for (int id = 0; id < graph.vertexCount(); id++) {
+            assertEquals(id, graph.id(graph.label(id)));
+        }
+        assertEquals(CsrGraph.from(source).edgeCount(), graph.edgeCount());
+        assertEquals(CsrGraph.from(source).toString(), graph.toString());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testAddUnsupported() throws IOException {
+        roundTrip(new ConcreteEdgesGraph()).add("a");
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSetUnsupported() throws IOException {
+        roundTrip(new ConcreteEdgesGraph()).set("a", "b", 1);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testRemoveUnsupported() throws IOException {
+        roundTrip(new ConcreteEdgesGraph()).remove("a");
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testTargetsUnmodifiable() throws IOException {
+        Graph<String> source = new ConcreteEdgesGraph();
+        source.set("a", "b", 1);
+        roundTrip(source).targets("a").put("c", 1);
+    }
+
+    // Bytes of a small mapped graph file: a -> b, b -> c, and vertex d
+    private static byte[] sampleFile() throws IOException {
+        Graph<String> graph = new ConcreteEdgesGraph();
+        graph.set("a", "b", 1);
+        graph.set("b", "c", 300);
+        graph.add("d");
+        Path file = Files.createTempFile("graph", ".mapped");
+        try {
+            MappedGraph.write(graph, file);
+            return Files.readAllBytes(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Int tables of the file format, in file order
+    private enum Table { OUT_OFFSETS, OUT_TARGETS, OUT_WEIGHTS, IN_OFFSETS, IN_SOURCES, IN_WEIGHTS,
+                         LABEL_OFFSETS, LABEL_HASHES, SLOTS }
+
+    // A copy of a mapped graph file with entries of one table overwritten
+    private static byte[] corrupt(byte[] file, Table table, int[] indexes, int value) {
+        ByteBuffer buffer = ByteBuffer.wrap(file.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        int n = buffer.getInt(8);
+        int m = buffer.getInt(12);
+        int h = buffer.getInt(16);
+        int[] lengths = { n + 1, m, m, n + 1, m, m, n + 1, n, h };
+        int start = 20;
+        for (int t = 0; t < table.ordinal(); t++) {
+            start += lengths[t] * Integer.BYTES;
+        }
+        for (int index : indexes) {
+            buffer.putInt(start + index * Integer.BYTES, value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] corrupt(byte[] file, Table table, int index, int value) {
+        return corrupt(file, table, new int[] { index }, value);
+    }
+
+    // Assert that open() rejects a file with IOException
+    private static void assertRejected(String reason, byte[] bytes) throws IOException {
+        Path file = Files.createTempFile("graph", ".mapped");
+        try {
+            Files.write(file, bytes);
+            MappedGraph.open(file);
+            fail("open() accepted a file with " + reason);
+        } catch (IOException e) {
+            // expected
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testInvalidHeader() throws IOException {
+        byte[] valid = sampleFile();
+        assertRejected("no bytes", new byte[0]);
+        assertRejected("a short header", Arrays.copyOf(valid, 19));
+        assertRejected("a missing byte", Arrays.copyOf(valid, valid.length - 1));
+        assertRejected("an extra byte", Arrays.copyOf(valid, valid.length + 1));
+        byte[] magic = valid.clone();
+        magic[0] = 'X';
+        assertRejected("the wrong magic", magic);
+        byte[] version = valid.clone();
+        version[4] = 2;
+        assertRejected("the wrong version", version);
+    }
+
+    @Test(timeout = 10_000)
+    public void testCorruptTables() throws IOException {
+        byte[] valid = sampleFile();
+        int h = ByteBuffer.wrap(valid).order(ByteOrder.LITTLE_ENDIAN).getInt(16);
+        int[] everySlot = new int[h];
+        Arrays.setAll(everySlot, i -> i);
+        assertRejected("no empty slot", corrupt(valid, Table.SLOTS, everySlot, 1));
+        assertRejected("a slot past the last id", corrupt(valid, Table.SLOTS, 0, 5));
+        assertRejected("a negative slot", corrupt(valid, Table.SLOTS, 0, -1));
+        assertRejected("decreasing out-offsets", corrupt(valid, Table.OUT_OFFSETS, 2, 0));
+        assertRejected("an out-offset past the edges", corrupt(valid, Table.OUT_OFFSETS, 2, 3));
+        assertRejected("a nonzero first in-offset", corrupt(valid, Table.IN_OFFSETS, 0, 1));
+        assertRejected("a negative label offset", corrupt(valid, Table.LABEL_OFFSETS, 1, -4));
+        assertRejected("decreasing label offsets", corrupt(valid, Table.LABEL_OFFSETS, 2, 0));
+        assertRejected("a target past the last id", corrupt(valid, Table.OUT_TARGETS, 0, 4));
+        assertRejected("a negative source", corrupt(valid, Table.IN_SOURCES, 1, -1));
+        assertRejected("a zero weight", corrupt(valid, Table.OUT_WEIGHTS, 0, 0));
+        assertRejected("a negative weight", corrupt(valid, Table.IN_WEIGHTS, 1, -300));
+    }
+
+    @Test
+    public void testSharedMapping() throws IOException {
+        // two mappings of one file, as two processes would have, answer alike
+        Graph<String> source = new ConcreteEdgesGraph();
+        source.set("a", "b", 4);
+        Path file = Files.createTempFile("graph", ".mapped");
+        try {
+            MappedGraph.write(source, file);
+            MappedGraph first = MappedGraph.open(file);
+            MappedGraph second = MappedGraph.open(file);
+            assertEquals(first.targets("a"), second.targets("a"));
+            assertEquals(Set.of("a", "b"), second.vertices());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRewriteKeepsOldMapping() throws IOException {
+        // a reader that mapped the file before a rewrite keeps reading the graph it opened
+        Graph<String> before = new ConcreteEdgesGraph();
+        for (int i = 0; i < 1000; i++) {
+            before.set("w" + i, "w" + (i + 1), i + 1);
+        }
+        Graph<String> after = new ConcreteEdgesGraph();
+        after.set("x", "y", 2);
+        Path file = Files.createTempFile("graph", ".mapped");
+        try {
+            MappedGraph.write(before, file);
+            MappedGraph reader = MappedGraph.open(file);
+            MappedGraph.write(after, file);
+            assertSameGraph(before, reader);
+            assertSameGraph(after, MappedGraph.open(file));
+            assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
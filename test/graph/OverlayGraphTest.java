@@ -0,0 +1,143 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for OverlayGraph.
+ * 
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against OverlayGraph over an empty base, as well as tests of changes to a
+ * non-empty base and of compaction.
+ * 
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class OverlayGraphTest extends CountingGraphInstanceTest {
+    
+    /*
+     * Provide an OverlayGraph for tests in CountingGraphInstanceTest.
+     */
+    @Override public CountingGraph<String> emptyInstance() {
+        return new OverlayGraph<>(CsrGraph.from(new DenseGraph<String>()));
+    }
+    
+    /*
+     * Testing OverlayGraph...
+     */
+    
+    // Testing strategy for OverlayGraph
+    //   base: empty, with edges
+    //   changes: new edge, changed base edge, removed base edge, edge set back to its
+    //            base weight, removed base vertex, removed and re-added base vertex
+    //   row order: base order, then new targets in the order they were set
+    //   compact(): no changes, some changes; graph and row order are unchanged
+    //   random operations match a DenseGraph
+    
+    private static CsrGraph<String> base() {
+        Graph<String> graph = new DenseGraph<>();
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 2);
+        graph.set("b", "c", 3);
+        graph.add("d");
+        return CsrGraph.from(graph);
+    }
+    
+    @Test
+    public void testChangesToBase() {
+        OverlayGraph<String> graph = new OverlayGraph<>(base());
+        assertEquals(0, graph.changedEdges());
+        assertEquals(3, graph.baseEdges());
+        assertEquals(3, graph.increment("a", "b", 2));
+        assertEquals(2, graph.set("a", "c", 0));
+        assertEquals(0, graph.set("a", "e", 5));
+        assertEquals(List.of("b", "e"), new ArrayList<>(graph.targets("a").keySet()));
+        assertEquals(Map.of("b", 3, "e", 5), graph.targets("a"));
+        assertEquals(Map.of("b", 3), graph.sources("c"));
+        assertEquals(3, graph.changedEdges());
+        assertEquals(3, graph.set("a", "b", 1));
+        assertEquals(2, graph.changedEdges());
+        assertEquals(Set.of("a", "b", "c", "d", "e"), graph.vertices());
+    }
+    
+    @Test
+    public void testRemoveBaseVertex() {
+        OverlayGraph<String> graph = new OverlayGraph<>(base());
+        assertTrue(graph.remove("c"));
+        assertFalse(graph.remove("c"));
+        assertEquals(Set.of("a", "b", "d"), graph.vertices());
+        assertEquals(Map.of("b", 1), graph.targets("a"));
+        assertEquals(Map.of(), graph.targets("b"));
+        assertTrue(graph.add("c"));
+        assertEquals(Map.of(), graph.sources("c"));
+        assertEquals(1, graph.increment("b", "c", 1));
+        assertEquals(Map.of("b", 1), graph.sources("c"));
+        assertTrue(graph.remove("d"));
+        assertFalse(graph.vertices().contains("d"));
+        assertEquals(Map.of(), graph.targets("d"));
+    }
+    
+    @Test
+    public void testCompact() {
+        OverlayGraph<String> graph = new OverlayGraph<>(base());
+        graph.compact();
+        assertEquals(3, graph.baseEdges());
+        graph.set("a", "e", 4);
+        graph.remove("b");
+        graph.add("f");
+        String before = graph.toString();
+        List<String> order = new ArrayList<>(graph.targets("a").keySet());
+        graph.compact();
+        assertEquals(0, graph.changedEdges());
+        assertEquals(2, graph.baseEdges());
+        assertEquals(before, graph.toString());
+        assertEquals(order, new ArrayList<>(graph.targets("a").keySet()));
+        assertEquals(Set.of("a", "c", "d", "e", "f"), graph.vertices());
+    }
+    
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(6005);
+        Graph<String> reference = new DenseGraph<>();
+        for (int i = 0; i < 200; i++) {
+            reference.set("w" + random.nextInt(30), "w" + random.nextInt(30), 1 + random.nextInt(5));
+        }
+        OverlayGraph<String> graph = new OverlayGraph<>(CsrGraph.from(reference));
+        for (int i = 0; i < 2_000; i++) {
+            String s = "w" + random.nextInt(40);
+            String t = "w" + random.nextInt(40);
+            switch (random.nextInt(6)) {
+            case 0:
+                assertEquals(reference.remove(s), graph.remove(s));
+                break;
+            case 1:
+                assertEquals(reference.add(s), graph.add(s));
+                break;
+            case 2:
+                int weight = random.nextInt(3);
+                assertEquals(reference.set(s, t, weight), graph.set(s, t, weight));
+                break;
+            default:
+                reference.set(s, t, reference.targets(s).getOrDefault(t, 0) + 1);
+                graph.increment(s, t, 1);
+            }
+            if (i % 500 == 499) {
+                graph.compact();
+            }
+        }
+        assertEquals(reference.vertices(), graph.vertices());
+        for (String vertex : reference.vertices()) {
+            assertEquals(reference.targets(vertex), graph.targets(vertex));
+            assertEquals(reference.sources(vertex), graph.sources(vertex));
+        }
+    }
+}
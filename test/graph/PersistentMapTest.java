@@ -0,0 +1,152 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for PersistentMap.
+ */
+public class PersistentMapTest {
+    
+    // Testing strategy
+    //   plus(): new key, existing key with same value object, with a new value
+    //   minus(): absent key, present key, last key
+    //   hashes: distinct, sharing a prefix of 5-bit chunks, entirely equal (collision nodes)
+    //   older versions are unchanged by plus() and minus() on newer ones
+    //   size, get, containsKey and iteration match a HashMap under random operations
+    //   java.util.Map mutators are unsupported
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    /**
+     * A key with a chosen hash code. Immutable.
+     */
+    private static final class Key {
+        private final int id;
+        private final int hash;
+        
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+        
+        @Override public boolean equals(Object that) {
+            return that instanceof Key && ((Key) that).id == id;
+        }
+        
+        @Override public int hashCode() {
+            return hash;
+        }
+        
+        @Override public String toString() {
+            return "k" + id;
+        }
+    }
+    
+    @Test
+    public void testEmpty() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        assertEquals(0, map.size());
+        assertNull(map.get("a"));
+        assertFalse(map.entrySet().iterator().hasNext());
+        assertSame(map, map.minus("a"));
+    }
+    
+    @Test
+    public void testPlusMinus() {
+        PersistentMap<String, Integer> empty = PersistentMap.empty();
+        Integer one = 1;
+        PersistentMap<String, Integer> a = empty.plus("a", one);
+        assertSame(a, a.plus("a", one));
+        PersistentMap<String, Integer> ab = a.plus("b", 2);
+        PersistentMap<String, Integer> ab3 = ab.plus("b", 3);
+        assertEquals(Map.of("a", 1, "b", 2), ab);
+        assertEquals(Map.of("a", 1, "b", 3), ab3);
+        assertEquals(Map.of("a", 1), a);
+        assertSame(ab3, ab3.minus("c"));
+        assertEquals(Map.of("b", 3), ab3.minus("a"));
+        assertEquals(Collections.emptyMap(), ab3.minus("a").minus("b"));
+        assertEquals(Map.of("a", 1, "b", 3), ab3);
+    }
+    
+    @Test
+    public void testAgainstHashMap() {
+        // hashes drawn from a few values force shared prefixes and full collisions
+        int[] hashes = { 0, 1, 32, 33, 1 << 30, -1, 0x12345678, 0x12345679 };
+        Random random = new Random(6005);
+        List<PersistentMap<Key, Integer>> versions = new ArrayList<>();
+        List<Map<Key, Integer>> expected = new ArrayList<>();
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        Map<Key, Integer> reference = new HashMap<>();
+        for (int step = 0; step < 5_000; step++) {
+            int id = random.nextInt(200);
+            // a third of the keys share one of a few hashes, the rest are spread
+            Key key = new Key(id, id % 3 == 0 ? hashes[id % hashes.length] : id * 0x9E3779B9);
+            if (random.nextInt(3) == 0) {
+                map = map.minus(key);
+                reference.remove(key);
+            } else {
+                int value = random.nextInt(10);
+                map = map.plus(key, value);
+                reference.put(key, value);
+            }
+            assertEquals(reference.size(), map.size());
+            assertEquals(reference.get(key), map.get(key));
+            if (step % 250 == 0) {
+                versions.add(map);
+                expected.add(new HashMap<>(reference));
+            }
+        }
+        assertEquals(reference, map);
+        assertEquals(map, reference);
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(expected.get(i), versions.get(i));
+            assertEquals(expected.get(i).size(), versions.get(i).entrySet().stream().count());
+        }
+    }
+    
+    @Test
+    public void testCollisions() {
+        PersistentMap<Key, String> map = PersistentMap.empty();
+        for (int id = 0; id < 10; id++) {
+            map = map.plus(new Key(id, 42), "v" + id);
+        }
+        assertEquals(10, map.size());
+        for (int id = 0; id < 10; id++) {
+            assertEquals("v" + id, map.get(new Key(id, 42)));
+        }
+        assertNull(map.get(new Key(10, 42)));
+        for (int id = 0; id < 9; id++) {
+            map = map.minus(new Key(id, 42));
+        }
+        assertEquals(Map.of(new Key(9, 42), "v9"), map);
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testPutUnsupported() {
+        PersistentMap.<String, Integer>empty().plus("a", 1).put("b", 2);
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testIteratorRemoveUnsupported() {
+        Iterator<Map.Entry<String, Integer>> iterator =
+                PersistentMap.<String, Integer>empty().plus("a", 1).entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+}
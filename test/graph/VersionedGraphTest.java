@@ -0,0 +1,228 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests for VersionedGraph.
+ * 
+ * This class runs the CountingGraphInstanceTest and GraphInstanceTest tests
+ * against VersionedGraph, as well as tests of its snapshots and batches.
+ * 
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class VersionedGraphTest extends CountingGraphInstanceTest {
+    
+    /*
+     * Provide a VersionedGraph for tests in CountingGraphInstanceTest.
+     */
+    @Override public CountingGraph<String> emptyInstance() {
+        return new VersionedGraph<>();
+    }
+    
+    /*
+     * Testing VersionedGraph...
+     */
+    
+    // Testing strategy for VersionedGraph
+    //   snapshot(): before and after writes; taken snapshots never change
+    //   version: starts at 0, increases by 1 per write that changes the graph,
+    //            unchanged by writes that change nothing
+    //   update(): batch changes nothing, several changes, reads its own writes,
+    //             throws, used after it returns
+    //   copy constructor: empty graph, graph with edges and isolated vertices
+    //   Snapshot mutators: add, set, remove
+    //   concurrent readers see each batch entirely or not at all
+    
+    @Test
+    public void testSnapshotUnchangedByWrites() {
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        VersionedGraph.Snapshot<String> empty = graph.snapshot();
+        assertEquals(0, empty.version());
+        graph.set("a", "b", 2);
+        VersionedGraph.Snapshot<String> first = graph.snapshot();
+        graph.increment("a", "b", 3);
+        graph.remove("b");
+        graph.add("c");
+        assertEquals(Collections.emptySet(), empty.vertices());
+        assertEquals(Set.of("a", "b"), first.vertices());
+        assertEquals(Map.of("b", 2), first.targets("a"));
+        assertEquals(Map.of("a", 2), first.sources("b"));
+        assertEquals(Set.of("a", "c"), graph.vertices());
+        assertEquals(Collections.emptyMap(), graph.targets("a"));
+    }
+    
+    @Test
+    public void testVersions() {
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        graph.add("a");
+        assertEquals(1, graph.snapshot().version());
+        graph.add("a");
+        graph.set("a", "a", 0);
+        graph.remove("c");
+        assertEquals(1, graph.snapshot().version());
+        graph.set("a", "b", 1);
+        graph.set("a", "b", 1);
+        assertEquals(2, graph.snapshot().version());
+        VersionedGraph.Snapshot<String> before = graph.snapshot();
+        assertSame(before, graph.update(g -> g.targets("a")));
+        assertSame(before, graph.snapshot());
+    }
+    
+    @Test
+    public void testUpdateBatch() {
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        graph.add("x");
+        VersionedGraph.Snapshot<String> result = graph.update(g -> {
+            g.set("a", "b", 1);
+            g.increment("a", "b", 4);
+            assertEquals(Map.of("b", 5), g.targets("a"));
+            g.set("b", "b", 2);
+            g.remove("x");
+        });
+        assertEquals(2, result.version());
+        assertSame(result, graph.snapshot());
+        assertEquals(Set.of("a", "b"), result.vertices());
+        assertEquals(Map.of("a", 5, "b", 2), result.sources("b"));
+    }
+    
+    @Test
+    public void testUpdateThrows() {
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        graph.set("a", "b", 1);
+        VersionedGraph.Snapshot<String> before = graph.snapshot();
+        try {
+            graph.update(g -> {
+                g.set("a", "c", 1);
+                g.increment("a", "b", -2);
+            });
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertSame(before, graph.snapshot());
+        assertEquals(Map.of("b", 1), graph.targets("a"));
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testBatchUnusableAfterUpdate() {
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        AtomicReference<CountingGraph<String>> escaped = new AtomicReference<>();
+        graph.update(escaped::set);
+        escaped.get().add("a");
+    }
+    
+    @Test
+    public void testCopyConstructor() {
+        Graph<String> source = new ConcreteEdgesGraph();
+        assertEquals(Collections.emptySet(), new VersionedGraph<>(source).vertices());
+        source.set("a", "b", 3);
+        source.set("b", "a", 1);
+        source.add("c");
+        VersionedGraph<String> graph = new VersionedGraph<>(source);
+        assertEquals(0, graph.snapshot().version());
+        assertEquals(Set.of("a", "b", "c"), graph.vertices());
+        assertEquals(Map.of("b", 3), graph.targets("a"));
+        assertEquals(Map.of("b", 1), graph.sources("a"));
+        graph.remove("a");
+        assertEquals(Set.of("a", "b", "c"), source.vertices());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSnapshotAddUnsupported() {
+        new VersionedGraph<String>().snapshot().add("a");
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSnapshotSetUnsupported() {
+        new VersionedGraph<String>().snapshot().set("a", "b", 1);
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSnapshotRemoveUnsupported() {
+        new VersionedGraph<String>().snapshot().remove("a");
+    }
+    
+    @Test
+    public void testConcurrentReadersSeeWholeBatches() throws Exception {
+        // every batch sets a -> b and c -> d to the same new weight
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        graph.update(g -> {
+            g.set("a", "b", 1);
+            g.set("c", "d", 1);
+        });
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            try {
+                for (int weight = 2; weight <= 5_000; weight++) {
+                    int next = weight;
+                    graph.update(g -> {
+                        g.set("a", "b", next);
+                        g.set("c", "d", next);
+                    });
+                }
+                return null;
+            } finally {
+                writing.set(false);
+            }
+        });
+        for (int thread = 0; thread < 3; thread++) {
+            tasks.add(() -> {
+                long lastVersion = 0;
+                while (writing.get()) {
+                    VersionedGraph.Snapshot<String> pinned = graph.snapshot();
+                    assertTrue(pinned.version() >= lastVersion);
+                    lastVersion = pinned.version();
+                    assertEquals(pinned.targets("a").get("b"), pinned.targets("c").get("d"));
+                    assertEquals(pinned.targets("a").get("b"), pinned.sources("b").get("a"));
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(5_000, graph.targets("a").get("b").intValue());
+    }
+    
+    @Test
+    public void testVersionedGraphToString() {
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        graph.set("a", "b", 3);
+        assertTrue(graph.toString().contains("a -> b : 3"));
+        assertTrue(graph.snapshot().toString().contains("a -> b : 3"));
+    }
+}
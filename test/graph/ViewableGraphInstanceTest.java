@@ -0,0 +1,123 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the view methods of ViewableGraph.
+ * 
+ * <p>Tests only obtain ViewableGraph instances by calling emptyInstance(), and
+ * do not refer to specific concrete implementations.
+ */
+public abstract class ViewableGraphInstanceTest {
+    
+    // Testing strategy
+    //   vertex does not exist, vertex has no edges, vertex has edges
+    //   views compared with vertices(), sources() and targets(): equals, get(),
+    //     containsKey() of present and absent keys, iteration
+    //   after modifications and removals: fresh views match again
+    //   views are unmodifiable
+    
+    /**
+     * Overridden by implementation-specific test classes.
+     * 
+     * @return a new empty graph of the particular implementation being tested
+     */
+    public abstract ViewableGraph<String> emptyInstance();
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    // Assert that every view of graph equals its copy
+    private static void assertViewsMatch(ViewableGraph<String> graph, String... labels) {
+        assertEquals(graph.vertices(), graph.verticesView());
+        for (String label : labels) {
+            assertViewMatches(graph.targets(label), graph.targetsView(label));
+            assertViewMatches(graph.sources(label), graph.sourcesView(label));
+        }
+    }
+    
+    private static void assertViewMatches(Map<String, Integer> copy, Map<String, Integer> view) {
+        assertEquals(copy, view);
+        assertEquals(view, copy);
+        assertEquals(copy.size(), view.size());
+        for (Map.Entry<String, Integer> entry : view.entrySet()) {
+            assertEquals(copy.get(entry.getKey()), entry.getValue());
+        }
+        for (String key : copy.keySet()) {
+            assertTrue(view.containsKey(key));
+            assertEquals(copy.get(key), view.get(key));
+        }
+        assertFalse(view.containsKey("absent"));
+        assertNull(view.get("absent"));
+        assertNull(view.get(42));
+    }
+    
+    // Covers vertex does not exist, empty graph
+    @Test
+    public void testEmptyViews() {
+        ViewableGraph<String> graph = emptyInstance();
+        assertEquals(Collections.emptySet(), graph.verticesView());
+        assertEquals(Collections.emptyMap(), graph.targetsView("a"));
+        assertEquals(Collections.emptyMap(), graph.sourcesView("a"));
+    }
+    
+    // Covers vertex has no edges, vertex has edges, after modifications
+    @Test
+    public void testViewsMatchCopies() {
+        ViewableGraph<String> graph = emptyInstance();
+        graph.add("lonely");
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 2);
+        graph.set("c", "a", 3);
+        graph.set("b", "b", 4);
+        assertViewsMatch(graph, "a", "b", "c", "lonely", "absent");
+        graph.set("a", "b", 5);
+        graph.set("a", "c", 0);
+        assertViewsMatch(graph, "a", "b", "c", "lonely", "absent");
+        graph.remove("b");
+        graph.set("lonely", "a", 6);
+        assertViewsMatch(graph, "a", "b", "c", "lonely", "absent");
+    }
+    
+    // Covers views are unmodifiable
+    @Test
+    public void testViewsUnmodifiable() {
+        ViewableGraph<String> graph = emptyInstance();
+        graph.set("a", "b", 1);
+        try {
+            graph.targetsView("a").put("c", 1);
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            graph.sourcesView("b").clear();
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            graph.verticesView().remove("a");
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            graph.targetsView("a").entrySet().iterator().next().setValue(2);
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(Collections.singletonMap("b", 1), graph.targets("a"));
+    }
+}
@@ -0,0 +1,53 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for WeightedEdge.
+ */
+public class WeightedEdgeTest {
+    
+    // Testing strategy
+    //   weight > 0, weight == 0, weight < 0
+    //   equals(): same fields, different source, target or weight
+    //   toString()
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    @Test
+    public void testWeightedEdge() {
+        WeightedEdge<String> edge = new WeightedEdge<>("a", "b", 3);
+        assertEquals("a", edge.getSource());
+        assertEquals("b", edge.getTarget());
+        assertEquals(3, edge.getWeight());
+        assertEquals("a -> b : 3", edge.toString());
+    }
+    
+    @Test
+    public void testEquals() {
+        WeightedEdge<String> edge = new WeightedEdge<>("a", "b", 3);
+        assertEquals(new WeightedEdge<>("a", "b", 3), edge);
+        assertEquals(new WeightedEdge<>("a", "b", 3).hashCode(), edge.hashCode());
+        assertNotEquals(new WeightedEdge<>("b", "b", 3), edge);
+        assertNotEquals(new WeightedEdge<>("a", "a", 3), edge);
+        assertNotEquals(new WeightedEdge<>("a", "b", 4), edge);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testZeroWeight() {
+        new WeightedEdge<>("a", "b", 0);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeWeight() {
+        new WeightedEdge<>("a", "b", -1);
+    }
+}
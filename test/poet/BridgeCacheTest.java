@@ -0,0 +1,181 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+// Testing Strategy
+
+/**
+ * policy: LRU, TINY_LFU
+ * capacity: 1, smaller than the pairs used, larger; one segment, many segments
+ * get(): pair absent, present and current, present and stale
+ * put(): new pair, replacing a pair's answer, evicting
+ * counters: hits, misses (absent and stale), evictions
+ * TINY_LFU keeps frequently used pairs through a scan of one-off pairs, where LRU does not
+ * concurrent get() and put() keep the size within capacity
+ */
+public class BridgeCacheTest {
+
+    // Ensure assertions are enabled
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // Make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static BridgeIndex.Answer get(BridgeCache cache, String w1, String w2) {
+        return cache.get(w1, w2, answer -> true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new BridgeCache(0, BridgeCache.Policy.LRU);
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        BridgeCache cache = new BridgeCache(3, BridgeCache.Policy.LRU);
+        BridgeIndex.Answer none = new BridgeIndex.Answer(null, 0);
+        cache.put("a", "x", new BridgeIndex.Answer("b", 0));
+        cache.put("b", "x", none);
+        cache.put("c", "x", new BridgeIndex.Answer("d", 0));
+        assertNotNull(get(cache, "a", "x"));
+        cache.put("d", "x", new BridgeIndex.Answer("e", 0));
+        assertNull(get(cache, "b", "x"));
+        assertNotNull(get(cache, "a", "x"));
+        assertNotNull(get(cache, "c", "x"));
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void testNegativeAndReplacedAnswers() {
+        for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+            BridgeCache cache = new BridgeCache(10, policy);
+            BridgeIndex.Answer none = new BridgeIndex.Answer(null, 0);
+            cache.put("a", "b", none);
+            assertSame(none, get(cache, "a", "b"));
+            assertNull(get(cache, "b", "a"));
+            BridgeIndex.Answer replaced = new BridgeIndex.Answer("c", 1);
+            cache.put("a", "b", replaced);
+            assertSame(replaced, get(cache, "a", "b"));
+            assertEquals(1, cache.size());
+            assertEquals(0, cache.evictions());
+        }
+    }
+
+    @Test
+    public void testStaleIsMiss() {
+        BridgeCache cache = new BridgeCache(10, BridgeCache.Policy.TINY_LFU);
+        cache.put("a", "b", new BridgeIndex.Answer("c", 0));
+        assertNull(cache.get("a", "b", answer -> false));
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCapacityOne() {
+        for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+            BridgeCache cache = new BridgeCache(1, policy);
+            for (int i = 0; i < 10; i++) {
+                cache.put("w" + i, "x", new BridgeIndex.Answer(null, 0));
+                assertNotNull(get(cache, "w" + i, "x"));
+                assertEquals(1, cache.size());
+            }
+            assertEquals(9, cache.evictions());
+        }
+    }
+
+    @Test
+    public void testSizeWithinCapacity() {
+        for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+            for (int capacity : new int[] { 7, 100, 5_000 }) {
+                Random random = new Random(capacity);
+                BridgeCache cache = new BridgeCache(capacity, policy);
+                int puts = 0;
+                for (int i = 0; i < 20_000; i++) {
+                    String w1 = "w" + random.nextInt(200);
+                    String w2 = "w" + random.nextInt(200);
+                    if (get(cache, w1, w2) == null) {
+                        cache.put(w1, w2, new BridgeIndex.Answer(w1, 0));
+                        puts++;
+                    }
+                    assertTrue(cache.size() <= capacity);
+                }
+                // every pair put is still cached or was evicted
+                assertEquals(puts, cache.size() + cache.evictions());
+                assertEquals(20_000, cache.hits() + cache.misses());
+            }
+        }
+    }
+
+    // Hits on hot pairs after 20 rounds of hot lookups, then a scan of one-off pairs
+    private static long hotHitsAfterScan(BridgeCache.Policy policy) {
+        BridgeCache cache = new BridgeCache(200, policy);
+        for (int round = 0; round < 20; round++) {
+            for (int hot = 0; hot < 100; hot++) {
+                if (get(cache, "hot" + hot, "x") == null) {
+                    cache.put("hot" + hot, "x", new BridgeIndex.Answer(null, 0));
+                }
+            }
+        }
+        for (int once = 0; once < 1_000; once++) {
+            if (get(cache, "once" + once, "x") == null) {
+                cache.put("once" + once, "x", new BridgeIndex.Answer(null, 0));
+            }
+        }
+        long before = cache.hits();
+        for (int hot = 0; hot < 100; hot++) {
+            get(cache, "hot" + hot, "x");
+        }
+        return cache.hits() - before;
+    }
+
+    @Test
+    public void testTinyLfuResistsScan() {
+        assertEquals(0, hotHitsAfterScan(BridgeCache.Policy.LRU));
+        assertTrue(hotHitsAfterScan(BridgeCache.Policy.TINY_LFU) >= 90);
+    }
+
+    @Test
+    public void testConcurrentUse() throws InterruptedException {
+        for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+            BridgeCache cache = new BridgeCache(1_000, policy);
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> errors = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Random random = new Random(t);
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 50_000; i++) {
+                            String w1 = "w" + random.nextInt(100);
+                            String w2 = "w" + random.nextInt(100);
+                            if (get(cache, w1, w2) == null) {
+                                cache.put(w1, w2, new BridgeIndex.Answer(w2, 0));
+                            }
+                        }
+                    } catch (RuntimeException | Error e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(List.of(), errors);
+            assertTrue(cache.size() <= 1_000);
+            assertEquals(200_000, cache.hits() + cache.misses());
+        }
+    }
+}
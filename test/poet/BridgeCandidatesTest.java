@@ -0,0 +1,221 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import graph.ConcreteVerticesGraph;
+import graph.DenseGraph;
+import graph.Graph;
+
+// Testing Strategy
+
+/**
+ * topK(): k = 0, 1, fewer than the candidates, all of them, more; w1 with no targets,
+ *         w2 with no sources, w2 absent; ties in score broken by targets() order;
+ *         first bridge is BridgeIndex's answer; negative k
+ * sample(): no targets; frequencies proportional to scores, when sources of w2 are
+ *           mostly targets of w1 and when they are mostly not (falling back to a scan);
+ *           the same seed draws the same bridges
+ * invalidate(): rows of changed sources and targets are rebuilt, others kept
+ * cached rows: words not in the graph keep none; a bound smaller than one row, than
+ *              all rows, and 0 keep the rows within it and give the same answers;
+ *              negative bound
+ * graphs with views (DenseGraph) and without (ConcreteVerticesGraph)
+ */
+public class BridgeCandidatesTest {
+
+    // Ensure assertions are enabled
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // Make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Graph<String> randomGraph(Graph<String> graph, int words, int edges, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < edges; i++) {
+            graph.set("w" + random.nextInt(words), "w" + random.nextInt(words), 1 + random.nextInt(3));
+        }
+        return graph;
+    }
+
+    // Every candidate, ranked by brute force
+    private static List<String> ranked(Graph<String> graph, String w1, String w2) {
+        List<String> candidates = new ArrayList<>(graph.targets(w1).keySet());
+        Map<String, Integer> sources = graph.sources(w2);
+        Map<String, Integer> positions = new HashMap<>();
+        for (String candidate : candidates) {
+            positions.put(candidate, positions.size());
+        }
+        Collections.sort(candidates, (a, b) -> {
+            int aScore = graph.targets(w1).get(a) + sources.getOrDefault(a, 0);
+            int bScore = graph.targets(w1).get(b) + sources.getOrDefault(b, 0);
+            return aScore != bScore ? bScore - aScore : positions.get(a) - positions.get(b);
+        });
+        return candidates;
+    }
+
+    @Test
+    public void testTopKMatchesBruteForce() {
+        for (Graph<String> graph : List.of(randomGraph(new DenseGraph<>(), 40, 600, 1),
+                randomGraph(new ConcreteVerticesGraph(), 40, 600, 2))) {
+            BridgeCandidates candidates = new BridgeCandidates(graph);
+            for (int a = 0; a < 40; a++) {
+                for (int b = 0; b < 40; b += 3) {
+                    String w1 = "w" + a;
+                    String w2 = "w" + b;
+                    List<String> all = ranked(graph, w1, w2);
+                    for (int k = 0; k <= all.size() + 1; k++) {
+                        assertEquals(w1 + " " + w2 + " " + k, all.subList(0, Math.min(k, all.size())),
+                                candidates.topK(w1, w2, k));
+                    }
+                    List<String> top = candidates.topK(w1, w2, 1);
+                    assertEquals(BridgeIndex.search(graph, w1, w2), top.isEmpty() ? null : top.get(0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTopKMissingWords() {
+        Graph<String> graph = new DenseGraph<>();
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 1);
+        graph.set("c", "d", 1);
+        BridgeCandidates candidates = new BridgeCandidates(graph);
+        assertEquals(List.of(), candidates.topK("x", "d", 3));
+        assertEquals(List.of(), candidates.topK("d", "a", 3));
+        assertEquals(List.of("b", "c"), candidates.topK("a", "x", 3));
+        assertEquals(List.of("c", "b"), candidates.topK("a", "d", 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTopKNegative() {
+        new BridgeCandidates(new DenseGraph<>()).topK("a", "b", -1);
+    }
+
+    @Test
+    public void testSampleNoTargets() {
+        Graph<String> graph = new DenseGraph<>();
+        graph.set("b", "a", 1);
+        assertNull(new BridgeCandidates(graph).sample("a", "b", new Random(0)));
+    }
+
+    // Draw often, and check each candidate's share against its score
+    private static void assertProportional(Graph<String> graph, String w1, String w2) {
+        BridgeCandidates candidates = new BridgeCandidates(graph);
+        Map<String, Integer> scores = new HashMap<>();
+        long total = 0;
+        for (Map.Entry<String, Integer> target : graph.targets(w1).entrySet()) {
+            int score = target.getValue() + graph.sources(w2).getOrDefault(target.getKey(), 0);
+            scores.put(target.getKey(), score);
+            total += score;
+        }
+        final int draws = 200_000;
+        Map<String, Integer> counts = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < draws; i++) {
+            counts.merge(candidates.sample(w1, w2, random), 1, Integer::sum);
+        }
+        assertEquals(scores.keySet(), counts.keySet());
+        for (Map.Entry<String, Integer> score : scores.entrySet()) {
+            double expected = draws * score.getValue() / (double) total;
+            assertEquals(score.getKey(), expected, 5 * Math.sqrt(expected) + 1, counts.get(score.getKey()));
+        }
+    }
+
+    @Test
+    public void testSampleProportionalToScore() {
+        Graph<String> graph = new DenseGraph<>();
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 2);
+        graph.set("a", "d", 5);
+        graph.set("b", "z", 6);
+        graph.set("c", "z", 1);
+        graph.set("e", "z", 1);
+        assertProportional(graph, "a", "z");
+        assertProportional(randomGraph(new DenseGraph<>(), 20, 300, 3), "w1", "w2");
+    }
+
+    @Test
+    public void testSampleMostlyRejected() {
+        Graph<String> graph = new DenseGraph<>();
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 1);
+        graph.set("c", "z", 2);
+        for (int i = 0; i < 100; i++) {
+            graph.set("x" + i, "z", 1_000);
+        }
+        assertProportional(graph, "a", "z");
+    }
+
+    @Test
+    public void testSampleSeeded() {
+        Graph<String> graph = randomGraph(new DenseGraph<>(), 20, 300, 4);
+        BridgeCandidates candidates = new BridgeCandidates(graph);
+        Random first = new Random(7);
+        Random second = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(candidates.sample("w" + i % 20, "w3", first), candidates.sample("w" + i % 20, "w3", second));
+        }
+    }
+
+    @Test
+    public void testUnknownWordsNotKept() {
+        Graph<String> graph = randomGraph(new DenseGraph<>(), 20, 100, 5);
+        BridgeCandidates candidates = new BridgeCandidates(graph);
+        Random random = new Random(0);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(List.of(), candidates.topK("unknown" + i, "other" + i, 3));
+            assertNull(candidates.sample("unknown" + i, "w1", random));
+        }
+        assertEquals(0, candidates.cachedNeighbors());
+        candidates.topK("w1", "unknown", 3);
+        assertEquals(graph.targets("w1").size(), candidates.cachedNeighbors());
+    }
+
+    @Test
+    public void testCacheBound() {
+        Graph<String> graph = randomGraph(new DenseGraph<>(), 30, 400, 6);
+        for (long bound : new long[] { 0, 5, 60 }) {
+            BridgeCandidates candidates = new BridgeCandidates(graph, bound);
+            for (int pass = 0; pass < 2; pass++) {
+                for (int a = 0; a < 30; a++) {
+                    for (int b = 0; b < 30; b += 7) {
+                        List<String> all = ranked(graph, "w" + a, "w" + b);
+                        assertEquals(all.subList(0, Math.min(3, all.size())), candidates.topK("w" + a, "w" + b, 3));
+                        assertTrue(candidates.cachedNeighbors() <= bound);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBound() {
+        new BridgeCandidates(new DenseGraph<>(), -1);
+    }
+
+    @Test
+    public void testInvalidate() {
+        Graph<String> graph = new DenseGraph<>();
+        graph.set("a", "b", 3);
+        graph.set("a", "c", 1);
+        graph.set("c", "d", 1);
+        BridgeCandidates candidates = new BridgeCandidates(graph);
+        assertEquals(List.of("b", "c"), candidates.topK("a", "d", 2));
+        graph.set("c", "d", 5);
+        candidates.invalidate(List.of("c"), List.of("d"));
+        assertEquals(List.of("c", "b"), candidates.topK("a", "d", 2));
+        graph.set("a", "e", 9);
+        candidates.invalidate(List.of("a"), List.of("e"));
+        assertEquals(List.of("e", "c", "b"), candidates.topK("a", "d", 3));
+    }
+}
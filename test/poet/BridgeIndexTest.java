@@ -0,0 +1,163 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import graph.ConcreteVerticesGraph;
+import graph.CsrGraph;
+import graph.Graph;
+import graph.OverlayGraph;
+
+// Testing Strategy
+
+/**
+ * mode: NONE, LAZY, EAGER
+ * maxPairs: 0, smaller than the graph needs, unlimited
+ * pairs: w1 absent, w1 without targets, w2 absent, w2 reached by two-edge paths
+ * ties: between paths, between a path and the default bridge
+ * answers are compared with BridgeIndex.search on random graphs
+ * invalidate(): after random edge changes, with a bounded and unbounded budget
+ * cache: none, LRU, TINY_LFU; capacity smaller than and larger than the pairs looked up
+ */
+public class BridgeIndexTest {
+
+    // Ensure assertions are enabled
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // Make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Small weights on a small vocabulary make ties common
+    private static CsrGraph<String> randomGraph(long seed) {
+        Random random = new Random(seed);
+        Graph<String> graph = new ConcreteVerticesGraph();
+        for (int i = 0; i < 120; i++) {
+            graph.set("w" + random.nextInt(25), "w" + random.nextInt(25), 1 + random.nextInt(3));
+        }
+        graph.add("isolated");
+        return CsrGraph.from(graph);
+    }
+
+    private static void assertSameAnswers(Graph<String> graph, BridgeIndex index) {
+        List<String> words = new ArrayList<>(graph.vertices());
+        words.add("absent");
+        // twice, so memoized answers are checked too
+        for (int round = 0; round < 2; round++) {
+            for (String w1 : words) {
+                for (String w2 : words) {
+                    assertEquals(w1 + " " + w2, BridgeIndex.search(graph, w1, w2), index.bridge(w1, w2));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAllModesMatchSearch() {
+        for (long seed = 0; seed < 10; seed++) {
+            Graph<String> graph = randomGraph(seed);
+            for (BridgeIndex.Mode mode : BridgeIndex.Mode.values()) {
+                assertSameAnswers(graph, new BridgeIndex(graph, mode, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedModesMatchSearch() {
+        Graph<String> graph = randomGraph(42);
+        for (int maxPairs : new int[] { 0, 1, 10, 100 }) {
+            assertSameAnswers(graph, new BridgeIndex(graph, BridgeIndex.Mode.EAGER, maxPairs));
+            assertSameAnswers(graph, new BridgeIndex(graph, BridgeIndex.Mode.LAZY, maxPairs));
+        }
+    }
+
+    @Test
+    public void testCachedMatchSearch() {
+        Graph<String> graph = randomGraph(3);
+        for (BridgeIndex.Mode mode : BridgeIndex.Mode.values()) {
+            for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+                for (int capacity : new int[] { 1, 50, 10_000 }) {
+                    BridgeCache cache = new BridgeCache(capacity, policy);
+                    assertSameAnswers(graph, new BridgeIndex(graph, mode, 10, cache));
+                    assertTrue(cache.size() <= capacity);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCacheCounters() {
+        Graph<String> graph = randomGraph(5);
+        BridgeCache cache = new BridgeCache(10_000, BridgeCache.Policy.LRU);
+        BridgeIndex index = new BridgeIndex(graph, BridgeIndex.Mode.NONE, 0, cache);
+        int words = graph.vertices().size() + 1;
+        assertSameAnswers(graph, index);
+        // the first round misses every pair, including those without a bridge, and the second hits them
+        assertEquals(words * words, cache.misses());
+        assertEquals(words * words, cache.hits());
+        assertEquals(0, cache.evictions());
+        assertEquals(words * words, cache.size());
+        assertTrue(index.toString().contains("BridgeCache"));
+    }
+
+    // a -> b has weight 2, a -> c -> d scores 1 + 1: the default b wins the tie
+    // only if it comes first in targets order
+    @Test
+    public void testTieWithDefault() {
+        Graph<String> building = new ConcreteVerticesGraph();
+        building.set("a", "b", 2);
+        building.set("a", "c", 1);
+        building.set("c", "d", 1);
+        building.set("a", "e", 1);
+        building.set("e", "d", 3);
+        Graph<String> graph = CsrGraph.from(building);
+        BridgeIndex index = new BridgeIndex(graph, BridgeIndex.Mode.EAGER, Integer.MAX_VALUE);
+        assertEquals("e", index.bridge("a", "d"));
+        assertEquals("b", index.bridge("a", "absent"));
+        assertEquals(BridgeIndex.search(graph, "a", "c"), index.bridge("a", "c"));
+        assertNull(index.bridge("d", "a"));
+        assertNull(index.bridge("absent", "a"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        BridgeCache.Policy[] caches = { null, BridgeCache.Policy.LRU, BridgeCache.Policy.TINY_LFU };
+        for (BridgeIndex.Mode mode : BridgeIndex.Mode.values()) {
+            for (int maxPairs : new int[] { 10, Integer.MAX_VALUE }) {
+                for (BridgeCache.Policy policy : caches) {
+                    BridgeCache cache = policy == null ? null : new BridgeCache(200, policy);
+                    assertInvalidated(new Random(maxPairs), mode, maxPairs, cache);
+                }
+            }
+        }
+    }
+
+    // Change random edges of a graph a few times, checking the index after each round
+    private static void assertInvalidated(Random random, BridgeIndex.Mode mode, int maxPairs, BridgeCache cache) {
+        OverlayGraph<String> graph = new OverlayGraph<>(randomGraph(7));
+        BridgeIndex index = new BridgeIndex(graph, mode, maxPairs, cache);
+        assertSameAnswers(graph, index);
+        for (int round = 0; round < 5; round++) {
+            List<String> sources = new ArrayList<>();
+            List<String> targets = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                String source = "w" + random.nextInt(25);
+                String target = "w" + random.nextInt(25);
+                graph.increment(source, target, 1 + random.nextInt(3));
+                sources.add(source);
+                targets.add(target);
+            }
+            index.invalidate(sources, targets);
+            assertSameAnswers(graph, index);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxPairs() {
+        new BridgeIndex(randomGraph(0), BridgeIndex.Mode.LAZY, -1);
+    }
+}
@@ -2,8 +2,31 @@ package poet;
 
 import static org.junit.Assert.*;
 import org.junit.Test;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import graph.VersionedGraph;
 
 // Testing Strategy
 
@@ -14,6 +37,29 @@ import java.io.IOException;
  * Test case with simple input
  * Test case with no bridge word
  * Test for case insensitivity
+ * Test streaming constructors: Path, Reader, InputStream
+ * Test parallel reading gives the same poems as sequential reading, and breaks bridge
+ *   ties the same way
+ * Test corpus with leading whitespace, blank lines and adjacencies across lines
+ * Test a poet over a versioned graph follows updates to the graph
+ * Test a poet loaded from a saved graph file writes the same poems
+ * Test learning more text: new and changed edges, new case, memoized and
+ *   indexed bridges that change, from text, files and on a live graph
+ * Test a bridge cache (LRU, TINY_LFU; smaller than the pairs looked up) gives the
+ *   same poems, counts its hits and misses, and forgets bridges that learning changes
+ * Test batches of poems (empty, one input, more inputs than one task takes; from a
+ *   list or a stream; on the common pool or a given executor; repeated pairs; a live
+ *   graph) are the poems poem() writes, in order, with each distinct pair looked up once
+ * Test poem(CharSequence, Appendable): the poems poem() and poems() write, for inputs with
+ *   leading, trailing and repeated whitespace, control characters, Latin-1 and other
+ *   letters, unknown words; appended after existing text; into a Writer; on a live graph;
+ *   in a locale that lower-cases I differently
+ * Test ranked and sampled bridges: first ranked bridge is poem()'s, original case, k = 0;
+ *   seeded sampling and poems repeat; every sampled poem is one of the candidates;
+ *   learning changes the ranking; live graph
+ * Test metrics: none by default; tokens and bigrams of corpora (sequential, parallel) and
+ *   learned text; poems, batched poems and lookups counted; lookups and learning recorded
+ *   by the instrumented graph; registered as MBeans
  */
 
 public class GraphPoetTest {
@@ -92,5 +138,386 @@ public class GraphPoetTest {
         assertEquals(expectedOutput, output);
     }
 
+    // Every constructor reads the same graph from the same text
+    @Test
+    public void testStreamingConstructors() throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(CORPUS_PATH)), StandardCharsets.UTF_8);
+        GraphPoet[] poets = {
+            new GraphPoet(Paths.get(CORPUS_PATH)),
+            new GraphPoet(new StringReader(text)),
+            new GraphPoet(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8),
+        };
+        for (GraphPoet poet : poets) {
+            assertEquals("Hello beautiful world", poet.poem("Hello world"));
+            assertEquals("hello and WELCOME", poet.poem("hello WELCOME"));
+        }
+    }
+
+    // Parallel, memory-mapped reading builds the same graph
+    @Test
+    public void testParallelReading() throws IOException {
+        for (String corpus : new String[] { CORPUS_PATH, "src/poet/mugar-omni-theater.txt" }) {
+            GraphPoet sequential = new GraphPoet(Paths.get(corpus));
+            GraphPoet parallel = GraphPoet.builder().parallelism(4).build(Paths.get(corpus));
+            assertEquals(sequential.toString().length(), parallel.toString().length());
+            for (String input : new String[] { "Hello world", "hello WELCOME", "Test the system." }) {
+                assertEquals(sequential.poem(input), parallel.poem(input));
+            }
+        }
+    }
+
+    // Parallel reading adds edges in corpus order, so bridge ties break the same way
+    @Test
+    public void testParallelReadingTies() throws IOException {
+        Random random = new Random(6005);
+        Path corpus = Files.createTempFile("ties", ".txt");
+        try {
+            for (int trial = 0; trial < 50; trial++) {
+                // "s" and "e" have several bridges of equal weight, met in random order
+                StringBuilder text = new StringBuilder();
+                for (int line = 0; line < 12; line++) {
+                    String bridge = "b" + random.nextInt(6);
+                    text.append("s ").append(bridge).append(" e\n");
+                    text.append(bridge).append(" w").append(random.nextInt(20)).append('\n');
+                }
+                Files.write(corpus, text.toString().getBytes(StandardCharsets.UTF_8));
+                GraphPoet sequential = new GraphPoet(corpus);
+                GraphPoet parallel = GraphPoet.builder().parallelism(4).build(corpus);
+                assertEquals(text.toString(), sequential.poem("s e"), parallel.poem("s e"));
+                assertEquals(text.toString(), sequential.bridges("s", "e", 6), parallel.bridges("s", "e", 6));
+                assertEquals(sequential.toString(), parallel.toString());
+            }
+        } finally {
+            Files.delete(corpus);
+        }
+    }
+
+    // Whitespace at line starts and blank lines add no words; adjacencies cross lines
+    @Test
+    public void testCorpusWhitespace() throws IOException {
+        GraphPoet poet = new GraphPoet(new StringReader("\n   The Quick\n\n\tfox  jumps\n"));
+        assertEquals("The Quick fox", poet.poem("The fox"));
+        assertEquals("quick fox jumps", poet.poem("quick jumps"));
+        assertEquals("jumps fox", poet.poem("jumps fox"));
+    }
+
+    // Bridge index modes give the same poems as searching every time
+    @Test
+    public void testBridgeIndexModes() throws IOException {
+        File corpusFile = new File(CORPUS_PATH);
+        GraphPoet poet = new GraphPoet(corpusFile);
+        String[] inputs = { "Hello world", "hello WELCOME", "No bridge here", "this a of test" };
+        for (BridgeIndex.Mode mode : BridgeIndex.Mode.values()) {
+            for (int maxPairs : new int[] { 0, 3, Integer.MAX_VALUE }) {
+                GraphPoet indexed = GraphPoet.builder().bridgeIndex(mode, maxPairs).build(corpusFile);
+                for (String input : inputs) {
+                    assertEquals(poet.poem(input), indexed.poem(input));
+                }
+            }
+        }
+    }
+
+    // A poet over a versioned graph reads the version current when poem() is called
+    @Test
+    public void testVersionedGraph() {
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        GraphPoet poet = GraphPoet.builder().build(graph);
+        assertEquals("Hello world", poet.poem("Hello world"));
+        graph.update(g -> {
+            g.set("hello", "big", 1);
+            g.set("big", "world", 1);
+        });
+        assertEquals("Hello big world", poet.poem("Hello world"));
+        graph.update(g -> {
+            g.set("hello", "small", 1);
+            g.set("small", "world", 2);
+        });
+        assertEquals("Hello small world", poet.poem("Hello world"));
+    }
+
+    // A poet loaded from its saved graph file writes the same poems, in the same case
+    @Test
+    public void testGraphFile() throws IOException {
+        GraphPoet poet = new GraphPoet(new File(CORPUS_PATH));
+        Path file = Files.createTempFile("poet", ".graph");
+        try {
+            poet.save(file);
+            GraphPoet loaded = GraphPoet.fromGraphFile(file);
+            GraphPoet indexed = GraphPoet.builder().bridgeIndex(BridgeIndex.Mode.EAGER, Integer.MAX_VALUE)
+                    .buildFromGraphFile(file);
+            for (String input : new String[] { "Hello world", "hello WELCOME", "Test the system.", "this a of test" }) {
+                assertEquals(poet.poem(input), loaded.poem(input));
+                assertEquals(poet.poem(input), indexed.poem(input));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Learned text changes bridges in every bridge index mode, as if it had been in the corpus
+    @Test
+    public void testLearn() throws IOException {
+        String corpus = "the quick fox\nthe quick dog\nx a\nx c\nx c\nc y";
+        // "the lazy" outweighs "the quick", and "a y" now makes "a" the best bridge from x to y,
+        // though no edge from x changes
+        String text = "the LAZY dog\nthe LAZY dog\nthe LAZY dog\na y a y\na y";
+        for (BridgeIndex.Mode mode : BridgeIndex.Mode.values()) {
+            GraphPoet poet = GraphPoet.builder().bridgeIndex(mode, Integer.MAX_VALUE).build(new StringReader(corpus));
+            GraphPoet rebuilt = GraphPoet.builder().build(new StringReader(corpus + "\n" + text));
+            assertEquals("The quick dog", poet.poem("The dog"));
+            assertEquals("x c y", poet.poem("x y"));
+            poet.learn(text);
+            assertEquals("The LAZY dog", poet.poem("The dog"));
+            assertEquals("x a y", poet.poem("x y"));
+            for (String input : new String[] { "The dog", "x y", "the fox", "quick a", "a a" }) {
+                assertEquals(rebuilt.poem(input), poet.poem(input));
+            }
+        }
+    }
+
+    // Learning nothing changes nothing; learning a file or on a live graph works the same way
+    @Test
+    public void testLearnSources() throws IOException {
+        GraphPoet poet = new GraphPoet(new StringReader("hello big world"));
+        poet.learn("");
+        poet.learn(" \n ");
+        assertEquals("Hello big world", poet.poem("Hello world"));
+        Path file = Files.createTempFile("learn", ".txt");
+        try {
+            Files.write(file, "hello Small world\nhello Small world".getBytes(StandardCharsets.UTF_8));
+            poet.learn(file);
+            assertEquals("Hello Small world", poet.poem("Hello world"));
+        } finally {
+            Files.delete(file);
+        }
+        GraphPoet live = GraphPoet.builder().build(new VersionedGraph<>());
+        live.learn("hello Small world");
+        assertEquals("Hello Small world", live.poem("Hello world"));
+    }
+
+    // A bounded bridge cache gives the same poems, before and after learning
+    @Test
+    public void testBridgeCache() throws IOException {
+        File corpusFile = new File(CORPUS_PATH);
+        GraphPoet poet = new GraphPoet(corpusFile);
+        String[] inputs = { "Hello world", "hello WELCOME", "No bridge here", "this a of test" };
+        assertNull(poet.bridgeCache());
+        for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+            GraphPoet cached = GraphPoet.builder().bridgeCache(2, policy).build(corpusFile);
+            for (int round = 0; round < 2; round++) {
+                for (String input : inputs) {
+                    assertEquals(poet.poem(input), cached.poem(input));
+                }
+            }
+            BridgeCache cache = cached.bridgeCache();
+            assertEquals(policy, cache.policy());
+            assertTrue(cache.size() <= 2);
+            assertEquals(2 * (1 + 1 + 2 + 3), cache.hits() + cache.misses());
+        }
+        String corpus = "x a\nx c\nx c\nc y";
+        for (BridgeCache.Policy policy : BridgeCache.Policy.values()) {
+            GraphPoet cached = GraphPoet.builder().bridgeCache(100, policy).build(new StringReader(corpus));
+            assertEquals("x c y", cached.poem("x y"));
+            assertEquals("x c y", cached.poem("x y"));
+            assertEquals(1, cached.bridgeCache().hits());
+            cached.learn("a y a y\na y");
+            assertEquals("x a y", cached.poem("x y"));
+        }
+    }
+
+    // Batches of poems are the poems poem() writes, looking each distinct pair up once
+    @Test
+    public void testPoems() throws IOException {
+        File corpusFile = new File(CORPUS_PATH);
+        GraphPoet poet = new GraphPoet(corpusFile);
+        assertEquals(List.of(), poet.poems(List.of()));
+        assertEquals(List.of("Hello beautiful world"), poet.poems(List.of("Hello world")));
+        
+        String[] words = { "hello", "World", "this", "a", "of", "test", "welcome", "nothing" };
+        Random random = new Random(0);
+        List<String> inputs = new ArrayList<>(List.of("", " Hello  world ", "hello", "Hello world"));
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                input.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            inputs.add(input.toString());
+        }
+        List<String> expected = new ArrayList<>();
+        for (String input : inputs) {
+            expected.add(poet.poem(input));
+        }
+        assertEquals(expected, poet.poems(inputs));
+        assertEquals(expected, poet.poems(inputs.stream()));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(expected, poet.poems(inputs, executor));
+            
+            Set<List<String>> pairs = new HashSet<>();
+            for (String input : inputs) {
+                String[] inputWords = input.toLowerCase().split("\\s+");
+                for (int i = 0; i < inputWords.length - 1; i++) {
+                    pairs.add(List.of(inputWords[i], inputWords[i + 1]));
+                }
+            }
+            GraphPoet cached = GraphPoet.builder().bridgeCache(1_000, BridgeCache.Policy.LRU).build(corpusFile);
+            assertEquals(expected, cached.poems(inputs, executor));
+            BridgeCache cache = cached.bridgeCache();
+            assertEquals(pairs.size(), cache.misses());
+            assertEquals(0, cache.hits());
+            
+            VersionedGraph<String> graph = new VersionedGraph<>();
+            graph.update(g -> {
+                g.set("hello", "small", 1);
+                g.set("small", "world", 1);
+            });
+            GraphPoet live = GraphPoet.builder().build(graph);
+            assertEquals(List.of("Hello small world", "world"), live.poems(List.of("Hello world", "world"), executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Poems appended to an Appendable are the poems poem() and poems() write
+    @Test
+    public void testPoemAppendable() throws IOException {
+        GraphPoet poet = GraphPoet.builder().bridgeIndex(BridgeIndex.Mode.EAGER, Integer.MAX_VALUE)
+                .build(new StringReader("Hello beautiful world\nthis is a test\n\u00c9t\u00e9 chaud \u00e9t\u00e9\n"
+                        + "\u03a3\u03bf\u03c6\u03af\u03b1 and WELCOME\n"));
+        String[] words = { "hello", "World", "THIS", "a", "test", "\u00c9T\u00c9", "\u00e9t\u00e9", "chaud",
+            "\u03a3\u039f\u03a6\u0399\u0391", "welcome", "nothing", "\u0001x", "y\u0002", "\u0130s" };
+        String[] spaces = { " ", "  ", "\t", "\n", "\r\n", "\u000b", "\f" };
+        Random random = new Random(0);
+        List<String> inputs = new ArrayList<>(List.of("", " ", " \t ", "Hello world", " Hello  world ", "\u0001"));
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder input = new StringBuilder();
+            if (random.nextInt(4) == 0) {
+                input.append(spaces[random.nextInt(spaces.length)]);
+            }
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                input.append(words[random.nextInt(words.length)]);
+                if (j > 0 || random.nextBoolean()) {
+                    input.append(spaces[random.nextInt(spaces.length)]);
+                }
+            }
+            inputs.add(input.toString());
+        }
+        Locale locale = Locale.getDefault();
+        try {
+            for (Locale defaultLocale : new Locale[] { Locale.ROOT, new Locale("tr") }) {
+                Locale.setDefault(defaultLocale);
+                List<String> expected = poet.poems(inputs);
+                for (int i = 0; i < inputs.size(); i++) {
+                    String input = inputs.get(i);
+                    StringBuilder poem = new StringBuilder("> ");
+                    poet.poem(new StringBuilder(input), poem);
+                    assertEquals(input, "> " + expected.get(i), poem.toString());
+                    assertEquals(input, expected.get(i), poet.poem(input));
+                }
+            }
+        } finally {
+            Locale.setDefault(locale);
+        }
+        assertEquals("Hello beautiful world", poet.poem("Hello world"));
+        assertEquals("\u00c9T\u00c9 chaud \u00e9t\u00e9", poet.poem("\u00c9T\u00c9 \u00e9t\u00e9"));
+        
+        StringWriter writer = new StringWriter();
+        poet.poem("hello WELCOME", writer);
+        assertEquals(poet.poem("hello WELCOME"), writer.toString());
+        
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        graph.update(g -> {
+            g.set("hello", "small", 1);
+            g.set("small", "world", 1);
+        });
+        StringBuilder live = new StringBuilder();
+        GraphPoet.builder().build(graph).poem(" Hello world ", live);
+        assertEquals("Hello small world", live.toString());
+    }
+
+    // Ranked and sampled bridges agree with poem(), and repeat for a seed
+    @Test
+    public void testBridgeCandidates() throws IOException {
+        GraphPoet poet = new GraphPoet(new StringReader("a Big c\na small c\na small c\na tiny x\n"));
+        assertEquals(List.of("small", "Big", "tiny"), poet.bridges("A", "c", 5));
+        assertEquals(List.of("small"), poet.bridges("a", "C", 1));
+        assertEquals(List.of(), poet.bridges("a", "c", 0));
+        assertEquals(List.of(), poet.bridges("x", "a", 2));
+        assertEquals("A small c", poet.poem("A c"));
+        assertNull(poet.sampleBridge("x", "a", new Random(0)));
+        
+        Set<String> sampled = new HashSet<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            sampled.add(poet.poem("A c", random));
+        }
+        assertEquals(Set.of("A small c", "A Big c", "A tiny c"), sampled);
+        for (int seed = 0; seed < 20; seed++) {
+            assertEquals(poet.poem("A c a c", new Random(seed)), poet.poem("A c a c", new Random(seed)));
+            assertEquals(poet.sampleBridge("a", "c", new Random(seed)), poet.sampleBridge("a", "c", new Random(seed)));
+        }
+        
+        poet.learn("a tiny c\na tiny c\na tiny c\n");
+        assertEquals(List.of("tiny", "small"), poet.bridges("a", "c", 2));
+        
+        VersionedGraph<String> graph = new VersionedGraph<>();
+        graph.update(g -> {
+            g.set("hello", "small", 1);
+            g.set("small", "world", 1);
+            g.set("hello", "big", 1);
+        });
+        GraphPoet live = GraphPoet.builder().build(graph);
+        assertEquals(List.of("small", "big"), live.bridges("Hello", "world", 3));
+        graph.update(g -> g.set("big", "world", 5));
+        assertEquals(List.of("big", "small"), live.bridges("Hello", "world", 3));
+    }
+
+    // Metrics count ingestion, poems and lookups, without changing the poems
+    @Test
+    public void testMetrics() throws IOException, JMException {
+        File corpusFile = new File(CORPUS_PATH);
+        GraphPoet plain = new GraphPoet(corpusFile);
+        assertNull(plain.metrics());
+        for (int threads : new int[] { 1, 2 }) {
+            GraphPoet poet = GraphPoet.builder().recordMetrics(1).parallelism(threads).build(corpusFile);
+            PoetMetrics metrics = poet.metrics();
+            assertEquals(14, metrics.getTokens());
+            assertEquals(13, metrics.getBigrams());
+            assertTrue(metrics.getTokensPerSecond() > 0);
+            assertEquals("Hello beautiful world", poet.poem("Hello world"));
+            assertEquals(plain.poem("this a of test"), poet.poem("this a of test"));
+            assertEquals(List.of("hello", "x y"), poet.poems(List.of("hello", "x y")));
+            assertEquals(2, metrics.getPoems().getCount());
+            assertEquals(2, metrics.getBatchedPoems());
+            assertEquals(1 + 3 + 1, metrics.getBridgeLookups().getCount());
+            assertEquals(5 / 4.0, metrics.getLookupsPerPoem(), 1e-9);
+            // each search reads the targets of w1 and the sources of w2
+            assertEquals(5, metrics.graph().getTargets().getCount());
+            assertEquals(5, metrics.graph().getSources().getCount());
+            assertEquals(13, metrics.graph().getVertexCount());
+            
+            poet.learn("x y z");
+            assertEquals(17, metrics.getTokens());
+            assertEquals(15, metrics.getBigrams());
+            assertEquals(2, metrics.graph().getIncrement().getCount());
+            assertEquals(16, metrics.graph().getVertexCount());
+        }
+        
+        GraphPoet poet = GraphPoet.builder().recordMetrics(1).build(new StringReader("a b c"));
+        poet.metrics().register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName poetName = new ObjectName("poet:type=GraphPoet,name=\"test\"");
+        ObjectName graphName = new ObjectName("poet:type=Graph,name=\"test\"");
+        try {
+            assertEquals("a b c", poet.poem("a c"));
+            assertEquals(3L, server.getAttribute(poetName, "Tokens"));
+            assertEquals(1L, ((CompositeData) server.getAttribute(poetName, "Poems")).get("count"));
+            assertEquals(2L, server.getAttribute(graphName, "EdgeCount"));
+        } finally {
+            server.unregisterMBean(poetName);
+            server.unregisterMBean(graphName);
+        }
+    }
+
     // More tests can be added as necessary...
 }
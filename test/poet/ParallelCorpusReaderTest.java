@@ -0,0 +1,145 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import graph.WeightedEdge;
+
+// Testing Strategy
+
+/**
+ * chunk size: 1 byte (every gap is a boundary), a few bytes, whole file
+ * boundaries: inside a space run, inside a line break run, at \r\n,
+ *             chunks with no words; adjacencies across line breaks are counted
+ * words: ASCII, multi-byte UTF-8, mixed case (last-seen case wins)
+ * file: empty, only whitespace, malformed UTF-8
+ * counts, and the order adjacencies first occur in, are compared with a sequential
+ * WordScanner pass
+ */
+public class ParallelCorpusReaderTest {
+
+    // Ensure assertions are enabled
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // Make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static ParallelCorpusReader.Counts read(String text, long chunkSize) throws IOException {
+        Path file = Files.createTempFile("corpus", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return ParallelCorpusReader.read(channel, 4, chunkSize);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Adjacency counts as "w1 w2" -> count, read sequentially, in order of first occurrence
+    private static Map<String, Integer> expected(String text) throws IOException {
+        Map<String, Integer> adjacencies = new LinkedHashMap<>();
+        WordScanner scanner = new WordScanner(new StringReader(text));
+        String previous = null;
+        for (String word = scanner.next(); word != null; word = scanner.next()) {
+            String lowerCase = word.toLowerCase();
+            if (previous != null) {
+                adjacencies.merge(previous + " " + lowerCase, 1, Integer::sum);
+            }
+            previous = lowerCase;
+        }
+        return adjacencies;
+    }
+
+    private static Map<String, Integer> flatten(ParallelCorpusReader.Counts counts) {
+        Map<String, Integer> adjacencies = new HashMap<>();
+        for (WeightedEdge<String> edge : counts.edges()) {
+            adjacencies.put(edge.getSource() + " " + edge.getTarget(), edge.getWeight());
+        }
+        return adjacencies;
+    }
+
+    // Adjacency counts as "w1 w2" -> count, in the order orderedEdges() lists them
+    private static Map<String, Integer> flattenInOrder(ParallelCorpusReader.Counts counts) {
+        Map<String, Integer> adjacencies = new LinkedHashMap<>();
+        for (WeightedEdge<String> edge : counts.orderedEdges()) {
+            adjacencies.put(edge.getSource() + " " + edge.getTarget(), edge.getWeight());
+        }
+        return adjacencies;
+    }
+
+    private static void assertSameAsSequential(String text) throws IOException {
+        for (long chunkSize : new long[] { 1, 2, 3, 7, 1 << 20 }) {
+            ParallelCorpusReader.Counts counts = read(text, chunkSize);
+            assertEquals("chunk size " + chunkSize, expected(text), flatten(counts));
+            assertEquals("order with chunk size " + chunkSize, new ArrayList<>(expected(text).entrySet()),
+                    new ArrayList<>(flattenInOrder(counts).entrySet()));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertTrue(read("", 1).words.isEmpty());
+        assertFalse(read(" \n\t\r\n ", 1).edges().iterator().hasNext());
+    }
+
+    @Test
+    public void testBoundaries() throws IOException {
+        assertSameAsSequential("a b c");
+        assertSameAsSequential("a   b\n\n  c\r\nd \r e\n");
+        assertSameAsSequential("\n\n   lead  and trail   \n\n");
+        assertSameAsSequential("one\n\n\n\n\n\n\n\n\n\ntwo three        four");
+        for (long chunkSize : new long[] { 1, 2, 1 << 20 }) {
+            assertEquals(Map.of("a b", 1, "b c", 1), flatten(read("a\nb\r\n\r\nc", chunkSize)));
+        }
+    }
+
+    @Test
+    public void testUnicodeAndCase() throws IOException {
+        String text = "\u00c7a va? \u00c7A VA! na\u00efve Caf\u00e9\ncaf\u00e9 \u65e5\u672c\u8a9e \u30c6\u30ad\u30b9\u30c8 \u65e5\u672c\u8a9e";
+        assertSameAsSequential(text);
+        ParallelCorpusReader.Counts counts = read(text, 2);
+        assertEquals("caf\u00e9", counts.words.get("caf\u00e9"));
+        assertEquals("\u00c7A", counts.words.get("\u00e7a"));
+    }
+
+    @Test
+    public void testRandomText() throws IOException {
+        Random random = new Random(6005);
+        String[] pieces = { "the", "The", "fox", "\u00e9", "  ", " ", "\n", "\r\n", "\t", "\u00fcn\u00efcode" };
+        for (int round = 0; round < 20; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+                text.append(random.nextInt(4) == 0 ? "" : " ");
+            }
+            assertSameAsSequential(text.toString());
+        }
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void testMalformed() throws IOException {
+        Path file = Files.createTempFile("corpus", ".txt");
+        try {
+            Files.write(file, new byte[] { 'o', 'k', ' ', (byte) 0xC3, (byte) 0x28, ' ', 'x' });
+            ParallelCorpusReader.read(file, 2);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
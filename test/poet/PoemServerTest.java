@@ -0,0 +1,227 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+// Testing Strategy
+
+/**
+ * requests: POST one input; POST from many threads at once; GET; body too large
+ * batches: one request, many queued requests written together
+ * backpressure: queue full, so a request is refused with 503; default sizes with every
+ *               handler waiting (platform threads before Java 21)
+ * close(): waiting requests are refused, and the server stops listening
+ */
+public class PoemServerTest {
+
+    private static final String CORPUS_PATH = "test/poet/test_corpus.txt";
+    private static final InetSocketAddress LOCAL = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    // Ensure assertions are enabled
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // Make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Status and body of a request to server
+    private static String[] send(PoemServer server, String method, byte[] body) throws IOException {
+        URL url = new URL("http", server.address().getHostString(), server.address().getPort(), "/poem");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String[] { String.valueOf(status), new String(in.readAllBytes(), StandardCharsets.UTF_8) };
+        }
+    }
+
+    private static String[] post(PoemServer server, String input) throws IOException {
+        return send(server, "POST", input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPoem() throws IOException {
+        GraphPoet poet = new GraphPoet(new File(CORPUS_PATH));
+        try (PoemServer server = PoemServer.start(poet, LOCAL)) {
+            assertArrayEquals(new String[] { "200", "Hello beautiful world" }, post(server, "Hello world"));
+            assertArrayEquals(new String[] { "200", "" }, post(server, ""));
+            assertEquals("405", send(server, "GET", null)[0]);
+            assertEquals("413", send(server, "POST", new byte[(1 << 16) + 1])[0]);
+            assertEquals(2, server.served());
+            assertEquals(0, server.refused());
+        }
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        GraphPoet poet = new GraphPoet(new File(CORPUS_PATH));
+        String[] inputs = { "Hello world", "hello WELCOME", "No bridge here", "this a of test" };
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try (PoemServer server = PoemServer.start(poet, LOCAL)) {
+            List<Future<String[]>> responses = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                String input = inputs[i % inputs.length];
+                responses.add(clients.submit(() -> post(server, input)));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                String[] response = responses.get(i).get();
+                assertEquals("200", response[0]);
+                assertEquals(poet.poem(inputs[i % inputs.length]), response[1]);
+            }
+            assertEquals(400, server.served());
+            assertTrue(server.batches() >= 1 && server.batches() <= 400);
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    // Queued requests are written in one batch, and a full queue refuses requests
+    @Test
+    public void testBatchingAndBackpressure() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try (PoemServer server = PoemServer.start(batch -> {
+            synchronized (batchSizes) {
+                batchSizes.add(batch.size());
+            }
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            List<String> poems = new ArrayList<>();
+            for (String input : batch) {
+                poems.add(input.toUpperCase());
+            }
+            return poems;
+        }, LOCAL, 2, 10)) {
+            Future<String[]> first = clients.submit(() -> post(server, "a"));
+            writing.await();
+            Future<String[]> second = clients.submit(() -> post(server, "b"));
+            Future<String[]> third = clients.submit(() -> post(server, "c"));
+            while (server.pending() < 2) {
+                Thread.sleep(1);
+            }
+            assertEquals("503", post(server, "d")[0]);
+            assertEquals(1, server.refused());
+            release.countDown();
+            assertArrayEquals(new String[] { "200", "A" }, first.get());
+            assertArrayEquals(new String[] { "200", "B" }, second.get());
+            assertArrayEquals(new String[] { "200", "C" }, third.get());
+            synchronized (batchSizes) {
+                assertEquals(List.of(1, 2), batchSizes);
+            }
+            assertEquals(2, server.batches());
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    // With the default sizes, requests past the queue are refused, not left to wait for a handler
+    @Test(timeout = 60_000)
+    public void testBackpressureWithDefaults() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Socket> connections = new ArrayList<>();
+        try (PoemServer server = PoemServer.start(batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return batch;
+        }, LOCAL, PoemServer.DEFAULT_MAX_PENDING, PoemServer.DEFAULT_MAX_BATCH)) {
+            // more than a batch and a full queue can hold, however the handlers run
+            byte[] request = ("POST /poem HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1\r\n"
+                    + "Connection: close\r\n\r\na").getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < PoemServer.DEFAULT_MAX_PENDING + PoemServer.DEFAULT_MAX_BATCH + 1; i++) {
+                Socket socket = new Socket(server.address().getAddress(), server.address().getPort());
+                socket.getOutputStream().write(request);
+                connections.add(socket);
+            }
+            while (server.refused() == 0) {
+                Thread.sleep(1);
+            }
+            String[] refused = post(server, "b");
+            assertArrayEquals(new String[] { "503", "too many requests" }, refused);
+            release.countDown();
+            int ok = 0;
+            for (Socket socket : connections) {
+                String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                if (response.startsWith("HTTP/1.1 200")) {
+                    assertTrue(response, response.endsWith("\r\n\r\na"));
+                    ok++;
+                } else {
+                    assertTrue(response, response.startsWith("HTTP/1.1 503"));
+                    assertTrue(response, response.toLowerCase().contains("\r\nretry-after: 1\r\n"));
+                }
+            }
+            assertEquals(ok, server.served());
+            assertEquals(connections.size() + 1, server.served() + server.refused());
+        } finally {
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            PoemServer server = PoemServer.start(batch -> {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return batch;
+            }, LOCAL, 10, 1);
+            Future<String[]> first = clients.submit(() -> post(server, "a"));
+            writing.await();
+            Future<String[]> waiting = clients.submit(() -> post(server, "b"));
+            while (server.pending() < 1) {
+                Thread.sleep(1);
+            }
+            server.close();
+            assertArrayEquals(new String[] { "200", "a" }, first.get());
+            assertEquals("503", waiting.get()[0]);
+            try {
+                post(server, "c");
+                fail("expected the server to stop listening");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+// Testing Strategy
+
+/**
+ * add(): new word, word already added (same instance, equal copy); display same as word,
+ *        different case, changed back to the word
+ * canonical(): word present, absent
+ * display(): word present with and without a different display form, absent
+ * growth: many more words than the initial capacity keep their instances and display forms
+ * displayNames(): only words displayed in a different case
+ * concurrent readers never see another word's instance or display form
+ */
+public class VocabularyTest {
+
+    // Ensure assertions are enabled
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // Make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testAddSharesFirstInstance() {
+        Vocabulary vocabulary = new Vocabulary();
+        String first = new String("the");
+        String second = new String("the");
+        assertSame(first, vocabulary.add(first, first));
+        assertSame(first, vocabulary.add(second, second));
+        assertSame(first, vocabulary.canonical(new String("the")));
+        assertSame(first, vocabulary.display("the"));
+        assertEquals(1, vocabulary.size());
+    }
+
+    @Test
+    public void testAbsentWord() {
+        Vocabulary vocabulary = new Vocabulary();
+        vocabulary.add("a", "A");
+        String absent = new String("b");
+        assertSame(absent, vocabulary.canonical(absent));
+        assertSame(absent, vocabulary.display(absent));
+    }
+
+    @Test
+    public void testDisplayIsLastSeenCase() {
+        Vocabulary vocabulary = new Vocabulary();
+        String word = vocabulary.add("hello", "Hello");
+        assertEquals("hello", word);
+        assertEquals("Hello", vocabulary.display("hello"));
+        vocabulary.add(new String("hello"), "HELLO");
+        assertEquals("HELLO", vocabulary.display("hello"));
+        assertEquals(Collections.singletonMap("hello", "HELLO"), vocabulary.displayNames());
+        vocabulary.add(new String("hello"), new String("hello"));
+        assertSame(word, vocabulary.display("hello"));
+        assertEquals(Collections.emptyMap(), vocabulary.displayNames());
+    }
+
+    @Test
+    public void testOneInstancePerWordAcrossGrowth() {
+        Vocabulary vocabulary = new Vocabulary();
+        final int words = 10_000;
+        Map<String, Boolean> instances = new IdentityHashMap<>();
+        for (int pass = 0; pass < 3; pass++) {
+            for (int i = 0; i < words; i++) {
+                String word = "w" + i;
+                String display = i % 10 == 0 ? "W" + i : word;
+                instances.put(vocabulary.add(word, display), true);
+            }
+        }
+        assertEquals(words, vocabulary.size());
+        assertEquals("one retained instance per distinct word", words, instances.size());
+        for (int i = 0; i < words; i++) {
+            String word = "w" + i;
+            assertTrue(instances.containsKey(vocabulary.canonical(word)));
+            assertEquals(i % 10 == 0 ? "W" + i : word, vocabulary.display(word));
+        }
+        assertEquals(words / 10, vocabulary.displayNames().size());
+    }
+
+    @Test
+    public void testConcurrentReaders() throws InterruptedException {
+        Vocabulary vocabulary = new Vocabulary();
+        final int words = 50_000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (int i = 0; i < words; i += 97) {
+                    String word = "w" + i;
+                    String canonical = vocabulary.canonical(word);
+                    String display = vocabulary.display(word);
+                    if (!canonical.equals(word) || !display.equalsIgnoreCase(word)) {
+                        error.set(word + " read as " + canonical + ", " + display);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < words; i++) {
+            vocabulary.add("w" + i, "W" + i);
+        }
+        done.set(true);
+        reader.join();
+        assertNull(error.get());
+        Set<String> names = vocabulary.displayNames().keySet();
+        assertEquals(words, names.size());
+    }
+}
@@ -0,0 +1,63 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+// Testing Strategy
+
+/**
+ * text: empty, only whitespace, one word, several words
+ * separators: each whitespace character, runs of whitespace, leading and trailing
+ * line breaks: \n, \r, \r\n, none; they separate words like other whitespace
+ * buffer size: smaller than a word, larger than the text
+ */
+public class WordScannerTest {
+
+    // Ensure assertions are enabled
+    @Test(expected = AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // Make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Words of the text, scanned with the given buffer size
+    private static List<String> scan(String text, int bufferSize) throws IOException {
+        WordScanner scanner = new WordScanner(new StringReader(text), bufferSize);
+        List<String> words = new ArrayList<>();
+        for (String word = scanner.next(); word != null; word = scanner.next()) {
+            words.add(word);
+        }
+        assertNull(scanner.next());
+        return words;
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertEquals(List.of(), scan("", 4));
+        assertEquals(List.of(), scan(" \t\n\r\n\f\u000B ", 4));
+    }
+
+    @Test
+    public void testSeparators() throws IOException {
+        assertEquals(List.of("a"), scan("a", 4));
+        assertEquals(List.of("a", "b", "c", "d", "e"), scan("  a b\tc\u000Bd\fe  ", 4));
+        assertEquals(List.of("Hello,", "world!"), scan("Hello,   world!", 64));
+    }
+
+    @Test
+    public void testLineBreaks() throws IOException {
+        assertEquals(List.of("a", "b", "c", "d", "e"), scan("\na b\nc\rd\r\ne\n", 64));
+        assertEquals(List.of("a", "b"), scan("a \t \r\n \t b", 2));
+    }
+
+    // Words longer than the buffer are stitched across refills
+    @Test
+    public void testSmallBuffer() throws IOException {
+        assertEquals(List.of("antidisestablishment", "arianism", "x"), scan("antidisestablishment\narianism x", 3));
+    }
+}